@@ -1,20 +1,33 @@
 package io.github.ahmeterdem1.formality;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Set;
 import java.util.HashSet;
 
 /**
  * A wrapper class for a unique set of characters.
+ *
+ * The ASCII characters of the Alphabet are also kept as a mask of
+ * 128 bits in two longs, so checking text that is mostly ASCII costs
+ * a shift and a bit test per character, without boxing a Character
+ * or searching the ranges. The mask is checked by CharScan, on vectors
+ * where the JVM has them.
  */
 public class Alphabet {
 
     private Set<Character> characters;
+    private long lowMask;   // Bit c for the characters 0 to 63
+    private long highMask;  // Bit c - 64 for the characters 64 to 127
+    private char[] rangeBegins;
+    private char[] rangeEnds;
+    private int rangeCount;
 
     /**
      * Initialize an empty Alphabet.
      */
     public Alphabet() {
         this.characters = new HashSet<Character>();
+        this.clearRanges();
     }
 
     /**
@@ -25,9 +38,8 @@ public class Alphabet {
      */
     public Alphabet(char[] chars) {
         this.characters = new HashSet<Character>();
-        for (char c : chars) {
-            this.characters.add(c);
-        }
+        this.clearRanges();
+        this.setCharacters(chars);
     }
 
     /**
@@ -38,16 +50,22 @@ public class Alphabet {
      */
     public Alphabet(Character[] chars) {
         this.characters = new HashSet<Character>();
-        this.characters.addAll(Arrays.asList(chars));
+        this.clearRanges();
+        this.setCharacters(chars);
     }
 
     /**
-     * Assing the Alphabet to the given Set.
+     * Initialize an Alphabet with the characters of the given Set. The
+     * Set is copied, so later changes to it do not reach the Alphabet.
      *
      * @param s Set that holds the characters of the Alphabet
      */
     public Alphabet(Set<Character> s) {
-        this.characters = s;
+        this.characters = new HashSet<Character>(s);
+        this.clearRanges();
+        for (Character c : this.characters) {
+            this.mask(c, c);
+        }
     }
 
     /**
@@ -58,6 +76,7 @@ public class Alphabet {
     public void setCharacters(char[] chars) {
         for (char c : chars) {
             this.characters.add(c);
+            this.mask(c, c);
         }
     }
 
@@ -68,6 +87,9 @@ public class Alphabet {
      */
     public void setCharacters(Character[] chars) {
         this.characters.addAll(Arrays.asList(chars));
+        for (Character c : chars) {
+            this.mask(c, c);
+        }
     }
 
     /**
@@ -78,11 +100,134 @@ public class Alphabet {
     public void setCharacters(String str) {
         for (char c: str.toCharArray()) {
             this.characters.add(c);
+            this.mask(c, c);
+        }
+    }
+
+    /**
+     * Add an inclusive range of characters to the Alphabet. Ranges
+     * are kept as sorted, disjoint intervals, so a range costs the
+     * same regardless of how many characters it covers.
+     *
+     * @param first The first character of the range
+     * @param last The last character of the range
+     */
+    public void addRange(char first, char last) {
+        if (first > last) {
+            char temp = first;
+            first = last;
+            last = temp;
+        }
+        this.mask(first, last);
+
+        char[] begins = new char[this.rangeCount + 1];
+        char[] ends = new char[this.rangeCount + 1];
+        int count = 0;
+        int i = 0;
+
+        // Ranges entirely before the new one
+        while (i < this.rangeCount && this.rangeEnds[i] + 1 < first) {
+            begins[count] = this.rangeBegins[i];
+            ends[count++] = this.rangeEnds[i++];
         }
+
+        // Ranges that overlap or touch the new one are absorbed
+        while (i < this.rangeCount && this.rangeBegins[i] <= last + 1) {
+            if (this.rangeBegins[i] < first) first = this.rangeBegins[i];
+            if (this.rangeEnds[i] > last) last = this.rangeEnds[i];
+            i++;
+        }
+        begins[count] = first;
+        ends[count++] = last;
+
+        while (i < this.rangeCount) {
+            begins[count] = this.rangeBegins[i];
+            ends[count++] = this.rangeEnds[i++];
+        }
+
+        this.rangeBegins = begins;
+        this.rangeEnds = ends;
+        this.rangeCount = count;
     }
 
+    /**
+     * Get the number of disjoint character ranges of the Alphabet.
+     *
+     * @return Count of ranges
+     */
+    public final int getRangeCount() {
+        return this.rangeCount;
+    }
+
+    /**
+     * Get the first character of the range at the given index.
+     * Ranges are sorted in ascending order.
+     *
+     * @param i Index of the range
+     * @return First character of the range
+     */
+    public final char getRangeBegin(int i) {
+        return this.rangeBegins[i];
+    }
+
+    /**
+     * Get the last character of the range at the given index.
+     * Ranges are sorted in ascending order.
+     *
+     * @param i Index of the range
+     * @return Last character of the range
+     */
+    public final char getRangeEnd(int i) {
+        return this.rangeEnds[i];
+    }
+
+    /**
+     * Get all characters of the Alphabet, single characters and ranges
+     * alike, as sorted and disjoint ranges.
+     *
+     * @return Consecutive pairs of first and last characters of each range
+     */
+    public char[] toRanges() {
+        char[] singles = new char[this.characters.size()];
+        char[] result = new char[2 * (singles.length + this.rangeCount)];
+        int i = 0, j = 0, count = 0;
+        char first, last;
+
+        for (Character c : this.characters) {
+            singles[i++] = c;
+        }
+        Arrays.sort(singles);
+
+        i = 0;
+        while (i < singles.length || j < this.rangeCount) {
+            if (j >= this.rangeCount || (i < singles.length && singles[i] < this.rangeBegins[j])) {
+                first = singles[i];
+                last = singles[i++];
+            } else {
+                first = this.rangeBegins[j];
+                last = this.rangeEnds[j++];
+            }
+
+            if (count > 0 && first <= result[count - 1] + 1) {
+                if (last > result[count - 1]) result[count - 1] = last;
+            } else {
+                result[count++] = first;
+                result[count++] = last;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Get the single characters of the Alphabet, without those that
+     * were added as ranges. See toRanges() for all of them. The Set is
+     * a read-only view; change the Alphabet through its own methods.
+     *
+     * @return Unmodifiable view of the single characters
+     */
     public final Set<Character> getCharacters() {
-        return this.characters;
+        return Collections.unmodifiableSet(this.characters);
     }
 
     /**
@@ -91,7 +236,7 @@ public class Alphabet {
      * @return Count of unique characters
      */
     public final int getLength() {
-        return this.characters.toArray().length;
+        return this.getSize();
     }
 
     /**
@@ -100,7 +245,14 @@ public class Alphabet {
      * @return Count of unique characters
      */
     public final int getSize() {
-        return this.characters.toArray().length;
+        int size = 0;
+        for (Character c : this.characters) {
+            if (!this.inRanges(c)) size++;
+        }
+        for (int i = 0; i < this.rangeCount; i++) {
+            size += this.rangeEnds[i] - this.rangeBegins[i] + 1;
+        }
+        return size;
     }
 
     /**
@@ -110,7 +262,8 @@ public class Alphabet {
      * @return true if contains, false otherwise
      */
     public boolean contains(char c) {
-        return this.characters.contains(c);
+        if (c < 128) return this.inMask(c);
+        return this.characters.contains(c) || this.inRanges(c);
     }
 
     /**
@@ -120,11 +273,20 @@ public class Alphabet {
      * @return true if contains, false otherwise
      */
     public boolean contains(Character c) {
-        return this.characters.contains(c);
+        return this.contains(c.charValue());
     }
 
     public String toString() {
-        return this.characters.toString();
+        if (this.rangeCount == 0) {
+            return this.characters.toString();
+        }
+
+        StringBuilder builder = new StringBuilder(this.characters.toString());
+        for (int i = 0; i < this.rangeCount; i++) {
+            builder.append(String.format("[\\u%04x-\\u%04x]",
+                    (int) this.rangeBegins[i], (int) this.rangeEnds[i]));
+        }
+        return builder.toString();
     }
 
     public Object[] toArray() {
@@ -144,7 +306,7 @@ public class Alphabet {
 
         for (int i = 0; i < str.length(); i++) {
             ch = str.charAt(i);
-            if (!this.characters.contains(ch)) {
+            if (!this.contains(ch)) {
                 return false;
             }
         }
@@ -165,7 +327,7 @@ public class Alphabet {
 
         for (int i = 0; i < str.length(); i++) {
             ch = str.charAt(i);
-            if (!this.characters.contains(ch)) {
+            if (!this.contains(ch)) {
                 return false;
             }
         }
@@ -185,7 +347,7 @@ public class Alphabet {
 
         for (int i = 0; i < str.length(); i++) {
             ch = str.charAt(i);
-            if (!this.characters.contains(ch)) {
+            if (!this.contains(ch)) {
                 return false;
             }
         }
@@ -195,21 +357,62 @@ public class Alphabet {
 
     /**
      * Check if each character of the given String
-     * is in the Alphabet.
+     * is in the Alphabet. Runs of ASCII characters are
+     * tested against the mask by CharScan.skipMasked;
+     * only the others go through the Set and the ranges.
      *
      * @param str String to check for
      * @return true if contains, false otherwise
      */
     public boolean validate(String str) {
+        int i = 0;
         char c;
-        for (int i = 0; i < str.length(); i++) {
+
+        while ((i = CharScan.skipMasked(str, i, this.lowMask, this.highMask)) < str.length()) {
             c = str.charAt(i);
-            if (!this.characters.contains(c)) {
-                return false;
-            }
+            if (c < 128 || (!this.characters.contains(c) && !this.inRanges(c))) return false;
+            i++;
         }
 
         return true;
     }
 
+    /**
+     * Set the bits of the ASCII part of a range in the mask.
+     */
+    private void mask(char first, char last) {
+        for (int c = first; c <= last && c < 128; c++) {
+            if (c < 64) this.lowMask |= 1L << c;
+            else this.highMask |= 1L << c;
+        }
+    }
+
+    private boolean inMask(char c) {
+        return ((c < 64 ? this.lowMask : this.highMask) & (1L << c)) != 0;
+    }
+
+    private void clearRanges() {
+        this.rangeBegins = new char[0];
+        this.rangeEnds = new char[0];
+        this.rangeCount = 0;
+    }
+
+    /**
+     * Binary search the sorted ranges for the given character.
+     */
+    private boolean inRanges(char c) {
+        int low = 0;
+        int high = this.rangeCount - 1;
+        int mid;
+
+        while (low <= high) {
+            mid = (low + high) >>> 1;
+            if (c < this.rangeBegins[mid]) high = mid - 1;
+            else if (c > this.rangeEnds[mid]) low = mid + 1;
+            else return true;
+        }
+
+        return false;
+    }
+
 }
@@ -69,6 +69,15 @@ public class Automaton {
         this.begin = s;
     }
 
+    /**
+     * Get the begin state of the Automaton.
+     *
+     * @return State object that is the initial state
+     */
+    public State getBegin() {
+        return this.begin;
+    }
+
     /**
      * Reset the properties of the automaton.
      */
@@ -0,0 +1,176 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.exceptions.BudgetExceededError;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bound on the work of a single call, so that a hostile input cannot
+ * keep a thread busy for long. A Budget limits the number of steps,
+ * a deadline after the call starts, or both. What a step is depends on
+ * the algorithm: a state that is visited, a character that is scanned
+ * or a configuration that is followed; it is always proportional to
+ * the time spent.
+ *
+ * A call that is given a Budget starts a Meter and spends its steps on
+ * it. Once the steps run out, or the deadline passes, the Meter throws
+ * a BudgetExceededError and the call ends right there. The clock is
+ * only read every CHECK_INTERVAL steps, so spending a step costs an
+ * addition and a comparison.
+ *
+ * <pre>
+ *     Budget budget = new Budget.Builder()
+ *             .maxSteps(1000000)
+ *             .timeout(10, TimeUnit.MILLISECONDS)
+ *             .build();
+ *     try {
+ *         automaton.validate(input, budget);
+ *     } catch (BudgetExceededError e) {
+ *         // Reject the input
+ *     }
+ * </pre>
+ *
+ * A Budget is immutable and can be shared between threads; each call
+ * starts a Meter of its own.
+ */
+public final class Budget {
+
+    /**
+     * Number of steps between two readings of the clock.
+     */
+    public static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * A Budget without any limit.
+     */
+    public static final Budget UNLIMITED = new Budget(Long.MAX_VALUE, -1);
+
+    private final long maxSteps;
+    private final long timeout;  // In nanoseconds, -1 for none
+
+    private Budget(long maxSteps, long timeout) {
+        this.maxSteps = maxSteps;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Get the largest number of steps that a call may take.
+     *
+     * @return Count of steps, Long.MAX_VALUE if unlimited
+     */
+    public long getMaxSteps() {
+        return this.maxSteps;
+    }
+
+    /**
+     * Get the time that a call may take.
+     *
+     * @param unit Unit of the result
+     * @return The timeout, -1 if there is none
+     */
+    public long getTimeout(TimeUnit unit) {
+        return this.timeout < 0 ? -1 : unit.convert(this.timeout, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Start counting the steps of a call. The deadline, if any, is set
+     * from now.
+     *
+     * @return A new Meter for the call
+     */
+    public Meter start() {
+        return new Meter(this.maxSteps, this.timeout < 0 ? -1 : System.nanoTime() + this.timeout);
+    }
+
+    /**
+     * Counts the steps of a single call. Not safe to share between threads.
+     */
+    public static final class Meter {
+        private final long maxSteps;
+        private final long deadline;  // Of System.nanoTime(), -1 for none
+        private long steps;
+        private long checkpoint;      // Steps at which to check the limits again
+
+        private Meter(long maxSteps, long deadline) {
+            this.maxSteps = maxSteps;
+            this.deadline = deadline;
+            this.checkpoint = deadline < 0 ? maxSteps : Math.min(maxSteps, CHECK_INTERVAL);
+        }
+
+        /**
+         * Spend steps of the budget.
+         *
+         * @param n Number of steps
+         * @throws BudgetExceededError If the steps run out or the deadline has passed
+         */
+        public void spend(long n) {
+            this.steps += n;
+            if (this.steps > this.checkpoint) this.check();
+        }
+
+        /**
+         * Get the number of steps spent so far.
+         *
+         * @return Count of steps
+         */
+        public long getSteps() {
+            return this.steps;
+        }
+
+        private void check() {
+            if (this.steps > this.maxSteps) {
+                throw new BudgetExceededError("Budget of " + this.maxSteps + " steps exceeded", this.steps);
+            }
+            if (this.deadline >= 0) {
+                if (System.nanoTime() - this.deadline > 0) {
+                    throw new BudgetExceededError("Deadline passed after " + this.steps + " steps", this.steps);
+                }
+                this.checkpoint = Math.min(this.maxSteps, this.steps + CHECK_INTERVAL);
+            }
+        }
+    }
+
+    /**
+     * Builder of a Budget. Limits that are not set are unlimited.
+     */
+    public static final class Builder {
+        private long maxSteps = Long.MAX_VALUE;
+        private long timeout = -1;
+
+        /**
+         * Limit the number of steps.
+         *
+         * @param steps Largest number of steps of a call
+         * @return This builder
+         * @throws IllegalArgumentException If steps is negative
+         */
+        public Builder maxSteps(long steps) {
+            if (steps < 0) throw new IllegalArgumentException("Negative step limit " + steps);
+            this.maxSteps = steps;
+            return this;
+        }
+
+        /**
+         * Limit the time of a call.
+         *
+         * @param time Length of the timeout
+         * @param unit Unit of the time
+         * @return This builder
+         * @throws IllegalArgumentException If time is negative
+         */
+        public Builder timeout(long time, TimeUnit unit) {
+            if (time < 0) throw new IllegalArgumentException("Negative timeout " + time);
+            this.timeout = unit.toNanos(time);
+            return this;
+        }
+
+        /**
+         * Build the Budget with the limits set so far.
+         *
+         * @return The Budget
+         */
+        public Budget build() {
+            return new Budget(this.maxSteps, this.timeout);
+        }
+    }
+}
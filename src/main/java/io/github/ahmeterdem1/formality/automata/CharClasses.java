@@ -0,0 +1,182 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The equivalence classes of characters under a Dfa: two characters
+ * are in the same class when every state takes both of them into the
+ * same state. A transition table only needs a column per class, not
+ * one per character, and most automata tell apart a few dozen classes
+ * at most, however many characters their ranges cover.
+ *
+ * The classes are found by refinement. The characters are first cut
+ * into segments at the ends of every range, since no range begins or
+ * ends inside a segment. All segments start in one class, and each
+ * state splits the classes by where it takes their segments.
+ *
+ * The map from characters to classes is kept in two levels: a block
+ * for each 256 characters, and blocks with the same classes are
+ * stored once. A map of a few ranges takes a few kilobytes, instead
+ * of the 128 kilobytes of a flat table for all chars.
+ */
+public final class CharClasses {
+
+    private static final int BLOCK = 256;
+
+    private final int count;
+    private final int[] blocks;   // Offset in classes of the block of each 256 characters
+    private final char[] classes;
+
+    private CharClasses(int count, int[] blocks, char[] classes) {
+        this.count = count;
+        this.blocks = blocks;
+        this.classes = classes;
+    }
+
+    /**
+     * Compute the character classes of a Dfa. Classes are numbered
+     * from 0 in the order of their smallest character, so '\u0000' is
+     * in class 0.
+     *
+     * @param dfa Automaton whose transitions define the classes
+     * @return Character classes of the automaton
+     */
+    public static CharClasses of(Dfa dfa) {
+        int[] bounds = CharClasses.bounds(dfa);
+        int segmentCount = bounds.length - 1;
+        int[] segments = new int[segmentCount];  // Class of each segment
+        int[] next = new int[segmentCount];
+        Map<Long, Integer> split = new HashMap<Long, Integer>();
+        int classCount = 1;
+        int s, i, k, target;
+
+        for (s = 0; s < dfa.getStateCount() && classCount < segmentCount; s++) {
+            split.clear();
+            i = 0;
+            for (k = 0; k < segmentCount; k++) {
+                // Range of the state that holds the segment, if any
+                while (i < dfa.getTransitionCount(s) && dfa.getHigh(s, i) < bounds[k]) i++;
+                target = i < dfa.getTransitionCount(s) && dfa.getLow(s, i) <= bounds[k] ? dfa.getTarget(s, i) : Dfa.DEAD;
+
+                Long key = ((long) segments[k] << 32) | (target & 0xFFFFFFFFL);
+                Integer id = split.get(key);
+                if (id == null) {
+                    id = split.size();
+                    split.put(key, id);
+                }
+                next[k] = id;
+            }
+            classCount = split.size();
+            int[] swap = segments;
+            segments = next;
+            next = swap;
+        }
+
+        // Number the classes in the order of their first segment
+        int[] ids = new int[segmentCount];
+        Arrays.fill(ids, -1);
+        classCount = 0;
+        for (k = 0; k < segmentCount; k++) {
+            if (ids[segments[k]] < 0) ids[segments[k]] = classCount++;
+        }
+
+        char[] flat = new char[Character.MAX_VALUE + 1];
+        for (k = 0; k < segmentCount; k++) {
+            Arrays.fill(flat, bounds[k], bounds[k + 1], (char) ids[segments[k]]);
+        }
+        return CharClasses.pack(classCount, flat);
+    }
+
+    /**
+     * Get the class of a character.
+     *
+     * @param c The character
+     * @return Number of its class
+     */
+    public int getClass(char c) {
+        return this.classes[this.blocks[c >>> 8] + (c & (BLOCK - 1))];
+    }
+
+    /**
+     * Get the number of classes.
+     *
+     * @return Count of classes
+     */
+    public int getClassCount() {
+        return this.count;
+    }
+
+    /**
+     * Get the smallest character of a class, which stands for all of
+     * them.
+     *
+     * @param k Number of the class
+     * @return First character in the class
+     */
+    public char getRepresentative(int k) {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (this.getClass((char) c) == k) return (char) c;
+        }
+        throw new IllegalArgumentException("No class " + k);
+    }
+
+    /**
+     * Get the number of bytes that the map takes, without the object
+     * headers.
+     *
+     * @return Size of the arrays in bytes
+     */
+    public long getMemorySize() {
+        return 4L * this.blocks.length + 2L * this.classes.length;
+    }
+
+    /**
+     * Sorted first characters of the segments, followed by 65536.
+     */
+    private static int[] bounds(Dfa dfa) {
+        boolean[] cuts = new boolean[Character.MAX_VALUE + 2];
+        int count = 0, s, i, c;
+
+        cuts[0] = true;
+        cuts[Character.MAX_VALUE + 1] = true;
+        for (s = 0; s < dfa.getStateCount(); s++) {
+            for (i = 0; i < dfa.getTransitionCount(s); i++) {
+                cuts[dfa.getLow(s, i)] = true;
+                cuts[dfa.getHigh(s, i) + 1] = true;
+            }
+        }
+
+        for (c = 0; c < cuts.length; c++) if (cuts[c]) count++;
+        int[] result = new int[count];
+        count = 0;
+        for (c = 0; c < cuts.length; c++) if (cuts[c]) result[count++] = c;
+        return result;
+    }
+
+    /**
+     * Store each distinct block of the flat map once.
+     */
+    private static CharClasses pack(int count, char[] flat) {
+        Map<CharBuffer, Integer> offsets = new HashMap<CharBuffer, Integer>();
+        int[] blocks = new int[flat.length / BLOCK];
+        char[] classes = new char[flat.length];
+        int size = 0;
+
+        for (int b = 0; b < blocks.length; b++) {
+            CharBuffer block = CharBuffer.wrap(flat, b * BLOCK, BLOCK);  // Compared by content
+            Integer offset = offsets.get(block);
+            if (offset == null) {
+                offset = size;
+                offsets.put(block, offset);
+                System.arraycopy(flat, b * BLOCK, classes, size, BLOCK);
+                size += BLOCK;
+            }
+            blocks[b] = offset;
+        }
+
+        return new CharClasses(count, blocks, Arrays.copyOf(classes, size));
+    }
+}
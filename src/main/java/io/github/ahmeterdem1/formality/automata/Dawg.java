@@ -0,0 +1,446 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+import io.github.ahmeterdem1.formality.exceptions.AutomatonError;
+import io.github.ahmeterdem1.formality.state.FiniteState;
+
+import java.util.Arrays;
+
+/**
+ * The minimal acyclic deterministic automaton of a set of words, also
+ * called a directed acyclic word graph.
+ *
+ * It is built from the words in sorted order, with the incremental
+ * algorithm of Daciuk et al., "Incremental Construction of Minimal
+ * Acyclic Finite-State Automata". Only the states on the path of the
+ * last added word can still change. When the next word leaves that
+ * path, the states below the branching point are done: each of them is
+ * looked up in a register of the finished states, and replaced with an
+ * equal state if there is one. So common suffixes are shared as soon as
+ * they are complete, and the trie of the words is never built. Memory
+ * stays proportional to the minimal automaton, plus the longest word.
+ *
+ * States are stored in arrays: the transitions of each state are sorted
+ * by character, so a word is looked up in O(length) steps, each of them
+ * a binary search among the transitions of a single state.
+ *
+ * <pre>
+ *     Dawg.Builder builder = new Dawg.Builder();
+ *     builder.add("tap");
+ *     builder.add("taps");
+ *     builder.add("top");
+ *     builder.add("tops");
+ *     Dawg dawg = builder.build();  // 5 states
+ *     dawg.contains("tops");        // true
+ * </pre>
+ *
+ * A Dawg is immutable and can be shared between threads.
+ */
+public final class Dawg {
+
+    private final int root;
+    private final boolean[] finals;
+    private final int[] firsts;  // transitions of state s are firsts[s] up to firsts[s + 1]
+    private final char[] labels;
+    private final int[] targets;
+    private final int wordCount;
+
+    private Dawg(int root, boolean[] finals, int[] firsts, char[] labels, int[] targets, int wordCount) {
+        this.root = root;
+        this.finals = finals;
+        this.firsts = firsts;
+        this.labels = labels;
+        this.targets = targets;
+        this.wordCount = wordCount;
+    }
+
+    /**
+     * Build the automaton of the given words.
+     *
+     * @param words Words in sorted order, as by String.compareTo
+     * @return The minimal automaton of the words
+     * @throws AutomatonError If the words are not sorted
+     */
+    public static Dawg of(Iterable<? extends CharSequence> words) {
+        Builder builder = new Builder();
+        for (CharSequence word : words) builder.add(word);
+        return builder.build();
+    }
+
+    /**
+     * Check if the word is in the set.
+     *
+     * @param word The word to look up
+     * @return true if the word was added
+     */
+    public boolean contains(CharSequence word) {
+        int s = this.root;
+        for (int i = 0; i < word.length(); i++) {
+            s = this.step(s, word.charAt(i));
+            if (s < 0) return false;
+        }
+        return this.finals[s];
+    }
+
+    /**
+     * Get the state that is reached from "s" by reading "c".
+     *
+     * @param s Number of the state
+     * @param c Character to read
+     * @return Number of the next state, Dfa.DEAD if there is none
+     */
+    public int step(int s, char c) {
+        int low = this.firsts[s];
+        int high = this.firsts[s + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (c < this.labels[mid]) high = mid - 1;
+            else if (c > this.labels[mid]) low = mid + 1;
+            else return this.targets[mid];
+        }
+        return Dfa.DEAD;
+    }
+
+    /**
+     * Get the beginning state.
+     *
+     * @return Number of the root
+     */
+    public int getStart() {
+        return this.root;
+    }
+
+    /**
+     * Check if the given state is final.
+     *
+     * @param s Number of the state
+     * @return true if final, false otherwise
+     */
+    public boolean isFinal(int s) {
+        return this.finals[s];
+    }
+
+    /**
+     * Get the number of states. States are numbered from 0.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.finals.length;
+    }
+
+    /**
+     * Get the number of transitions of all states together.
+     *
+     * @return Count of transitions
+     */
+    public int getTransitionCount() {
+        return this.labels.length;
+    }
+
+    /**
+     * Get the number of transitions of the given state.
+     *
+     * @param s Number of the state
+     * @return Count of transitions
+     */
+    public int getTransitionCount(int s) {
+        return this.firsts[s + 1] - this.firsts[s];
+    }
+
+    /**
+     * Get the character of the i'th transition of a state. Transitions
+     * are sorted by character.
+     *
+     * @param s Number of the state
+     * @param i Index of the transition
+     * @return Character of the transition
+     */
+    public char getLabel(int s, int i) {
+        return this.labels[this.firsts[s] + i];
+    }
+
+    /**
+     * Get the state that the i'th transition of a state leads to.
+     *
+     * @param s Number of the state
+     * @param i Index of the transition
+     * @return Number of the target state
+     */
+    public int getTarget(int s, int i) {
+        return this.targets[this.firsts[s] + i];
+    }
+
+    /**
+     * Get the number of words.
+     *
+     * @return Count of distinct words that were added
+     */
+    public int getWordCount() {
+        return this.wordCount;
+    }
+
+    /**
+     * Estimate the memory that the automaton takes, counting its arrays.
+     *
+     * @return Size in bytes
+     */
+    public long getMemorySize() {
+        return this.finals.length + 4L * this.firsts.length + 6L * this.labels.length;
+    }
+
+    /**
+     * Turn the automaton into a graph of FiniteState objects.
+     *
+     * @return Automaton of the words
+     */
+    public FiniteAutomaton toFiniteAutomaton() {
+        FiniteState[] states = new FiniteState[this.finals.length];
+        int s, i;
+
+        for (s = 0; s < states.length; s++) states[s] = new FiniteState(this.finals[s]);
+        for (s = 0; s < states.length; s++) {
+            for (i = this.firsts[s]; i < this.firsts[s + 1]; i++) {
+                states[s].addTransition(this.labels[i], states[this.targets[i]]);
+            }
+        }
+
+        FiniteAutomaton automaton = new FiniteAutomaton();
+        automaton.setAlphabet(this.getAlphabet());
+        automaton.setBegin(states[this.root]);
+        return automaton;
+    }
+
+    /**
+     * Copy the automaton off the heap.
+     *
+     * @return OffHeapDfa of the words
+     */
+    public OffHeapDfa toOffHeapDfa() {
+        OffHeapDfa.Builder builder = new OffHeapDfa.Builder();
+        for (int s = 0; s < this.finals.length; s++) {
+            builder.addState(this.finals[s]);
+            for (int i = this.firsts[s]; i < this.firsts[s + 1]; i++) {
+                builder.addTransition(this.labels[i], this.labels[i], this.targets[i]);
+            }
+        }
+        builder.setStart(this.root);
+        builder.setAlphabet(this.getAlphabet());
+        return builder.build();
+    }
+
+    /**
+     * Get the characters that appear in the words.
+     *
+     * @return Alphabet of the words
+     */
+    public Alphabet getAlphabet() {
+        boolean[] used = new boolean[Character.MAX_VALUE + 1];
+        int count = 0;
+        for (char c : this.labels) {
+            if (!used[c]) count++;
+            used[c] = true;
+        }
+        char[] chars = new char[count];
+        count = 0;
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (used[c]) chars[count++] = (char) c;
+        }
+        return new Alphabet(chars);
+    }
+
+    /**
+     * Takes the words of a Dawg one by one, in sorted order.
+     */
+    public static final class Builder {
+
+        // Finished states, in the layout of Dawg
+        private int stateCount;
+        private boolean[] finals = new boolean[64];
+        private int[] firsts = new int[65];
+        private int transitionCount;
+        private char[] labels = new char[64];
+        private int[] targets = new int[64];
+
+        // Register of finished states: state + 1 in each used slot
+        private int[] register = new int[128];
+
+        // States on the path of the last word; the last transition of
+        // each leads to the next state on the path, which is unfinished
+        private char[][] pathLabels = new char[16][];
+        private int[][] pathTargets = new int[16][];
+        private int[] pathCounts = new int[16];
+        private boolean[] pathFinals = new boolean[16];
+
+        private final StringBuilder previous = new StringBuilder();
+        private int wordCount;
+        private boolean built;
+
+        public Builder() {
+            this.newPathState(0);
+        }
+
+        /**
+         * Add the next word. Words must come in sorted order; a word that
+         * is the same as the last one is skipped.
+         *
+         * @param word The word to add
+         * @throws AutomatonError If the word comes before the last one, or
+         *      the automaton is already built
+         */
+        public void add(CharSequence word) {
+            if (this.built) throw new AutomatonError("The Dawg is already built.");
+
+            int common = 0;
+            int length = Math.min(word.length(), this.previous.length());
+            while (common < length && word.charAt(common) == this.previous.charAt(common)) common++;
+            if (common == word.length() && common == this.previous.length() && this.wordCount > 0) return;
+            if (common < length ? word.charAt(common) < this.previous.charAt(common)
+                    : word.length() < this.previous.length()) {
+                throw new AutomatonError(String.format(
+                        "Words must be added in sorted order, \"%s\" came after \"%s\".", word, this.previous));
+            }
+
+            // The states below the branching point are finished
+            this.finish(common);
+
+            for (int i = common; i < word.length(); i++) {
+                this.addPathTransition(i, word.charAt(i));
+                this.newPathState(i + 1);
+            }
+            this.pathFinals[word.length()] = true;
+
+            this.previous.setLength(common);
+            this.previous.append(word, common, word.length());
+            this.wordCount++;
+        }
+
+        /**
+         * Finish the remaining states and build the automaton. The
+         * builder cannot take more words afterwards.
+         *
+         * @return The minimal automaton of the added words
+         */
+        public Dawg build() {
+            if (this.built) throw new AutomatonError("The Dawg is already built.");
+            this.built = true;
+            this.finish(0);
+            int root = this.freeze(0);
+
+            return new Dawg(root, Arrays.copyOf(this.finals, this.stateCount),
+                    Arrays.copyOf(this.firsts, this.stateCount + 1),
+                    Arrays.copyOf(this.labels, this.transitionCount),
+                    Arrays.copyOf(this.targets, this.transitionCount), this.wordCount);
+        }
+
+        /**
+         * Replace the path states deeper than "depth" with registered
+         * ones, from the deepest up.
+         */
+        private void finish(int depth) {
+            for (int d = this.previous.length(); d > depth; d--) {
+                int s = this.freeze(d);
+                this.pathTargets[d - 1][this.pathCounts[d - 1] - 1] = s;
+            }
+        }
+
+        /**
+         * Turn the path state at "depth" into a finished state: an equal
+         * registered one, or a new one that is registered now.
+         *
+         * @return Number of the finished state
+         */
+        private int freeze(int depth) {
+            int count = this.pathCounts[depth];
+            int s = this.stateCount;
+
+            // Write it as a new state, and take it back if it is a duplicate
+            if (s + 1 == this.finals.length) {
+                this.finals = Arrays.copyOf(this.finals, 2 * this.finals.length);
+                this.firsts = Arrays.copyOf(this.firsts, 2 * this.firsts.length);
+            }
+            if (this.transitionCount + count > this.labels.length) {
+                int capacity = Math.max(2 * this.labels.length, this.transitionCount + count);
+                this.labels = Arrays.copyOf(this.labels, capacity);
+                this.targets = Arrays.copyOf(this.targets, capacity);
+            }
+            this.finals[s] = this.pathFinals[depth];
+            System.arraycopy(this.pathLabels[depth], 0, this.labels, this.transitionCount, count);
+            System.arraycopy(this.pathTargets[depth], 0, this.targets, this.transitionCount, count);
+            this.firsts[s + 1] = this.transitionCount + count;
+
+            int mask = this.register.length - 1;
+            int slot = this.hash(s) & mask;
+            while (this.register[slot] != 0) {
+                int other = this.register[slot] - 1;
+                if (this.equal(s, other)) return other;
+                slot = (slot + 1) & mask;
+            }
+
+            this.register[slot] = s + 1;
+            this.stateCount++;
+            this.transitionCount += count;
+            if (2 * this.stateCount > this.register.length) this.grow();
+            return s;
+        }
+
+        private int hash(int s) {
+            int h = this.finals[s] ? 1 : 0;
+            for (int i = this.firsts[s]; i < this.firsts[s + 1]; i++) {
+                h = (31 * h + this.labels[i]) * 0x9E3779B9 + this.targets[i];
+            }
+            // Spread the targets, which are small and close together, over
+            // all bits, or linear probing piles them up
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private boolean equal(int s, int t) {
+            int length = this.firsts[s + 1] - this.firsts[s];
+            if (this.finals[s] != this.finals[t] || this.firsts[t + 1] - this.firsts[t] != length) return false;
+            for (int i = 0; i < length; i++) {
+                if (this.labels[this.firsts[s] + i] != this.labels[this.firsts[t] + i]
+                        || this.targets[this.firsts[s] + i] != this.targets[this.firsts[t] + i]) return false;
+            }
+            return true;
+        }
+
+        private void grow() {
+            int[] register = new int[2 * this.register.length];
+            int mask = register.length - 1;
+            for (int s = 0; s < this.stateCount; s++) {
+                int slot = this.hash(s) & mask;
+                while (register[slot] != 0) slot = (slot + 1) & mask;
+                register[slot] = s + 1;
+            }
+            this.register = register;
+        }
+
+        private void newPathState(int depth) {
+            if (depth == this.pathCounts.length) {
+                int capacity = 2 * depth;
+                this.pathLabels = Arrays.copyOf(this.pathLabels, capacity);
+                this.pathTargets = Arrays.copyOf(this.pathTargets, capacity);
+                this.pathCounts = Arrays.copyOf(this.pathCounts, capacity);
+                this.pathFinals = Arrays.copyOf(this.pathFinals, capacity);
+            }
+            if (this.pathLabels[depth] == null) {
+                this.pathLabels[depth] = new char[4];
+                this.pathTargets[depth] = new int[4];
+            }
+            this.pathCounts[depth] = 0;
+            this.pathFinals[depth] = false;
+        }
+
+        private void addPathTransition(int depth, char c) {
+            int count = this.pathCounts[depth];
+            if (count == this.pathLabels[depth].length) {
+                this.pathLabels[depth] = Arrays.copyOf(this.pathLabels[depth], 2 * count);
+                this.pathTargets[depth] = Arrays.copyOf(this.pathTargets[depth], 2 * count);
+            }
+            this.pathLabels[depth][count] = c;
+            this.pathTargets[depth][count] = -1;
+            this.pathCounts[depth] = count + 1;
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+import io.github.ahmeterdem1.formality.state.FiniteState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A numbered, read-only deterministic finite automaton. Every state
+ * holds sorted, disjoint character ranges, each of them leading to a
+ * single state. Characters that no range of a state holds lead to the
+ * dead state, which is not stored; step() reports it as -1.
+ *
+ * Like in Nfa, the ranges are stored in compressed sparse rows: those
+ * of state s are at the indices from firsts[s] up to firsts[s + 1] of
+ * flat arrays, so step() searches a slice of three arrays instead of
+ * following references to arrays of its own for every state.
+ *
+ * A Dfa is immutable and can be shared between threads.
+ */
+public final class Dfa {
+
+    /**
+     * The missing state that step() returns when no transition matches.
+     */
+    public static final int DEAD = -1;
+
+    private final int start;
+    private final boolean[] finals;
+    private final int[] firsts;
+    private final char[] lows;
+    private final char[] highs;
+    private final int[] targets;
+    private final char[] alphabet;
+
+    private Dfa(int start, boolean[] finals, int[] firsts, char[] lows, char[] highs,
+                int[] targets, char[] alphabet) {
+        this.start = start;
+        this.finals = finals;
+        this.firsts = firsts;
+        this.lows = lows;
+        this.highs = highs;
+        this.targets = targets;
+        this.alphabet = alphabet;
+    }
+
+    /**
+     * Build every state of a LazyDfa that is reachable from its
+     * beginning state, and number them from 0 in the order they are
+     * found. The beginning state gets 0.
+     *
+     * @param lazy Automaton to materialize
+     * @return Deterministic automaton of the same language
+     */
+    public static Dfa of(LazyDfa lazy) {
+        Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+        List<Integer> queue = new ArrayList<Integer>();
+        Rows rows = new Rows();
+        int i, k, next, to;
+        char low, high;
+
+        ids.put(lazy.getStart(), 0);
+        queue.add(lazy.getStart());
+
+        for (k = 0; k < queue.size(); k++) {
+            int s = queue.get(k);
+            char[] segments = lazy.getSegments(s);
+            rows.addRow(segments.length);
+
+            for (i = 0; i < segments.length; i++) {
+                low = segments[i];
+                high = i + 1 < segments.length ? (char) (segments[i + 1] - 1) : Character.MAX_VALUE;
+                next = lazy.step(s, low);
+                if (next == LazyDfa.DEAD) continue;
+
+                Integer id = ids.get(next);
+                if (id == null) {
+                    id = queue.size();
+                    ids.put(next, id);
+                    queue.add(next);
+                }
+                to = id;
+                rows.add(low, high, to);
+            }
+        }
+
+        boolean[] finals = new boolean[queue.size()];
+        for (k = 0; k < queue.size(); k++) {
+            finals[k] = lazy.isFinal(queue.get(k));
+        }
+
+        return rows.build(0, finals, lazy.getNfa().getAlphabet());
+    }
+
+    /**
+     * Get the beginning state.
+     *
+     * @return Number of the beginning state
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Get the number of states. States are numbered from 0.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.finals.length;
+    }
+
+    /**
+     * Check if the given state is final.
+     *
+     * @param s Number of the state
+     * @return true if final, false otherwise
+     */
+    public boolean isFinal(int s) {
+        return this.finals[s];
+    }
+
+    /**
+     * Get the number of ranges of the given state.
+     *
+     * @param s Number of the state
+     * @return Count of transitions
+     */
+    public int getTransitionCount(int s) {
+        return this.firsts[s + 1] - this.firsts[s];
+    }
+
+    /**
+     * Get the first character of the i'th range of a state.
+     *
+     * @param s Number of the state
+     * @param i Index of the transition
+     * @return First character of the range
+     */
+    public char getLow(int s, int i) {
+        return this.lows[this.firsts[s] + i];
+    }
+
+    /**
+     * Get the last character of the i'th range of a state.
+     *
+     * @param s Number of the state
+     * @param i Index of the transition
+     * @return Last character of the range
+     */
+    public char getHigh(int s, int i) {
+        return this.highs[this.firsts[s] + i];
+    }
+
+    /**
+     * Get the state that the i'th range of a state leads to.
+     *
+     * @param s Number of the state
+     * @param i Index of the transition
+     * @return Number of the target state
+     */
+    public int getTarget(int s, int i) {
+        return this.targets[this.firsts[s] + i];
+    }
+
+    /**
+     * Get the alphabet of the automaton.
+     *
+     * @return Sorted, disjoint range pairs of the alphabet
+     */
+    public char[] getAlphabet() {
+        return this.alphabet.clone();
+    }
+
+    /**
+     * Get the state that is reached from "s" by reading "c".
+     *
+     * @param s Number of the state
+     * @param c Character to read
+     * @return Number of the next state, DEAD if no range holds c
+     */
+    public int step(int s, char c) {
+        int low = this.firsts[s];
+        int high = this.firsts[s + 1] - 1;
+        int mid;
+
+        while (low <= high) {
+            mid = (low + high) >>> 1;
+            if (c < this.lows[mid]) high = mid - 1;
+            else if (c > this.highs[mid]) low = mid + 1;
+            else return this.targets[mid];
+        }
+
+        return DEAD;
+    }
+
+    /**
+     * Check if the given String is accepted.
+     *
+     * @param str The String to check
+     * @return true if the String ends in a final state
+     */
+    public boolean validate(CharSequence str) {
+        int s = this.start;
+        for (int i = 0; i < str.length(); i++) {
+            s = this.step(s, str.charAt(i));
+            if (s == DEAD) return false;
+        }
+        return this.finals[s];
+    }
+
+    /**
+     * Build the minimal automaton of the same language. States that
+     * cannot reach a final state are dropped, together with the
+     * transitions into them, and the rest are merged by partition
+     * refinement: two states stay together as long as they agree on
+     * being final and every character leads them into the same block.
+     *
+     * @return Minimal deterministic automaton of the same language
+     */
+    public Dfa minimize() {
+        int count = this.getStateCount();
+        boolean[] live = this.coReachable();
+        int[] blocks = new int[count];
+        int blockCount = 0, previous, s, i;
+
+        for (s = 0; s < count; s++) blocks[s] = this.finals[s] ? 1 : 0;
+        previous = -1;
+
+        while (blockCount != previous) {
+            previous = blockCount;
+            Map<Signature, Integer> signatures = new HashMap<Signature, Integer>();
+            int[] next = new int[count];
+
+            for (s = 0; s < count; s++) {
+                Signature signature = new Signature(this.signature(s, blocks, live));
+                Integer block = signatures.get(signature);
+                if (block == null) {
+                    block = signatures.size();
+                    signatures.put(signature, block);
+                }
+                next[s] = block;
+            }
+
+            blocks = next;
+            blockCount = signatures.size();
+        }
+
+        // Renumber the blocks that are kept, beginning state first
+        int[] numbers = new int[blockCount];
+        int[] members = new int[blockCount];
+        Arrays.fill(numbers, -1);
+        numbers[blocks[this.start]] = 0;
+        members[0] = this.start;
+        int kept = 1;
+        for (s = 0; s < count; s++) {
+            if (!live[s] || numbers[blocks[s]] >= 0) continue;
+            numbers[blocks[s]] = kept;
+            members[kept++] = s;
+        }
+
+        boolean[] finals = new boolean[kept];
+        Rows rows = new Rows();
+
+        for (int k = 0; k < kept; k++) {
+            s = members[k];
+            finals[k] = this.finals[s];
+            rows.addRow(this.firsts[s + 1] - this.firsts[s]);
+            for (i = this.firsts[s]; i < this.firsts[s + 1]; i++) {
+                if (live[this.targets[i]]) rows.add(this.lows[i], this.highs[i], numbers[blocks[this.targets[i]]]);
+            }
+        }
+
+        return rows.build(0, finals, this.alphabet);
+    }
+
+    /**
+     * Build a FiniteAutomaton of FiniteStates out of this automaton.
+     * Every range becomes a range transition, and the alphabet is
+     * carried over as ranges.
+     *
+     * @return A new FiniteAutomaton of the same language
+     */
+    public FiniteAutomaton toFiniteAutomaton() {
+        FiniteAutomaton automaton = new FiniteAutomaton();
+        FiniteState[] states = new FiniteState[this.getStateCount()];
+        int s, i;
+
+        for (s = 0; s < states.length; s++) {
+            states[s] = new FiniteState(this.finals[s]);
+        }
+        for (s = 0; s < states.length; s++) {
+            for (i = this.firsts[s]; i < this.firsts[s + 1]; i++) {
+                states[s].addRangeTransition(this.lows[i], this.highs[i], states[this.targets[i]]);
+            }
+        }
+
+        Alphabet alphabet = new Alphabet();
+        for (i = 0; i < this.alphabet.length; i += 2) {
+            alphabet.addRange(this.alphabet[i], this.alphabet[i + 1]);
+        }
+
+        automaton.setAlphabet(alphabet);
+        automaton.setBegin(states[this.start]);
+        return automaton;
+    }
+
+    /**
+     * Mark the states from which a final state can be reached.
+     */
+    private boolean[] coReachable() {
+        int count = this.getStateCount();
+        int[] degrees = new int[count + 1];
+        int s, i, top = 0;
+
+        // Reverse edges, grouped by target
+        for (int to : this.targets) degrees[to + 1]++;
+        for (s = 0; s < count; s++) degrees[s + 1] += degrees[s];
+        int[] sources = new int[degrees[count]];
+        int[] fill = Arrays.copyOf(degrees, count);
+        for (s = 0; s < count; s++) {
+            for (i = this.firsts[s]; i < this.firsts[s + 1]; i++) sources[fill[this.targets[i]]++] = s;
+        }
+
+        boolean[] live = new boolean[count];
+        int[] work = new int[count];
+        for (s = 0; s < count; s++) {
+            if (this.finals[s]) {
+                live[s] = true;
+                work[top++] = s;
+            }
+        }
+        while (top > 0) {
+            s = work[--top];
+            for (i = degrees[s]; i < degrees[s + 1]; i++) {
+                if (!live[sources[i]]) {
+                    live[sources[i]] = true;
+                    work[top++] = sources[i];
+                }
+            }
+        }
+
+        return live;
+    }
+
+    /**
+     * The block of a state, followed by its ranges with the blocks they
+     * lead into. Adjacent ranges into the same block are merged, so the
+     * signature does not depend on how the ranges happen to be split.
+     */
+    private int[] signature(int s, int[] blocks, boolean[] live) {
+        int[] result = new int[1 + 3 * (this.firsts[s + 1] - this.firsts[s])];
+        int n = 1;
+
+        result[0] = live[s] ? blocks[s] : -1;
+        for (int i = this.firsts[s]; i < this.firsts[s + 1]; i++) {
+            int to = this.targets[i];
+            if (!live[to]) continue;
+            if (n > 1 && result[n - 1] == blocks[to] && result[n - 2] + 1 == this.lows[i]) {
+                result[n - 2] = this.highs[i];
+            } else {
+                result[n++] = this.lows[i];
+                result[n++] = this.highs[i];
+                result[n++] = blocks[to];
+            }
+        }
+
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Growable compressed sparse rows of ranges, filled one state after
+     * the other.
+     */
+    private static final class Rows {
+        int count;
+        int[] firsts = new int[17];
+        int size;
+        char[] lows = new char[16];
+        char[] highs = new char[16];
+        int[] targets = new int[16];
+
+        /**
+         * Start the row of the next state, with room for "capacity" ranges.
+         */
+        void addRow(int capacity) {
+            if (this.count + 2 > this.firsts.length) {
+                this.firsts = Arrays.copyOf(this.firsts, 2 * this.firsts.length);
+            }
+            if (this.size + capacity > this.lows.length) {
+                int grown = Math.max(2 * this.lows.length, this.size + capacity);
+                this.lows = Arrays.copyOf(this.lows, grown);
+                this.highs = Arrays.copyOf(this.highs, grown);
+                this.targets = Arrays.copyOf(this.targets, grown);
+            }
+            this.count++;
+            this.firsts[this.count] = this.size;
+        }
+
+        /**
+         * Add a range to the current row. A range right after one into
+         * the same state is joined to it.
+         */
+        void add(char low, char high, int target) {
+            if (this.size > this.firsts[this.count - 1] && this.targets[this.size - 1] == target
+                    && this.highs[this.size - 1] + 1 == low) {
+                this.highs[this.size - 1] = high;
+            } else {
+                this.lows[this.size] = low;
+                this.highs[this.size] = high;
+                this.targets[this.size++] = target;
+            }
+            this.firsts[this.count] = this.size;
+        }
+
+        Dfa build(int start, boolean[] finals, char[] alphabet) {
+            return new Dfa(start, finals, Arrays.copyOf(this.firsts, this.count + 1),
+                    Arrays.copyOf(this.lows, this.size), Arrays.copyOf(this.highs, this.size),
+                    Arrays.copyOf(this.targets, this.size), alphabet);
+        }
+    }
+
+    /**
+     * Hash key for the signature of a state.
+     */
+    private static final class Signature {
+        final int[] values;
+        final int hash;
+
+        Signature(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Signature && Arrays.equals(this.values, ((Signature) o).values);
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import java.util.Arrays;
+
+/**
+ * Language equivalence and inclusion checks between finite automata.
+ *
+ * Both automata are determinized lazily, and pairs of their states are
+ * explored in breadth first order, as in the algorithm of Hopcroft and
+ * Karp: pairs that are already known to be equivalent, through a chain
+ * of pairs in a union-find structure, are not explored again. So the
+ * check visits at most as many pairs as the two automata have states
+ * together, and never builds the subsets that it does not reach.
+ *
+ * Since pairs are visited in breadth first order, the first pair that
+ * disagrees on being final gives a shortest String that tells the two
+ * languages apart.
+ */
+public final class Equivalence {
+
+    private final LazyDfa left;
+    private final LazyDfa right;
+
+    // Union-find over the states of both automata; state s of the left is
+    // numbered 2s, state s of the right 2s + 1
+    private int[] parents;
+
+    // Pairs in the order they are found, with the pair and the character
+    // they were reached from
+    private int[] lefts;
+    private int[] rights;
+    private int[] previous;
+    private char[] chars;
+    private int count;
+
+    private Equivalence(LazyDfa left, LazyDfa right) {
+        this.left = left;
+        this.right = right;
+        this.parents = new int[64];
+        for (int i = 0; i < this.parents.length; i++) this.parents[i] = i;
+        this.lefts = new int[64];
+        this.rights = new int[64];
+        this.previous = new int[64];
+        this.chars = new char[64];
+    }
+
+    /**
+     * Find a shortest String that exactly one of the automata accepts.
+     *
+     * @param a First automaton
+     * @param b Second automaton
+     * @return A shortest distinguishing String, or null if both automata
+     *      accept the same language
+     */
+    public static String counterexample(FiniteAutomaton a, FiniteAutomaton b) {
+        return Equivalence.counterexample(new LazyDfa(Nfa.of(a)), new LazyDfa(Nfa.of(b)));
+    }
+
+    /**
+     * Find a shortest String that exactly one of the automata accepts.
+     * The automata are stepped further as needed, so this also works on
+     * the LazyDfa of a ProductAutomaton.
+     *
+     * @param a First automaton
+     * @param b Second automaton
+     * @return A shortest distinguishing String, or null if both automata
+     *      accept the same language
+     */
+    public static String counterexample(LazyDfa a, LazyDfa b) {
+        return new Equivalence(a, b).run();
+    }
+
+    /**
+     * Find a shortest String that the first automaton accepts, but the
+     * second does not. The language of "a" is included in the language
+     * of "b" exactly when the union of both is equivalent to "b", which
+     * is what is checked.
+     *
+     * @param a Automaton of the smaller language
+     * @param b Automaton of the larger language
+     * @return A shortest String accepted by "a" but not by "b", or null if
+     *      there is none
+     */
+    public static String inclusionCounterexample(FiniteAutomaton a, FiniteAutomaton b) {
+        Nfa nfa = Nfa.of(b);
+        Nfa union = Nfa.union(Arrays.asList(Nfa.of(a), nfa));
+        return Equivalence.counterexample(new LazyDfa(union), new LazyDfa(nfa));
+    }
+
+    private String run() {
+        int i, p, q, nextP, nextQ;
+        char c;
+
+        this.union(2 * this.left.getStart(), 2 * this.right.getStart() + 1);
+        if (this.add(this.left.getStart(), this.right.getStart(), -1, '\0')) return this.word(0);
+
+        for (i = 0; i < this.count; i++) {
+            p = this.lefts[i];
+            q = this.rights[i];
+
+            char[] segments = Equivalence.merge(this.left.getSegments(p), this.right.getSegments(q));
+            for (int k = 0; k < segments.length; k++) {
+                c = segments[k];
+                nextP = this.left.step(p, c);
+                nextQ = this.right.step(q, c);
+                if (!this.union(2 * nextP, 2 * nextQ + 1)) continue;
+                if (this.add(nextP, nextQ, i, c)) return this.word(this.count - 1);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Record a newly found pair.
+     *
+     * @return true if the states of the pair disagree on being final
+     */
+    private boolean add(int p, int q, int from, char c) {
+        if (this.count == this.lefts.length) {
+            int capacity = 2 * this.count;
+            this.lefts = Arrays.copyOf(this.lefts, capacity);
+            this.rights = Arrays.copyOf(this.rights, capacity);
+            this.previous = Arrays.copyOf(this.previous, capacity);
+            this.chars = Arrays.copyOf(this.chars, capacity);
+        }
+        this.lefts[this.count] = p;
+        this.rights[this.count] = q;
+        this.previous[this.count] = from;
+        this.chars[this.count] = c;
+        this.count++;
+        return this.left.isFinal(p) != this.right.isFinal(q);
+    }
+
+    /**
+     * Spell out the characters that lead to the i'th pair.
+     */
+    private String word(int i) {
+        StringBuilder builder = new StringBuilder();
+        for (; this.previous[i] >= 0; i = this.previous[i]) {
+            builder.append(this.chars[i]);
+        }
+        return builder.reverse().toString();
+    }
+
+    private int find(int x) {
+        if (x >= this.parents.length) {
+            int old = this.parents.length;
+            this.parents = Arrays.copyOf(this.parents, Math.max(2 * old, x + 1));
+            for (int i = old; i < this.parents.length; i++) this.parents[i] = i;
+        }
+
+        int root = x;
+        while (this.parents[root] != root) root = this.parents[root];
+        while (this.parents[x] != root) {
+            int next = this.parents[x];
+            this.parents[x] = root;
+            x = next;
+        }
+        return root;
+    }
+
+    /**
+     * Join the classes of two states.
+     *
+     * @return false if they already were in the same class
+     */
+    private boolean union(int x, int y) {
+        int rootX = this.find(x);
+        int rootY = this.find(y);
+        if (rootX == rootY) return false;
+        this.parents[rootX] = rootY;
+        return true;
+    }
+
+    /**
+     * Merge two sorted lists of segment beginnings.
+     */
+    private static char[] merge(char[] a, char[] b) {
+        char[] result = new char[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        char c;
+
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] <= b[j])) c = a[i++];
+            else c = b[j++];
+            if (n == 0 || result[n - 1] != c) result[n++] = c;
+        }
+
+        return Arrays.copyOf(result, n);
+    }
+
+}
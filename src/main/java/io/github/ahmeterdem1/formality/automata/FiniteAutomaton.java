@@ -1,10 +1,17 @@
 package io.github.ahmeterdem1.formality.automata;
 
 import io.github.ahmeterdem1.formality.state.FiniteState;
+import io.github.ahmeterdem1.formality.state.State;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
 /**
- * A deterministic finite automaton implementation.
+ * A finite automaton implementation, deterministic or not.
  * Only holds the initial State object in itself.
  * Other states that are connected to the initial
  * states are reached via graph-like structure of
@@ -23,9 +30,11 @@ public class FiniteAutomaton extends Automaton {
 
     /**
      * Checks if the given string belongs to the represented language.
-     * Always tries to match the longest possible substring to possible
-     * available transition rules given the state. This method is not
-     * accurate for non-deterministic automatons.
+     * All paths through the graph are followed at once: the automaton
+     * keeps the set of states it can be in at each position of the
+     * string, so the result is accurate for non-deterministic automata,
+     * lambda transitions included. String rules move the automaton
+     * ahead by their length, range rules by a single character.
      *
      * @param str The piece of string to be checked
      * @return Returns true if the string belongs to the language, false
@@ -33,43 +42,217 @@ public class FiniteAutomaton extends Automaton {
      */
     @Override
     public boolean validate(String str) {
+        return this.validate(str, Budget.UNLIMITED);
+    }
 
-        if (this.alphabet.validate(str)) {
-            String substring;
-            String match;
-            FiniteState next;
+    /**
+     * Checks if the given string belongs to the represented language,
+     * within a Budget. Every state of the set at each position of the
+     * string costs a step.
+     *
+     * @param str The piece of string to be checked
+     * @param budget Limits of the work of the call
+     * @return Returns true if the string belongs to the language, false
+     *      otherwise
+     * @throws io.github.ahmeterdem1.formality.exceptions.BudgetExceededError
+     *      If the call runs out of its budget
+     */
+    public boolean validate(String str, Budget budget) {
+        Budget.Meter meter = budget.start();
 
-            match = this.begin.getMatch(str);
-            next = (FiniteState) this.begin.getState(match);
-            substring = str.substring(match.length(), str.length());
+        if (!this.alphabet.validate(str)) {
+            return false;
+        }
 
-            while (!substring.isEmpty() && (next != null)) {
-                match = next.getMatch(substring);
-                next = (FiniteState) next.getState(match);  // Update "next"
-                substring = substring.substring(match.length(), substring.length());
-            }
+        int length = str.length();
+        int i;
+        String rule;
+        FiniteState finiteState;
+        State target;
 
-            if (substring.isEmpty() && (next != null) && next.isFinal()) {
-                return true;
-            }
-            else if (substring.isEmpty() && (next != null) && !next.isFinal()) {
-                Stack<FiniteState> stateStack = new Stack<>();
-                stateStack.push(next);
-                while (next != null && !next.isFinal()) {
-                    next = (FiniteState) next.getState("");
-                    if (stateStack.contains(next)) {
-                        return next.isFinal();
-                    }
-                    stateStack.push(next);
+        // States reached at each position, not yet closed under lambda transitions
+        List<Set<State>> reached = new ArrayList<Set<State>>(length + 1);
+        for (i = 0; i <= length; i++) {
+            reached.add(null);
+        }
+        reached.set(0, new HashSet<State>());
+        reached.get(0).add(this.begin);
+
+        for (i = 0; i <= length; i++) {
+            if (reached.get(i) == null) continue;
+
+            Set<State> current = FiniteAutomaton.closure(reached.get(i));
+            reached.set(i, null);
+            meter.spend(current.size());
+
+            if (i == length) {
+                for (State s : current) {
+                    if (s.isFinal()) return true;
                 }
-                if (next != null)
-                    return next.isFinal();
                 return false;
             }
 
-            return false;
+            for (State s : current) {
+                for (Map.Entry<String, State> entry : s.getTransitions().entrySet()) {
+                    rule = entry.getKey();
+                    if (!rule.isEmpty() && str.startsWith(rule, i)) {
+                        FiniteAutomaton.reach(reached, i + rule.length(), entry.getValue());
+                    }
+                }
+
+                if (s instanceof FiniteState) {
+                    finiteState = (FiniteState) s;
+                    target = finiteState.getRangeState(str.charAt(i));
+                    if (target != null) {
+                        FiniteAutomaton.reach(reached, i + 1, target);
+                    }
+                }
+            }
         }
 
         return false;
     }
+
+    /**
+     * Intersect this automaton with another one. The product is not
+     * built up front; see ProductAutomaton.
+     *
+     * @param other A FiniteAutomaton or a ProductAutomaton
+     * @return Product accepting the Strings that both accept
+     */
+    public ProductAutomaton intersection(Automaton other) {
+        return new ProductAutomaton(ProductAutomaton.Operation.INTERSECTION, this, other);
+    }
+
+    /**
+     * Unite this automaton with another one.
+     *
+     * @param other A FiniteAutomaton or a ProductAutomaton
+     * @return Product accepting the Strings that any of them accepts
+     */
+    public ProductAutomaton union(Automaton other) {
+        return new ProductAutomaton(ProductAutomaton.Operation.UNION, this, other);
+    }
+
+    /**
+     * Subtract another automaton from this one.
+     *
+     * @param other A FiniteAutomaton or a ProductAutomaton
+     * @return Product accepting the Strings that this accepts but the other does not
+     */
+    public ProductAutomaton difference(Automaton other) {
+        return new ProductAutomaton(ProductAutomaton.Operation.DIFFERENCE, this, other);
+    }
+
+    /**
+     * Complement this automaton, relative to all Strings over its Alphabet.
+     *
+     * @return Product accepting the Strings over the Alphabet that this does not accept
+     */
+    public ProductAutomaton complement() {
+        return new ProductAutomaton(this);
+    }
+
+    /**
+     * Build a deterministic FiniteAutomaton of the same language by
+     * subset construction. Only the reachable subsets are built.
+     *
+     * @return A new deterministic FiniteAutomaton
+     */
+    public FiniteAutomaton determinize() {
+        return Dfa.of(new LazyDfa(Nfa.of(this))).toFiniteAutomaton();
+    }
+
+    /**
+     * Take an immutable snapshot of the automaton, which can be shared
+     * between threads without locking. Later changes to the State graph
+     * do not reach the snapshot.
+     *
+     * @return A FrozenAutomaton of the same language
+     */
+    public FrozenAutomaton freeze() {
+        return new FrozenAutomaton(Nfa.of(this));
+    }
+
+    /**
+     * Build the minimal deterministic FiniteAutomaton of the same language.
+     *
+     * @return A new minimal FiniteAutomaton
+     */
+    public FiniteAutomaton minimize() {
+        return Dfa.of(new LazyDfa(Nfa.of(this))).minimize().toFiniteAutomaton();
+    }
+
+    /**
+     * Build the minimal deterministic automaton of the same language as
+     * a transition table over classes of characters, see TableDfa.
+     *
+     * @return A TableDfa of the same language
+     */
+    public TableDfa toTableDfa() {
+        return TableDfa.of(Dfa.of(new LazyDfa(Nfa.of(this))).minimize());
+    }
+
+    /**
+     * Check if this automaton accepts the same language as another one.
+     * See Equivalence.counterexample for a String that tells them apart.
+     *
+     * @param other Automaton to compare with
+     * @return true if both accept exactly the same Strings
+     */
+    public boolean isEquivalent(FiniteAutomaton other) {
+        return Equivalence.counterexample(this, other) == null;
+    }
+
+    /**
+     * Check if every String that this automaton accepts is accepted by
+     * another one. See Equivalence.inclusionCounterexample for a String
+     * that is accepted here but not there.
+     *
+     * @param other Automaton of the larger language
+     * @return true if the language of this automaton is a subset of the other
+     */
+    public boolean isSubsetOf(FiniteAutomaton other) {
+        return Equivalence.inclusionCounterexample(this, other) == null;
+    }
+
+    private static void reach(List<Set<State>> reached, int i, State s) {
+        if (reached.get(i) == null) {
+            reached.set(i, new HashSet<State>());
+        }
+        reached.get(i).add(s);
+    }
+
+    /**
+     * Extend the given set of states with every state that is
+     * reachable from them over lambda transitions.
+     *
+     * @param states Set of states to start from
+     * @return The lambda closure of the states
+     */
+    private static Set<State> closure(Set<State> states) {
+        Set<State> result = new HashSet<State>(states);
+        Stack<State> stateStack = new Stack<State>();
+        State lambda;
+
+        stateStack.addAll(states);
+        while (!stateStack.isEmpty()) {
+            State s = stateStack.pop();
+
+            lambda = s.getState("");
+            if (lambda != null && result.add(lambda)) {
+                stateStack.push(lambda);
+            }
+
+            if (s instanceof FiniteState) {
+                for (FiniteState next : ((FiniteState) s).getLambdas()) {
+                    if (result.add(next)) {
+                        stateStack.push(next);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
 }
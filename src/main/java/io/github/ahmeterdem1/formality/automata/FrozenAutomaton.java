@@ -0,0 +1,206 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+import io.github.ahmeterdem1.formality.state.FiniteState;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of a FiniteAutomaton, made by freeze().
+ *
+ * The State graph is numbered into an Nfa, whose arrays are never
+ * written again, and every field is final, so a FrozenAutomaton can be
+ * handed to other threads without any locking, as long as it is
+ * published after freeze() returns. Changes to the original graph do
+ * not reach the snapshot; to change it, go back to a FiniteAutomaton
+ * with toFiniteAutomaton(), edit that, and freeze it again.
+ *
+ * validate() follows all paths at once, like FiniteAutomaton.validate(),
+ * so a non-deterministic automaton is not blown up by determinization.
+ * The sets of states that it works with are made for each call, in
+ * time and memory of the number of states, so concurrent calls do not
+ * share anything that is written, and nothing is held between calls.
+ *
+ * <pre>
+ *     FrozenAutomaton pattern = Regex.compile("[a-z]+@[a-z]+").freeze();
+ *     // any number of threads:
+ *     pattern.validate("user@example");  // true
+ * </pre>
+ */
+public final class FrozenAutomaton {
+
+    private final Nfa nfa;
+
+    /**
+     * Freeze a numbered automaton.
+     *
+     * @param nfa The automaton; Nfa is read-only, so it is not copied
+     */
+    public FrozenAutomaton(Nfa nfa) {
+        this.nfa = nfa;
+    }
+
+    /**
+     * Check if the given String is accepted.
+     *
+     * @param str The String to check
+     * @return true if some path reads the whole String into a final state
+     */
+    public boolean validate(CharSequence str) {
+        Nfa nfa = this.nfa;
+        Sets sets = new Sets(nfa.getStateCount());
+        int[] current = sets.current;
+        int[] next = sets.next;
+        sets.clear();
+        int size = this.close(sets, current, 0, nfa.getStart());
+        int q, i, k;
+
+        for (k = 0; k < str.length() && size > 0; k++) {
+            char c = str.charAt(k);
+            int nextSize = 0;
+            sets.clear();
+            for (q = 0; q < size; q++) {
+                int s = current[q];
+                for (i = 0; i < nfa.getTransitionCount(s); i++) {
+                    if (nfa.getLow(s, i) <= c && c <= nfa.getHigh(s, i)) {
+                        nextSize = this.close(sets, next, nextSize, nfa.getTarget(s, i));
+                    }
+                }
+            }
+            int[] swap = current;
+            current = next;
+            next = swap;
+            size = nextSize;
+        }
+
+        for (q = 0; q < size; q++) {
+            if (nfa.isFinal(current[q])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the numbered automaton behind the snapshot.
+     *
+     * @return The Nfa
+     */
+    public Nfa getNfa() {
+        return this.nfa;
+    }
+
+    /**
+     * Get the number of states.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.nfa.getStateCount();
+    }
+
+    /**
+     * Get the alphabet of the automaton.
+     *
+     * @return Sorted, disjoint range pairs of the alphabet
+     */
+    public char[] getAlphabet() {
+        return this.nfa.getAlphabet();
+    }
+
+    /**
+     * Determinize the snapshot. A Dfa is read-only as well, and steps
+     * through each character with a single transition.
+     *
+     * @return Deterministic automaton of the same language
+     */
+    public Dfa toDfa() {
+        return Dfa.of(new LazyDfa(this.nfa));
+    }
+
+    /**
+     * Build a new, mutable State graph of the same automaton.
+     *
+     * @return A FiniteAutomaton that can be changed freely
+     */
+    public FiniteAutomaton toFiniteAutomaton() {
+        Nfa nfa = this.nfa;
+        FiniteState[] states = new FiniteState[nfa.getStateCount()];
+        int s, i;
+
+        for (s = 0; s < states.length; s++) states[s] = new FiniteState(nfa.isFinal(s));
+        for (s = 0; s < states.length; s++) {
+            for (i = 0; i < nfa.getTransitionCount(s); i++) {
+                states[s].addRangeTransition(nfa.getLow(s, i), nfa.getHigh(s, i), states[nfa.getTarget(s, i)]);
+            }
+            for (i = 0; i < nfa.getLambdaCount(s); i++) {
+                states[s].addLambda(states[nfa.getLambda(s, i)]);
+            }
+        }
+
+        char[] ranges = nfa.getAlphabet();
+        Alphabet alphabet = new Alphabet();
+        for (i = 0; i < ranges.length; i += 2) alphabet.addRange(ranges[i], ranges[i + 1]);
+
+        FiniteAutomaton automaton = new FiniteAutomaton();
+        automaton.setAlphabet(alphabet);
+        automaton.setBegin(states[nfa.getStart()]);
+        return automaton;
+    }
+
+    /**
+     * Add a state and everything reachable from it over lambda
+     * transitions to a set, unless it is already there.
+     *
+     * @return The new size of the set
+     */
+    private int close(Sets sets, int[] set, int size, int s) {
+        int top = 0, i;
+
+        if (sets.marks[s] == sets.generation) return size;
+        sets.marks[s] = sets.generation;
+        set[size++] = s;
+        sets.work[top++] = s;
+
+        while (top > 0) {
+            s = sets.work[--top];
+            for (i = 0; i < this.nfa.getLambdaCount(s); i++) {
+                int next = this.nfa.getLambda(s, i);
+                if (sets.marks[next] != sets.generation) {
+                    sets.marks[next] = sets.generation;
+                    set[size++] = next;
+                    sets.work[top++] = next;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The sets of states of one call. A state is in the set that is
+     * being filled when its mark equals the generation; starting a new
+     * set only moves the generation on.
+     */
+    private static final class Sets {
+        final int[] current;
+        final int[] next;
+        final int[] work;
+        final int[] marks;
+        int generation;
+
+        Sets(int count) {
+            this.current = new int[count];
+            this.next = new int[count];
+            this.work = new int[count];
+            this.marks = new int[count];
+        }
+
+        /**
+         * Start a new, empty set.
+         */
+        void clear() {
+            if (++this.generation == 0) {
+                Arrays.fill(this.marks, 0);
+                this.generation = 1;
+            }
+        }
+    }
+}
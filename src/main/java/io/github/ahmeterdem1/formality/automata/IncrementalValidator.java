@@ -0,0 +1,191 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import java.util.Arrays;
+
+/**
+ * Validates a text that is edited a little at a time, without reading
+ * all of it again after each edit.
+ *
+ * The validator runs a LazyDfa over the text and remembers its state
+ * every "interval" characters, at checkpoints. An edit cannot change the
+ * states in front of it, so revalidation resumes from the last
+ * checkpoint before the edit. After the edited part, the new run is
+ * compared with the old checkpoints, which have moved along with the
+ * text; once the state at one of them is the same as before, the rest
+ * of the run would be the same as before too, and revalidation stops
+ * there. An edit therefore costs about its own length plus two
+ * intervals, and not the length of the text. If the automaton gets
+ * stuck, the text is rejected right there, and nothing after it is read.
+ *
+ * <pre>
+ *     IncrementalValidator validator = new IncrementalValidator(Regex.compile("(ab)*"), 64);
+ *     StringBuilder text = new StringBuilder("abababab");
+ *     validator.validate(text);                   // true
+ *     text.insert(2, "a");
+ *     validator.revalidate(text, 2, 0, 1);        // false
+ * </pre>
+ *
+ * A validator keeps the checkpoints of a single text, and is not safe
+ * to share between threads.
+ */
+public final class IncrementalValidator {
+
+    private final LazyDfa dfa;
+    private final int interval;
+
+    // Positions of the checkpoints, increasing, and the states there
+    private int[] positions = new int[16];
+    private int[] states = new int[16];
+    private int count;
+
+    private int length;
+    private int state;
+
+    /**
+     * Prepare a validator for the language of a FiniteAutomaton.
+     *
+     * @param automaton Automaton of the language
+     * @param interval Number of characters between checkpoints
+     * @throws IllegalArgumentException If the interval is not positive
+     */
+    public IncrementalValidator(FiniteAutomaton automaton, int interval) {
+        this(new LazyDfa(Nfa.of(automaton)), interval);
+    }
+
+    /**
+     * Prepare a validator that runs the given LazyDfa.
+     *
+     * @param dfa Automaton of the language
+     * @param interval Number of characters between checkpoints
+     * @throws IllegalArgumentException If the interval is not positive
+     */
+    public IncrementalValidator(LazyDfa dfa, int interval) {
+        if (interval <= 0) throw new IllegalArgumentException("The interval must be positive.");
+        this.dfa = dfa;
+        this.interval = interval;
+        this.validate("");
+    }
+
+    /**
+     * Validate a whole text, and remember its checkpoints for later
+     * edits.
+     *
+     * @param text The text to be checked
+     * @return Returns true if the text belongs to the language, false
+     *      otherwise
+     */
+    public boolean validate(CharSequence text) {
+        this.count = 0;
+        this.addCheckpoint(0, this.dfa.getStart());
+        this.length = text.length();
+        this.state = this.resume(text, new int[0], new int[0], 0, 0);
+        return this.isValid();
+    }
+
+    /**
+     * Validate a text again after an edit: "removed" characters at
+     * "offset" were replaced by "inserted" new ones. The text must be
+     * the last one that was validated, with only this edit applied.
+     *
+     * @param text The edited text
+     * @param offset Index where the edit begins
+     * @param removed Number of characters removed from the old text
+     * @param inserted Number of characters inserted in their place
+     * @return Returns true if the edited text belongs to the language,
+     *      false otherwise
+     * @throws IllegalArgumentException If the edit does not fit the old
+     *      or the new text
+     */
+    public boolean revalidate(CharSequence text, int offset, int removed, int inserted) {
+        if (offset < 0 || removed < 0 || inserted < 0 || offset + removed > this.length
+                || text.length() != this.length - removed + inserted) {
+            throw new IllegalArgumentException(String.format(
+                    "Edit of %d characters at %d, %d inserted, does not fit a text of %d characters.",
+                    removed, offset, inserted, this.length));
+        }
+
+        // Checkpoints up to the edit stay, and the run resumes from the last of them
+        int kept = Arrays.binarySearch(this.positions, 0, this.count, offset);
+        kept = kept >= 0 ? kept + 1 : -kept - 1;
+
+        // Checkpoints after the removed part move along with the text
+        int first = kept;
+        while (first < this.count && this.positions[first] < offset + removed) first++;
+        int[] oldPositions = Arrays.copyOfRange(this.positions, first, this.count);
+        int[] oldStates = Arrays.copyOfRange(this.states, first, this.count);
+        for (int i = 0; i < oldPositions.length; i++) oldPositions[i] += inserted - removed;
+
+        this.count = kept;
+        this.length = text.length();
+        this.state = this.resume(text, oldPositions, oldStates, offset + inserted, this.state);
+        return this.isValid();
+    }
+
+    /**
+     * Check if the last validated text belongs to the language.
+     *
+     * @return The result of the last validation
+     */
+    public boolean isValid() {
+        return this.state != LazyDfa.DEAD && this.dfa.isFinal(this.state);
+    }
+
+    /**
+     * Get the number of checkpoints of the last validated text.
+     *
+     * @return Count of checkpoints, the one at the beginning included
+     */
+    public int getCheckpointCount() {
+        return this.count;
+    }
+
+    /**
+     * Run the automaton from the last checkpoint, adding new checkpoints
+     * on the way. Once the run is past "edited", the old checkpoints are
+     * compared with it; if the state at one of them is the same as
+     * before, the old checkpoints from there on are kept, and the old
+     * final state is the result.
+     *
+     * @return The state at the end of the text
+     */
+    private int resume(CharSequence text, int[] oldPositions, int[] oldStates, int edited, int oldEnd) {
+        int i = this.positions[this.count - 1];
+        int s = this.states[this.count - 1];
+        int next = i + this.interval;
+        int length = text.length();
+        int old = 0;
+
+        while (i < length) {
+            if (s == LazyDfa.DEAD) return s;
+            s = this.dfa.step(s, text.charAt(i++));
+
+            if (i >= edited) {
+                while (old < oldPositions.length && oldPositions[old] < i) old++;
+                if (old < oldPositions.length && oldPositions[old] == i) {
+                    if (oldStates[old] == s) {
+                        for (; old < oldPositions.length; old++) {
+                            this.addCheckpoint(oldPositions[old], oldStates[old]);
+                        }
+                        return oldEnd;
+                    }
+                    next = i;
+                }
+            }
+            if (i == next) {
+                this.addCheckpoint(i, s);
+                next = i + this.interval;
+            }
+        }
+
+        return s;
+    }
+
+    private void addCheckpoint(int position, int s) {
+        if (this.count == this.positions.length) {
+            this.positions = Arrays.copyOf(this.positions, 2 * this.count);
+            this.states = Arrays.copyOf(this.states, 2 * this.count);
+        }
+        this.positions[this.count] = position;
+        this.states[this.count++] = s;
+    }
+}
@@ -0,0 +1,326 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A deterministic automaton that is built from an Nfa on the fly.
+ * Each of its states stands for a set of Nfa states, closed under
+ * lambda transitions. A state and a transition is only computed the
+ * first time it is stepped on, and then remembered, so a long input
+ * costs a single table lookup per character once the reachable part
+ * of the automaton is known, while unreachable subsets are never
+ * built at all.
+ *
+ * A LazyDfa keeps its tables to itself and is not safe to share
+ * between threads.
+ */
+public final class LazyDfa {
+
+    /**
+     * The state of the empty set of Nfa states. No transition leaves it.
+     */
+    public static final int DEAD = 0;
+
+    private static final int UNKNOWN = -1;
+    private static final int ASCII = 128;
+
+    /**
+     * Decides which states of the LazyDfa are final. Bit i of "tags" is
+     * set when the set of Nfa states holds a final state with tag i.
+     */
+    public interface Acceptance {
+        boolean accepts(long tags);
+    }
+
+    private final Nfa nfa;
+    private final Acceptance acceptance;
+    private final Map<StateSet, Integer> ids;
+    private final List<int[]> sets;
+    private final List<int[]> asciiTransitions;
+    private final List<Map<Character, Integer>> otherTransitions;
+    private boolean[] finals;
+    private int start;
+
+    // Sparse set of Nfa states, reused by every step
+    private final int[] dense;
+    private final int[] sparse;
+    private int size;
+    private final int[] work;
+
+    /**
+     * Determinize the given Nfa lazily. A state is final when its set
+     * holds any final Nfa state.
+     *
+     * @param nfa Automaton to determinize
+     */
+    public LazyDfa(Nfa nfa) {
+        this(nfa, new Acceptance() {
+            @Override
+            public boolean accepts(long tags) {
+                return tags != 0;
+            }
+        });
+    }
+
+    /**
+     * Determinize the given Nfa lazily, with a custom rule for final
+     * states. See Acceptance.
+     *
+     * @param nfa Automaton to determinize
+     * @param acceptance Decides which sets of Nfa states are final
+     */
+    public LazyDfa(Nfa nfa, Acceptance acceptance) {
+        this.nfa = nfa;
+        this.acceptance = acceptance;
+        this.ids = new HashMap<StateSet, Integer>();
+        this.sets = new ArrayList<int[]>();
+        this.asciiTransitions = new ArrayList<int[]>();
+        this.otherTransitions = new ArrayList<Map<Character, Integer>>();
+        this.finals = new boolean[16];
+
+        int count = nfa.getStateCount();
+        this.dense = new int[count];
+        this.sparse = new int[count];
+        this.work = new int[count];
+
+        this.intern();  // DEAD, the empty set
+        this.add(nfa.getStart());
+        this.start = this.intern();
+    }
+
+    /**
+     * Get the beginning state.
+     *
+     * @return Number of the beginning state
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Get the number of states built so far.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.sets.size();
+    }
+
+    /**
+     * Check if the given state is final.
+     *
+     * @param s Number of the state
+     * @return true if final, false otherwise
+     */
+    public boolean isFinal(int s) {
+        return this.finals[s];
+    }
+
+    /**
+     * Get the Nfa that is determinized.
+     *
+     * @return The underlying Nfa
+     */
+    public Nfa getNfa() {
+        return this.nfa;
+    }
+
+    /**
+     * Get the set of Nfa states that a state stands for.
+     *
+     * @param s Number of the state
+     * @return Sorted numbers of the Nfa states
+     */
+    public int[] getNfaStates(int s) {
+        return this.sets.get(s).clone();
+    }
+
+    /**
+     * Get the state that is reached from "s" by reading "c". The
+     * transition is computed and remembered on its first use.
+     *
+     * @param s Number of the state
+     * @param c Character to read
+     * @return Number of the next state, DEAD if no Nfa state reads c
+     */
+    public int step(int s, char c) {
+        int next;
+
+        if (c < ASCII) {
+            next = this.asciiTransitions.get(s)[c];
+            if (next == UNKNOWN) {
+                next = this.compute(s, c);
+                this.asciiTransitions.get(s)[c] = next;
+            }
+            return next;
+        }
+
+        Map<Character, Integer> transitions = this.otherTransitions.get(s);
+        Integer known = transitions == null ? null : transitions.get(c);
+        if (known != null) return known;
+
+        next = this.compute(s, c);
+        if (transitions == null) {
+            transitions = new HashMap<Character, Integer>();
+            this.otherTransitions.set(s, transitions);
+        }
+        transitions.put(c, next);
+        return next;
+    }
+
+    /**
+     * Split all characters into segments, such that every character of
+     * a segment leads from "s" to the same state. The segments begin at
+     * the returned characters and run until the next one, the last of
+     * them until the last character.
+     *
+     * @param s Number of the state
+     * @return Sorted first characters of the segments
+     */
+    public char[] getSegments(int s) {
+        int[] set = this.sets.get(s);
+        int count = 0, i, k;
+        int[] bounds;
+
+        for (int q : set) count += 2 * this.nfa.getTransitionCount(q);
+        bounds = new int[count + 1];
+        count = 0;
+        bounds[count++] = Character.MIN_VALUE;
+        for (int q : set) {
+            for (i = 0; i < this.nfa.getTransitionCount(q); i++) {
+                bounds[count++] = this.nfa.getLow(q, i);
+                if (this.nfa.getHigh(q, i) < Character.MAX_VALUE) {
+                    bounds[count++] = this.nfa.getHigh(q, i) + 1;
+                }
+            }
+        }
+        Arrays.sort(bounds, 0, count);
+
+        char[] result = new char[count];
+        k = 0;
+        for (i = 0; i < count; i++) {
+            if (k == 0 || bounds[i] != result[k - 1]) result[k++] = (char) bounds[i];
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    /**
+     * Check if the given String is accepted, reading it from the
+     * beginning state. Stops as soon as the DEAD state is reached.
+     *
+     * @param str The String to check
+     * @return true if the state at the end of the String is final
+     */
+    public boolean validate(CharSequence str) {
+        int s = this.start;
+        for (int i = 0; i < str.length(); i++) {
+            s = this.step(s, str.charAt(i));
+            if (s == DEAD) return this.finals[DEAD];
+        }
+        return this.finals[s];
+    }
+
+    private int compute(int s, char c) {
+        int i;
+
+        this.size = 0;
+        for (int q : this.sets.get(s)) {
+            for (i = 0; i < this.nfa.getTransitionCount(q); i++) {
+                if (this.nfa.getLow(q, i) <= c && c <= this.nfa.getHigh(q, i)) {
+                    this.add(this.nfa.getTarget(q, i));
+                }
+            }
+        }
+        return this.intern();
+    }
+
+    /**
+     * Add a state and everything reachable from it over lambda
+     * transitions to the sparse set.
+     */
+    private void add(int q) {
+        int top = 0, i, next;
+
+        if (this.contains(q)) return;
+        this.insert(q);
+        this.work[top++] = q;
+
+        while (top > 0) {
+            q = this.work[--top];
+            for (i = 0; i < this.nfa.getLambdaCount(q); i++) {
+                next = this.nfa.getLambda(q, i);
+                if (!this.contains(next)) {
+                    this.insert(next);
+                    this.work[top++] = next;
+                }
+            }
+        }
+    }
+
+    private boolean contains(int q) {
+        int i = this.sparse[q];
+        return i < this.size && this.dense[i] == q;
+    }
+
+    private void insert(int q) {
+        this.sparse[q] = this.size;
+        this.dense[this.size++] = q;
+    }
+
+    /**
+     * Find or create the state for the current sparse set.
+     */
+    private int intern() {
+        int[] set = Arrays.copyOf(this.dense, this.size);
+        Arrays.sort(set);
+        StateSet key = new StateSet(set);
+        Integer id = this.ids.get(key);
+        if (id != null) return id;
+
+        id = this.sets.size();
+        this.ids.put(key, id);
+        this.sets.add(set);
+
+        int[] ascii = new int[ASCII];
+        Arrays.fill(ascii, id == DEAD ? DEAD : UNKNOWN);
+        this.asciiTransitions.add(ascii);
+        this.otherTransitions.add(null);
+
+        long tags = 0;
+        for (int q : set) {
+            if (this.nfa.isFinal(q)) tags |= 1L << this.nfa.getTag(q);
+        }
+        if (id == this.finals.length) this.finals = Arrays.copyOf(this.finals, 2 * id);
+        this.finals[id] = this.acceptance.accepts(tags);
+
+        return id;
+    }
+
+    /**
+     * Hash key for a sorted set of Nfa states.
+     */
+    private static final class StateSet {
+        final int[] states;
+        final int hash;
+
+        StateSet(int[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateSet && Arrays.equals(this.states, ((StateSet) o).states);
+        }
+    }
+
+}
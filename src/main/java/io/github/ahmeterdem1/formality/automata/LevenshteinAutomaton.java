@@ -0,0 +1,452 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A deterministic automaton that accepts the Strings within a given
+ * edit distance of a word: the Strings that the word turns into with at
+ * most that many insertions, deletions and substitutions of single
+ * characters.
+ *
+ * Each state is a row of the edit distance table of the word, the
+ * distance of every prefix of the word to the String read so far, with
+ * distances above the limit cut to one above it. A state is final when
+ * the distance of the whole word is within the limit, and it is DEAD
+ * when no prefix is within the limit, since no String that starts the
+ * same way can be accepted then. The next row only depends on where the
+ * read character appears in the word, so the characters that are not in
+ * the word all share a single column of the transition table.
+ *
+ * States and transitions are computed on their first use, like in
+ * LazyDfa. For a limit of 1 to 3 the reachable part stays small, a few
+ * states per character of the word.
+ *
+ * search() walks the automaton together with a dictionary automaton and
+ * returns the dictionary words within the limit. A branch of the
+ * dictionary is left as soon as this automaton is DEAD on it, so only
+ * the words that start close to the query are ever visited, not the
+ * whole dictionary. Since no String longer than the word plus the limit
+ * is accepted, this also holds for dictionaries with cycles.
+ *
+ * <pre>
+ *     LevenshteinAutomaton automaton = new LevenshteinAutomaton("wrod", 2);
+ *     automaton.search(dictionary);  // [road, word, wrong, ...]
+ * </pre>
+ *
+ * A LevenshteinAutomaton keeps its tables to itself and is not safe to
+ * share between threads.
+ */
+public final class LevenshteinAutomaton {
+
+    /**
+     * The state where every prefix of the word is too far. No String
+     * is accepted from it.
+     */
+    public static final int DEAD = 0;
+
+    private static final int UNKNOWN = -1;
+    private static final int ASCII = 128;
+
+    private final String word;
+    private final int distance;
+
+    // Columns of the characters: 0 for those that are not in the word
+    private final char[] chars;
+    private final int[] asciiColumns;
+    private final int columns;
+
+    private final Map<Row, Integer> ids;
+    private final List<int[]> rows;
+    private int[] transitions;
+    private final int start;
+
+    /**
+     * Prepare the automaton of a word.
+     *
+     * @param word The word to compare against
+     * @param distance Largest edit distance that is accepted
+     * @throws IllegalArgumentException If the distance is negative
+     */
+    public LevenshteinAutomaton(CharSequence word, int distance) {
+        if (distance < 0) {
+            throw new IllegalArgumentException(String.format("Negative edit distance %d.", distance));
+        }
+        this.word = word.toString();
+        this.distance = distance;
+
+        char[] chars = this.word.toCharArray();
+        Arrays.sort(chars);
+        int count = 0;
+        for (int i = 0; i < chars.length; i++) {
+            if (count == 0 || chars[i] != chars[count - 1]) chars[count++] = chars[i];
+        }
+        this.chars = Arrays.copyOf(chars, count);
+        this.columns = count + 1;
+        this.asciiColumns = new int[ASCII];
+        for (int i = 0; i < count && this.chars[i] < ASCII; i++) {
+            this.asciiColumns[this.chars[i]] = i + 1;
+        }
+
+        this.ids = new HashMap<Row, Integer>();
+        this.rows = new ArrayList<int[]>();
+        this.transitions = new int[16 * this.columns];
+
+        int n = this.word.length();
+        int[] dead = new int[n + 1];
+        Arrays.fill(dead, distance + 1);
+        this.intern(dead);
+        int[] row = new int[n + 1];
+        for (int i = 0; i <= n; i++) row[i] = Math.min(i, distance + 1);
+        this.start = this.intern(row);
+    }
+
+    /**
+     * Get the word that the automaton compares against.
+     *
+     * @return The word
+     */
+    public String getWord() {
+        return this.word;
+    }
+
+    /**
+     * Get the largest edit distance that is accepted.
+     *
+     * @return The limit
+     */
+    public int getDistance() {
+        return this.distance;
+    }
+
+    /**
+     * Get the beginning state.
+     *
+     * @return Number of the beginning state
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Get the number of states built so far.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.rows.size();
+    }
+
+    /**
+     * Check if the given state is final.
+     *
+     * @param s Number of the state
+     * @return true if the String read so far is within the limit
+     */
+    public boolean isFinal(int s) {
+        return this.rows.get(s)[this.word.length()] <= this.distance;
+    }
+
+    /**
+     * Get the edit distance between the word and the String read until
+     * the given state.
+     *
+     * @param s Number of the state
+     * @return The distance, -1 if it is above the limit
+     */
+    public int getDistance(int s) {
+        int d = this.rows.get(s)[this.word.length()];
+        return d <= this.distance ? d : -1;
+    }
+
+    /**
+     * Get the state that is reached from "s" by reading "c". The
+     * transition is computed and remembered on its first use.
+     *
+     * @param s Number of the state
+     * @param c Character to read
+     * @return Number of the next state
+     */
+    public int step(int s, char c) {
+        int column;
+        if (c < ASCII) {
+            column = this.asciiColumns[c];
+        } else {
+            column = Arrays.binarySearch(this.chars, c);
+            column = column < 0 ? 0 : column + 1;
+        }
+        return this.move(s, column);
+    }
+
+    /**
+     * Check if a String is within the limit of the word.
+     *
+     * @param str The String to check
+     * @return true if its edit distance to the word is within the limit
+     */
+    public boolean validate(CharSequence str) {
+        int s = this.start;
+        for (int i = 0; i < str.length() && s != DEAD; i++) {
+            s = this.step(s, str.charAt(i));
+        }
+        return this.isFinal(s);
+    }
+
+    /**
+     * Find the words of a dictionary that are within the limit.
+     *
+     * @param dictionary Automaton of the dictionary words
+     * @return The words within the limit, in sorted order
+     */
+    public List<String> search(final Dawg dictionary) {
+        List<String> result = new ArrayList<String>();
+        this.walk(new Graph() {
+            @Override
+            int count(int s) {
+                return dictionary.getTransitionCount(s);
+            }
+
+            @Override
+            char low(int s, int i) {
+                return dictionary.getLabel(s, i);
+            }
+
+            @Override
+            char high(int s, int i) {
+                return dictionary.getLabel(s, i);
+            }
+
+            @Override
+            int target(int s, int i) {
+                return dictionary.getTarget(s, i);
+            }
+
+            @Override
+            boolean isFinal(int s) {
+                return dictionary.isFinal(s);
+            }
+        }, dictionary.getStart(), this.start, new StringBuilder(), result);
+        return result;
+    }
+
+    /**
+     * Find the words of a dictionary that are within the limit.
+     *
+     * @param dictionary Automaton of the dictionary words
+     * @return The words within the limit, in sorted order
+     */
+    public List<String> search(final Dfa dictionary) {
+        List<String> result = new ArrayList<String>();
+        this.walk(new Graph() {
+            @Override
+            int count(int s) {
+                return dictionary.getTransitionCount(s);
+            }
+
+            @Override
+            char low(int s, int i) {
+                return dictionary.getLow(s, i);
+            }
+
+            @Override
+            char high(int s, int i) {
+                return dictionary.getHigh(s, i);
+            }
+
+            @Override
+            int target(int s, int i) {
+                return dictionary.getTarget(s, i);
+            }
+
+            @Override
+            boolean isFinal(int s) {
+                return dictionary.isFinal(s);
+            }
+        }, dictionary.getStart(), this.start, new StringBuilder(), result);
+        return result;
+    }
+
+    /**
+     * Find the words of a dictionary that are within the limit. Only the
+     * states of the LazyDfa that the search steps on are built, and they
+     * stay built for the next searches.
+     *
+     * @param dictionary Automaton of the dictionary words
+     * @return The words within the limit, in sorted order
+     */
+    public List<String> search(final LazyDfa dictionary) {
+        List<String> result = new ArrayList<String>();
+        final List<char[]> segments = new ArrayList<char[]>();
+        this.walk(new Graph() {
+            @Override
+            int count(int s) {
+                return this.segments(s).length;
+            }
+
+            @Override
+            char low(int s, int i) {
+                return this.segments(s)[i];
+            }
+
+            @Override
+            char high(int s, int i) {
+                char[] bounds = this.segments(s);
+                return i + 1 < bounds.length ? (char) (bounds[i + 1] - 1) : Character.MAX_VALUE;
+            }
+
+            @Override
+            int target(int s, int i) {
+                int t = dictionary.step(s, this.segments(s)[i]);
+                return t == LazyDfa.DEAD ? -1 : t;
+            }
+
+            @Override
+            boolean isFinal(int s) {
+                return dictionary.isFinal(s);
+            }
+
+            char[] segments(int s) {
+                while (segments.size() <= s) segments.add(null);
+                if (segments.get(s) == null) segments.set(s, dictionary.getSegments(s));
+                return segments.get(s);
+            }
+        }, dictionary.getStart(), this.start, new StringBuilder(), result);
+        return result;
+    }
+
+    /**
+     * Find the words of a dictionary that are within the limit. The
+     * automaton is numbered first, which takes time linear in its size;
+     * for repeated searches, turn it into a Dawg, Dfa or LazyDfa once.
+     *
+     * @param dictionary Automaton of the dictionary words
+     * @return The words within the limit, in sorted order
+     */
+    public List<String> search(FiniteAutomaton dictionary) {
+        return this.search(new LazyDfa(Nfa.of(dictionary)));
+    }
+
+    /**
+     * Walk the dictionary from state "d" and this automaton from state
+     * "s" together, depth first, adding the final pairs to the result.
+     */
+    private void walk(Graph dictionary, int d, int s, StringBuilder path, List<String> result) {
+        if (dictionary.isFinal(d) && this.isFinal(s)) result.add(path.toString());
+        int count = dictionary.count(d);
+        boolean others = this.move(s, 0) != DEAD;
+
+        for (int i = 0; i < count; i++) {
+            int target = dictionary.target(d, i);
+            if (target < 0) continue;
+            char low = dictionary.low(d, i);
+            char high = dictionary.high(d, i);
+
+            if (others) {
+                for (int c = low; c <= high; c++) {
+                    int next = this.step(s, (char) c);
+                    if (next == DEAD) continue;
+                    path.append((char) c);
+                    this.walk(dictionary, target, next, path, result);
+                    path.setLength(path.length() - 1);
+                }
+                continue;
+            }
+
+            // Only the characters of the word can keep the run alive
+            int j = Arrays.binarySearch(this.chars, low);
+            for (j = j < 0 ? -j - 1 : j; j < this.chars.length && this.chars[j] <= high; j++) {
+                int next = this.move(s, j + 1);
+                if (next == DEAD) continue;
+                path.append(this.chars[j]);
+                this.walk(dictionary, target, next, path, result);
+                path.setLength(path.length() - 1);
+            }
+        }
+    }
+
+    /**
+     * Follow the transition of a state on a column, computing it on its
+     * first use.
+     */
+    private int move(int s, int column) {
+        int next = this.transitions[s * this.columns + column];
+        if (next != UNKNOWN) return next;
+
+        int[] row = this.rows.get(s);
+        int[] result = new int[row.length];
+        int limit = this.distance + 1;
+        char c = column == 0 ? 0 : this.chars[column - 1];
+
+        result[0] = Math.min(row[0] + 1, limit);
+        for (int i = 1; i < row.length; i++) {
+            int cost = column != 0 && this.word.charAt(i - 1) == c ? 0 : 1;
+            int d = Math.min(row[i - 1] + cost, Math.min(row[i], result[i - 1]) + 1);
+            result[i] = Math.min(d, limit);
+        }
+
+        next = this.intern(result);
+        this.transitions[s * this.columns + column] = next;
+        return next;
+    }
+
+    /**
+     * Find or create the state of a row.
+     */
+    private int intern(int[] row) {
+        Row key = new Row(row);
+        Integer id = this.ids.get(key);
+        if (id != null) return id;
+
+        id = this.rows.size();
+        this.ids.put(key, id);
+        this.rows.add(row);
+
+        if ((id + 1) * this.columns > this.transitions.length) {
+            this.transitions = Arrays.copyOf(this.transitions, 2 * (id + 1) * this.columns);
+        }
+        Arrays.fill(this.transitions, id * this.columns, (id + 1) * this.columns, id == DEAD ? DEAD : UNKNOWN);
+        return id;
+    }
+
+    /**
+     * The transitions of a deterministic dictionary automaton, as
+     * character ranges. A negative target stands for no transition.
+     */
+    private abstract static class Graph {
+        abstract int count(int s);
+
+        abstract char low(int s, int i);
+
+        abstract char high(int s, int i);
+
+        abstract int target(int s, int i);
+
+        abstract boolean isFinal(int s);
+    }
+
+    /**
+     * Hash key for a row of distances.
+     */
+    private static final class Row {
+        final int[] distances;
+        final int hash;
+
+        Row(int[] distances) {
+            this.distances = distances;
+            this.hash = Arrays.hashCode(distances);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Row && Arrays.equals(this.distances, ((Row) o).distances);
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.state.FiniteState;
+import io.github.ahmeterdem1.formality.state.State;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * A numbered, read-only form of a finite automaton. States are
+ * integers, and every transition reads a single character out of a
+ * range of characters; String rules of more than one character are
+ * spread over a chain of states. The algorithms that work on whole
+ * automata, like determinization and the product constructions, run
+ * on this form instead of on the State graph.
+ *
+ * Final states carry a tag, which tells apart the automata that were
+ * put together with union. The tag of a non-final state is -1.
+ *
+ * Transitions are stored in compressed sparse rows: those of state s
+ * are at the indices from firsts[s] up to firsts[s + 1] of flat arrays
+ * of ranges and targets, sorted by their first character, and lambda
+ * transitions likewise. Following a state costs no pointer chasing,
+ * and a large automaton takes a handful of arrays instead of a few
+ * objects per state.
+ */
+public final class Nfa {
+
+    private final int start;
+    private final int[] tags;
+    private final int[] firsts;
+    private final char[] lows;
+    private final char[] highs;
+    private final int[] targets;
+    private final int[] lambdaFirsts;
+    private final int[] lambdas;
+    private final char[] alphabet;
+
+    private Nfa(int start, int[] tags, int[] firsts, char[] lows, char[] highs, int[] targets,
+                int[] lambdaFirsts, int[] lambdas, char[] alphabet) {
+        this.start = start;
+        this.tags = tags;
+        this.firsts = firsts;
+        this.lows = lows;
+        this.highs = highs;
+        this.targets = targets;
+        this.lambdaFirsts = lambdaFirsts;
+        this.lambdas = lambdas;
+        this.alphabet = alphabet;
+    }
+
+    /**
+     * Number the states of a FiniteAutomaton, starting from its
+     * beginning state. Transitions on characters that are not in the
+     * Alphabet of the automaton are left out, since validation never
+     * takes them. Final states are tagged 0.
+     *
+     * @param automaton The automaton to number
+     * @return Numbered form of the automaton
+     */
+    public static Nfa of(FiniteAutomaton automaton) {
+        Builder builder = new Builder();
+        Map<State, Integer> ids = new IdentityHashMap<State, Integer>();
+        Stack<State> stateStack = new Stack<State>();
+        char[] alphabet = automaton.getAlphabet().toRanges();
+        State begin = automaton.getBegin();
+        int i, id, from, to;
+        String rule;
+
+        ids.put(begin, builder.addState());
+        stateStack.push(begin);
+
+        while (!stateStack.isEmpty()) {
+            State s = stateStack.pop();
+            id = ids.get(s);
+            if (s.isFinal()) builder.tags[id] = 0;
+
+            for (Map.Entry<String, State> entry : s.getTransitions().entrySet()) {
+                rule = entry.getKey();
+                to = Nfa.number(entry.getValue(), ids, stateStack, builder);
+                if (rule.isEmpty()) {
+                    builder.addLambda(id, to);
+                    continue;
+                }
+                if (!Nfa.inRanges(alphabet, rule)) continue;
+
+                // A chain of states, one for each character of the rule
+                from = id;
+                for (i = 0; i < rule.length() - 1; i++) {
+                    int next = builder.addState();
+                    builder.addTransition(from, rule.charAt(i), rule.charAt(i), next);
+                    from = next;
+                }
+                builder.addTransition(from, rule.charAt(i), rule.charAt(i), to);
+            }
+
+            if (s instanceof FiniteState) {
+                FiniteState finiteState = (FiniteState) s;
+                for (i = 0; i < finiteState.getRangeCount(); i++) {
+                    to = Nfa.number(finiteState.getRangeTarget(i), ids, stateStack, builder);
+                    builder.addRestricted(id, finiteState.getRangeBegin(i), finiteState.getRangeEnd(i),
+                            to, alphabet);
+                }
+                for (FiniteState lambda : finiteState.getLambdas()) {
+                    builder.addLambda(id, Nfa.number(lambda, ids, stateStack, builder));
+                }
+            }
+        }
+
+        return builder.build(ids.get(begin), alphabet);
+    }
+
+    /**
+     * Build an automaton that accepts every String over the given
+     * ranges, the empty String included. Its only state is final,
+     * with tag 0.
+     *
+     * @param ranges Sorted, disjoint range pairs of the alphabet
+     * @return Automaton of the language of all Strings over the ranges
+     */
+    public static Nfa universal(char[] ranges) {
+        Builder builder = new Builder();
+        int state = builder.addState();
+        builder.tags[state] = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            builder.addTransition(state, ranges[i], ranges[i + 1], state);
+        }
+        return builder.build(state, ranges.clone());
+    }
+
+    /**
+     * Put the given automata side by side under a new beginning
+     * state, which has a lambda transition to each of them. Final
+     * states of the i'th automaton are tagged i in the result, so a
+     * set of states tells which of the automata it accepts for.
+     *
+     * @param parts Automata to put together
+     * @return Union of the automata
+     */
+    public static Nfa union(List<Nfa> parts) {
+        Builder builder = new Builder();
+        int start = builder.addState();
+        int offset, s, i, k;
+        char[] alphabet = new char[0];
+
+        for (k = 0; k < parts.size(); k++) {
+            Nfa part = parts.get(k);
+            offset = builder.count;
+            for (s = 0; s < part.getStateCount(); s++) {
+                builder.addState();
+                builder.tags[offset + s] = part.tags[s] >= 0 ? k : -1;
+            }
+            for (s = 0; s < part.getStateCount(); s++) {
+                for (i = part.firsts[s]; i < part.firsts[s + 1]; i++) {
+                    builder.addTransition(offset + s, part.lows[i], part.highs[i], offset + part.targets[i]);
+                }
+                for (i = part.lambdaFirsts[s]; i < part.lambdaFirsts[s + 1]; i++) {
+                    builder.addLambda(offset + s, offset + part.lambdas[i]);
+                }
+            }
+            builder.addLambda(start, offset + part.start);
+            alphabet = Nfa.merge(alphabet, part.alphabet);
+        }
+
+        return builder.build(start, alphabet);
+    }
+
+    /**
+     * Build the automaton of the reversed language: every transition
+     * points the other way, a new beginning state has a lambda
+     * transition to each final state, and the old beginning state is
+     * the only final state, with tag 0. Reading a String backwards
+     * through the result follows the paths that read it forwards here.
+     *
+     * @return Automaton that accepts the reverse of every accepted String
+     */
+    public Nfa reverse() {
+        Builder builder = new Builder();
+        int count = this.getStateCount();
+        int s, i;
+
+        for (s = 0; s < count; s++) builder.addState();
+        int start = builder.addState();
+        builder.tags[this.start] = 0;
+
+        for (s = 0; s < count; s++) {
+            for (i = this.firsts[s]; i < this.firsts[s + 1]; i++) {
+                builder.addTransition(this.targets[i], this.lows[i], this.highs[i], s);
+            }
+            for (i = this.lambdaFirsts[s]; i < this.lambdaFirsts[s + 1]; i++) {
+                builder.addLambda(this.lambdas[i], s);
+            }
+            if (this.tags[s] >= 0) builder.addLambda(start, s);
+        }
+
+        return builder.build(start, this.alphabet);
+    }
+
+    /**
+     * Build an automaton that accepts every String with an accepted
+     * suffix. A new beginning state reads any character back into
+     * itself, and has a lambda transition to the old beginning state,
+     * so the result is in a final state at every position where a
+     * match of this automaton ends, wherever the match began.
+     *
+     * @return Automaton of the language of all Strings, followed by an accepted String
+     */
+    public Nfa unanchored() {
+        Builder builder = new Builder();
+        int count = this.getStateCount();
+        int s, i;
+
+        for (s = 0; s < count; s++) {
+            builder.addState();
+            builder.tags[s] = this.tags[s];
+        }
+        for (s = 0; s < count; s++) {
+            for (i = this.firsts[s]; i < this.firsts[s + 1]; i++) {
+                builder.addTransition(s, this.lows[i], this.highs[i], this.targets[i]);
+            }
+            for (i = this.lambdaFirsts[s]; i < this.lambdaFirsts[s + 1]; i++) {
+                builder.addLambda(s, this.lambdas[i]);
+            }
+        }
+        int start = builder.addState();
+        builder.addTransition(start, Character.MIN_VALUE, Character.MAX_VALUE, start);
+        builder.addLambda(start, this.start);
+
+        return builder.build(start, new char[]{Character.MIN_VALUE, Character.MAX_VALUE});
+    }
+
+    /**
+     * Get the beginning state.
+     *
+     * @return Number of the beginning state
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Get the number of states. States are numbered from 0.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.tags.length;
+    }
+
+    /**
+     * Check if the given state is final.
+     *
+     * @param s Number of the state
+     * @return true if final, false otherwise
+     */
+    public boolean isFinal(int s) {
+        return this.tags[s] >= 0;
+    }
+
+    /**
+     * Get the tag of the given state.
+     *
+     * @param s Number of the state
+     * @return Tag of a final state, -1 for non-final states
+     */
+    public int getTag(int s) {
+        return this.tags[s];
+    }
+
+    /**
+     * Get the number of character transitions of the given state.
+     *
+     * @param s Number of the state
+     * @return Count of transitions
+     */
+    public int getTransitionCount(int s) {
+        return this.firsts[s + 1] - this.firsts[s];
+    }
+
+    /**
+     * Get the first character that the i'th transition of a state reads.
+     *
+     * @param s Number of the state
+     * @param i Index of the transition
+     * @return First character of the range of the transition
+     */
+    public char getLow(int s, int i) {
+        return this.lows[this.firsts[s] + i];
+    }
+
+    /**
+     * Get the last character that the i'th transition of a state reads.
+     *
+     * @param s Number of the state
+     * @param i Index of the transition
+     * @return Last character of the range of the transition
+     */
+    public char getHigh(int s, int i) {
+        return this.highs[this.firsts[s] + i];
+    }
+
+    /**
+     * Get the state that the i'th transition of a state points to.
+     *
+     * @param s Number of the state
+     * @param i Index of the transition
+     * @return Number of the target state
+     */
+    public int getTarget(int s, int i) {
+        return this.targets[this.firsts[s] + i];
+    }
+
+    /**
+     * Get the number of lambda transitions of the given state.
+     *
+     * @param s Number of the state
+     * @return Count of lambda transitions
+     */
+    public int getLambdaCount(int s) {
+        return this.lambdaFirsts[s + 1] - this.lambdaFirsts[s];
+    }
+
+    /**
+     * Get the state that the i'th lambda transition of a state points to.
+     *
+     * @param s Number of the state
+     * @param i Index of the lambda transition
+     * @return Number of the target state
+     */
+    public int getLambda(int s, int i) {
+        return this.lambdas[this.lambdaFirsts[s] + i];
+    }
+
+    /**
+     * Get the alphabet of the automaton.
+     *
+     * @return Sorted, disjoint range pairs of the alphabet
+     */
+    public char[] getAlphabet() {
+        return this.alphabet.clone();
+    }
+
+    private static int number(State s, Map<State, Integer> ids, Stack<State> stateStack, Builder builder) {
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = builder.addState();
+            ids.put(s, id);
+            stateStack.push(s);
+        }
+        return id;
+    }
+
+    /**
+     * Check if every character of the String is in the ranges.
+     */
+    private static boolean inRanges(char[] ranges, String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (Nfa.find(ranges, str.charAt(i)) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Binary search sorted range pairs for the range that holds c.
+     *
+     * @return Index of the pair, -1 if no range holds c
+     */
+    static int find(char[] ranges, char c) {
+        int low = 0;
+        int high = ranges.length / 2 - 1;
+        int mid;
+
+        while (low <= high) {
+            mid = (low + high) >>> 1;
+            if (c < ranges[2 * mid]) high = mid - 1;
+            else if (c > ranges[2 * mid + 1]) low = mid + 1;
+            else return mid;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Merge two sorted, disjoint lists of range pairs into one.
+     */
+    static char[] merge(char[] a, char[] b) {
+        char[] result = new char[a.length + b.length];
+        int i = 0, j = 0, count = 0;
+        char first, last;
+
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                first = a[i];
+                last = a[i + 1];
+                i += 2;
+            } else {
+                first = b[j];
+                last = b[j + 1];
+                j += 2;
+            }
+
+            if (count > 0 && first <= result[count - 1] + 1) {
+                if (last > result[count - 1]) result[count - 1] = last;
+            } else {
+                result[count++] = first;
+                result[count++] = last;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Growable storage for the states of an Nfa under construction.
+     */
+    static final class Builder {
+        int count;
+        int[] tags = new int[16];
+        char[][] lows = new char[16][];
+        char[][] highs = new char[16][];
+        int[][] targets = new int[16][];
+        int[] transitionCounts = new int[16];
+        int[][] lambdas = new int[16][];
+        int[] lambdaCounts = new int[16];
+
+        int addState() {
+            if (this.count == this.tags.length) {
+                int capacity = 2 * this.count;
+                this.tags = Arrays.copyOf(this.tags, capacity);
+                this.lows = Arrays.copyOf(this.lows, capacity);
+                this.highs = Arrays.copyOf(this.highs, capacity);
+                this.targets = Arrays.copyOf(this.targets, capacity);
+                this.transitionCounts = Arrays.copyOf(this.transitionCounts, capacity);
+                this.lambdas = Arrays.copyOf(this.lambdas, capacity);
+                this.lambdaCounts = Arrays.copyOf(this.lambdaCounts, capacity);
+            }
+            this.tags[this.count] = -1;
+            this.lows[this.count] = new char[2];
+            this.highs[this.count] = new char[2];
+            this.targets[this.count] = new int[2];
+            this.lambdas[this.count] = new int[0];
+            return this.count++;
+        }
+
+        void addTransition(int from, char low, char high, int to) {
+            int n = this.transitionCounts[from];
+            if (n == this.targets[from].length) {
+                this.lows[from] = Arrays.copyOf(this.lows[from], 2 * n);
+                this.highs[from] = Arrays.copyOf(this.highs[from], 2 * n);
+                this.targets[from] = Arrays.copyOf(this.targets[from], 2 * n);
+            }
+            this.lows[from][n] = low;
+            this.highs[from][n] = high;
+            this.targets[from][n] = to;
+            this.transitionCounts[from] = n + 1;
+        }
+
+        /**
+         * Add the parts of the range from low to high that are in the alphabet.
+         */
+        void addRestricted(int from, char low, char high, int to, char[] alphabet) {
+            // First alphabet range that does not end before low
+            int i = 0;
+            int j = alphabet.length / 2;
+            while (i < j) {
+                int mid = (i + j) >>> 1;
+                if (alphabet[2 * mid + 1] < low) i = mid + 1;
+                else j = mid;
+            }
+
+            for (; i < alphabet.length / 2 && alphabet[2 * i] <= high; i++) {
+                char first = alphabet[2 * i] > low ? alphabet[2 * i] : low;
+                char last = alphabet[2 * i + 1] < high ? alphabet[2 * i + 1] : high;
+                this.addTransition(from, first, last, to);
+            }
+        }
+
+        void addLambda(int from, int to) {
+            int n = this.lambdaCounts[from];
+            if (n == this.lambdas[from].length) {
+                this.lambdas[from] = Arrays.copyOf(this.lambdas[from], Math.max(2, 2 * n));
+            }
+            this.lambdas[from][n] = to;
+            this.lambdaCounts[from] = n + 1;
+        }
+
+        /**
+         * Lay the states out in compressed sparse rows, with the
+         * transitions of each state sorted by their first character.
+         */
+        Nfa build(int start, char[] alphabet) {
+            int[] firsts = new int[this.count + 1];
+            int[] lambdaFirsts = new int[this.count + 1];
+            int s, i, j;
+
+            for (s = 0; s < this.count; s++) {
+                firsts[s + 1] = firsts[s] + this.transitionCounts[s];
+                lambdaFirsts[s + 1] = lambdaFirsts[s] + this.lambdaCounts[s];
+            }
+            char[] lows = new char[firsts[this.count]];
+            char[] highs = new char[firsts[this.count]];
+            int[] targets = new int[firsts[this.count]];
+            int[] lambdas = new int[lambdaFirsts[this.count]];
+
+            for (s = 0; s < this.count; s++) {
+                int first = firsts[s];
+                for (i = 0; i < this.transitionCounts[s]; i++) {
+                    char low = this.lows[s][i];
+                    char high = this.highs[s][i];
+                    int target = this.targets[s][i];
+                    for (j = first + i; j > first && lows[j - 1] > low; j--) {
+                        lows[j] = lows[j - 1];
+                        highs[j] = highs[j - 1];
+                        targets[j] = targets[j - 1];
+                    }
+                    lows[j] = low;
+                    highs[j] = high;
+                    targets[j] = target;
+                }
+                System.arraycopy(this.lambdas[s], 0, lambdas, lambdaFirsts[s], this.lambdaCounts[s]);
+            }
+
+            return new Nfa(start, Arrays.copyOf(this.tags, this.count), firsts, lows, highs, targets,
+                    lambdaFirsts, lambdas, alphabet);
+        }
+    }
+
+}
@@ -0,0 +1,393 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.exceptions.AutomatonError;
+import io.github.ahmeterdem1.formality.state.PushdownState;
+import io.github.ahmeterdem1.formality.state.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+/**
+ * A pushdown automaton that follows all of its paths at once, for
+ * automata that are not deterministic.
+ *
+ * Every rule of a state that matches the input is taken, not only the
+ * longest one, and so is every lambda transition. Following each path
+ * with a stack of its own would take exponential time, so the stacks
+ * of all paths are kept in a single graph-structured stack, as in the
+ * parsers of Tomita: a node of the graph is a pushed symbol, and its
+ * edges lead to all the nodes that were under it on some path. Nodes
+ * are shared by every path that pushes into the same state at the same
+ * position of the input, so both the graph and the set of
+ * configurations at a position stay polynomial in the length of the
+ * input, even for ambiguous languages with exponentially many paths.
+ *
+ * The automaton is numbered into single steps first: a step reads one
+ * character, pops one symbol, pushes one symbol or does nothing. Rules
+ * of several characters and stack operations of several symbols are
+ * spread over a chain of steps.
+ *
+ * A String is accepted if some path reads all of it, and then reaches
+ * a final state with an empty stack.
+ */
+public final class NondeterministicPushdown {
+
+    private static final int LAMBDA = 0;
+    private static final int READ = 1;
+    private static final int POP = 2;
+    private static final int PUSH = 3;
+
+    // The node under everything: the empty stack
+    private static final int ROOT = 0;
+
+    private final int start;
+    private final boolean[] finals;
+    private final int[][] kinds;
+    private final char[][] arguments;
+    private final int[][] targets;
+    private final char[] alphabet;
+
+    private NondeterministicPushdown(int start, boolean[] finals, int[][] kinds,
+                                     char[][] arguments, int[][] targets, char[] alphabet) {
+        this.start = start;
+        this.finals = finals;
+        this.kinds = kinds;
+        this.arguments = arguments;
+        this.targets = targets;
+        this.alphabet = alphabet;
+    }
+
+    /**
+     * Number the steps of a PushdownAutomaton, starting from its
+     * beginning state. Rules behave as in PushdownAutomaton.validate: a
+     * rule with a read operation pops, otherwise it pushes its write
+     * operation. Lambda transitions added with PushdownState.addLambda
+     * pop and then push.
+     *
+     * @param automaton The automaton to number
+     * @return Numbered form of the automaton
+     * @throws AutomatonError If the graph holds a State that is not a
+     *      PushdownState
+     */
+    public static NondeterministicPushdown of(PushdownAutomaton automaton) {
+        Builder builder = new Builder();
+        Map<State, Integer> ids = new IdentityHashMap<State, Integer>();
+        Stack<State> stateStack = new Stack<State>();
+        String rule, pop;
+        int i, id, to;
+
+        NondeterministicPushdown.number(automaton.getBegin(), ids, stateStack, builder);
+
+        while (!stateStack.isEmpty()) {
+            State s = stateStack.pop();
+            if (!(s instanceof PushdownState)) {
+                throw new AutomatonError("Only graphs of PushdownState objects can be compiled.");
+            }
+            PushdownState state = (PushdownState) s;
+            id = ids.get(s);
+
+            for (Map.Entry<String, State> entry : state.getTransitions().entrySet()) {
+                rule = entry.getKey();
+                pop = state.getReadMatch(rule);
+                to = NondeterministicPushdown.number(entry.getValue(), ids, stateStack, builder);
+                builder.addChain(id, rule, pop, pop.isEmpty() ? state.getWriteMatch(rule) : "", to);
+            }
+
+            for (i = 0; i < state.getLambdaCount(); i++) {
+                to = NondeterministicPushdown.number(state.getLambdaTarget(i), ids, stateStack, builder);
+                builder.addChain(id, "", state.getLambdaRead(i), state.getLambdaWrite(i), to);
+            }
+        }
+
+        return builder.build(ids.get(automaton.getBegin()), automaton.getAlphabet().toRanges());
+    }
+
+    /**
+     * Get the number of steps the automaton was numbered into.
+     *
+     * @return Count of states, including the ones inside chains
+     */
+    public int getStateCount() {
+        return this.finals.length;
+    }
+
+    /**
+     * Checks if the given string belongs to the represented language,
+     * following every path of the automaton.
+     *
+     * @param str The piece of string to be checked
+     * @return Returns true if the string belongs to the language, false
+     *      otherwise
+     */
+    public boolean validate(CharSequence str) {
+        return this.validate(str, Budget.UNLIMITED);
+    }
+
+    /**
+     * Checks if the given string belongs to the represented language,
+     * following every path of the automaton, within a Budget. Every
+     * configuration, a state with the top of a stack, costs a step.
+     *
+     * @param str The piece of string to be checked
+     * @param budget Limits of the work of the call
+     * @return Returns true if the string belongs to the language, false
+     *      otherwise
+     * @throws io.github.ahmeterdem1.formality.exceptions.BudgetExceededError
+     *      If the call runs out of its budget
+     */
+    public boolean validate(CharSequence str, Budget budget) {
+        Budget.Meter meter = budget.start();
+        int length = str.length();
+        int i;
+
+        for (i = 0; i < length; i++) {
+            if (Nfa.find(this.alphabet, str.charAt(i)) < 0) return false;
+        }
+
+        Stacks stacks = new Stacks();
+        Configurations current = new Configurations();
+        Configurations next = new Configurations();
+        Map<Integer, Integer> pushed = new HashMap<Integer, Integer>();
+        current.add(this.start, ROOT);
+
+        for (i = 0; i <= length; i++) {
+            char c = i < length ? str.charAt(i) : '\0';
+            pushed.clear();
+
+            for (int k = 0; k < current.size; k++) {
+                meter.spend(1);
+                int q = current.states[k];
+                int node = current.nodes[k];
+
+                for (int t = 0; t < this.kinds[q].length; t++) {
+                    int to = this.targets[q][t];
+                    char argument = this.arguments[q][t];
+
+                    switch (this.kinds[q][t]) {
+                        case LAMBDA:
+                            current.add(to, node);
+                            break;
+                        case READ:
+                            if (i < length && argument == c) next.add(to, node);
+                            break;
+                        case POP:
+                            for (int e = 0; e < stacks.edgeCounts[node]; e += 2) {
+                                if (stacks.edges[node][e + 1] == argument) {
+                                    current.add(to, stacks.edges[node][e]);
+                                }
+                            }
+                            if (stacks.levels[node] == i) stacks.addPop(node, argument, to);
+                            break;
+                        default:
+                            Integer top = pushed.get(to);
+                            if (top == null) {
+                                top = stacks.addNode(i);
+                                pushed.put(to, top);
+                                stacks.addEdge(top, node, argument);
+                                current.add(to, top);
+                            } else if (stacks.addEdge(top, node, argument)) {
+                                // Paths that already popped the shared node
+                                // go on from the newly added stack as well
+                                for (int p = 0; p < stacks.popCounts[top]; p += 2) {
+                                    if (stacks.pops[top][p] == argument) {
+                                        current.add(stacks.pops[top][p + 1], node);
+                                    }
+                                }
+                            }
+                    }
+                }
+            }
+
+            if (i == length) {
+                for (int k = 0; k < current.size; k++) {
+                    if (current.nodes[k] == ROOT && this.finals[current.states[k]]) return true;
+                }
+                return false;
+            }
+            if (next.size == 0) return false;
+
+            Configurations swap = current;
+            current = next;
+            next = swap;
+            next.clear();
+        }
+
+        return false;
+    }
+
+    private static int number(State s, Map<State, Integer> ids, Stack<State> stateStack, Builder builder) {
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = builder.addState(s.isFinal());
+            ids.put(s, id);
+            stateStack.push(s);
+        }
+        return id;
+    }
+
+    /**
+     * The graph-structured stack. Each node records the level it was
+     * pushed at, its edges as (node under it, symbol) pairs, and the pops
+     * that were done on it at its own level, as (symbol, state) pairs.
+     */
+    private static final class Stacks {
+        int count = 1;  // ROOT
+        int[] levels = new int[16];
+        int[][] edges = new int[16][];
+        int[] edgeCounts = new int[16];
+        int[][] pops = new int[16][];
+        int[] popCounts = new int[16];
+
+        Stacks() {
+            this.levels[ROOT] = -1;
+            this.edges[ROOT] = new int[0];
+        }
+
+        int addNode(int level) {
+            if (this.count == this.levels.length) {
+                int capacity = 2 * this.count;
+                this.levels = Arrays.copyOf(this.levels, capacity);
+                this.edges = Arrays.copyOf(this.edges, capacity);
+                this.edgeCounts = Arrays.copyOf(this.edgeCounts, capacity);
+                this.pops = Arrays.copyOf(this.pops, capacity);
+                this.popCounts = Arrays.copyOf(this.popCounts, capacity);
+            }
+            this.levels[this.count] = level;
+            this.edges[this.count] = new int[4];
+            this.pops[this.count] = new int[0];
+            return this.count++;
+        }
+
+        /**
+         * @return false if the edge was already there
+         */
+        boolean addEdge(int node, int under, char symbol) {
+            int n = this.edgeCounts[node];
+            for (int e = 0; e < n; e += 2) {
+                if (this.edges[node][e] == under && this.edges[node][e + 1] == symbol) return false;
+            }
+            if (n == this.edges[node].length) this.edges[node] = Arrays.copyOf(this.edges[node], 2 * n);
+            this.edges[node][n] = under;
+            this.edges[node][n + 1] = symbol;
+            this.edgeCounts[node] = n + 2;
+            return true;
+        }
+
+        void addPop(int node, char symbol, int state) {
+            int n = this.popCounts[node];
+            if (n == this.pops[node].length) this.pops[node] = Arrays.copyOf(this.pops[node], Math.max(4, 2 * n));
+            this.pops[node][n] = symbol;
+            this.pops[node][n + 1] = state;
+            this.popCounts[node] = n + 2;
+        }
+    }
+
+    /**
+     * Worklist of the distinct (state, node) pairs at a position.
+     */
+    private static final class Configurations {
+        int size;
+        int[] states = new int[16];
+        int[] nodes = new int[16];
+        final Set<Long> seen = new HashSet<Long>();
+
+        void add(int state, int node) {
+            if (!this.seen.add(((long) state << 32) | node)) return;
+            if (this.size == this.states.length) {
+                this.states = Arrays.copyOf(this.states, 2 * this.size);
+                this.nodes = Arrays.copyOf(this.nodes, 2 * this.size);
+            }
+            this.states[this.size] = state;
+            this.nodes[this.size++] = node;
+        }
+
+        void clear() {
+            this.size = 0;
+            this.seen.clear();
+        }
+    }
+
+    /**
+     * Growable storage for the steps under construction.
+     */
+    private static final class Builder {
+        final List<Boolean> finals = new ArrayList<Boolean>();
+        final List<List<int[]>> steps = new ArrayList<List<int[]>>();
+
+        int addState(boolean isFinal) {
+            this.finals.add(isFinal);
+            this.steps.add(new ArrayList<int[]>());
+            return this.finals.size() - 1;
+        }
+
+        void addStep(int from, int kind, char argument, int to) {
+            this.steps.get(from).add(new int[]{kind, argument, to});
+        }
+
+        /**
+         * Read "rule", pop "pop" from its top down, push "push" from its
+         * bottom up, and then arrive at "to".
+         */
+        void addChain(int from, String rule, String pop, String push, int to) {
+            int count = rule.length() + pop.length() + push.length();
+            int[] kinds = new int[count];
+            char[] arguments = new char[count];
+            int n = 0, i;
+
+            for (i = 0; i < rule.length(); i++) {
+                kinds[n] = READ;
+                arguments[n++] = rule.charAt(i);
+            }
+            for (i = pop.length() - 1; i >= 0; i--) {
+                kinds[n] = POP;
+                arguments[n++] = pop.charAt(i);
+            }
+            for (i = 0; i < push.length(); i++) {
+                kinds[n] = PUSH;
+                arguments[n++] = push.charAt(i);
+            }
+
+            if (count == 0) {
+                this.addStep(from, LAMBDA, '\0', to);
+                return;
+            }
+            for (i = 0; i < count - 1; i++) {
+                int next = this.addState(false);
+                this.addStep(from, kinds[i], arguments[i], next);
+                from = next;
+            }
+            this.addStep(from, kinds[i], arguments[i], to);
+        }
+
+        NondeterministicPushdown build(int start, char[] alphabet) {
+            int count = this.finals.size();
+            boolean[] finals = new boolean[count];
+            int[][] kinds = new int[count][];
+            char[][] arguments = new char[count][];
+            int[][] targets = new int[count][];
+
+            for (int s = 0; s < count; s++) {
+                List<int[]> list = this.steps.get(s);
+                finals[s] = this.finals.get(s);
+                kinds[s] = new int[list.size()];
+                arguments[s] = new char[list.size()];
+                targets[s] = new int[list.size()];
+                for (int t = 0; t < list.size(); t++) {
+                    kinds[s][t] = list.get(t)[0];
+                    arguments[s][t] = (char) list.get(t)[1];
+                    targets[s][t] = list.get(t)[2];
+                }
+            }
+
+            return new NondeterministicPushdown(start, finals, kinds, arguments, targets, alphabet);
+        }
+    }
+
+}
@@ -0,0 +1,590 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+import io.github.ahmeterdem1.formality.exceptions.AutomatonError;
+import io.github.ahmeterdem1.formality.state.FiniteState;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A deterministic finite automaton that is stored outside of the Java
+ * heap, in a direct ByteBuffer.
+ *
+ * The layout is the one of Dfa, flattened: a header, then an int for
+ * each state, which is the index of its first range with the final flag
+ * in the highest bit, then 8 bytes for each range, which are its first
+ * and last character and its target state, and at last the alphabet as
+ * pairs of characters. step() and validate() read the buffer directly,
+ * so an automaton of millions of states costs the heap a single object,
+ * and the garbage collector never has to walk its states.
+ *
+ * The memory is released by close(), right away, instead of whenever
+ * the garbage collector gets to the buffer. An automaton can be written
+ * to a file with write(), and mapped back into memory with map(), which
+ * does not read the file into the heap either.
+ *
+ * Reading an automaton is safe from several threads, and so is closing
+ * it while other threads read. Every read counts itself in before it
+ * touches the buffer and out when it is done. close() only marks the
+ * automaton as closed: reads that begin afterwards throw
+ * IllegalStateException, and the memory is released by the last read
+ * that was already running, or by close() itself if there is none. So
+ * the memory is never released under a reader, which would crash the
+ * JVM rather than throw. Counting costs two atomic operations per
+ * call, which validate() pays once per text but step() pays once per
+ * character.
+ */
+public final class OffHeapDfa implements AutoCloseable {
+
+    private static final int MAGIC = 0x4F484446;
+    private static final int HEADER = 20;
+    private static final int FINAL = 0x80000000;
+    private static final int CLOSED = 0x80000000;
+
+    // Running reads in the low bits, CLOSED once close() is called
+    private final AtomicInteger readers = new AtomicInteger();
+    private volatile ByteBuffer buffer;
+    private final int start;
+    private final int stateCount;
+    private final int rangeCount;
+    private final int ranges;    // byte offset of the ranges
+    private final int alphabet;  // byte offset of the alphabet
+
+    private OffHeapDfa(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC) throw new AutomatonError("Not an OffHeapDfa.");
+        this.buffer = buffer;
+        this.stateCount = buffer.getInt(4);
+        this.rangeCount = buffer.getInt(8);
+        this.start = buffer.getInt(12);
+        this.ranges = HEADER + 4 * (this.stateCount + 1);
+        this.alphabet = this.ranges + 8 * this.rangeCount;
+        if (buffer.capacity() < this.alphabet + 4 * buffer.getInt(16)) {
+            throw new AutomatonError("Truncated OffHeapDfa.");
+        }
+    }
+
+    /**
+     * Copy a Dfa off the heap.
+     *
+     * @param dfa Automaton to copy
+     * @return Automaton of the same language
+     */
+    public static OffHeapDfa of(Dfa dfa) {
+        Builder builder = new Builder();
+        for (int s = 0; s < dfa.getStateCount(); s++) {
+            builder.addState(dfa.isFinal(s));
+            for (int i = 0; i < dfa.getTransitionCount(s); i++) {
+                builder.addTransition(dfa.getLow(s, i), dfa.getHigh(s, i), dfa.getTarget(s, i));
+            }
+        }
+        builder.setStart(dfa.getStart());
+        builder.setAlphabet(dfa.getAlphabet());
+        return builder.build();
+    }
+
+    /**
+     * Build every state of a LazyDfa that is reachable from its
+     * beginning state, writing each state off the heap as soon as it is
+     * found, without a Dfa in between.
+     *
+     * @param lazy Automaton to materialize
+     * @return Automaton of the same language
+     */
+    public static OffHeapDfa of(LazyDfa lazy) {
+        Builder builder = new Builder();
+        Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+        List<Integer> queue = new ArrayList<Integer>();
+        int i, k;
+
+        ids.put(lazy.getStart(), 0);
+        queue.add(lazy.getStart());
+
+        for (k = 0; k < queue.size(); k++) {
+            int s = queue.get(k);
+            char[] segments = lazy.getSegments(s);
+            builder.addState(lazy.isFinal(s));
+            int previous = -1;
+            char previousHigh = 0;
+
+            for (i = 0; i < segments.length; i++) {
+                char low = segments[i];
+                char high = i + 1 < segments.length ? (char) (segments[i + 1] - 1) : Character.MAX_VALUE;
+                int next = lazy.step(s, low);
+                if (next == LazyDfa.DEAD) continue;
+
+                Integer id = ids.get(next);
+                if (id == null) {
+                    id = queue.size();
+                    ids.put(next, id);
+                    queue.add(next);
+                }
+
+                // Adjacent segments to the same state become one range
+                if (previous == id && previousHigh + 1 == low) {
+                    builder.extendTransition(high);
+                } else {
+                    builder.addTransition(low, high, id);
+                }
+                previous = id;
+                previousHigh = high;
+            }
+        }
+
+        builder.setAlphabet(lazy.getNfa().getAlphabet());
+        return builder.build();
+    }
+
+    /**
+     * Determinize a FiniteAutomaton straight into off heap memory.
+     *
+     * @param automaton Automaton to determinize
+     * @return Deterministic automaton of the same language
+     */
+    public static OffHeapDfa of(FiniteAutomaton automaton) {
+        return OffHeapDfa.of(new LazyDfa(Nfa.of(automaton)));
+    }
+
+    /**
+     * Map an automaton that was saved with write() into memory. The
+     * pages of the file are loaded by the operating system as they are
+     * read, not up front.
+     *
+     * @param channel Channel of the file
+     * @return The mapped automaton
+     * @throws IOException If mapping fails
+     * @throws AutomatonError If the file does not hold an automaton
+     */
+    public static OffHeapDfa map(FileChannel channel) throws IOException {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        return new OffHeapDfa(buffer.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * Write the automaton, so that it can be mapped back with map().
+     *
+     * @param channel Channel to write to
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If the automaton is closed
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        ByteBuffer view = this.acquire().duplicate();
+        try {
+            view.clear();
+            while (view.hasRemaining()) channel.write(view);
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Get the beginning state.
+     *
+     * @return Number of the beginning state
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Get the number of states. States are numbered from 0.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.stateCount;
+    }
+
+    /**
+     * Get the number of ranges of all states together.
+     *
+     * @return Count of transitions
+     */
+    public int getTransitionCount() {
+        return this.rangeCount;
+    }
+
+    /**
+     * Get the size of the off heap memory.
+     *
+     * @return Size in bytes
+     * @throws IllegalStateException If the automaton is closed
+     */
+    public long getMemorySize() {
+        try {
+            return this.acquire().capacity();
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Get the alphabet of the automaton.
+     *
+     * @return Sorted, disjoint range pairs of the alphabet
+     * @throws IllegalStateException If the automaton is closed
+     */
+    public char[] getAlphabet() {
+        try {
+            return this.getAlphabet(this.acquire());
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Check if the given state is final.
+     *
+     * @param s Number of the state
+     * @return true if final, false otherwise
+     * @throws IllegalStateException If the automaton is closed
+     */
+    public boolean isFinal(int s) {
+        try {
+            return (this.acquire().getInt(HEADER + 4 * s) & FINAL) != 0;
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Get the state that is reached from "s" by reading "c".
+     *
+     * @param s Number of the state
+     * @param c Character to read
+     * @return Number of the next state, Dfa.DEAD if no range holds c
+     * @throws IllegalStateException If the automaton is closed
+     */
+    public int step(int s, char c) {
+        try {
+            return this.step(this.acquire(), s, c);
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Check if the given String is accepted.
+     *
+     * @param str The String to check
+     * @return true if the String ends in a final state
+     * @throws IllegalStateException If the automaton is closed
+     */
+    public boolean validate(CharSequence str) {
+        ByteBuffer buffer = this.acquire();
+        try {
+            int s = this.start;
+            for (int i = 0; i < str.length(); i++) {
+                s = this.step(buffer, s, str.charAt(i));
+                if (s == Dfa.DEAD) return false;
+            }
+            return (buffer.getInt(HEADER + 4 * s) & FINAL) != 0;
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Copy the automaton back to the heap, as a graph of FiniteState
+     * objects.
+     *
+     * @return Automaton of the same language
+     * @throws IllegalStateException If the automaton is closed
+     */
+    public FiniteAutomaton toFiniteAutomaton() {
+        FiniteState[] states = new FiniteState[this.stateCount];
+        char[] pairs;
+        int s, r;
+
+        ByteBuffer buffer = this.acquire();
+        try {
+            for (s = 0; s < this.stateCount; s++) {
+                states[s] = new FiniteState((buffer.getInt(HEADER + 4 * s) & FINAL) != 0);
+            }
+            for (s = 0; s < this.stateCount; s++) {
+                int end = buffer.getInt(HEADER + 4 * (s + 1)) & ~FINAL;
+                for (r = buffer.getInt(HEADER + 4 * s) & ~FINAL; r < end; r++) {
+                    int bounds = buffer.getInt(this.ranges + 8 * r);
+                    states[s].addRangeTransition((char) bounds, (char) (bounds >>> 16),
+                            states[buffer.getInt(this.ranges + 8 * r + 4)]);
+                }
+            }
+            pairs = this.getAlphabet(buffer);
+        } finally {
+            this.release();
+        }
+
+        Alphabet alphabet = new Alphabet();
+        for (int i = 0; i < pairs.length; i += 2) alphabet.addRange(pairs[i], pairs[i + 1]);
+
+        FiniteAutomaton automaton = new FiniteAutomaton();
+        automaton.setAlphabet(alphabet);
+        automaton.setBegin(states[this.start]);
+        return automaton;
+    }
+
+    /**
+     * Check if the memory is released.
+     *
+     * @return true after close()
+     */
+    public boolean isClosed() {
+        return (this.readers.get() & CLOSED) != 0;
+    }
+
+    /**
+     * Release the off heap memory. The automaton cannot be used
+     * afterwards. Closing twice does nothing.
+     *
+     * Reads that run in other threads meanwhile are not cut short: the
+     * memory is released when the last of them returns.
+     */
+    @Override
+    public void close() {
+        int r;
+        do {
+            r = this.readers.get();
+            if ((r & CLOSED) != 0) return;
+        } while (!this.readers.compareAndSet(r, r | CLOSED));
+        if (r == 0) this.dispose();
+    }
+
+    /**
+     * Count a read in, and get the buffer, which stays allocated until
+     * the read is counted out with release().
+     */
+    private ByteBuffer acquire() {
+        int r;
+        do {
+            r = this.readers.get();
+            if ((r & CLOSED) != 0) throw new IllegalStateException("The OffHeapDfa is closed.");
+        } while (!this.readers.compareAndSet(r, r + 1));
+        return this.buffer;
+    }
+
+    /**
+     * Count a read out. The last read after close() releases the memory.
+     */
+    private void release() {
+        if (this.readers.decrementAndGet() == CLOSED) this.dispose();
+    }
+
+    /**
+     * Release the memory, once it is closed and no read is running, which
+     * happens only once.
+     */
+    private void dispose() {
+        ByteBuffer buffer = this.buffer;
+        this.buffer = null;
+        OffHeapDfa.free(buffer);
+    }
+
+    private char[] getAlphabet(ByteBuffer buffer) {
+        char[] result = new char[2 * buffer.getInt(16)];
+        for (int i = 0; i < result.length; i++) result[i] = buffer.getChar(this.alphabet + 2 * i);
+        return result;
+    }
+
+    private int step(ByteBuffer buffer, int s, char c) {
+        int low = buffer.getInt(HEADER + 4 * s) & ~FINAL;
+        int high = (buffer.getInt(HEADER + 4 * (s + 1)) & ~FINAL) - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int bounds = buffer.getInt(this.ranges + 8 * mid);
+            if (c < (char) bounds) high = mid - 1;
+            else if (c > (bounds >>> 16)) low = mid + 1;
+            else return buffer.getInt(this.ranges + 8 * mid + 4);
+        }
+
+        return Dfa.DEAD;
+    }
+
+    /**
+     * Release a direct or mapped buffer now. Java has no public way to do
+     * this, so the cleaner of the buffer is looked up reflectively: with
+     * Unsafe.invokeCleaner from Java 9 on, and through the cleaner()
+     * method of the buffer before. If neither works, the memory is left
+     * to the garbage collector.
+     */
+    private static void free(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            invokeCleaner.invoke(field.get(null), buffer);
+            return;
+        } catch (Exception e) {
+            // Before Java 9
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method clean = cleaner.getClass().getMethod("clean");
+                clean.setAccessible(true);
+                clean.invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // Left to the garbage collector
+        }
+    }
+
+    /**
+     * Writes the states of an OffHeapDfa one after the other, straight
+     * into off heap memory. The ranges of a state are added right after
+     * the state, in increasing order; they may lead to states that are
+     * not added yet.
+     */
+    public static final class Builder {
+        private ByteBuffer states = OffHeapDfa.allocate(1 << 12);
+        private ByteBuffer ranges = OffHeapDfa.allocate(1 << 12);
+        private int stateCount;
+        private int rangeCount;
+        private int start;
+        private char[] alphabet = new char[0];
+        private int lastHigh = -1;
+
+        /**
+         * Add a new state, which the next ranges belong to.
+         *
+         * @param isFinal true if the state is final
+         * @return Number of the new state
+         */
+        public int addState(boolean isFinal) {
+            this.states = OffHeapDfa.reserve(this.states, 4 * (this.stateCount + 1));
+            this.states.putInt(4 * this.stateCount, this.rangeCount | (isFinal ? FINAL : 0));
+            this.lastHigh = -1;
+            return this.stateCount++;
+        }
+
+        /**
+         * Add a range to the last added state.
+         *
+         * @param low First character of the range
+         * @param high Last character of the range
+         * @param target State that the range leads to
+         * @throws AutomatonError If there is no state yet, or the range is
+         *      empty or not above the last range of the state
+         */
+        public void addTransition(char low, char high, int target) {
+            if (this.stateCount == 0) throw new AutomatonError("Add a state before its transitions.");
+            if (low > high || low <= this.lastHigh) {
+                throw new AutomatonError(String.format(
+                        "Ranges of state %d must be disjoint and in increasing order.", this.stateCount - 1));
+            }
+            this.ranges = OffHeapDfa.reserve(this.ranges, 8 * (this.rangeCount + 1));
+            this.ranges.putInt(8 * this.rangeCount, low | high << 16);
+            this.ranges.putInt(8 * this.rangeCount + 4, target);
+            this.rangeCount++;
+            this.lastHigh = high;
+        }
+
+        /**
+         * Set the beginning state. Defaults to the state 0.
+         *
+         * @param s Number of the state
+         */
+        public void setStart(int s) {
+            this.start = s;
+        }
+
+        /**
+         * Set the alphabet of the automaton.
+         *
+         * @param a Alphabet of the automaton
+         */
+        public void setAlphabet(Alphabet a) {
+            this.setAlphabet(a.toRanges());
+        }
+
+        /**
+         * Build the automaton. The builder releases its own memory and
+         * cannot be used afterwards.
+         *
+         * @return The automaton
+         * @throws AutomatonError If a range leads to a state that was not
+         *      added, or there are no states
+         */
+        public OffHeapDfa build() {
+            if (this.stateCount == 0) throw new AutomatonError("The automaton has no states.");
+            int i;
+            for (i = 0; i < this.rangeCount; i++) {
+                int target = this.ranges.getInt(8 * i + 4);
+                if (target < 0 || target >= this.stateCount) {
+                    throw new AutomatonError(String.format("Transition to state %d, which was not added.", target));
+                }
+            }
+
+            int rangeOffset = HEADER + 4 * (this.stateCount + 1);
+            int alphabetOffset = rangeOffset + 8 * this.rangeCount;
+            ByteBuffer buffer = OffHeapDfa.allocate(alphabetOffset + 2 * this.alphabet.length);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, this.stateCount);
+            buffer.putInt(8, this.rangeCount);
+            buffer.putInt(12, this.start);
+            buffer.putInt(16, this.alphabet.length / 2);
+
+            ByteBuffer view = this.states.duplicate();
+            view.clear().limit(4 * this.stateCount);
+            buffer.position(HEADER);
+            buffer.put(view);
+            buffer.putInt(this.rangeCount);
+            view = this.ranges.duplicate();
+            view.clear().limit(8 * this.rangeCount);
+            buffer.put(view);
+            for (char c : this.alphabet) buffer.putChar(c);
+            buffer.clear();
+
+            OffHeapDfa.free(this.states);
+            OffHeapDfa.free(this.ranges);
+            this.states = null;
+            this.ranges = null;
+            return new OffHeapDfa(buffer);
+        }
+
+        void setAlphabet(char[] ranges) {
+            this.alphabet = ranges.clone();
+        }
+
+        /**
+         * Move the end of the last range further.
+         */
+        void extendTransition(char high) {
+            int bounds = this.ranges.getInt(8 * (this.rangeCount - 1));
+            this.ranges.putInt(8 * (this.rangeCount - 1), (bounds & 0xFFFF) | high << 16);
+            this.lastHigh = high;
+        }
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Make sure a buffer holds "size" bytes, moving it to a larger one
+     * if it does not.
+     */
+    private static ByteBuffer reserve(ByteBuffer buffer, int size) {
+        if (size <= buffer.capacity()) return buffer;
+        ByteBuffer grown = OffHeapDfa.allocate((int) Math.min(Integer.MAX_VALUE - 8, Math.max(size, 2L * buffer.capacity())));
+        ByteBuffer view = buffer.duplicate();
+        view.clear();
+        grown.put(view);
+        grown.clear();
+        OffHeapDfa.free(buffer);
+        return grown;
+    }
+}
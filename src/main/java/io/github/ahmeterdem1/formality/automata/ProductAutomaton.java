@@ -0,0 +1,265 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The intersection, union, difference or complement of finite
+ * automata, without building the product graph up front.
+ *
+ * The operands are put side by side in a single automaton, each with
+ * its own tag on its final states, and determinized lazily: a state
+ * of the product is the set of operand states reached so far, and it
+ * is final when the operation, applied to the operands that accept,
+ * gives true. So validation reads the String once, whatever the
+ * number of operands, and only the pairs of states that the input
+ * actually reaches are ever built. Products can be nested into each
+ * other, up to 64 operand automata in total.
+ *
+ * The whole product graph is built only on request, with
+ * materialize() or minimize().
+ *
+ * validate() steps a single LazyDfa, which remembers every product
+ * state that any input has reached, for as long as the product lives,
+ * and builds new ones as it goes. So a product is not safe to share
+ * between threads, and its memory grows with the variety of the
+ * Strings it has checked. toDfa() gives an immutable Dfa of the whole
+ * product instead, which can be shared.
+ */
+public class ProductAutomaton extends Automaton {
+
+    public enum Operation {
+        INTERSECTION,
+        UNION,
+        DIFFERENCE,
+        COMPLEMENT
+    }
+
+    private final Operation operation;
+    private final List<Nfa> leaves;
+    private final Term term;
+    private final LazyDfa dfa;
+
+    /**
+     * Combine two automata with the given operation.
+     *
+     * @param operation INTERSECTION, UNION or DIFFERENCE
+     * @param left First operand, a FiniteAutomaton or a ProductAutomaton
+     * @param right Second operand, a FiniteAutomaton or a ProductAutomaton
+     * @throws IllegalArgumentException If the operation is COMPLEMENT, or if
+     *      there are more than 64 operand automata
+     * @throws UnsupportedOperationException If an operand is not finite
+     */
+    public ProductAutomaton(Operation operation, Automaton left, Automaton right) {
+        super();
+        if (operation == Operation.COMPLEMENT) {
+            throw new IllegalArgumentException("Complement takes a single operand.");
+        }
+        this.operation = operation;
+        this.leaves = new ArrayList<Nfa>();
+        Term first = this.add(left);
+        Term second = this.add(right);
+        this.term = new Term(operation, first, second, -1);
+        this.dfa = this.build();
+    }
+
+    /**
+     * Build the complement of an automaton, relative to all Strings over
+     * the Alphabet of the automaton.
+     *
+     * @param operand The automaton, a FiniteAutomaton or a ProductAutomaton
+     * @throws IllegalArgumentException If there are more than 64 operand automata
+     * @throws UnsupportedOperationException If the operand is not finite
+     */
+    public ProductAutomaton(Automaton operand) {
+        super();
+        this.operation = Operation.COMPLEMENT;
+        this.leaves = new ArrayList<Nfa>();
+        Term all = this.add(Nfa.universal(operand.getAlphabet().toRanges()));
+        Term negated = this.add(operand);
+        this.term = new Term(Operation.DIFFERENCE, all, negated, -1);
+        this.dfa = this.build();
+    }
+
+    /**
+     * Get the operation at the top of this product.
+     *
+     * @return The operation
+     */
+    public Operation getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * Checks if the given string belongs to the language of the product.
+     * The String is read once, stepping every operand at the same time,
+     * and the check stops early once no operand can go on. The product
+     * states that are built on the way are kept for later calls.
+     *
+     * @param str The piece of string to be checked
+     * @return Returns true if the string belongs to the language, false
+     *      otherwise
+     */
+    @Override
+    public boolean validate(String str) {
+        return this.dfa.validate(str);
+    }
+
+    /**
+     * Intersect this product with another automaton.
+     *
+     * @param other A FiniteAutomaton or a ProductAutomaton
+     * @return Product accepting the Strings that both accept
+     */
+    public ProductAutomaton intersection(Automaton other) {
+        return new ProductAutomaton(Operation.INTERSECTION, this, other);
+    }
+
+    /**
+     * Unite this product with another automaton.
+     *
+     * @param other A FiniteAutomaton or a ProductAutomaton
+     * @return Product accepting the Strings that any of them accepts
+     */
+    public ProductAutomaton union(Automaton other) {
+        return new ProductAutomaton(Operation.UNION, this, other);
+    }
+
+    /**
+     * Subtract another automaton from this product.
+     *
+     * @param other A FiniteAutomaton or a ProductAutomaton
+     * @return Product accepting the Strings that this accepts but the other does not
+     */
+    public ProductAutomaton difference(Automaton other) {
+        return new ProductAutomaton(Operation.DIFFERENCE, this, other);
+    }
+
+    /**
+     * Complement this product.
+     *
+     * @return Product accepting the Strings over the Alphabet that this does not accept
+     */
+    public ProductAutomaton complement() {
+        return new ProductAutomaton(this);
+    }
+
+    /**
+     * Build the reachable part of the product graph as a deterministic
+     * automaton.
+     *
+     * @return Deterministic automaton of the product
+     */
+    public Dfa toDfa() {
+        return Dfa.of(this.dfa);
+    }
+
+    /**
+     * Build the whole product as a deterministic FiniteAutomaton.
+     *
+     * @return A new FiniteAutomaton of the same language
+     */
+    public FiniteAutomaton materialize() {
+        return this.toDfa().toFiniteAutomaton();
+    }
+
+    /**
+     * Build the whole product as a minimal deterministic FiniteAutomaton.
+     *
+     * @return A new minimal FiniteAutomaton of the same language
+     */
+    public FiniteAutomaton minimize() {
+        return this.toDfa().minimize().toFiniteAutomaton();
+    }
+
+    /**
+     * Get the lazily determinized product, to step through by hand.
+     *
+     * @return The LazyDfa that validates for this product
+     */
+    public LazyDfa getLazyDfa() {
+        return this.dfa;
+    }
+
+    private Term add(Automaton operand) {
+        if (operand instanceof ProductAutomaton) {
+            ProductAutomaton product = (ProductAutomaton) operand;
+            int offset = this.leaves.size();
+            this.check(product.leaves.size());
+            this.leaves.addAll(product.leaves);
+            return product.term.shift(offset);
+        }
+        if (operand instanceof FiniteAutomaton) {
+            return this.add(Nfa.of((FiniteAutomaton) operand));
+        }
+        throw new UnsupportedOperationException("Products are only defined for finite automata.");
+    }
+
+    private Term add(Nfa leaf) {
+        this.check(1);
+        this.leaves.add(leaf);
+        return new Term(null, null, null, this.leaves.size() - 1);
+    }
+
+    private void check(int count) {
+        if (this.leaves.size() + count > Long.SIZE) {
+            throw new IllegalArgumentException("A product can hold at most 64 automata.");
+        }
+    }
+
+    private LazyDfa build() {
+        Nfa nfa = Nfa.union(this.leaves);
+        char[] ranges = nfa.getAlphabet();
+        Alphabet alphabet = new Alphabet();
+        for (int i = 0; i < ranges.length; i += 2) {
+            alphabet.addRange(ranges[i], ranges[i + 1]);
+        }
+        this.alphabet = alphabet;
+
+        final Term term = this.term;
+        return new LazyDfa(nfa, new LazyDfa.Acceptance() {
+            @Override
+            public boolean accepts(long tags) {
+                return term.evaluate(tags);
+            }
+        });
+    }
+
+    /**
+     * A node of the operation tree. Leaves refer to an operand automaton
+     * by its tag.
+     */
+    private static final class Term {
+        final Operation operation;
+        final Term left;
+        final Term right;
+        final int leaf;
+
+        Term(Operation operation, Term left, Term right, int leaf) {
+            this.operation = operation;
+            this.left = left;
+            this.right = right;
+            this.leaf = leaf;
+        }
+
+        Term shift(int offset) {
+            if (this.operation == null) return new Term(null, null, null, this.leaf + offset);
+            return new Term(this.operation, this.left.shift(offset), this.right.shift(offset), -1);
+        }
+
+        boolean evaluate(long tags) {
+            if (this.operation == null) return (tags & (1L << this.leaf)) != 0;
+            switch (this.operation) {
+                case INTERSECTION:
+                    return this.left.evaluate(tags) && this.right.evaluate(tags);
+                case UNION:
+                    return this.left.evaluate(tags) || this.right.evaluate(tags);
+                default:
+                    return this.left.evaluate(tags) && !this.right.evaluate(tags);
+            }
+        }
+    }
+
+}
@@ -1,7 +1,12 @@
 package io.github.ahmeterdem1.formality.automata;
 
+import io.github.ahmeterdem1.formality.exceptions.AutomatonError;
 import io.github.ahmeterdem1.formality.state.PushdownState;
+import io.github.ahmeterdem1.formality.state.State;
 import io.github.ahmeterdem1.formality.Alphabet;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Stack;
 
 /**
@@ -83,6 +88,24 @@ public class PushdownAutomaton extends Automaton {
      */
     @Override
     public boolean validate(String str) {
+        return this.validate(str, Budget.UNLIMITED);
+    }
+
+    /**
+     * Checks if the given string belongs to the represented language,
+     * within a Budget. Every transition that is taken costs a step.
+     *
+     * @param str The piece of string to be checked
+     * @param budget Limits of the work of the call
+     * @return Returns true if the string belongs to the language, false
+     *      otherwise
+     * @throws io.github.ahmeterdem1.formality.exceptions.BudgetExceededError
+     *      If the call runs out of its budget
+     */
+    public boolean validate(String str, Budget budget) {
+        Budget.Meter meter = budget.start();
+
+        this.stack.clear();
 
         if (this.alphabet.validate(str)) {
             String substring;
@@ -109,6 +132,7 @@ public class PushdownAutomaton extends Automaton {
             substring = str.substring(match.length(), str.length());
 
             while (!substring.isEmpty() && (next != null)) {
+                meter.spend(1);
                 match = next.getMatch(substring);
                 stackTransition = next.getReadMatch(match);
 
@@ -140,11 +164,171 @@ public class PushdownAutomaton extends Automaton {
                 return true;
             }
 
-            this.stack.empty();
+            this.stack.clear();
             return false;
         }
 
         // Stack is not manipulated here.
         return false;
     }
+
+    /**
+     * Checks if the given string belongs to the represented language,
+     * following every path of the automaton instead of the single
+     * greedy one that validate() takes. Any rule that matches may be
+     * taken, and so may any lambda transition, so the result is
+     * accurate for non-deterministic automata. The stacks of all paths
+     * are shared in a graph, so this takes polynomial time; see
+     * NondeterministicPushdown, which can also be kept and reused.
+     *
+     * @param str The piece of string to be checked
+     * @return Returns true if the string belongs to the language, false
+     *      otherwise
+     */
+    public boolean validateAll(String str) {
+        return NondeterministicPushdown.of(this).validate(str);
+    }
+
+    /**
+     * Checks if the given string belongs to the represented language,
+     * following every path of the automaton, within a Budget. See
+     * validateAll(String) and NondeterministicPushdown.validate.
+     *
+     * @param str The piece of string to be checked
+     * @param budget Limits of the work of the call
+     * @return Returns true if the string belongs to the language, false
+     *      otherwise
+     * @throws io.github.ahmeterdem1.formality.exceptions.BudgetExceededError
+     *      If the call runs out of its budget
+     */
+    public boolean validateAll(String str, Budget budget) {
+        return NondeterministicPushdown.of(this).validate(str, budget);
+    }
+
+    /**
+     * Compile the graph of this automaton into a PushdownTable, which
+     * validates without walking State objects, building Strings or
+     * allocating per character. Rules of more than one character become
+     * chains of states, and the stack operation is done on the last
+     * character of the rule. The graph is read as it is at the time of
+     * the call; later changes to it are not reflected in the table.
+     *
+     * The table accepts the same Strings as validate(), which always
+     * takes a first step from the beginning state: the empty String is
+     * only accepted through the "" rule of the beginning state, not by
+     * the beginning state being final. So if the beginning state is
+     * final or has a "" rule, the table starts in a copy of it that is
+     * not final. Lambda transitions added with PushdownState.addLambda,
+     * which validate() does not follow, are taken by the table like the
+     * "" rule is.
+     *
+     * @return Compiled form of the automaton
+     * @throws AutomatonError If the graph holds a State that is not a
+     *      PushdownState, or if it is not deterministic: two rules of a
+     *      state begin with the same character, two lambda transitions of
+     *      a state apply to the same stack top, or a state has both a
+     *      lambda transition and a rule of more than one character
+     */
+    public PushdownTable compile() {
+        PushdownTable.Builder builder = new PushdownTable.Builder();
+        Map<State, Integer> ids = new IdentityHashMap<State, Integer>();
+        Stack<State> stateStack = new Stack<State>();
+
+        builder.setAlphabet(this.alphabet);
+        PushdownAutomaton.number(this.begin, ids, stateStack, builder);
+
+        if (this.begin.isFinal() || this.begin.getTransitions().containsKey("")) {
+            PushdownState first = PushdownAutomaton.cast(this.begin);
+            int start = builder.addState(false);
+            PushdownAutomaton.addRules(first, start, ids, stateStack, builder);
+            if (first.getTransitions().containsKey("")) {
+                String pop = first.getReadMatch("");
+                builder.addEnd(start, PushdownAutomaton.number(first.getState(""), ids, stateStack, builder),
+                        pop, pop.isEmpty() ? first.getWriteMatch("") : "");
+            }
+            builder.setStart(start);
+        }
+
+        while (!stateStack.isEmpty()) {
+            State s = stateStack.pop();
+            PushdownState state = PushdownAutomaton.cast(s);
+            int id = ids.get(s);
+            PushdownAutomaton.checkDeterministic(state, id);
+            PushdownAutomaton.addRules(state, id, ids, stateStack, builder);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Add the rules and the lambda transitions of a state to the table,
+     * as transitions of the state numbered "id".
+     */
+    private static void addRules(PushdownState state, int id, Map<State, Integer> ids, Stack<State> stateStack,
+                                 PushdownTable.Builder builder) {
+        String rule, pop, push;
+        int i, from, to;
+
+        for (Map.Entry<String, State> entry : state.getTransitions().entrySet()) {
+            rule = entry.getKey();
+            pop = state.getReadMatch(rule);
+            push = pop.isEmpty() ? state.getWriteMatch(rule) : "";
+
+            to = PushdownAutomaton.number(entry.getValue(), ids, stateStack, builder);
+
+            if (rule.isEmpty()) {
+                builder.addLambda(id, to, pop, push);
+                continue;
+            }
+
+            from = id;
+            for (i = 0; i < rule.length() - 1; i++) {
+                int next = builder.addState(false);
+                builder.addTransition(from, rule.charAt(i), next, "", "");
+                from = next;
+            }
+            builder.addTransition(from, rule.charAt(i), to, pop, push);
+        }
+
+        for (i = 0; i < state.getLambdaCount(); i++) {
+            to = PushdownAutomaton.number(state.getLambdaTarget(i), ids, stateStack, builder);
+            builder.addLambda(id, to, state.getLambdaRead(i), state.getLambdaWrite(i));
+        }
+    }
+
+    private static PushdownState cast(State s) {
+        if (!(s instanceof PushdownState)) {
+            throw new AutomatonError("Only graphs of PushdownState objects can be compiled.");
+        }
+        return (PushdownState) s;
+    }
+
+    private static int number(State s, Map<State, Integer> ids, Stack<State> stateStack,
+                              PushdownTable.Builder builder) {
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = builder.addState(s.isFinal());
+            ids.put(s, id);
+            stateStack.push(s);
+        }
+        return id;
+    }
+
+    private static void checkDeterministic(PushdownState state, int id) {
+        boolean lambda = state.getTransitions().containsKey("") || state.getLambdaCount() > 0;
+        StringBuilder firsts = new StringBuilder();
+
+        for (String rule : state.getTransitions().keySet()) {
+            if (rule.isEmpty()) continue;
+            if (lambda && rule.length() > 1) {
+                throw new AutomatonError(String.format(
+                        "State %d has both a lambda transition and the rule \"%s\".", id, rule));
+            }
+            if (firsts.indexOf(rule.substring(0, 1)) >= 0) {
+                throw new AutomatonError(String.format(
+                        "State %d has more than one rule beginning with '%c'.", id, rule.charAt(0)));
+            }
+            firsts.append(rule.charAt(0));
+        }
+    }
 }
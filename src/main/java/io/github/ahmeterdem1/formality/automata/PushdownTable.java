@@ -0,0 +1,640 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+import io.github.ahmeterdem1.formality.exceptions.AutomatonError;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The compiled form of a deterministic pushdown automaton. States,
+ * input characters and stack symbols are all numbered, and a single
+ * table maps (state, input character, stack top) to an action: the
+ * next state, the symbols to pop and the symbols to push. The stack is
+ * an int array, so validation does not allocate anything per step.
+ *
+ * Pop and push Strings are written from the bottom of the stack to its
+ * top, as in PushdownState: pushing "xy" puts y on top, and popping
+ * "xy" expects y on top with x below it. A transition that pops is
+ * looked up by its last symbol; a transition that does not pop applies
+ * whatever the top is, unless a transition for the exact top exists.
+ *
+ * Besides transitions that read a character, there are lookahead
+ * transitions, which choose by the next character without reading it,
+ * and end transitions, which are taken once all of the input is read.
+ * Lambda transitions are taken while there is input left but no rule
+ * of the state reads the next character, whatever the top of the
+ * stack is, just like validate() of PushdownAutomaton does: if a rule
+ * reads the character but none applies to the top, the String is
+ * rejected and no lambda transition is tried. A String is accepted if
+ * all of it is read, and the automaton is then in a final state with an
+ * empty stack. Characters outside of the alphabet are rejected, even if
+ * a rule reads them.
+ *
+ * Transitions that read nothing may follow each other forever, as a
+ * lambda transition that pushes a symbol and leads back to its own
+ * state does. Such a String is never read to its end, so it is
+ * rejected. Once a run of transitions that read nothing is longer than
+ * the states times the stack symbols, each step is checked: the run is
+ * endless if it comes back to a state and stack top without having
+ * popped below that top in between, since the steps after that only
+ * see what they pushed themselves.
+ *
+ * Tables are immutable and can be shared between threads. They can be
+ * saved with write() and loaded back with read(), so that a generated
+ * table does not have to be generated again.
+ */
+public final class PushdownTable {
+
+    // Column of lambda transitions, and of alphabet characters that no rule reads
+    private static final int LAMBDA = 0;
+
+    // Column of end transitions
+    private static final int END = 1;
+
+    // Stack top column for the empty stack
+    private static final int EMPTY = 0;
+
+    // Header of saved tables
+    private static final int MAGIC = 0x50444154;
+    private static final int VERSION = 1;
+
+    private final int start;
+    private final boolean[] finals;
+    private final int columnCount;
+    private final int width;  // stack symbols + empty + any
+    private final int[] table;
+    private final boolean[] ruled;  // If a state has a transition on a column, for some stack top
+
+    private final int[] asciiColumns;
+    private final char[] otherChars;
+    private final int[] otherColumns;
+    private final char[] alphabet;
+
+    private final int[] nexts;
+    private final boolean[] reads;
+    private final int[][] pops;
+    private final int[][] pushes;
+
+    private final char[] symbols;
+    private final int[] initialStack;
+
+    private final int loopBound;  // Steps that read nothing, after which endless runs are looked for
+
+    private PushdownTable(int start, boolean[] finals, int columnCount, int width, int[] table,
+                          int[] asciiColumns, char[] otherChars, int[] otherColumns, char[] alphabet,
+                          int[] nexts, boolean[] reads, int[][] pops, int[][] pushes,
+                          char[] symbols, int[] initialStack) {
+        this.start = start;
+        this.finals = finals;
+        this.columnCount = columnCount;
+        this.width = width;
+        this.table = table;
+        this.ruled = new boolean[finals.length * columnCount];
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] >= 0) this.ruled[i / width] = true;
+        }
+        this.alphabet = alphabet;
+        this.asciiColumns = asciiColumns;
+        this.otherColumns = otherColumns;
+        this.otherChars = otherChars;
+
+        // Rules are only read on characters of the alphabet
+        for (char c = 0; c < 128; c++) {
+            if (Nfa.find(alphabet, c) < 0) asciiColumns[c] = -1;
+            else if (asciiColumns[c] < 0) asciiColumns[c] = LAMBDA;
+        }
+        for (int i = 0; i < otherChars.length; i++) {
+            if (Nfa.find(alphabet, otherChars[i]) < 0) otherColumns[i] = -1;
+        }
+        this.nexts = nexts;
+        this.reads = reads;
+        this.pops = pops;
+        this.pushes = pushes;
+        this.symbols = symbols;
+        this.initialStack = initialStack;
+        this.loopBound = finals.length * width;
+    }
+
+    /**
+     * Get the number of states. States are numbered from 0.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.finals.length;
+    }
+
+    /**
+     * Get the number of entries of the transition table.
+     *
+     * @return Size of the table
+     */
+    public int getTableSize() {
+        return this.table.length;
+    }
+
+    /**
+     * Checks if the given string belongs to the represented language.
+     *
+     * @param str The piece of string to be checked
+     * @return Returns true if the string belongs to the language, false
+     *      otherwise
+     */
+    public boolean validate(CharSequence str) {
+        return this.validate(str, Budget.UNLIMITED);
+    }
+
+    /**
+     * Checks if the given string belongs to the represented language,
+     * within a Budget. Every transition that is taken costs a step.
+     *
+     * @param str The piece of string to be checked
+     * @param budget Limits of the work of the call
+     * @return Returns true if the string belongs to the language, false
+     *      otherwise
+     * @throws io.github.ahmeterdem1.formality.exceptions.BudgetExceededError
+     *      If the call runs out of its budget
+     */
+    public boolean validate(CharSequence str, Budget budget) {
+        Budget.Meter meter = budget.start();
+        Loops loops = null;  // Made once a run of steps that read nothing is long
+        int steps = 0;       // Steps since the last one that read
+        int[] stack = Arrays.copyOf(this.initialStack, Math.max(16, 2 * this.initialStack.length));
+        int size = this.initialStack.length;
+        int state = this.start;
+        int length = str.length();
+        int i = 0, column, top, action, j;
+        int[] pop, push;
+
+        while (true) {
+            top = size == 0 ? EMPTY : stack[size - 1];
+
+            if (i < length) {
+                column = this.column(str.charAt(i));
+                if (column < 0) return false;
+                if (!this.ruled[state * this.columnCount + column]) column = LAMBDA;
+
+                action = this.lookup(state, column, top);
+                if (action < 0) return false;
+            } else {
+                action = this.lookup(state, END, top);
+                if (action < 0) break;
+            }
+
+            meter.spend(1);
+            if (this.reads[action]) {
+                i++;
+                steps = 0;
+                if (loops != null) loops.reset();
+            } else if (++steps > this.loopBound) {
+                if (loops == null) loops = new Loops(this.finals.length * this.width);
+                if (loops.visit(state * this.width + top, size)) return false;  // Never reads again
+            }
+
+            pop = this.pops[action];
+            if (pop.length > size) return false;
+            for (j = 0; j < pop.length; j++) {
+                if (stack[size - pop.length + j] != pop[j]) return false;
+            }
+            if (loops != null) loops.drop(size - pop.length, size);
+            size -= pop.length;
+
+            push = this.pushes[action];
+            if (size + push.length > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(2 * stack.length, size + push.length));
+            }
+            for (j = 0; j < push.length; j++) {
+                stack[size++] = push[j];
+            }
+
+            state = this.nexts[action];
+        }
+
+        return this.finals[state] && size == 0;
+    }
+
+    /**
+     * Save the table, so that it can be loaded with read() instead of
+     * being built again. The stream is not closed.
+     *
+     * @param stream Stream to write to
+     * @throws IOException If writing fails
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        int i;
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(this.start);
+        out.writeInt(this.finals.length);
+        for (boolean f : this.finals) out.writeBoolean(f);
+        out.writeInt(this.columnCount);
+        out.writeInt(this.width);
+        PushdownTable.writeInts(out, this.table);
+        PushdownTable.writeInts(out, this.asciiColumns);
+        PushdownTable.writeChars(out, this.otherChars);
+        PushdownTable.writeInts(out, this.otherColumns);
+        PushdownTable.writeChars(out, this.alphabet);
+        out.writeInt(this.nexts.length);
+        for (i = 0; i < this.nexts.length; i++) {
+            out.writeInt(this.nexts[i]);
+            out.writeBoolean(this.reads[i]);
+            PushdownTable.writeInts(out, this.pops[i]);
+            PushdownTable.writeInts(out, this.pushes[i]);
+        }
+        PushdownTable.writeChars(out, this.symbols);
+        PushdownTable.writeInts(out, this.initialStack);
+        out.flush();
+    }
+
+    /**
+     * Load a table that was saved with write(). The stream is not closed.
+     *
+     * @param stream Stream to read from
+     * @return The loaded table
+     * @throws IOException If reading fails, or the stream does not hold a
+     *      saved table
+     */
+    public static PushdownTable read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        int i;
+
+        if (in.readInt() != MAGIC) throw new IOException("Not a saved PushdownTable.");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unknown PushdownTable version " + version + ".");
+
+        int start = in.readInt();
+        boolean[] finals = new boolean[in.readInt()];
+        for (i = 0; i < finals.length; i++) finals[i] = in.readBoolean();
+        int columnCount = in.readInt();
+        int width = in.readInt();
+        int[] table = PushdownTable.readInts(in);
+        int[] asciiColumns = PushdownTable.readInts(in);
+        char[] otherChars = PushdownTable.readChars(in);
+        int[] otherColumns = PushdownTable.readInts(in);
+        char[] alphabet = PushdownTable.readChars(in);
+
+        int count = in.readInt();
+        int[] nexts = new int[count];
+        boolean[] reads = new boolean[count];
+        int[][] pops = new int[count][];
+        int[][] pushes = new int[count][];
+        for (i = 0; i < count; i++) {
+            nexts[i] = in.readInt();
+            reads[i] = in.readBoolean();
+            pops[i] = PushdownTable.readInts(in);
+            pushes[i] = PushdownTable.readInts(in);
+        }
+        char[] symbols = PushdownTable.readChars(in);
+        int[] initialStack = PushdownTable.readInts(in);
+
+        if (table.length != finals.length * columnCount * width || asciiColumns.length != 128) {
+            throw new IOException("Corrupt PushdownTable.");
+        }
+        return new PushdownTable(start, finals, columnCount, width, table, asciiColumns, otherChars,
+                otherColumns, alphabet, nexts, reads, pops, pushes, symbols, initialStack);
+    }
+
+    /**
+     * Find the action for a stack top, or for any top if there is none.
+     */
+    private int lookup(int state, int column, int top) {
+        int index = (state * this.columnCount + column) * this.width;
+        int action = this.table[index + top];
+        return action >= 0 ? action : this.table[index + this.width - 1];
+    }
+
+    /**
+     * Find the column of an input character. The ASCII columns have the
+     * alphabet applied already.
+     *
+     * @return The column, LAMBDA for alphabet characters that no rule
+     *      reads, -1 for characters outside the alphabet
+     */
+    private int column(char c) {
+        if (c < 128) return this.asciiColumns[c];
+        int column = Arrays.binarySearch(this.otherChars, c);
+        if (column >= 0) return this.otherColumns[column];
+        return Nfa.find(this.alphabet, c) >= 0 ? LAMBDA : -1;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) out.writeInt(value);
+    }
+
+    private static void writeChars(DataOutputStream out, char[] values) throws IOException {
+        out.writeInt(values.length);
+        for (char value : values) out.writeChar(value);
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readInt();
+        return values;
+    }
+
+    private static char[] readChars(DataInputStream in) throws IOException {
+        char[] values = new char[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readChar();
+        return values;
+    }
+
+    /**
+     * Collects the states and the transitions of a PushdownTable.
+     */
+    public static final class Builder {
+        private static final int READ = 0;
+        private static final int LOOKAHEAD = 1;
+        private static final int LAMBDA = 2;
+        private static final int END = 3;
+
+        private int stateCount;
+        private boolean[] finals = new boolean[16];
+        private int start;
+        private char[] alphabet;
+        private String initialStack = "";
+        private final StringBuilder inputs = new StringBuilder();
+        private final StringBuilder symbols = new StringBuilder();
+        private final List<Action> actions = new ArrayList<Action>();
+
+        /**
+         * Add a new state.
+         *
+         * @param isFinal true if the state is final
+         * @return Number of the new state
+         */
+        public int addState(boolean isFinal) {
+            if (this.stateCount == this.finals.length) {
+                this.finals = Arrays.copyOf(this.finals, 2 * this.stateCount);
+            }
+            this.finals[this.stateCount] = isFinal;
+            return this.stateCount++;
+        }
+
+        /**
+         * Set the beginning state. Defaults to the state 0.
+         *
+         * @param s Number of the state
+         */
+        public void setStart(int s) {
+            this.start = s;
+        }
+
+        /**
+         * Set the stack that validation begins with. Defaults to the
+         * empty stack.
+         *
+         * @param symbols Symbols from the bottom of the stack to its top
+         */
+        public void setInitialStack(String symbols) {
+            this.initialStack = symbols;
+            this.addSymbols(symbols);
+        }
+
+        /**
+         * Set the alphabet of the language. Strings with characters
+         * outside of it are rejected. Defaults to the characters that
+         * the transitions read.
+         *
+         * @param a Alphabet of the language
+         */
+        public void setAlphabet(Alphabet a) {
+            this.alphabet = a.toRanges();
+        }
+
+        /**
+         * Add a transition that reads a character.
+         *
+         * @param from State of the transition
+         * @param c Character to read
+         * @param to State to go to
+         * @param pop Symbols to pop, from the bottom to the top; may be empty
+         * @param push Symbols to push, from the bottom to the top; may be empty
+         */
+        public void addTransition(int from, char c, int to, String pop, String push) {
+            this.add(new Action(from, c, READ, to, pop, push));
+        }
+
+        /**
+         * Add a transition that is taken when the next character is "c",
+         * but leaves the character to be read by a later transition.
+         *
+         * @param from State of the transition
+         * @param c Character to look at
+         * @param to State to go to
+         * @param pop Symbols to pop, from the bottom to the top; may be empty
+         * @param push Symbols to push, from the bottom to the top; may be empty
+         */
+        public void addLookahead(int from, char c, int to, String pop, String push) {
+            this.add(new Action(from, c, LOOKAHEAD, to, pop, push));
+        }
+
+        /**
+         * Add a lambda transition, which is taken when no rule of the
+         * state applies to the next character.
+         *
+         * @param from State of the transition
+         * @param to State to go to
+         * @param pop Symbols to pop, from the bottom to the top; may be empty
+         * @param push Symbols to push, from the bottom to the top; may be empty
+         */
+        public void addLambda(int from, int to, String pop, String push) {
+            this.add(new Action(from, '\0', LAMBDA, to, pop, push));
+        }
+
+        /**
+         * Add a transition that is taken after all of the input is read.
+         *
+         * @param from State of the transition
+         * @param to State to go to
+         * @param pop Symbols to pop, from the bottom to the top; may be empty
+         * @param push Symbols to push, from the bottom to the top; may be empty
+         */
+        public void addEnd(int from, int to, String pop, String push) {
+            this.add(new Action(from, '\0', END, to, pop, push));
+        }
+
+        /**
+         * Build the table.
+         *
+         * @return The compiled automaton
+         * @throws AutomatonError If two transitions of a state apply to the
+         *      same character and stack top
+         */
+        public PushdownTable build() {
+            int i;
+
+            if (this.alphabet == null) {
+                Alphabet a = new Alphabet();
+                for (i = 0; i < this.inputs.length(); i++) {
+                    a.addRange(this.inputs.charAt(i), this.inputs.charAt(i));
+                }
+                this.alphabet = a.toRanges();
+            }
+
+            char[] symbols = this.symbols.toString().toCharArray();
+            int width = symbols.length + 2;
+
+            // Columns for the characters that rules read, in sorted order
+            char[] inputs = this.inputs.toString().toCharArray();
+            Arrays.sort(inputs);
+            int columnCount = inputs.length + 2;
+            int[] asciiColumns = new int[128];
+            Arrays.fill(asciiColumns, -1);
+            int others = 0;
+            for (char c : inputs) if (c >= 128) others++;
+            char[] otherChars = new char[others];
+            int[] otherColumns = new int[others];
+            others = 0;
+            for (i = 0; i < inputs.length; i++) {
+                if (inputs[i] < 128) {
+                    asciiColumns[inputs[i]] = i + 2;
+                } else {
+                    otherChars[others] = inputs[i];
+                    otherColumns[others++] = i + 2;
+                }
+            }
+
+            int count = this.actions.size();
+            int[] nexts = new int[count];
+            boolean[] reads = new boolean[count];
+            int[][] pops = new int[count][];
+            int[][] pushes = new int[count][];
+            int[] table = new int[this.stateCount * columnCount * width];
+            Arrays.fill(table, -1);
+
+            for (i = 0; i < count; i++) {
+                Action action = this.actions.get(i);
+                nexts[i] = action.to;
+                reads[i] = action.kind == READ;
+                pops[i] = Builder.encode(symbols, action.pop);
+                pushes[i] = Builder.encode(symbols, action.push);
+
+                int column;
+                if (action.kind == LAMBDA) column = PushdownTable.LAMBDA;
+                else if (action.kind == END) column = PushdownTable.END;
+                else column = Arrays.binarySearch(inputs, action.input) + 2;
+
+                int top = pops[i].length == 0 ? width - 1 : pops[i][pops[i].length - 1];
+                int index = (action.from * columnCount + column) * width + top;
+                if (table[index] >= 0) {
+                    String on = action.kind == LAMBDA ? "lambda"
+                            : action.kind == END ? "the end of input" : "'" + action.input + "'";
+                    throw new AutomatonError(String.format(
+                            "Conflicting transitions on %s from state %d.", on, action.from));
+                }
+                table[index] = i;
+            }
+
+            return new PushdownTable(this.start, Arrays.copyOf(this.finals, this.stateCount), columnCount,
+                    width, table, asciiColumns, otherChars, otherColumns, this.alphabet, nexts, reads,
+                    pops, pushes, symbols, Builder.encode(symbols, this.initialStack));
+        }
+
+        private void add(Action action) {
+            if ((action.kind == READ || action.kind == LOOKAHEAD)
+                    && this.inputs.indexOf(String.valueOf(action.input)) < 0) {
+                this.inputs.append(action.input);
+            }
+            this.actions.add(action);
+            this.addSymbols(action.pop);
+            this.addSymbols(action.push);
+        }
+
+        private void addSymbols(String str) {
+            for (int i = 0; i < str.length(); i++) {
+                if (this.symbols.indexOf(String.valueOf(str.charAt(i))) < 0) {
+                    this.symbols.append(str.charAt(i));
+                }
+            }
+        }
+
+        private static int[] encode(char[] symbols, String str) {
+            int[] result = new int[str.length()];
+            for (int i = 0; i < result.length; i++) {
+                for (int j = 0; j < symbols.length; j++) {
+                    if (symbols[j] == str.charAt(i)) result[i] = j + 1;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Pairs of a state and a stack top that a run of steps that read
+     * nothing has come to, with the size of the stack then. A pair is
+     * forgotten once the stack is popped below its top, which the
+     * generation of each stack size tells; a pair that comes back before
+     * that starts the same steps over and over.
+     */
+    private static final class Loops {
+        private final int[] runs;
+        private final int[] sizes;
+        private final int[] generations;
+        private int[] generation = new int[16];  // Of each stack size, bumped when the stack is popped below it
+        private int run = 1;
+
+        Loops(int pairs) {
+            this.runs = new int[pairs];
+            this.sizes = new int[pairs];
+            this.generations = new int[pairs];
+        }
+
+        /**
+         * @return true if the pair has come back
+         */
+        boolean visit(int pair, int size) {
+            if (this.runs[pair] == this.run && this.generations[pair] == this.generation[this.sizes[pair]]) return true;
+            if (size >= this.generation.length) {
+                this.generation = Arrays.copyOf(this.generation, Math.max(2 * this.generation.length, size + 1));
+            }
+            this.runs[pair] = this.run;
+            this.sizes[pair] = size;
+            this.generations[pair] = this.generation[size];
+            return false;
+        }
+
+        /**
+         * Forget the pairs whose top is popped, as the stack goes from
+         * "from" symbols to "to".
+         */
+        void drop(int to, int from) {
+            for (int size = to + 1; size <= from && size < this.generation.length; size++) this.generation[size]++;
+        }
+
+        /**
+         * Forget every pair, after a step that reads.
+         */
+        void reset() {
+            this.run++;
+        }
+    }
+
+    private static final class Action {
+        final int from;
+        final char input;
+        final int kind;
+        final int to;
+        final String pop;
+        final String push;
+
+        Action(int from, char input, int kind, int to, String pop, String push) {
+            this.from = from;
+            this.input = input;
+            this.kind = kind;
+            this.to = to;
+            this.pop = pop;
+            this.push = push;
+        }
+    }
+
+}
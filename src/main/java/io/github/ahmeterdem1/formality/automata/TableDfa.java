@@ -0,0 +1,139 @@
+package io.github.ahmeterdem1.formality.automata;
+
+/**
+ * A deterministic finite automaton stored as a full transition table,
+ * with a row for each state and a column for each class of characters
+ * of its CharClasses. step() is two array reads, the class of the
+ * character and the cell of the table, with no search through ranges.
+ *
+ * The table holds the whole of Unicode in a few columns: an automaton
+ * of n states over classes such as [a-z], [0-9] and [^a-z0-9] takes
+ * about 3n cells, where a table with a column for every char would take
+ * 65536n. Even the automata of large patterns fit in the caches.
+ *
+ * A TableDfa is immutable and can be shared between threads.
+ */
+public final class TableDfa {
+
+    /**
+     * The missing state that step() returns when no transition matches.
+     */
+    public static final int DEAD = -1;
+
+    private final int start;
+    private final boolean[] finals;
+    private final CharClasses classes;
+    private final int width;     // Number of classes
+    private final int[] table;   // Next state of state s on class k at s * width + k
+
+    private TableDfa(int start, boolean[] finals, CharClasses classes, int[] table) {
+        this.start = start;
+        this.finals = finals;
+        this.classes = classes;
+        this.width = classes.getClassCount();
+        this.table = table;
+    }
+
+    /**
+     * Lay out a Dfa as a table over its character classes. Every class
+     * is looked up once per state, through its smallest character.
+     *
+     * @param dfa Automaton to lay out
+     * @return Table of the same automaton, with the same state numbers
+     */
+    public static TableDfa of(Dfa dfa) {
+        CharClasses classes = CharClasses.of(dfa);
+        int width = classes.getClassCount();
+        char[] representatives = new char[width];
+        int[] table = new int[dfa.getStateCount() * width];
+        boolean[] finals = new boolean[dfa.getStateCount()];
+        int s, k;
+
+        // The classes are numbered in order of their smallest character
+        for (int c = 0, found = 0; found < width; c++) {
+            if (classes.getClass((char) c) == found) representatives[found++] = (char) c;
+        }
+
+        for (s = 0; s < finals.length; s++) {
+            finals[s] = dfa.isFinal(s);
+            for (k = 0; k < width; k++) {
+                table[s * width + k] = dfa.step(s, representatives[k]);
+            }
+        }
+
+        return new TableDfa(dfa.getStart(), finals, classes, table);
+    }
+
+    /**
+     * Get the beginning state.
+     *
+     * @return Number of the beginning state
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Get the number of states. States are numbered from 0.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.finals.length;
+    }
+
+    /**
+     * Check if the given state is final.
+     *
+     * @param s Number of the state
+     * @return true if final, false otherwise
+     */
+    public boolean isFinal(int s) {
+        return this.finals[s];
+    }
+
+    /**
+     * Get the character classes that index the columns of the table.
+     *
+     * @return The classes
+     */
+    public CharClasses getClasses() {
+        return this.classes;
+    }
+
+    /**
+     * Get the state that is reached from "s" by reading "c".
+     *
+     * @param s Number of the state
+     * @param c Character to read
+     * @return Number of the next state, DEAD if there is none
+     */
+    public int step(int s, char c) {
+        return this.table[s * this.width + this.classes.getClass(c)];
+    }
+
+    /**
+     * Check if the given String is accepted.
+     *
+     * @param str The String to check
+     * @return true if the String ends in a final state
+     */
+    public boolean validate(CharSequence str) {
+        int s = this.start;
+        for (int i = 0; i < str.length(); i++) {
+            s = this.table[s * this.width + this.classes.getClass(str.charAt(i))];
+            if (s == DEAD) return false;
+        }
+        return this.finals[s];
+    }
+
+    /**
+     * Get the number of bytes that the table and the class map take,
+     * without the object headers.
+     *
+     * @return Size of the arrays in bytes
+     */
+    public long getMemorySize() {
+        return 4L * this.table.length + this.finals.length + this.classes.getMemorySize();
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.ahmeterdem1.formality.exceptions;
+
+public class AutomatonError extends RuntimeException {
+
+    public AutomatonError() {
+        super();
+    }
+
+    public AutomatonError(String hint) {
+        super(hint);
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.ahmeterdem1.formality.exceptions;
+
+/**
+ * Thrown when a call runs out of the steps or the time of its Budget.
+ */
+public class BudgetExceededError extends RuntimeException {
+
+    private final long steps;
+
+    public BudgetExceededError(long steps) {
+        super();
+        this.steps = steps;
+    }
+
+    public BudgetExceededError(String hint, long steps) {
+        super(hint);
+        this.steps = steps;
+    }
+
+    /**
+     * Get the number of steps that were spent before the call gave up.
+     *
+     * @return Count of steps
+     */
+    public long getSteps() {
+        return this.steps;
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.ahmeterdem1.formality.exceptions;
+
+public class GrammarError extends RuntimeException {
+
+    public GrammarError() {
+        super();
+    }
+
+    public GrammarError(String hint) {
+        super(hint);
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.ahmeterdem1.formality.exceptions;
+
+public class RegexError extends RuntimeException {
+
+    public RegexError() {
+        super();
+    }
+
+    public RegexError(String hint) {
+        super(hint);
+    }
+}
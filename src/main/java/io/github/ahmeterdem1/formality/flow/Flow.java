@@ -0,0 +1,102 @@
+package io.github.ahmeterdem1.formality.flow;
+
+/**
+ * The interfaces of reactive streams, with the same names, methods and
+ * rules as those of java.util.concurrent.Flow, which is not available
+ * on Java 8. A Publisher hands items over to a Subscriber only as far
+ * as the Subscriber has asked for them through its Subscription, so a
+ * slow Subscriber is never flooded: this is the backpressure of the
+ * stream. On Java 9 and later, FlowAdapters converts between these
+ * interfaces and those of java.util.concurrent.Flow.
+ *
+ * The class itself is not initializable.
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * A producer of items, which are received by Subscribers.
+     *
+     * @param <T> Type of the items
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Add a Subscriber. Its onSubscribe() is called with a new
+         * Subscription; if the Publisher refuses it, onError() follows.
+         *
+         * @param subscriber The Subscriber to add
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items. The methods are called one at a time, in
+     * order: onSubscribe(), then onNext() as many times as there are
+     * items asked for, then onComplete() or onError() at most once.
+     *
+     * @param <T> Type of the items
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called before any other method, with the Subscription through
+         * which items are asked for.
+         *
+         * @param subscription The new Subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next item.
+         *
+         * @param item The item
+         */
+        void onNext(T item);
+
+        /**
+         * Called when the Publisher fails; nothing else is called after.
+         *
+         * @param throwable The failure
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called when the Publisher has no items left; nothing else is
+         * called after.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a Publisher and one of its Subscribers.
+     */
+    public interface Subscription {
+
+        /**
+         * Ask for up to "n" more items. Requests add up; Long.MAX_VALUE
+         * asks for all of them. If "n" is not positive, the Subscriber
+         * receives an IllegalArgumentException through onError().
+         *
+         * @param n Number of items
+         */
+        void request(long n);
+
+        /**
+         * Stop the items, possibly after some that are under way.
+         */
+        void cancel();
+    }
+
+    /**
+     * A stage that is a Subscriber of one kind of item and a Publisher
+     * of another.
+     *
+     * @param <T> Type of the items received
+     * @param <R> Type of the items published
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+}
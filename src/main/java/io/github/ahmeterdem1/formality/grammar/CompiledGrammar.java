@@ -0,0 +1,183 @@
+package io.github.ahmeterdem1.formality.grammar;
+
+import io.github.ahmeterdem1.formality.exceptions.GrammarError;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A numbered copy of a Grammar, which the parsers work on. Nonterminals
+ * are numbered from 0, and a terminal character c is the symbol -c - 1.
+ *
+ * A dotted rule is a rule with a position in its right side. The dotted
+ * rules of rule r are numbered from base[r], for positions 0 to the
+ * length of the right side.
+ */
+final class CompiledGrammar {
+
+    // Symbol after the dot of a dotted rule whose dot is at the end
+    static final int END = Integer.MIN_VALUE;
+
+    final Grammar grammar;
+    final String[] names;
+    final int start;
+    final Rule[] rules;
+    final int[] left;
+    final int[][] right;
+    final int[][] rulesOf;
+    final boolean[] nullable;
+    final char[] alphabet;
+
+    final int[] base;
+    final int[] dottedRule;
+    final int[] dottedPosition;
+    final int[] dottedNext;
+
+    CompiledGrammar(Grammar grammar) {
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        List<String> names = new ArrayList<String>();
+        int i, j, r;
+
+        for (String name : grammar.getNonterminals()) {
+            ids.put(name, names.size());
+            names.add(name);
+        }
+        if (!ids.containsKey(grammar.getStart())) {
+            throw new GrammarError(String.format("The start symbol %s has no rules.", grammar.getStart()));
+        }
+
+        this.grammar = grammar;
+        this.names = names.toArray(new String[0]);
+        this.start = ids.get(grammar.getStart());
+        this.alphabet = grammar.getTerminals().toRanges();
+
+        List<Rule> list = grammar.getRules();
+        this.rules = list.toArray(new Rule[0]);
+        this.left = new int[this.rules.length];
+        this.right = new int[this.rules.length][];
+        int[] counts = new int[this.names.length];
+
+        for (r = 0; r < this.rules.length; r++) {
+            Rule rule = this.rules[r];
+            List<Integer> symbols = new ArrayList<Integer>();
+            for (String symbol : rule.getRight()) {
+                Integer id = ids.get(symbol);
+                if (id != null) {
+                    symbols.add(id);
+                    continue;
+                }
+                for (i = 0; i < symbol.length(); i++) {
+                    if (!this.isInAlphabet(symbol.charAt(i))) {
+                        throw new GrammarError(String.format(
+                                "Terminal '%c' of the rule \"%s\" is not in the alphabet.", symbol.charAt(i), rule));
+                    }
+                    symbols.add(-symbol.charAt(i) - 1);
+                }
+            }
+
+            this.left[r] = ids.get(rule.getLeft());
+            this.right[r] = new int[symbols.size()];
+            for (i = 0; i < symbols.size(); i++) this.right[r][i] = symbols.get(i);
+            counts[this.left[r]]++;
+        }
+
+        this.rulesOf = new int[this.names.length][];
+        for (i = 0; i < this.names.length; i++) this.rulesOf[i] = new int[counts[i]];
+        for (r = 0; r < this.rules.length; r++) {
+            int a = this.left[r];
+            this.rulesOf[a][this.rulesOf[a].length - counts[a]--] = r;
+        }
+
+        // Dotted rules
+        this.base = new int[this.rules.length];
+        int total = 0;
+        for (r = 0; r < this.rules.length; r++) {
+            this.base[r] = total;
+            total += this.right[r].length + 1;
+        }
+        this.dottedRule = new int[total];
+        this.dottedPosition = new int[total];
+        this.dottedNext = new int[total];
+        for (r = 0; r < this.rules.length; r++) {
+            for (j = 0; j <= this.right[r].length; j++) {
+                this.dottedRule[this.base[r] + j] = r;
+                this.dottedPosition[this.base[r] + j] = j;
+                this.dottedNext[this.base[r] + j] = j < this.right[r].length ? this.right[r][j] : END;
+            }
+        }
+
+        // Nullable nonterminals, until nothing changes
+        this.nullable = new boolean[this.names.length];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (r = 0; r < this.rules.length; r++) {
+                if (this.nullable[this.left[r]]) continue;
+                boolean all = true;
+                for (int symbol : this.right[r]) {
+                    if (symbol < 0 || !this.nullable[symbol]) {
+                        all = false;
+                        break;
+                    }
+                }
+                if (all) {
+                    this.nullable[this.left[r]] = true;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    static boolean isTerminal(int symbol) {
+        return symbol < 0 && symbol != END;
+    }
+
+    static char terminal(int symbol) {
+        return (char) (-symbol - 1);
+    }
+
+    static int symbol(char c) {
+        return -c - 1;
+    }
+
+    /**
+     * Get a printable name for a symbol.
+     */
+    String name(int symbol) {
+        return symbol >= 0 ? this.names[symbol] : String.valueOf(CompiledGrammar.terminal(symbol));
+    }
+
+    /**
+     * Print a dotted rule, as in "E -> E . + E".
+     */
+    String dotted(int d) {
+        int r = this.dottedRule[d];
+        StringBuilder builder = new StringBuilder(this.names[this.left[r]]).append(" ->");
+        for (int i = 0; i <= this.right[r].length; i++) {
+            if (i == this.dottedPosition[d]) builder.append(" .");
+            if (i < this.right[r].length) builder.append(' ').append(this.name(this.right[r][i]));
+        }
+        return builder.toString();
+    }
+
+    boolean isInAlphabet(char c) {
+        int low = 0;
+        int high = this.alphabet.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (c < this.alphabet[2 * mid]) high = mid - 1;
+            else if (c > this.alphabet[2 * mid + 1]) low = mid + 1;
+            else return true;
+        }
+        return false;
+    }
+
+    boolean isInAlphabet(CharSequence str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (!this.isInAlphabet(str.charAt(i))) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,400 @@
+package io.github.ahmeterdem1.formality.grammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An Earley parser for any context-free grammar, ambiguous and left or
+ * right recursive ones included.
+ *
+ * The parser keeps a set of items for each position of the String. An
+ * item is a dotted rule together with the position where the rule
+ * began, and the set of position i holds every item that can be part
+ * of a derivation of the first i characters. Empty rules are handled
+ * as Aycock and Horspool suggest: predicting a nullable nonterminal
+ * also moves the dot over it right away.
+ *
+ * recognize() uses the optimization of Leo for right recursion: a chain
+ * of items that each wait for the single item under them is completed
+ * in one step, through its topmost item. With it, the sets stay of
+ * bounded size for LR(k) grammars, so recognition takes linear time;
+ * for any grammar it takes at most cubic time.
+ *
+ * parse() also builds a ParseForest, following the algorithm of Scott,
+ * "SPPF-Style Parsing From Earley Recognisers". It cannot skip the
+ * items of right recursion, since the forest needs each of them, so it
+ * takes quadratic time on right recursive grammars, and still at most
+ * cubic time in general.
+ *
+ * A parser holds no state between calls and can be shared between
+ * threads.
+ */
+public final class EarleyParser {
+
+    private final CompiledGrammar grammar;
+
+    /**
+     * Prepare a parser for the given grammar. Later changes to the
+     * grammar are not reflected in the parser.
+     *
+     * @param grammar Grammar to parse with
+     * @throws io.github.ahmeterdem1.formality.exceptions.GrammarError If the
+     *      start symbol has no rules, or a terminal is not in the Alphabet
+     */
+    public EarleyParser(Grammar grammar) {
+        this.grammar = new CompiledGrammar(grammar);
+    }
+
+    /**
+     * Check if the grammar derives the given String.
+     *
+     * @param str The piece of string to be checked
+     * @return Returns true if the string belongs to the language, false
+     *      otherwise
+     */
+    public boolean recognize(CharSequence str) {
+        CompiledGrammar g = this.grammar;
+        int length = str.length();
+        if (!g.isInAlphabet(str)) return false;
+
+        ItemSet[] sets = new ItemSet[length + 1];
+        sets[0] = new ItemSet();
+        for (int r : g.rulesOf[g.start]) sets[0].add(g.base[r], 0);
+
+        for (int i = 0; i <= length; i++) {
+            ItemSet set = sets[i];
+            if (set == null) return false;
+            int scan = i < length ? CompiledGrammar.symbol(str.charAt(i)) : 0;
+
+            for (int k = 0; k < set.size; k++) {
+                int dotted = set.dotted[k];
+                int origin = set.origins[k];
+                int next = g.dottedNext[dotted];
+
+                if (next >= 0) {
+                    // Predict
+                    for (int r : g.rulesOf[next]) set.add(g.base[r], i);
+                    if (g.nullable[next]) set.add(dotted + 1, origin);
+                } else if (next != CompiledGrammar.END) {
+                    // Scan
+                    if (i < length && next == scan) {
+                        if (sets[i + 1] == null) sets[i + 1] = new ItemSet();
+                        sets[i + 1].add(dotted + 1, origin);
+                    }
+                } else if (origin != i) {
+                    // Complete; completions of empty spans were done by predicting
+                    this.complete(sets, g.left[g.dottedRule[dotted]], origin, set);
+                }
+            }
+        }
+
+        ItemSet last = sets[length];
+        for (int k = 0; k < last.size; k++) {
+            int dotted = last.dotted[k];
+            if (last.origins[k] == 0 && g.dottedNext[dotted] == CompiledGrammar.END
+                    && g.left[g.dottedRule[dotted]] == g.start) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Advance every item of set "origin" that waits for nonterminal "a",
+     * or the topmost item of its deterministic chain if there is one.
+     */
+    private void complete(ItemSet[] sets, int a, int origin, ItemSet target) {
+        long topmost = this.leo(sets, origin, a);
+        if (topmost >= 0) {
+            target.add((int) (topmost >>> 32), (int) topmost);
+            return;
+        }
+
+        ItemSet from = sets[origin];
+        for (int k = 0; k < from.size; k++) {
+            if (this.grammar.dottedNext[from.dotted[k]] == a) {
+                target.add(from.dotted[k] + 1, from.origins[k]);
+            }
+        }
+    }
+
+    /**
+     * Find the topmost item of the deterministic chain that completing
+     * nonterminal "a" at set "i" starts. A set is on the chain if it has
+     * a single item waiting for the nonterminal, and the nonterminal is
+     * the last symbol of its rule; the chain goes on at the set where
+     * that item began, with the left side of its rule.
+     *
+     * @return The topmost item as (dotted rule, origin) packed in a long,
+     *      -1 if set "i" is not on a chain
+     */
+    private long leo(ItemSet[] sets, int i, int a) {
+        CompiledGrammar g = this.grammar;
+        int[] pathSets = new int[4];
+        int[] pathSymbols = new int[4];
+        int depth = 0;
+        long result = -1;
+
+        // Walk down the chain until a set that is known, or is not on it
+        while (true) {
+            ItemSet set = sets[i];
+            Long known = set.leo == null ? null : set.leo.get(a);
+            if (known != null) {
+                if (known >= 0) result = known;
+                break;
+            }
+
+            int found = -1;
+            for (int k = 0; k < set.size; k++) {
+                if (g.dottedNext[set.dotted[k]] == a) {
+                    if (found >= 0) {
+                        found = -1;
+                        break;
+                    }
+                    found = k;
+                }
+            }
+
+            if (depth == pathSets.length) {
+                pathSets = Arrays.copyOf(pathSets, 2 * depth);
+                pathSymbols = Arrays.copyOf(pathSymbols, 2 * depth);
+            }
+            pathSets[depth] = i;
+            pathSymbols[depth++] = a;
+
+            if (found < 0 || g.dottedNext[set.dotted[found] + 1] != CompiledGrammar.END) {
+                // Not on a chain; the set only remembers that when it is the first
+                if (depth > 1) depth--;
+                break;
+            }
+
+            result = ((long) (set.dotted[found] + 1) << 32) | set.origins[found];
+            a = g.left[g.dottedRule[set.dotted[found]]];
+            if (set.origins[found] == i) break;  // an empty span ends the chain
+            i = set.origins[found];
+        }
+
+        // Remember the topmost item for every set of the chain
+        while (depth > 0) {
+            depth--;
+            ItemSet set = sets[pathSets[depth]];
+            if (set.leo == null) set.leo = new HashMap<Integer, Long>();
+            set.leo.put(pathSymbols[depth], result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Parse the given String into a forest of all of its parse trees.
+     *
+     * @param str The piece of string to be parsed
+     * @return The parse forest, null if the grammar does not derive the String
+     */
+    public ParseForest parse(CharSequence str) {
+        CompiledGrammar g = this.grammar;
+        int length = str.length();
+        if (!g.isInAlphabet(str)) return null;
+
+        ParseForest forest = new ParseForest(g);
+        List<List<Item>> sets = new ArrayList<List<Item>>(length + 1);
+        Set<Item> members = new HashSet<Item>();
+        Set<Item> nextMembers = new HashSet<Item>();
+        Set<Item> scans = new LinkedHashSet<Item>();
+        Set<Item> nextScans = new LinkedHashSet<Item>();
+        Map<Long, Integer> nodes = new HashMap<Long, Integer>();
+        Map<Integer, Integer> empties = new HashMap<Integer, Integer>();
+        int i, k, r;
+
+        for (i = 0; i <= length; i++) sets.add(new ArrayList<Item>());
+
+        for (int rule : g.rulesOf[g.start]) {
+            this.place(new Item(g.base[rule], 0, -1), 0, str, sets.get(0), members, nextScans);
+        }
+
+        for (i = 0; i <= length; i++) {
+            List<Item> set = sets.get(i);
+            Set<Item> swap = scans;
+            scans = nextScans;
+            nextScans = swap;
+            nextScans.clear();
+            empties.clear();
+
+            for (k = 0; k < set.size(); k++) {
+                Item item = set.get(k);
+                int next = g.dottedNext[item.dotted];
+
+                if (next >= 0) {
+                    for (int rule : g.rulesOf[next]) {
+                        this.place(new Item(g.base[rule], i, -1), i, str, set, members, scans);
+                    }
+                    Integer empty = empties.get(next);
+                    if (empty != null) {
+                        int node = this.node(forest, nodes, item.dotted + 1, item.origin, i, item.node, empty);
+                        this.place(new Item(item.dotted + 1, item.origin, node), i, str, set, members, scans);
+                    }
+                } else if (next == CompiledGrammar.END) {
+                    int a = g.left[g.dottedRule[item.dotted]];
+                    int node = item.node;
+                    if (node < 0) {
+                        Long key = EarleyParser.key(a, i);
+                        Integer found = nodes.get(key);
+                        node = found != null ? found : forest.addSymbol(a, i, i);
+                        nodes.put(key, node);
+                        forest.addFamily(node, g.dottedRule[item.dotted], -1, -1);
+                    }
+                    if (item.origin == i) empties.put(a, node);
+
+                    List<Item> from = sets.get(item.origin);
+                    int size = from.size();
+                    for (r = 0; r < size; r++) {
+                        Item waiting = from.get(r);
+                        if (g.dottedNext[waiting.dotted] != a) continue;
+                        int y = this.node(forest, nodes, waiting.dotted + 1, waiting.origin, i, waiting.node, node);
+                        this.place(new Item(waiting.dotted + 1, waiting.origin, y), i, str, set, members, scans);
+                    }
+                }
+            }
+
+            if (i == length) break;
+
+            // Scan the next character; nodes from here on end at i + 1
+            nodes.clear();
+            Set<Item> swapMembers = members;
+            members = nextMembers;
+            nextMembers = swapMembers;
+            nextMembers.clear();
+            int terminal = forest.addTerminal(str.charAt(i), i);
+            for (Item item : scans) {
+                int y = this.node(forest, nodes, item.dotted + 1, item.origin, i + 1, item.node, terminal);
+                this.place(new Item(item.dotted + 1, item.origin, y), i + 1, str, sets.get(i + 1), members, nextScans);
+            }
+        }
+
+        Integer root = nodes.get(EarleyParser.key(g.start, 0));
+        if (root == null) return null;
+        forest.setRoot(root);
+        return forest;
+    }
+
+    /**
+     * Put an item of set i where it belongs: into the set, or, if the
+     * dot is in front of a terminal that matches the next character,
+     * into the list of items to scan.
+     */
+    private void place(Item item, int i, CharSequence str, List<Item> set, Set<Item> members, Set<Item> scans) {
+        int next = this.grammar.dottedNext[item.dotted];
+        if (next >= 0 || next == CompiledGrammar.END) {
+            if (members.add(item)) set.add(item);
+        } else if (i < str.length() && next == CompiledGrammar.symbol(str.charAt(i))) {
+            scans.add(item);
+        }
+    }
+
+    /**
+     * Find or make the forest node for an item whose dot was just moved
+     * over a symbol with node "v", and give it the family (w, v).
+     */
+    private int node(ParseForest forest, Map<Long, Integer> nodes, int dotted, int start, int end, int w, int v) {
+        CompiledGrammar g = this.grammar;
+        int rule = g.dottedRule[dotted];
+        boolean complete = g.dottedNext[dotted] == CompiledGrammar.END;
+
+        if (g.dottedPosition[dotted] == 1 && !complete) return v;
+
+        int label = complete ? g.left[rule] : g.names.length + dotted;
+        Long key = EarleyParser.key(label, start);
+        Integer y = nodes.get(key);
+        if (y == null) {
+            y = complete ? forest.addSymbol(g.left[rule], start, end) : forest.addIntermediate(dotted, start, end);
+            nodes.put(key, y);
+        }
+        forest.addFamily(y, rule, w, v);
+        return y;
+    }
+
+    private static Long key(int label, int start) {
+        return ((long) label << 32) | start;
+    }
+
+    /**
+     * Items of recognize(), as parallel arrays with a hash index.
+     */
+    private static final class ItemSet {
+        int size;
+        int[] dotted = new int[16];
+        int[] origins = new int[16];
+        long[] table = new long[32];
+        Map<Integer, Long> leo;
+
+        ItemSet() {
+            Arrays.fill(this.table, -1);
+        }
+
+        void add(int d, int origin) {
+            long key = ((long) d << 32) | origin;
+            int mask = this.table.length - 1;
+            int slot = (int) (key ^ (key >>> 29)) * 0x9E3779B9 >>> 1 & mask;
+            while (this.table[slot] != -1) {
+                if (this.table[slot] == key) return;
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = key;
+
+            if (this.size == this.dotted.length) {
+                this.dotted = Arrays.copyOf(this.dotted, 2 * this.size);
+                this.origins = Arrays.copyOf(this.origins, 2 * this.size);
+            }
+            this.dotted[this.size] = d;
+            this.origins[this.size++] = origin;
+
+            if (2 * this.size > this.table.length) this.rehash();
+        }
+
+        private void rehash() {
+            long[] old = this.table;
+            this.table = new long[2 * old.length];
+            Arrays.fill(this.table, -1);
+            int mask = this.table.length - 1;
+            for (long key : old) {
+                if (key == -1) continue;
+                int slot = (int) (key ^ (key >>> 29)) * 0x9E3779B9 >>> 1 & mask;
+                while (this.table[slot] != -1) slot = (slot + 1) & mask;
+                this.table[slot] = key;
+            }
+        }
+    }
+
+    /**
+     * Items of parse(), which also carry their forest node.
+     */
+    private static final class Item {
+        final int dotted;
+        final int origin;
+        final int node;
+
+        Item(int dotted, int origin, int node) {
+            this.dotted = dotted;
+            this.origin = origin;
+            this.node = node;
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.dotted * 31 + this.origin) * 31 + this.node;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Item)) return false;
+            Item other = (Item) o;
+            return this.dotted == other.dotted && this.origin == other.origin && this.node == other.node;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.github.ahmeterdem1.formality.grammar;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+import io.github.ahmeterdem1.formality.exceptions.GrammarError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A context-free grammar. Terminals are the characters of an Alphabet,
+ * and nonterminals are named by Strings. A nonterminal is any name that
+ * appears on the left side of a rule; every other symbol on the right
+ * side of a rule is read as a sequence of terminal characters.
+ *
+ * <pre>
+ *     Grammar grammar = new Grammar(new Alphabet(new char[]{'a', '+'}), "E");
+ *     grammar.addRule("E", "E", "+", "E");
+ *     grammar.addRule("E", "a");
+ * </pre>
+ */
+public class Grammar {
+
+    private Alphabet terminals;
+    private String start;
+    private List<Rule> rules;
+
+    public Grammar(Alphabet terminals, String start) {
+        this.terminals = terminals;
+        this.start = start;
+        this.rules = new ArrayList<Rule>();
+    }
+
+    /**
+     * Add a rule to the grammar.
+     *
+     * @param left Name of the nonterminal on the left side
+     * @param right Symbols on the right side; none for an empty rule
+     * @return The added rule
+     * @throws GrammarError If the left side is empty, or a symbol on the
+     *      right side is empty
+     */
+    public Rule addRule(String left, String... right) {
+        if (left == null || left.isEmpty()) {
+            throw new GrammarError("The left side of a rule cannot be empty.");
+        }
+        for (String symbol : right) {
+            if (symbol == null || symbol.isEmpty()) {
+                throw new GrammarError(String.format("Empty symbol in a rule of %s.", left));
+            }
+        }
+        Rule rule = new Rule(left, right);
+        this.rules.add(rule);
+        return rule;
+    }
+
+    /**
+     * Get the rules in the order they were added.
+     *
+     * @return Unmodifiable list of rules
+     */
+    public List<Rule> getRules() {
+        return Collections.unmodifiableList(this.rules);
+    }
+
+    /**
+     * Get the names that appear on the left side of a rule.
+     *
+     * @return Nonterminals in the order they first appear
+     */
+    public Set<String> getNonterminals() {
+        Set<String> names = new LinkedHashSet<String>();
+        for (Rule rule : this.rules) {
+            names.add(rule.getLeft());
+        }
+        return names;
+    }
+
+    /**
+     * Check if the given name is a nonterminal of the grammar.
+     *
+     * @param name Symbol to check
+     * @return true if some rule has it on its left side
+     */
+    public boolean isNonterminal(String name) {
+        for (Rule rule : this.rules) {
+            if (rule.getLeft().equals(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the Alphabet of the terminals.
+     *
+     * @return Alphabet object, of the language
+     */
+    public Alphabet getTerminals() {
+        return this.terminals;
+    }
+
+    /**
+     * Set the Alphabet of the terminals.
+     *
+     * @param a Alphabet object to assign to
+     */
+    public void setTerminals(Alphabet a) {
+        this.terminals = a;
+    }
+
+    /**
+     * Get the start symbol.
+     *
+     * @return Name of the start nonterminal
+     */
+    public String getStart() {
+        return this.start;
+    }
+
+    /**
+     * Set the start symbol.
+     *
+     * @param str Name of the start nonterminal
+     */
+    public void setStart(String str) {
+        this.start = str;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Grammar: %s\nAlphabet: %s\n", this.start, this.terminals.toString()));
+        for (Rule rule : this.rules) {
+            builder.append(rule.toString()).append('\n');
+        }
+        return builder.toString();
+    }
+}
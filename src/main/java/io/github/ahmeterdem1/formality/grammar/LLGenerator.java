@@ -0,0 +1,327 @@
+package io.github.ahmeterdem1.formality.grammar;
+
+import io.github.ahmeterdem1.formality.automata.PushdownTable;
+import io.github.ahmeterdem1.formality.exceptions.GrammarError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates an LL(1) parser for a Grammar, in the form of a
+ * deterministic PushdownTable.
+ *
+ * The generator computes the FIRST set of each nonterminal, the
+ * terminals that its derivations can begin with, and its FOLLOW set,
+ * the terminals that can come right after it. Together they give the
+ * LL(1) table: for a nonterminal on top of the stack and the next
+ * character of the input, the single rule to expand it with. If two
+ * rules compete for the same entry, the grammar is not LL(1), and the
+ * conflict is reported by getConflicts(). Left recursive and ambiguous
+ * grammars always have conflicts; they can be parsed with EarleyParser.
+ *
+ * The generated PushdownTable has a single state. Its stack starts with
+ * the start symbol. A nonterminal on top is replaced by the right side
+ * of the rule that the table chooses for the next character, without
+ * reading it; a terminal on top is popped by reading the same character.
+ * Every step costs a single table lookup, and the number of steps per
+ * character is bounded by the grammar, so parsing takes linear time.
+ * The table can be saved with PushdownTable.write(), so that it does
+ * not have to be generated again.
+ *
+ * <pre>
+ *     Grammar grammar = new Grammar(new Alphabet(new char[]{'a', '+'}), "E");
+ *     grammar.addRule("E", "a", "R");
+ *     grammar.addRule("R", "+", "a", "R");
+ *     grammar.addRule("R");
+ *     PushdownTable parser = new LLGenerator(grammar).toTable();
+ *     parser.validate("a+a+a");  // true
+ * </pre>
+ */
+public final class LLGenerator {
+
+    private final CompiledGrammar grammar;
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    // Terminals that appear in rules, sorted; the index of one is its column
+    private final char[] terminals;
+
+    // The end of input is the column after the terminals
+    private final BitSet[] first;
+    private final BitSet[] follow;
+
+    // Rule of each nonterminal and column, -1 for none
+    private final int[][] table;
+    private final List<String> conflicts = new ArrayList<String>();
+
+    /**
+     * Generate the LL(1) table of a grammar. Later changes to the grammar
+     * are not reflected in the generator.
+     *
+     * @param grammar Grammar to generate the table for
+     * @throws GrammarError If the start symbol has no rules, or a terminal
+     *      is not in the Alphabet
+     */
+    public LLGenerator(Grammar grammar) {
+        CompiledGrammar g = new CompiledGrammar(grammar);
+        int n = g.names.length;
+        int a, r, i;
+        this.grammar = g;
+        for (a = 0; a < n; a++) this.ids.put(g.names[a], a);
+
+        StringBuilder used = new StringBuilder();
+        for (r = 0; r < g.rules.length; r++) {
+            for (int symbol : g.right[r]) {
+                if (symbol < 0 && used.indexOf(String.valueOf(CompiledGrammar.terminal(symbol))) < 0) {
+                    used.append(CompiledGrammar.terminal(symbol));
+                }
+            }
+        }
+        this.terminals = used.toString().toCharArray();
+        Arrays.sort(this.terminals);
+        int end = this.terminals.length;
+
+        // FIRST sets, until nothing changes
+        this.first = new BitSet[n];
+        for (a = 0; a < n; a++) this.first[a] = new BitSet();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (r = 0; r < g.rules.length; r++) {
+                BitSet set = this.first[g.left[r]];
+                int before = set.cardinality();
+                set.or(this.firstOf(g.right[r], 0));
+                if (set.cardinality() != before) changed = true;
+            }
+        }
+
+        // FOLLOW sets, until nothing changes
+        this.follow = new BitSet[n];
+        for (a = 0; a < n; a++) this.follow[a] = new BitSet();
+        this.follow[g.start].set(end);
+        changed = true;
+        while (changed) {
+            changed = false;
+            for (r = 0; r < g.rules.length; r++) {
+                int[] right = g.right[r];
+                for (i = 0; i < right.length; i++) {
+                    if (right[i] < 0) continue;
+                    BitSet set = this.follow[right[i]];
+                    int before = set.cardinality();
+                    set.or(this.firstOf(right, i + 1));
+                    if (this.isNullable(right, i + 1)) set.or(this.follow[g.left[r]]);
+                    if (set.cardinality() != before) changed = true;
+                }
+            }
+        }
+
+        // The table, with the FIRST set of each rule, and the FOLLOW set
+        // of its left side if the rule derives the empty String
+        this.table = new int[n][end + 1];
+        boolean[][] byFollow = new boolean[n][end + 1];
+        for (a = 0; a < n; a++) Arrays.fill(this.table[a], -1);
+        for (r = 0; r < g.rules.length; r++) {
+            a = g.left[r];
+            BitSet set = this.firstOf(g.right[r], 0);
+            for (i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+                this.enter(a, i, r, false, byFollow);
+            }
+            if (this.isNullable(g.right[r], 0)) {
+                set = this.follow[a];
+                for (i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+                    this.enter(a, i, r, true, byFollow);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the grammar is LL(1), that is, if the table has no
+     * conflicts.
+     *
+     * @return true if a table can be generated
+     */
+    public boolean isLL1() {
+        return this.conflicts.isEmpty();
+    }
+
+    /**
+     * Get the conflicts of the table, one message for each entry that
+     * more than one rule competes for.
+     *
+     * @return Unmodifiable list of conflict messages
+     */
+    public List<String> getConflicts() {
+        return Collections.unmodifiableList(this.conflicts);
+    }
+
+    /**
+     * Get the terminals that the derivations of a nonterminal can begin
+     * with.
+     *
+     * @param nonterminal Name of the nonterminal
+     * @return The FIRST set
+     * @throws GrammarError If the name is not a nonterminal of the grammar
+     */
+    public Set<Character> getFirst(String nonterminal) {
+        return this.characters(this.first[this.id(nonterminal)]);
+    }
+
+    /**
+     * Get the terminals that can come right after a nonterminal. Whether
+     * the end of input can come after it is told by isFollowedByEnd().
+     *
+     * @param nonterminal Name of the nonterminal
+     * @return The FOLLOW set, without the end of input
+     * @throws GrammarError If the name is not a nonterminal of the grammar
+     */
+    public Set<Character> getFollow(String nonterminal) {
+        return this.characters(this.follow[this.id(nonterminal)]);
+    }
+
+    /**
+     * Check if the end of input can come right after a nonterminal.
+     *
+     * @param nonterminal Name of the nonterminal
+     * @return true if the end of input is in the FOLLOW set
+     * @throws GrammarError If the name is not a nonterminal of the grammar
+     */
+    public boolean isFollowedByEnd(String nonterminal) {
+        return this.follow[this.id(nonterminal)].get(this.terminals.length);
+    }
+
+    /**
+     * Check if a nonterminal derives the empty String.
+     *
+     * @param nonterminal Name of the nonterminal
+     * @return true if the nonterminal is nullable
+     * @throws GrammarError If the name is not a nonterminal of the grammar
+     */
+    public boolean isNullable(String nonterminal) {
+        return this.grammar.nullable[this.id(nonterminal)];
+    }
+
+    /**
+     * Build the parser as a deterministic PushdownTable, which accepts
+     * exactly the Strings that the grammar derives.
+     *
+     * @return The generated table
+     * @throws GrammarError If the grammar is not LL(1)
+     */
+    public PushdownTable toTable() {
+        if (!this.isLL1()) {
+            throw new GrammarError(String.format("The grammar is not LL(1): %s", this.conflicts.get(0)));
+        }
+
+        CompiledGrammar g = this.grammar;
+        int n = g.names.length;
+        int end = this.terminals.length;
+        int a, i;
+
+        // Nonterminals are pushed as characters outside of the alphabet
+        char[] symbols = new char[n];
+        char c = '\uE000';
+        for (a = 0; a < n; a++) {
+            while (g.isInAlphabet(c)) {
+                if (c == '\uFFFF') throw new GrammarError("No characters left for the nonterminals.");
+                c++;
+            }
+            symbols[a] = c++;
+        }
+
+        PushdownTable.Builder builder = new PushdownTable.Builder();
+        int q = builder.addState(true);
+        builder.setAlphabet(g.grammar.getTerminals());
+        builder.setInitialStack(String.valueOf(symbols[g.start]));
+
+        for (a = 0; a < n; a++) {
+            String pop = String.valueOf(symbols[a]);
+            for (i = 0; i < end; i++) {
+                if (this.table[a][i] >= 0) {
+                    builder.addLookahead(q, this.terminals[i], q, pop, this.push(symbols, this.table[a][i]));
+                }
+            }
+            if (this.table[a][end] >= 0) {
+                builder.addEnd(q, q, pop, this.push(symbols, this.table[a][end]));
+            }
+        }
+        for (i = 0; i < end; i++) {
+            builder.addTransition(q, this.terminals[i], q, String.valueOf(this.terminals[i]), "");
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Get the right side of a rule in the order it is pushed: reversed,
+     * so that its first symbol ends up on top.
+     */
+    private String push(char[] symbols, int rule) {
+        int[] right = this.grammar.right[rule];
+        StringBuilder builder = new StringBuilder(right.length);
+        for (int i = right.length - 1; i >= 0; i--) {
+            builder.append(right[i] >= 0 ? symbols[right[i]] : CompiledGrammar.terminal(right[i]));
+        }
+        return builder.toString();
+    }
+
+    private void enter(int a, int column, int rule, boolean follow, boolean[][] byFollow) {
+        int other = this.table[a][column];
+        if (other < 0) {
+            this.table[a][column] = rule;
+            byFollow[a][column] = follow;
+            return;
+        }
+        if (other == rule) return;
+
+        String on = column == this.terminals.length ? "the end of input" : "'" + this.terminals[column] + "'";
+        String kind = follow || byFollow[a][column] ? "FIRST/FOLLOW" : "FIRST/FIRST";
+        this.conflicts.add(String.format("%s conflict of %s on %s between \"%s\" and \"%s\".",
+                kind, this.grammar.names[a], on, this.grammar.rules[other], this.grammar.rules[rule]));
+    }
+
+    /**
+     * Get the FIRST set of the symbols from index i on.
+     */
+    private BitSet firstOf(int[] symbols, int i) {
+        BitSet set = new BitSet();
+        for (; i < symbols.length; i++) {
+            if (symbols[i] < 0) {
+                set.set(Arrays.binarySearch(this.terminals, CompiledGrammar.terminal(symbols[i])));
+                break;
+            }
+            set.or(this.first[symbols[i]]);
+            if (!this.grammar.nullable[symbols[i]]) break;
+        }
+        return set;
+    }
+
+    private boolean isNullable(int[] symbols, int i) {
+        for (; i < symbols.length; i++) {
+            if (symbols[i] < 0 || !this.grammar.nullable[symbols[i]]) return false;
+        }
+        return true;
+    }
+
+    private int id(String nonterminal) {
+        Integer id = this.ids.get(nonterminal);
+        if (id == null) {
+            throw new GrammarError(String.format("%s is not a nonterminal of the grammar.", nonterminal));
+        }
+        return id;
+    }
+
+    private Set<Character> characters(BitSet set) {
+        Set<Character> result = new LinkedHashSet<Character>();
+        for (int i = set.nextSetBit(0); i >= 0 && i < this.terminals.length; i = set.nextSetBit(i + 1)) {
+            result.add(this.terminals[i]);
+        }
+        return result;
+    }
+}
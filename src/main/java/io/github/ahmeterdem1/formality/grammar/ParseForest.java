@@ -0,0 +1,277 @@
+package io.github.ahmeterdem1.formality.grammar;
+
+import java.util.Arrays;
+
+/**
+ * A shared packed parse forest: every parse tree of a String, in a
+ * single graph whose size is at most cubic in the length of the String,
+ * however many trees there are.
+ *
+ * Nodes are numbered, and labelled with a symbol and the part of the
+ * String they span, from start up to, but not including, end. A symbol
+ * node of a nonterminal may have several families; each family is one
+ * way of deriving the span, and holds at most two children. Longer
+ * right sides are split with intermediate nodes, labelled with a dotted
+ * rule such as "E -> E + . E", which stand for the part of the right
+ * side in front of the dot. So the children of a family are the nodes
+ * of its left and right child, with intermediate nodes unfolded;
+ * getChildren does this unfolding. Terminal nodes have no families, and
+ * an empty family stands for an empty rule.
+ *
+ * Nodes with the same label and span are shared between all the trees
+ * they appear in.
+ */
+public final class ParseForest {
+
+    private static final int SYMBOL = 0;
+    private static final int TERMINAL = 1;
+    private static final int INTERMEDIATE = 2;
+
+    private final CompiledGrammar grammar;
+    private int root = -1;
+
+    private int count;
+    private int[] kinds = new int[64];
+    private int[] labels = new int[64];
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+
+    // Families as (rule, left, right) triples
+    private int[][] families = new int[64][];
+    private int[] familyCounts = new int[64];
+
+    ParseForest(CompiledGrammar grammar) {
+        this.grammar = grammar;
+    }
+
+    /**
+     * Get the root node, which is labelled with the start symbol and
+     * spans the whole String.
+     *
+     * @return Number of the root node
+     */
+    public int getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Get the number of nodes.
+     *
+     * @return Count of nodes, numbered from 0
+     */
+    public int getNodeCount() {
+        return this.count;
+    }
+
+    /**
+     * Check if the node is labelled with a terminal.
+     *
+     * @param node Number of the node
+     * @return true for terminal nodes
+     */
+    public boolean isTerminal(int node) {
+        return this.kinds[node] == TERMINAL;
+    }
+
+    /**
+     * Check if the node is labelled with a dotted rule.
+     *
+     * @param node Number of the node
+     * @return true for intermediate nodes
+     */
+    public boolean isIntermediate(int node) {
+        return this.kinds[node] == INTERMEDIATE;
+    }
+
+    /**
+     * Get the label of a node.
+     *
+     * @param node Number of the node
+     * @return Name of the nonterminal, the terminal character, or the
+     *      dotted rule of an intermediate node
+     */
+    public String getSymbol(int node) {
+        switch (this.kinds[node]) {
+            case SYMBOL:
+                return this.grammar.names[this.labels[node]];
+            case TERMINAL:
+                return String.valueOf((char) this.labels[node]);
+            default:
+                return this.grammar.dotted(this.labels[node]);
+        }
+    }
+
+    /**
+     * Get the index where the span of a node begins.
+     *
+     * @param node Number of the node
+     * @return First index of the span
+     */
+    public int getStart(int node) {
+        return this.starts[node];
+    }
+
+    /**
+     * Get the index where the span of a node ends.
+     *
+     * @param node Number of the node
+     * @return Index after the last character of the span
+     */
+    public int getEnd(int node) {
+        return this.ends[node];
+    }
+
+    /**
+     * Get the number of ways the node is derived.
+     *
+     * @param node Number of the node
+     * @return Count of families
+     */
+    public int getFamilyCount(int node) {
+        return this.familyCounts[node] / 3;
+    }
+
+    /**
+     * Get the rule that a family of a node derives with.
+     *
+     * @param node Number of the node
+     * @param k Index of the family
+     * @return The rule of the family
+     */
+    public Rule getRule(int node, int k) {
+        return this.grammar.rules[this.families[node][3 * k]];
+    }
+
+    /**
+     * Get the left child of a family.
+     *
+     * @param node Number of the node
+     * @param k Index of the family
+     * @return Number of the child, -1 if the family has fewer than two children
+     */
+    public int getLeft(int node, int k) {
+        return this.families[node][3 * k + 1];
+    }
+
+    /**
+     * Get the right child of a family.
+     *
+     * @param node Number of the node
+     * @param k Index of the family
+     * @return Number of the child, -1 for an empty family
+     */
+    public int getRight(int node, int k) {
+        return this.families[node][3 * k + 2];
+    }
+
+    /**
+     * Get the children of a family, one for each symbol on the right
+     * side of its rule. Intermediate nodes are unfolded along their
+     * first family.
+     *
+     * @param node Number of the node
+     * @param k Index of the family
+     * @return Numbers of the child nodes, in order
+     */
+    public int[] getChildren(int node, int k) {
+        int[] result = new int[this.grammar.right[this.families[node][3 * k]].length];
+        int n = result.length;
+        int left = this.getLeft(node, k);
+        int right = this.getRight(node, k);
+
+        while (right >= 0) {
+            result[--n] = right;
+            if (left >= 0 && this.kinds[left] == INTERMEDIATE) {
+                right = this.getRight(left, 0);
+                left = this.getLeft(left, 0);
+            } else {
+                right = left;
+                left = -1;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Check if the String has more than one parse tree.
+     *
+     * @return true if some node under the root has more than one family
+     */
+    public boolean isAmbiguous() {
+        boolean[] seen = new boolean[this.count];
+        int[] work = new int[this.count];
+        int top = 0;
+
+        seen[this.root] = true;
+        work[top++] = this.root;
+        while (top > 0) {
+            int node = work[--top];
+            if (this.familyCounts[node] > 3) return true;
+            for (int i = 0; i < this.familyCounts[node]; i += 3) {
+                for (int j = 1; j <= 2; j++) {
+                    int child = this.families[node][i + j];
+                    if (child >= 0 && !seen[child]) {
+                        seen[child] = true;
+                        work[top++] = child;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    int addSymbol(int nonterminal, int start, int end) {
+        return this.addNode(SYMBOL, nonterminal, start, end);
+    }
+
+    int addTerminal(char c, int start) {
+        return this.addNode(TERMINAL, c, start, start + 1);
+    }
+
+    int addIntermediate(int dotted, int start, int end) {
+        return this.addNode(INTERMEDIATE, dotted, start, end);
+    }
+
+    /**
+     * Add a family to a node, unless it already has the same one.
+     */
+    void addFamily(int node, int rule, int left, int right) {
+        int n = this.familyCounts[node];
+        int[] list = this.families[node];
+        for (int i = 0; i < n; i += 3) {
+            if (list[i] == rule && list[i + 1] == left && list[i + 2] == right) return;
+        }
+        if (n == list.length) {
+            list = Arrays.copyOf(list, 2 * n);
+            this.families[node] = list;
+        }
+        list[n] = rule;
+        list[n + 1] = left;
+        list[n + 2] = right;
+        this.familyCounts[node] = n + 3;
+    }
+
+    void setRoot(int node) {
+        this.root = node;
+    }
+
+    private int addNode(int kind, int label, int start, int end) {
+        if (this.count == this.kinds.length) {
+            int capacity = 2 * this.count;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.labels = Arrays.copyOf(this.labels, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+            this.families = Arrays.copyOf(this.families, capacity);
+            this.familyCounts = Arrays.copyOf(this.familyCounts, capacity);
+        }
+        this.kinds[this.count] = kind;
+        this.labels[this.count] = label;
+        this.starts[this.count] = start;
+        this.ends[this.count] = end;
+        this.families[this.count] = kind == TERMINAL ? new int[0] : new int[3];
+        return this.count++;
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.ahmeterdem1.formality.grammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A production rule of a context-free grammar: a nonterminal on the
+ * left, and a sequence of symbols on the right. See Grammar.addRule for
+ * how the symbols on the right are told apart.
+ */
+public final class Rule {
+
+    private final String left;
+    private final List<String> right;
+
+    Rule(String left, String[] right) {
+        this.left = left;
+        this.right = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(right)));
+    }
+
+    /**
+     * Get the nonterminal on the left side.
+     *
+     * @return Name of the nonterminal
+     */
+    public String getLeft() {
+        return this.left;
+    }
+
+    /**
+     * Get the symbols on the right side.
+     *
+     * @return Unmodifiable list of symbols, empty for an empty rule
+     */
+    public List<String> getRight() {
+        return this.right;
+    }
+
+    /**
+     * Check if the rule derives the empty String directly.
+     *
+     * @return true if the right side has no symbols
+     */
+    public boolean isEmpty() {
+        return this.right.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(this.left).append(" ->");
+        for (String symbol : this.right) {
+            builder.append(' ').append(symbol);
+        }
+        return builder.toString();
+    }
+}
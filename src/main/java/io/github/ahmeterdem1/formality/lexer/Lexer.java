@@ -0,0 +1,245 @@
+package io.github.ahmeterdem1.formality.lexer;
+
+import io.github.ahmeterdem1.formality.automata.LazyDfa;
+import io.github.ahmeterdem1.formality.automata.Nfa;
+import io.github.ahmeterdem1.formality.regex.Regex;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits text into tokens, each described by a regex.
+ *
+ * The regexes of all token types are compiled into a single
+ * deterministic automaton. Its final states are labelled with a token
+ * type: when a state is final for several regexes, the one that was
+ * added first wins. Tokens are found with maximal munch: from the end
+ * of the last token, the automaton reads as far as it can, and the
+ * longest prefix that ends in a final state is the next token.
+ *
+ * <pre>
+ *     Lexer.Builder builder = new Lexer.Builder();
+ *     int keyword = builder.add("KEYWORD", "if|else");
+ *     int name = builder.add("NAME", "[a-z]+");
+ *     int space = builder.add("SPACE", " +");
+ *     Lexer lexer = builder.build();
+ *
+ *     Tokenizer tokens = lexer.tokenize("if iffy");
+ *     while (tokens.next()) {
+ *         // KEYWORD 0 2, SPACE 2 3, NAME 3 7
+ *         System.out.println(lexer.getTypeName(tokens.getType()) + " " + tokens.getStart() + " " + tokens.getEnd());
+ *     }
+ * </pre>
+ *
+ * A Lexer is immutable and can be shared between threads; each thread
+ * needs its own Tokenizer.
+ */
+public final class Lexer {
+
+    /**
+     * Type of the one-character tokens that are emitted where no token
+     * type matches.
+     */
+    public static final int ERROR = -1;
+
+    static final int ASCII = 128;
+
+    final int start;
+    final String[] names;
+
+    // Next state for each state and ASCII character, -1 for none
+    final int[] ascii;
+
+    // Ranges of each state, for the other characters
+    final char[][] lows;
+    final char[][] highs;
+    final int[][] targets;
+
+    // Token type of each state, ERROR if it is not final
+    final int[] types;
+
+    private Lexer(String[] names, int[] ascii, char[][] lows, char[][] highs, int[][] targets, int[] types) {
+        this.start = 0;
+        this.names = names;
+        this.ascii = ascii;
+        this.lows = lows;
+        this.highs = highs;
+        this.targets = targets;
+        this.types = types;
+    }
+
+    /**
+     * Get the number of token types.
+     *
+     * @return Count of token types, numbered from 0 in the order they
+     *      were added
+     */
+    public int getTypeCount() {
+        return this.names.length;
+    }
+
+    /**
+     * Get the name of a token type.
+     *
+     * @param type Number of the token type
+     * @return The name it was added with, "ERROR" for Lexer.ERROR
+     */
+    public String getTypeName(int type) {
+        return type == ERROR ? "ERROR" : this.names[type];
+    }
+
+    /**
+     * Get the number of states of the combined automaton.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.types.length;
+    }
+
+    /**
+     * Start splitting a piece of text into tokens.
+     *
+     * @param text Text to split
+     * @return A Tokenizer positioned before the first token
+     */
+    public Tokenizer tokenize(CharSequence text) {
+        Tokenizer tokenizer = new Tokenizer(this);
+        tokenizer.reset(text);
+        return tokenizer;
+    }
+
+    /**
+     * Start splitting the text of a Reader into tokens. The text is
+     * read in blocks as the tokens are asked for.
+     *
+     * @param reader Source of the text
+     * @return A Tokenizer positioned before the first token
+     */
+    public Tokenizer tokenize(Reader reader) {
+        Tokenizer tokenizer = new Tokenizer(this);
+        tokenizer.reset(reader);
+        return tokenizer;
+    }
+
+    /**
+     * Get the state reached from "s" by reading "c".
+     *
+     * @return Number of the next state, -1 if there is none
+     */
+    int step(int s, char c) {
+        if (c < ASCII) return this.ascii[s * ASCII + c];
+
+        char[] lows = this.lows[s];
+        int low = 0;
+        int high = lows.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (c < lows[mid]) high = mid - 1;
+            else if (c > this.highs[s][mid]) low = mid + 1;
+            else return this.targets[s][mid];
+        }
+        return -1;
+    }
+
+    /**
+     * Collects the token types of a Lexer, in order of priority.
+     */
+    public static final class Builder {
+        private final List<String> names = new ArrayList<String>();
+        private final List<Nfa> automata = new ArrayList<Nfa>();
+
+        /**
+         * Add a token type. If a token matches several types, the type
+         * that was added first is chosen.
+         *
+         * @param name Name of the token type
+         * @param regex Regex of the tokens
+         * @return Number of the token type
+         * @throws io.github.ahmeterdem1.formality.exceptions.RegexError If the
+         *      regex string is malformed
+         */
+        public int add(String name, String regex) {
+            this.automata.add(Nfa.of(Regex.compile(regex)));
+            this.names.add(name);
+            return this.names.size() - 1;
+        }
+
+        /**
+         * Build the combined automaton of all token types.
+         *
+         * @return The lexer
+         */
+        public Lexer build() {
+            LazyDfa lazy = new LazyDfa(Nfa.union(this.automata));
+            Nfa nfa = lazy.getNfa();
+            Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+            List<Integer> queue = new ArrayList<Integer>();
+            List<char[]> lows = new ArrayList<char[]>();
+            List<char[]> highs = new ArrayList<char[]>();
+            List<int[]> targets = new ArrayList<int[]>();
+            int i, k, count;
+
+            ids.put(lazy.getStart(), 0);
+            queue.add(lazy.getStart());
+
+            // Every reachable state, numbered in the order found
+            for (k = 0; k < queue.size(); k++) {
+                int s = queue.get(k);
+                char[] segments = lazy.getSegments(s);
+                char[] stateLows = new char[segments.length];
+                char[] stateHighs = new char[segments.length];
+                int[] stateTargets = new int[segments.length];
+                count = 0;
+
+                for (i = 0; i < segments.length; i++) {
+                    char low = segments[i];
+                    char high = i + 1 < segments.length ? (char) (segments[i + 1] - 1) : Character.MAX_VALUE;
+                    int next = lazy.step(s, low);
+                    if (next == LazyDfa.DEAD) continue;
+
+                    Integer id = ids.get(next);
+                    if (id == null) {
+                        id = queue.size();
+                        ids.put(next, id);
+                        queue.add(next);
+                    }
+                    stateLows[count] = low;
+                    stateHighs[count] = high;
+                    stateTargets[count++] = id;
+                }
+
+                lows.add(Arrays.copyOf(stateLows, count));
+                highs.add(Arrays.copyOf(stateHighs, count));
+                targets.add(Arrays.copyOf(stateTargets, count));
+            }
+
+            int states = queue.size();
+            int[] ascii = new int[states * ASCII];
+            int[] types = new int[states];
+            Arrays.fill(ascii, -1);
+            Arrays.fill(types, ERROR);
+
+            for (k = 0; k < states; k++) {
+                char[] stateLows = lows.get(k);
+                for (i = 0; i < stateLows.length && stateLows[i] < ASCII; i++) {
+                    int end = Math.min(highs.get(k)[i], ASCII - 1);
+                    for (int c = stateLows[i]; c <= end; c++) ascii[k * ASCII + c] = targets.get(k)[i];
+                }
+
+                // The earliest token type that the state is final for
+                for (int q : lazy.getNfaStates(queue.get(k))) {
+                    int tag = nfa.getTag(q);
+                    if (tag >= 0 && (types[k] == ERROR || tag < types[k])) types[k] = tag;
+                }
+            }
+
+            return new Lexer(this.names.toArray(new String[0]), ascii, lows.toArray(new char[0][]),
+                    highs.toArray(new char[0][]), targets.toArray(new int[0][]), types);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package io.github.ahmeterdem1.formality.lexer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Walks over the tokens of a text, one at a time. The current token is
+ * described by three ints, its type and its start and end index, so
+ * moving to the next token allocates nothing.
+ *
+ * <pre>
+ *     Tokenizer tokens = lexer.tokenize(text);
+ *     while (tokens.next()) {
+ *         int type = tokens.getType();
+ *         int start = tokens.getStart();
+ *         int end = tokens.getEnd();
+ *     }
+ * </pre>
+ *
+ * The text is copied into a buffer block by block, so a Reader is
+ * tokenized without being read into memory as a whole; only the
+ * current token has to fit in the buffer, which grows if it has to.
+ * Indices count characters from the beginning of the text.
+ *
+ * Where no token type matches, a token of type Lexer.ERROR and length
+ * one is emitted, and tokenizing goes on after it.
+ *
+ * A Tokenizer can be reset to a new text and reused.
+ */
+public final class Tokenizer {
+
+    private static final int BLOCK = 8192;
+
+    private final Lexer lexer;
+
+    private CharSequence text;
+    private Reader reader;
+    private int read;  // characters of the text copied so far
+
+    // buffer[0] is the character at index offset of the text
+    private char[] buffer = new char[BLOCK];
+    private int offset;
+    private int limit;
+
+    private int type;
+    private int start;
+    private int end;
+
+    Tokenizer(Lexer lexer) {
+        this.lexer = lexer;
+    }
+
+    /**
+     * Start over on a new text.
+     *
+     * @param text Text to split
+     */
+    public void reset(CharSequence text) {
+        this.text = text;
+        this.reader = null;
+        this.clear();
+    }
+
+    /**
+     * Start over on the text of a Reader.
+     *
+     * @param reader Source of the text
+     */
+    public void reset(Reader reader) {
+        this.text = null;
+        this.reader = reader;
+        this.clear();
+    }
+
+    /**
+     * Move to the next token.
+     *
+     * @return false if the text has no tokens left
+     * @throws UncheckedIOException If the Reader fails
+     */
+    public boolean next() {
+        int from = this.end;
+        if (from - this.offset == this.limit && !this.fill(from)) return false;
+
+        Lexer lexer = this.lexer;
+        int[] ascii = lexer.ascii;
+        int[] types = lexer.types;
+        char[] buffer = this.buffer;
+        int s = lexer.start;
+        int i = from - this.offset;
+        int limit = this.limit;
+        int type = Lexer.ERROR;
+        int last = i + 1;
+
+        while (true) {
+            if (i == limit) {
+                int shift = this.offset;
+                boolean more = this.fill(from);
+                shift = this.offset - shift;
+                i -= shift;
+                last -= shift;
+                buffer = this.buffer;
+                limit = this.limit;
+                if (!more) break;
+            }
+
+            char c = buffer[i];
+            s = c < Lexer.ASCII ? ascii[s * Lexer.ASCII + c] : lexer.step(s, c);
+            if (s < 0) break;
+            i++;
+            if (types[s] >= 0) {
+                type = types[s];
+                last = i;
+            }
+        }
+
+        this.type = type;
+        this.start = from;
+        this.end = last + this.offset;
+        return true;
+    }
+
+    /**
+     * Get the type of the current token.
+     *
+     * @return Number of the token type, Lexer.ERROR if no type matched
+     */
+    public int getType() {
+        return this.type;
+    }
+
+    /**
+     * Get the index where the current token begins.
+     *
+     * @return Index of the first character
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Get the index where the current token ends.
+     *
+     * @return Index after the last character
+     */
+    public int getEnd() {
+        return this.end;
+    }
+
+    /**
+     * Get the text of the current token. Unlike the other getters, this
+     * creates a String.
+     *
+     * @return Characters of the current token
+     */
+    public String getText() {
+        return new String(this.buffer, this.start - this.offset, this.end - this.start);
+    }
+
+    private void clear() {
+        this.read = 0;
+        this.offset = 0;
+        this.limit = 0;
+        this.type = Lexer.ERROR;
+        this.start = 0;
+        this.end = 0;
+    }
+
+    /**
+     * Copy the next block of the text into the buffer, dropping what is
+     * in front of "keep".
+     *
+     * @return false if the text has ended
+     */
+    private boolean fill(int keep) {
+        int kept = this.limit - (keep - this.offset);
+        System.arraycopy(this.buffer, keep - this.offset, this.buffer, 0, kept);
+        this.offset = keep;
+        this.limit = kept;
+        if (kept > this.buffer.length - BLOCK / 2) {
+            this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+        }
+
+        int count;
+        if (this.reader != null) {
+            try {
+                count = this.reader.read(this.buffer, kept, this.buffer.length - kept);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            count = Math.min(this.buffer.length - kept, this.text.length() - this.read);
+            if (this.text instanceof String) {
+                ((String) this.text).getChars(this.read, this.read + count, this.buffer, kept);
+            } else {
+                for (int i = 0; i < count; i++) this.buffer[kept + i] = this.text.charAt(this.read + i);
+            }
+        }
+
+        if (count <= 0) return false;
+        this.read += count;
+        this.limit += count;
+        return true;
+    }
+}
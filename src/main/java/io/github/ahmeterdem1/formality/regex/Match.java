@@ -3,23 +3,43 @@ package io.github.ahmeterdem1.formality.regex;
 /**
  * A generic class to hold string matches,
  * found by regular expression operations.
+ *
+ * Matches found by a TaggedNfa also hold the span of each group of
+ * the regex. Group 0 is the whole match; a group that is not part of
+ * the match has the span -1 to -1.
  */
 public class Match {
 
     private String match;
     private int begin;
     private int end;
+    private int[] spans;  // Begin and end of each group, in pairs
 
     public Match() {
         this.begin = -1;
         this.end = -1;
         this.match = "";
+        this.spans = new int[0];
     }
 
     public Match(String str, int begin) {
         this.begin = begin;
         this.match = str;
         this.end = this.begin + str.length();  // Of course
+        this.spans = new int[0];
+    }
+
+    /**
+     * Create a match with the spans of its groups.
+     *
+     * @param str The matched String
+     * @param begin Index of the match in the original String
+     * @param spans Begin and end indices of each group in the original
+     *      String, in pairs, group 0 first; -1 for groups that did not match
+     */
+    public Match(String str, int begin, int[] spans) {
+        this(str, begin);
+        this.spans = spans;
     }
 
     /**
@@ -56,6 +76,60 @@ public class Match {
         return this.match;
     }
 
+    /**
+     * Get the number of groups of the regex that found the match,
+     * not counting group 0.
+     *
+     * @return Count of groups, 0 if the match does not hold groups
+     */
+    public final int getGroupCount() {
+        return this.spans.length == 0 ? 0 : this.spans.length / 2 - 1;
+    }
+
+    /**
+     * Get the index in the original String where a group begins.
+     *
+     * @param group Number of the group, 0 for the whole match
+     * @return Beginning index of the group, -1 if it is not part of the match
+     * @throws IndexOutOfBoundsException If there is no such group
+     */
+    public final int getGroupBegin(int group) {
+        if (group == 0 && this.spans.length == 0) return this.begin;
+        return this.spans[this.checkGroup(group)];
+    }
+
+    /**
+     * Get the index in the original String after the end of a group.
+     *
+     * @param group Number of the group, 0 for the whole match
+     * @return End index of the group, -1 if it is not part of the match
+     * @throws IndexOutOfBoundsException If there is no such group
+     */
+    public final int getGroupEnd(int group) {
+        if (group == 0 && this.spans.length == 0) return this.end;
+        return this.spans[this.checkGroup(group) + 1];
+    }
+
+    /**
+     * Get the text of a group.
+     *
+     * @param group Number of the group, 0 for the whole match
+     * @return The text that the group matched, null if it is not part of the match
+     * @throws IndexOutOfBoundsException If there is no such group
+     */
+    public final String getGroup(int group) {
+        int begin = this.getGroupBegin(group);
+        if (begin < 0) return null;
+        return this.match.substring(begin - this.begin, this.getGroupEnd(group) - this.begin);
+    }
+
+    private int checkGroup(int group) {
+        if (group < 0 || group > this.getGroupCount()) {
+            throw new IndexOutOfBoundsException("No group " + group + " in " + this);
+        }
+        return 2 * group;
+    }
+
     @Override
     public final String toString() {
         return String.format("Match(match='%s', begin=%d, end=%d)",
@@ -0,0 +1,447 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import io.github.ahmeterdem1.formality.automata.FiniteAutomaton;
+import io.github.ahmeterdem1.formality.automata.LazyDfa;
+import io.github.ahmeterdem1.formality.automata.Nfa;
+import io.github.ahmeterdem1.formality.flow.Flow;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A stage of a reactive pipeline that receives a text in chunks and
+ * publishes its matches. Chunks are CharBuffers, or ByteBuffers that are
+ * decoded with the Charset of the Builder; a character whose bytes are
+ * split between two chunks is put together, and malformed bytes are
+ * replaced as new String(bytes, charset) does. The matches are those
+ * that Searcher.findAll would find in the whole text: leftmost-longest,
+ * non-empty and without overlaps, with their index in the whole text,
+ * and with the spans of their groups when the regex is compiled from a
+ * string that has groups. A match that runs across chunks is found like
+ * any other.
+ *
+ * <pre>
+ *     MatchProcessor.Builder builder = new MatchProcessor.Builder("[0-9]+")
+ *             .executor(Executors.newFixedThreadPool(4));
+ *     MatchProcessor processor = builder.build();  // One for each stream
+ *     chunks.subscribe(processor);
+ *     processor.subscribe(matches);
+ * </pre>
+ *
+ * The processor never blocks and never buffers more than it is asked
+ * for. A chunk is only requested from upstream when the Subscriber of
+ * the matches has asked for more matches than the chunks received so
+ * far hold, and one chunk at a time, so the memory that a stream takes
+ * is a chunk and the part of the text that a match may still take.
+ * The Subscription of the matches follows the rules of Flow: requests
+ * add up, and a request of a non-positive number fails the stream.
+ *
+ * The work is done in tasks on the Executor of the Builder, the common
+ * ForkJoinPool by default. A processor runs one task at a time, so its
+ * Subscriber is called from one thread at a time, in order. Processors
+ * of independent streams run in parallel, up to the threads of the
+ * Executor; they share the Nfa and the TaggedNfa of the regex, and each
+ * builds a lazy DFA of its own. A processor has a single Subscriber; a second one is
+ * refused with an IllegalStateException. Indices of matches are ints,
+ * so they are exact up to Integer.MAX_VALUE characters.
+ *
+ * If a method of the Subscriber throws, its Subscription counts as
+ * cancelled: upstream is cancelled, nothing else is sent, and the
+ * exception goes to the UncaughtExceptionHandler of the thread, since
+ * onError() cannot take it.
+ *
+ * On Java 9 and later, FlowAdapters.toFlowProcessor() makes a
+ * java.util.concurrent.Flow.Processor out of a MatchProcessor.
+ */
+public final class MatchProcessor implements Flow.Processor<Buffer, Match> {
+
+    private static final int BLOCK = 8192;
+
+    private final StreamMatcher matcher;
+    private final TaggedNfa groups;  // Finds the groups of a match, null if there are none
+    private final CharsetDecoder decoder;
+    private final Executor executor;
+    private final Runnable drain;
+
+    private final AtomicInteger work = new AtomicInteger();  // Signals that the drain has not taken up yet
+    private final AtomicLong demand = new AtomicLong();      // Matches asked for and not yet published
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<Flow.Subscription>();
+    private final AtomicReference<Flow.Subscriber<? super Match>> downstream =
+            new AtomicReference<Flow.Subscriber<? super Match>>();
+    private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    private final ConcurrentLinkedQueue<Buffer> chunks = new ConcurrentLinkedQueue<Buffer>();
+    private volatile boolean completed;  // Upstream has no chunks left, or has failed
+    private volatile boolean cancelled;
+
+    // Only touched by the drain
+    private boolean started;     // The Subscriber has received its Subscription
+    private boolean requested;   // A chunk is asked for, and not received yet
+    private boolean closed;      // The matcher has the whole text
+    private boolean terminated;
+    private Match ready;         // Found, and not yet asked for
+    private ByteBuffer pending = ByteBuffer.allocate(0);  // First bytes of a character split between chunks
+    private final CharBuffer decoded = CharBuffer.allocate(BLOCK);
+
+    private MatchProcessor(LazyDfa forward, TaggedNfa groups, Charset charset, Executor executor) {
+        this.matcher = new StreamMatcher(forward);
+        this.groups = groups;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.executor = executor;
+        this.drain = new Runnable() {
+            @Override
+            public void run() {
+                MatchProcessor.this.drain();
+            }
+        };
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (subscription == null) throw new NullPointerException("Null subscription");
+        if (!this.upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();  // Already subscribed
+            return;
+        }
+        this.schedule();
+    }
+
+    @Override
+    public void onNext(Buffer chunk) {
+        if (chunk == null) throw new NullPointerException("Null chunk");
+        this.chunks.offer(chunk);
+        this.schedule();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (throwable == null) throw new NullPointerException("Null throwable");
+        this.error.compareAndSet(null, throwable);
+        this.completed = true;
+        this.schedule();
+    }
+
+    @Override
+    public void onComplete() {
+        this.completed = true;
+        this.schedule();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Match> subscriber) {
+        if (subscriber == null) throw new NullPointerException("Null subscriber");
+        if (!this.downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A MatchProcessor has a single subscriber."));
+            return;
+        }
+        this.schedule();
+    }
+
+    /**
+     * Run the drain on the executor, unless it is running already; it
+     * then goes round once more.
+     */
+    private void schedule() {
+        if (this.work.getAndIncrement() == 0) this.executor.execute(this.drain);
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            this.step();
+            missed = this.work.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Take up every signal so far: publish the matches that are asked
+     * for, feed the chunks that they need, and end the stream.
+     */
+    private void step() {
+        if (this.terminated) {
+            this.chunks.clear();
+            return;
+        }
+        Flow.Subscriber<? super Match> subscriber = this.downstream.get();
+        if (subscriber == null) return;
+        if (!this.started) {
+            this.started = true;
+            try {
+                subscriber.onSubscribe(new Link());
+            } catch (Throwable throwable) {
+                this.abandon(throwable);
+                return;
+            }
+        }
+
+        while (true) {
+            if (this.cancelled) {
+                this.terminate();
+                return;
+            }
+            Throwable error = this.error.get();
+            if (error != null) {
+                this.terminate();
+                try {
+                    subscriber.onError(error);
+                } catch (Throwable throwable) {
+                    this.abandon(throwable);
+                }
+                return;
+            }
+
+            if (this.ready == null && this.matcher.find()) {
+                this.ready = this.match(this.matcher.getMatch().toString(), (int) this.matcher.getBegin());
+            }
+            if (this.ready != null) {
+                long demand = this.demand.get();
+                if (demand == 0) return;
+                if (demand != Long.MAX_VALUE) this.demand.decrementAndGet();
+                Match match = this.ready;
+                this.ready = null;
+                try {
+                    subscriber.onNext(match);
+                } catch (Throwable throwable) {
+                    this.abandon(throwable);
+                    return;
+                }
+                continue;
+            }
+
+            // The matcher has searched all that it has
+            Buffer chunk = this.chunks.poll();
+            if (chunk != null) {
+                this.requested = false;
+                this.feed(chunk);
+                continue;
+            }
+            if (this.completed) {
+                if (!this.closed) {
+                    this.close();
+                    continue;
+                }
+                this.terminate();
+                try {
+                    subscriber.onComplete();
+                } catch (Throwable throwable) {
+                    this.abandon(throwable);
+                }
+                return;
+            }
+
+            Flow.Subscription upstream = this.upstream.get();
+            if (this.requested || upstream == null || this.demand.get() == 0) return;
+            this.requested = true;
+            upstream.request(1);
+        }
+    }
+
+    /**
+     * Pass a chunk to the matcher, decoding it if it holds bytes.
+     */
+    private void feed(Buffer chunk) {
+        if (chunk instanceof CharBuffer) {
+            this.matcher.feed(((CharBuffer) chunk).duplicate());
+            return;
+        }
+        if (!(chunk instanceof ByteBuffer)) {
+            this.error.compareAndSet(null, new IllegalArgumentException(
+                    "Chunks must be CharBuffers or ByteBuffers, not " + chunk.getClass().getName()));
+            return;
+        }
+
+        ByteBuffer bytes = ((ByteBuffer) chunk).duplicate();
+        if (this.pending.hasRemaining()) {
+            ByteBuffer joined = ByteBuffer.allocate(this.pending.remaining() + bytes.remaining());
+            joined.put(this.pending).put(bytes).flip();
+            bytes = joined;
+        }
+        this.decode(bytes, false);
+
+        // Bytes of a character that the next chunk ends
+        this.pending = ByteBuffer.allocate(bytes.remaining());
+        this.pending.put(bytes).flip();
+    }
+
+    private void decode(ByteBuffer bytes, boolean last) {
+        CoderResult result;
+        do {
+            result = this.decoder.decode(bytes, this.decoded, last);
+            this.decoded.flip();
+            this.matcher.feed(this.decoded);
+            this.decoded.clear();
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Decode the bytes that are left and mark the end of the text.
+     */
+    private void close() {
+        this.decode(this.pending, true);
+        CoderResult result;
+        do {
+            result = this.decoder.flush(this.decoded);
+            this.decoded.flip();
+            this.matcher.feed(this.decoded);
+            this.decoded.clear();
+        } while (result.isOverflow());
+
+        this.matcher.close();
+        this.closed = true;
+    }
+
+    /**
+     * The Match of a part of the text that the matcher has settled, with
+     * the spans of its groups if the regex has any. The TaggedNfa
+     * matches the part alone, so its spans are moved to the index of
+     * the part in the whole text.
+     */
+    private Match match(String text, int begin) {
+        if (this.groups == null) return new Match(text, begin);
+        Match part = this.groups.match(text, 0, text.length());
+        int[] spans = new int[2 * part.getGroupCount() + 2];
+        for (int group = 0; group < spans.length / 2; group++) {
+            int first = part.getGroupBegin(group);
+            spans[2 * group] = first < 0 ? -1 : begin + first;
+            spans[2 * group + 1] = first < 0 ? -1 : begin + part.getGroupEnd(group);
+        }
+        return new Match(text, begin, spans);
+    }
+
+    private void terminate() {
+        this.terminated = true;
+        this.chunks.clear();
+        this.ready = null;
+        Flow.Subscription upstream = this.upstream.get();
+        if (upstream != null && !this.completed) upstream.cancel();
+    }
+
+    /**
+     * Give up on a Subscriber that has thrown, as if it had cancelled.
+     * The exception cannot go to its onError(), so it goes to the
+     * UncaughtExceptionHandler of the thread, which keeps running.
+     */
+    private void abandon(Throwable throwable) {
+        this.cancelled = true;
+        if (!this.terminated) this.terminate();
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, throwable);
+    }
+
+    /**
+     * The Subscription of the matches.
+     */
+    private final class Link implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            MatchProcessor processor = MatchProcessor.this;
+            if (n <= 0) {
+                processor.error.compareAndSet(null, new IllegalArgumentException("Non-positive request " + n));
+            } else {
+                long current, next;
+                do {
+                    current = processor.demand.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!processor.demand.compareAndSet(current, next));
+            }
+            processor.schedule();
+        }
+
+        @Override
+        public void cancel() {
+            MatchProcessor.this.cancelled = true;
+            MatchProcessor.this.schedule();
+        }
+    }
+
+    /**
+     * Builder of MatchProcessors for a regex, one for each stream.
+     */
+    public static final class Builder {
+        private final Nfa nfa;
+        private final TaggedNfa groups;
+        private Charset charset = StandardCharsets.UTF_8;
+        private Executor executor = ForkJoinPool.commonPool();
+
+        /**
+         * Compile a regex for the processors.
+         *
+         * @param regex Regex string to compile
+         * @throws io.github.ahmeterdem1.formality.exceptions.RegexError If the
+         *      regex string is malformed
+         */
+        public Builder(String regex) {
+            Node parsed = Regex.parse(regex);
+            this.nfa = Nfa.of(Regex.compile(Regex.optimize(parsed)));
+            TaggedNfa groups = TaggedNfa.of(parsed);
+            this.groups = groups.getGroupCount() > 0 ? groups : null;
+        }
+
+        /**
+         * Match an automaton with the processors.
+         *
+         * @param automaton The automaton whose matches are published
+         */
+        public Builder(FiniteAutomaton automaton) {
+            this.nfa = Nfa.of(automaton);
+            this.groups = null;
+        }
+
+        /**
+         * Set the Charset that ByteBuffer chunks are decoded with.
+         *
+         * @param charset The Charset, UTF-8 by default
+         * @return This builder
+         */
+        public Builder charset(Charset charset) {
+            if (charset == null) throw new NullPointerException("Null charset");
+            this.charset = charset;
+            return this;
+        }
+
+        /**
+         * Set the Executor that the processors run on. Its threads bound
+         * the number of streams that are matched at once.
+         *
+         * @param executor The Executor, the common ForkJoinPool by default
+         * @return This builder
+         */
+        public Builder executor(Executor executor) {
+            if (executor == null) throw new NullPointerException("Null executor");
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Build a processor for a new stream.
+         *
+         * @return The processor
+         */
+        public MatchProcessor build() {
+            return new MatchProcessor(new LazyDfa(this.nfa), this.groups, this.charset, this.executor);
+        }
+    }
+}
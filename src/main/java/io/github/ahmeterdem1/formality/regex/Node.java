@@ -0,0 +1,342 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * A node of the abstract syntax tree of a regular expression.
+ * Nodes are produced by the regex parser and consumed by the
+ * FiniteAutomaton construction in Regex. Nodes are immutable;
+ * use the static factory methods to create them.
+ */
+public class Node {
+
+    /**
+     * Kinds of regex syntax tree nodes.
+     */
+    public enum Type {
+        EMPTY,        // Matches the empty string
+        LITERAL,      // Matches a fixed String
+        CLASS,        // Matches one character out of a set of ranges
+        CONCAT,       // Children one after another
+        ALTERNATION,  // Any one of the children
+        STAR,         // Child repeated zero or more times
+        PLUS,         // Child repeated one or more times
+        OPTIONAL,     // Child zero or one times
+        GROUP         // Parenthesized child
+    }
+
+    private static final Node EMPTY_NODE = new Node(Type.EMPTY, null, null, Collections.<Node>emptyList());
+
+    private final Type type;
+    private final String literal;
+    private final char[] ranges;
+    private final List<Node> children;
+
+    private Node(Type type, String literal, char[] ranges, List<Node> children) {
+        this.type = type;
+        this.literal = literal;
+        this.ranges = ranges;
+        this.children = children;
+    }
+
+    /**
+     * Get the node that matches only the empty string.
+     *
+     * @return The empty node
+     */
+    public static Node empty() {
+        return EMPTY_NODE;
+    }
+
+    /**
+     * Create a node that matches the given String exactly.
+     *
+     * @param str The String to match, must not be empty
+     * @return Literal node
+     */
+    public static Node literal(String str) {
+        if (str.isEmpty()) return EMPTY_NODE;
+        return new Node(Type.LITERAL, str, null, Collections.<Node>emptyList());
+    }
+
+    /**
+     * Create a node that matches a single character out of the
+     * given ranges. The ranges are given as consecutive pairs of
+     * first and last characters, and must be sorted and disjoint.
+     *
+     * @param ranges Sorted, disjoint range pairs
+     * @return Character class node
+     */
+    public static Node charClass(char[] ranges) {
+        return new Node(Type.CLASS, null, ranges.clone(), Collections.<Node>emptyList());
+    }
+
+    /**
+     * Create a node that matches its children one after another.
+     *
+     * @param nodes Children of the node
+     * @return Concatenation node
+     */
+    public static Node concat(List<Node> nodes) {
+        return new Node(Type.CONCAT, null, null, copyOf(nodes));
+    }
+
+    /**
+     * Create a node that matches any one of its children.
+     *
+     * @param nodes Children of the node
+     * @return Alternation node
+     */
+    public static Node alternation(List<Node> nodes) {
+        return new Node(Type.ALTERNATION, null, null, copyOf(nodes));
+    }
+
+    /**
+     * Create a node that matches its child zero or more times.
+     *
+     * @param node Child of the node
+     * @return Star node
+     */
+    public static Node star(Node node) {
+        return new Node(Type.STAR, null, null, Collections.singletonList(node));
+    }
+
+    /**
+     * Create a node that matches its child one or more times.
+     *
+     * @param node Child of the node
+     * @return Plus node
+     */
+    public static Node plus(Node node) {
+        return new Node(Type.PLUS, null, null, Collections.singletonList(node));
+    }
+
+    /**
+     * Create a node that matches its child zero or one times.
+     *
+     * @param node Child of the node
+     * @return Optional node
+     */
+    public static Node optional(Node node) {
+        return new Node(Type.OPTIONAL, null, null, Collections.singletonList(node));
+    }
+
+    /**
+     * Create a node for a parenthesized subexpression.
+     *
+     * @param node Child of the node
+     * @return Group node
+     */
+    public static Node group(Node node) {
+        return new Node(Type.GROUP, null, null, Collections.singletonList(node));
+    }
+
+    /**
+     * Get the kind of the node.
+     *
+     * @return Type of the node
+     */
+    public final Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Get the String that a LITERAL node matches.
+     *
+     * @return The literal String, null for other node types
+     */
+    public final String getLiteral() {
+        return this.literal;
+    }
+
+    /**
+     * Get the ranges of a CLASS node, as consecutive pairs of
+     * first and last characters.
+     *
+     * @return Copy of the range pairs, null for other node types
+     */
+    public final char[] getRanges() {
+        return this.ranges == null ? null : this.ranges.clone();
+    }
+
+    /**
+     * Get the number of ranges of a CLASS node.
+     *
+     * @return Count of ranges, 0 for other node types
+     */
+    public final int getRangeCount() {
+        return this.ranges == null ? 0 : this.ranges.length / 2;
+    }
+
+    /**
+     * Get the first character of the range at the given index.
+     *
+     * @param i Index of the range
+     * @return First character of the range
+     */
+    public final char getRangeBegin(int i) {
+        return this.ranges[2 * i];
+    }
+
+    /**
+     * Get the last character of the range at the given index.
+     *
+     * @param i Index of the range
+     * @return Last character of the range
+     */
+    public final char getRangeEnd(int i) {
+        return this.ranges[2 * i + 1];
+    }
+
+    /**
+     * Get the children of the node.
+     *
+     * @return Unmodifiable list of children, empty for leaves
+     */
+    public final List<Node> getChildren() {
+        return this.children;
+    }
+
+    /**
+     * Get the only child of a STAR, PLUS, OPTIONAL or GROUP node.
+     *
+     * @return The child node
+     */
+    public final Node getChild() {
+        return this.children.get(0);
+    }
+
+    /**
+     * Check if the node is a leaf, matching a String or a character.
+     *
+     * @return true for EMPTY, LITERAL and CLASS nodes, false otherwise
+     */
+    public final boolean isLeaf() {
+        return this.type == Type.EMPTY || this.type == Type.LITERAL || this.type == Type.CLASS;
+    }
+
+    /**
+     * Print the tree back into regex syntax. The printer keeps its
+     * own stack, so arbitrarily deep trees can be printed.
+     *
+     * @return Regex String that parses into an equivalent tree
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        Stack<Object> work = new Stack<Object>();  // Nodes to print, or Strings to emit
+        Object item;
+        Node node;
+        int i;
+
+        work.push(this);
+        while (!work.isEmpty()) {
+            item = work.pop();
+            if (item instanceof String) {
+                builder.append((String) item);
+                continue;
+            }
+
+            node = (Node) item;
+            switch (node.type) {
+                case EMPTY:
+                    break;
+                case LITERAL:
+                    for (i = 0; i < node.literal.length(); i++) {
+                        appendEscaped(builder, node.literal.charAt(i), false);
+                    }
+                    break;
+                case CLASS:
+                    appendClass(builder, node.ranges);
+                    break;
+                case CONCAT:
+                    for (i = node.children.size() - 1; i >= 0; i--) {
+                        Node child = node.children.get(i);
+                        if (child.type == Type.ALTERNATION) {
+                            work.push(")");
+                            work.push(child);
+                            work.push("(");
+                        } else {
+                            work.push(child);
+                        }
+                    }
+                    break;
+                case ALTERNATION:
+                    for (i = node.children.size() - 1; i >= 0; i--) {
+                        work.push(node.children.get(i));
+                        if (i > 0) work.push("|");
+                    }
+                    break;
+                case GROUP:
+                    work.push(")");
+                    work.push(node.getChild());
+                    work.push("(");
+                    break;
+                default:  // STAR, PLUS, OPTIONAL
+                    work.push(node.type == Type.STAR ? "*" : node.type == Type.PLUS ? "+" : "?");
+                    if (needsParentheses(node.getChild())) {
+                        work.push(")");
+                        work.push(node.getChild());
+                        work.push("(");
+                    } else {
+                        work.push(node.getChild());
+                    }
+                    break;
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static boolean needsParentheses(Node child) {
+        switch (child.type) {
+            case LITERAL:
+                return child.literal.length() > 1;
+            case CLASS:
+            case GROUP:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static void appendClass(StringBuilder builder, char[] ranges) {
+        if (ranges.length == 2 && ranges[0] == ranges[1]) {
+            appendEscaped(builder, ranges[0], false);
+            return;
+        }
+
+        builder.append('[');
+        for (int i = 0; i < ranges.length; i += 2) {
+            appendEscaped(builder, ranges[i], true);
+            if (ranges[i + 1] != ranges[i]) {
+                if (ranges[i + 1] > ranges[i] + 1) builder.append('-');
+                appendEscaped(builder, ranges[i + 1], true);
+            }
+        }
+        builder.append(']');
+    }
+
+    private static void appendEscaped(StringBuilder builder, char c, boolean inClass) {
+        switch (c) {
+            case '(': case ')': case '[': case ']': case '|':
+            case '*': case '+': case '?': case '\\':
+                builder.append('\\');
+                break;
+            case '-': case '^':
+                if (inClass) builder.append('\\');
+                break;
+            default:
+                break;
+        }
+        builder.append(c);
+    }
+
+    private static List<Node> copyOf(List<Node> nodes) {
+        return Collections.unmodifiableList(new ArrayList<Node>(nodes));
+    }
+
+}
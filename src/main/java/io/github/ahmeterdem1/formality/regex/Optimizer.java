@@ -0,0 +1,413 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+/**
+ * Simplifies regex syntax trees before they are turned into graphs.
+ * The rewrites keep the language of the tree, and every one of them
+ * shrinks the FiniteState graph that Regex.compile builds:
+ * <ul>
+ *     <li>groups are flattened, and so are nested concatenations and alternations</li>
+ *     <li>adjacent literals are merged into a single String rule</li>
+ *     <li>repeats of repeats and adjacent repeats are collapsed, x*x* into x*</li>
+ *     <li>common prefixes are factored out of alternations, (abc|abd) into ab[cd]</li>
+ *     <li>single character alternatives are merged into one character class</li>
+ * </ul>
+ * Trees are walked with explicit stacks, so deep trees are fine.
+ */
+final class Optimizer {
+
+    private Optimizer() {}
+
+    /**
+     * Simplify the given syntax tree. Children are simplified before
+     * their parents, so every rewrite sees already simplified input.
+     *
+     * @param root Root of the syntax tree
+     * @return Root of the simplified syntax tree
+     */
+    static Node optimize(Node root) {
+        Stack<Node> nodeStack = new Stack<Node>();
+        Stack<Integer> indexStack = new Stack<Integer>();  // Next child to visit
+        List<Node> done = new ArrayList<Node>();  // Simplified children
+        Node node, result;
+        int i, count, first;
+
+        nodeStack.push(root);
+        indexStack.push(0);
+
+        while (!nodeStack.isEmpty()) {
+            node = nodeStack.peek();
+            i = indexStack.peek();
+            count = node.getChildren().size();
+
+            if (i < count) {
+                indexStack.set(indexStack.size() - 1, i + 1);
+                nodeStack.push(node.getChildren().get(i));
+                indexStack.push(0);
+                continue;
+            }
+
+            nodeStack.pop();
+            indexStack.pop();
+            first = done.size() - count;
+            List<Node> children = new ArrayList<Node>(done.subList(first, done.size()));
+            for (i = done.size() - 1; i >= first; i--) {
+                done.remove(i);
+            }
+
+            switch (node.getType()) {
+                case CLASS:
+                    result = Optimizer.singleCharacter(node);
+                    break;
+                case CONCAT:
+                    result = Optimizer.concat(children);
+                    break;
+                case ALTERNATION:
+                    result = Optimizer.alternation(children);
+                    break;
+                case STAR:
+                case PLUS:
+                case OPTIONAL:
+                    result = Optimizer.repeat(node.getType(), children.get(0));
+                    break;
+                case GROUP:
+                    result = children.get(0);
+                    break;
+                default:  // EMPTY, LITERAL
+                    result = node;
+                    break;
+            }
+            done.add(result);
+        }
+
+        return done.get(0);
+    }
+
+    /**
+     * A class of a single character is a literal, which can then be
+     * merged with its neighbours.
+     */
+    private static Node singleCharacter(Node node) {
+        if (node.getRangeCount() == 1 && node.getRangeBegin(0) == node.getRangeEnd(0)) {
+            return Node.literal(String.valueOf(node.getRangeBegin(0)));
+        }
+        return node;
+    }
+
+    /**
+     * Collapse a repeat of an already simplified child.
+     */
+    private static Node repeat(Node.Type type, Node child) {
+        Node.Type inner = child.getType();
+
+        if (inner == Node.Type.EMPTY) return child;
+        if (inner == Node.Type.STAR || inner == Node.Type.PLUS || inner == Node.Type.OPTIONAL) {
+            // x** = x*+ = x*? = x+* = x?* = x+? = x?+ = x*, x++ = x+, x?? = x?
+            if (inner == type) return child;
+            return Node.star(child.getChild());
+        }
+
+        if (type == Node.Type.STAR) return Node.star(child);
+        if (type == Node.Type.PLUS) return Node.plus(child);
+        return Node.optional(child);
+    }
+
+    /**
+     * Flatten nested concatenations, drop empty children, merge adjacent
+     * literals and collapse adjacent repeats of the same subexpression.
+     */
+    private static Node concat(List<Node> children) {
+        List<Node> items = new ArrayList<Node>();
+        List<Node> nodes = new ArrayList<Node>();
+        StringBuilder run = new StringBuilder();
+        Node merged;
+
+        for (Node child : children) {
+            if (child.getType() == Node.Type.CONCAT) items.addAll(child.getChildren());
+            else if (child.getType() != Node.Type.EMPTY) items.add(child);
+        }
+
+        for (Node item : items) {
+            if (item.getType() == Node.Type.LITERAL) {
+                run.append(item.getLiteral());
+                continue;
+            }
+
+            // x x* is x+, where "x" is the last character of a literal run
+            if (run.length() > 0) {
+                merged = Optimizer.absorb(Node.literal(run.substring(run.length() - 1)), item);
+                if (merged != null) {
+                    run.setLength(run.length() - 1);
+                    item = merged;
+                }
+            }
+            Optimizer.flush(nodes, run);
+
+            if (!nodes.isEmpty()) {
+                merged = Optimizer.absorb(nodes.get(nodes.size() - 1), item);
+                if (merged != null) {
+                    nodes.set(nodes.size() - 1, merged);
+                    continue;
+                }
+            }
+            nodes.add(item);
+        }
+        Optimizer.flush(nodes, run);
+
+        if (nodes.isEmpty()) return Node.empty();
+        if (nodes.size() == 1) return nodes.get(0);
+        return Node.concat(nodes);
+    }
+
+    /**
+     * Append a run of literal characters to a concatenation. The first
+     * character is merged into a preceding x* if it is "x".
+     */
+    private static void flush(List<Node> nodes, StringBuilder run) {
+        Node merged;
+
+        if (run.length() == 0) return;
+        if (!nodes.isEmpty()) {
+            merged = Optimizer.absorb(nodes.get(nodes.size() - 1), Node.literal(run.substring(0, 1)));
+            if (merged != null) {
+                nodes.set(nodes.size() - 1, merged);
+                run.deleteCharAt(0);
+            }
+        }
+        if (run.length() > 0) {
+            nodes.add(Node.literal(run.toString()));
+            run.setLength(0);
+        }
+    }
+
+    /**
+     * Merge two adjacent items of a concatenation into one, if they are
+     * repeats of the same subexpression.
+     *
+     * @return The merged item, null if they cannot be merged
+     */
+    private static Node absorb(Node left, Node right) {
+        Node.Type l = left.getType();
+        Node.Type r = right.getType();
+        boolean leftRepeat = l == Node.Type.STAR || l == Node.Type.PLUS || l == Node.Type.OPTIONAL;
+        boolean rightRepeat = r == Node.Type.STAR || r == Node.Type.PLUS || r == Node.Type.OPTIONAL;
+
+        if (leftRepeat && rightRepeat) {
+            if (!Optimizer.same(left.getChild(), right.getChild())) return null;
+            if (l == Node.Type.STAR && r == Node.Type.STAR) return left;  // x*x*
+            if (l == Node.Type.STAR && r == Node.Type.OPTIONAL) return left;  // x*x?
+            if (l == Node.Type.OPTIONAL && r == Node.Type.STAR) return right;  // x?x*
+            if (l == Node.Type.STAR && r == Node.Type.PLUS) return right;  // x*x+
+            if (l == Node.Type.PLUS && r == Node.Type.STAR) return left;  // x+x*
+            return null;
+        }
+
+        if (r == Node.Type.STAR && Optimizer.same(left, right.getChild())) {
+            return Node.plus(left);  // x x*
+        }
+        if (l == Node.Type.STAR && Optimizer.same(left.getChild(), right)) {
+            return Node.plus(right);  // x* x
+        }
+
+        return null;
+    }
+
+    /**
+     * A node of the prefix tree used to factor alternations.
+     */
+    private static final class Prefix {
+        final Map<Character, Prefix> children = new LinkedHashMap<Character, Prefix>();
+        final List<Node> rests = new ArrayList<Node>();  // What follows the prefix
+        final Set<String> seen = new HashSet<String>();  // Printed rests, to drop duplicates
+        Node result;
+    }
+
+    /**
+     * Flatten nested alternations and factor common prefixes out of
+     * them. Alternatives that start with a literal are put into a
+     * prefix tree keyed by their leading characters, then the tree is
+     * turned back into nodes, so that alternatives sharing a prefix
+     * share the states of the prefix as well.
+     */
+    private static Node alternation(List<Node> children) {
+        List<Node> items = new ArrayList<Node>();
+        Prefix root = new Prefix();
+        Prefix prefix;
+        String literal;
+        Node rest;
+        int i;
+
+        for (Node child : children) {
+            if (child.getType() == Node.Type.ALTERNATION) items.addAll(child.getChildren());
+            else items.add(child);
+        }
+
+        for (Node item : items) {
+            if (item.getType() == Node.Type.LITERAL) {
+                literal = item.getLiteral();
+                rest = Node.empty();
+            } else if (item.getType() == Node.Type.CONCAT
+                    && item.getChildren().get(0).getType() == Node.Type.LITERAL) {
+                literal = item.getChildren().get(0).getLiteral();
+                rest = Optimizer.concat(item.getChildren().subList(1, item.getChildren().size()));
+            } else {
+                Optimizer.addAlternative(root, item);
+                continue;
+            }
+
+            prefix = root;
+            for (i = 0; i < literal.length(); i++) {
+                Prefix next = prefix.children.get(literal.charAt(i));
+                if (next == null) {
+                    next = new Prefix();
+                    prefix.children.put(literal.charAt(i), next);
+                }
+                prefix = next;
+            }
+            Optimizer.addAlternative(prefix, rest);
+        }
+
+        return Optimizer.unfold(root);
+    }
+
+    private static void addAlternative(Prefix prefix, Node node) {
+        if (prefix.seen.add(node.toString())) {  // a|a is a
+            prefix.rests.add(node);
+        }
+    }
+
+    /**
+     * Turn a prefix tree back into nodes, children first. Chains of
+     * prefix nodes with a single child become a single literal.
+     */
+    private static Node unfold(Prefix root) {
+        Stack<Prefix> prefixStack = new Stack<Prefix>();
+        Stack<Boolean> visitedStack = new Stack<Boolean>();
+        StringBuilder label = new StringBuilder();
+        Prefix prefix, child;
+
+        prefixStack.push(root);
+        visitedStack.push(false);
+
+        while (!prefixStack.isEmpty()) {
+            prefix = prefixStack.pop();
+            if (!visitedStack.pop()) {
+                prefixStack.push(prefix);
+                visitedStack.push(true);
+                for (Prefix next : prefix.children.values()) {
+                    prefixStack.push(next);
+                    visitedStack.push(false);
+                }
+                continue;
+            }
+
+            List<Node> alternatives = new ArrayList<Node>(prefix.rests);
+            for (Map.Entry<Character, Prefix> entry : prefix.children.entrySet()) {
+                label.setLength(0);
+                label.append(entry.getKey().charValue());
+                child = entry.getValue();
+                while (child.rests.isEmpty() && child.children.size() == 1) {
+                    Map.Entry<Character, Prefix> only = child.children.entrySet().iterator().next();
+                    label.append(only.getKey().charValue());
+                    child = only.getValue();
+                }
+
+                List<Node> pair = new ArrayList<Node>();
+                pair.add(Node.literal(label.toString()));
+                pair.add(child.result);
+                alternatives.add(Optimizer.concat(pair));
+            }
+
+            prefix.result = Optimizer.choice(alternatives);
+        }
+
+        return root.result;
+    }
+
+    /**
+     * Build the node for a list of factored alternatives. Single
+     * characters and classes are merged into one class, and an empty
+     * alternative makes the rest optional.
+     */
+    private static Node choice(List<Node> alternatives) {
+        List<Node> nodes = new ArrayList<Node>();
+        StringBuilder members = new StringBuilder();
+        boolean optional = false;
+        int classes = 0, i;
+
+        for (Node alternative : alternatives) {
+            if (alternative.getType() == Node.Type.EMPTY) {
+                optional = true;
+            } else if (alternative.getType() == Node.Type.LITERAL && alternative.getLiteral().length() == 1) {
+                members.append(alternative.getLiteral()).append(alternative.getLiteral());
+                classes++;
+            } else if (alternative.getType() == Node.Type.CLASS) {
+                for (i = 0; i < alternative.getRangeCount(); i++) {
+                    members.append(alternative.getRangeBegin(i)).append(alternative.getRangeEnd(i));
+                }
+                classes++;
+            } else {
+                nodes.add(alternative);
+            }
+        }
+
+        if (classes > 0) {
+            nodes.add(0, Optimizer.singleCharacter(Node.charClass(Parser.normalize(members, false))));
+        }
+
+        Node result;
+        if (nodes.isEmpty()) return Node.empty();
+        if (nodes.size() == 1) result = nodes.get(0);
+        else result = Node.alternation(nodes);
+
+        return optional ? Optimizer.repeat(Node.Type.OPTIONAL, result) : result;
+    }
+
+    /**
+     * Structural equality of two syntax trees.
+     */
+    static boolean same(Node a, Node b) {
+        Stack<Node> left = new Stack<Node>();
+        Stack<Node> right = new Stack<Node>();
+        int i;
+
+        left.push(a);
+        right.push(b);
+        while (!left.isEmpty()) {
+            a = left.pop();
+            b = right.pop();
+            if (a == b) continue;
+            if (a.getType() != b.getType()) return false;
+
+            switch (a.getType()) {
+                case LITERAL:
+                    if (!a.getLiteral().equals(b.getLiteral())) return false;
+                    break;
+                case CLASS:
+                    if (a.getRangeCount() != b.getRangeCount()) return false;
+                    for (i = 0; i < a.getRangeCount(); i++) {
+                        if (a.getRangeBegin(i) != b.getRangeBegin(i)
+                                || a.getRangeEnd(i) != b.getRangeEnd(i)) return false;
+                    }
+                    break;
+                default:
+                    if (a.getChildren().size() != b.getChildren().size()) return false;
+                    for (i = 0; i < a.getChildren().size(); i++) {
+                        left.push(a.getChildren().get(i));
+                        right.push(b.getChildren().get(i));
+                    }
+                    break;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,299 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import io.github.ahmeterdem1.formality.exceptions.RegexError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single pass regex parser. Reads the pattern once from left to
+ * right and keeps open "(" and "[" clauses on an explicit stack of
+ * frames, so compile time is linear in the pattern length and deep
+ * nesting cannot overflow the call stack.
+ */
+final class Parser {
+
+    private static final int TOP = 0;
+    private static final int GROUP = 1;
+    private static final int CLASS = 2;
+
+    /**
+     * An open clause of the pattern.
+     */
+    private static final class Frame {
+        final int kind;
+        final int position;  // Index of the opening character, for error hints
+        final List<Node> alternatives = new ArrayList<Node>();
+        final List<Node> sequence = new ArrayList<Node>();  // Items, for classes
+
+        // Only used by classes
+        final StringBuilder members = new StringBuilder();  // Pairs of range begin and end
+        boolean negated;
+        boolean lastWasItem;
+
+        Frame(int kind, int position) {
+            this.kind = kind;
+            this.position = position;
+        }
+    }
+
+    private Parser() {}
+
+    /**
+     * Parse a regex string into its syntax tree.
+     *
+     * @param str Regex string to parse
+     * @return Root of the syntax tree
+     * @throws RegexError If the pattern is malformed
+     */
+    static Node parse(String str) {
+        List<Frame> frames = new ArrayList<Frame>();
+        Frame frame = new Frame(TOP, 0);
+        Node node;
+        char c, last;
+        int i, length = str.length();
+
+        for (i = 0; i < length; i++) {
+            c = str.charAt(i);
+
+            switch (c) {
+                case '(':
+                    frames.add(frame);
+                    frame = new Frame(GROUP, i);
+                    continue;
+                case '[':
+                    frames.add(frame);
+                    frame = new Frame(CLASS, i);
+                    if (i + 1 < length && str.charAt(i + 1) == '^') {
+                        frame.negated = true;
+                        i++;
+                    }
+                    continue;
+                case ')':
+                    if (frame.kind != GROUP) {
+                        throw new RegexError(String.format("Unmatched ')' at index %d", i));
+                    }
+                    node = Node.group(finishGroup(frame));
+                    frame = frames.remove(frames.size() - 1);
+                    append(frame, node);
+                    continue;
+                case ']':
+                    if (frame.kind != CLASS) {
+                        throw new RegexError(String.format("Unmatched ']' at index %d", i));
+                    }
+                    node = finishClass(frame);
+                    frame = frames.remove(frames.size() - 1);
+                    append(frame, node);
+                    continue;
+                default:
+                    break;
+            }
+
+            if (frame.kind == CLASS) {
+                if (isPostfix(c) && frame.lastWasItem) {
+                    frame.sequence.add(postfix(frame.sequence.remove(frame.sequence.size() - 1), c));
+                    continue;
+                }
+
+                if (c == '\\') {
+                    c = str.charAt(checkEscape(str, ++i));
+                }
+                last = c;
+                if (i + 2 < length && str.charAt(i + 1) == '-' && str.charAt(i + 2) != ']') {
+                    i += 2;
+                    last = str.charAt(i);
+                    if (last == '\\') {
+                        last = str.charAt(checkEscape(str, ++i));
+                    }
+                }
+
+                if (i + 1 < length && isPostfix(str.charAt(i + 1))) {
+                    // The operator applies to this member alone
+                    frame.sequence.add(c == last ? Node.literal(String.valueOf(c))
+                                                 : Node.charClass(ordered(c, last)));
+                    frame.lastWasItem = true;
+                } else {
+                    frame.members.append(c).append(last);
+                    frame.lastWasItem = false;
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '|':
+                    frame.alternatives.add(sequence(frame.sequence));
+                    frame.sequence.clear();
+                    break;
+                case '*':
+                case '+':
+                case '?':
+                    if (frame.sequence.isEmpty()) {
+                        throw new RegexError(String.format("Nothing to repeat at index %d", i));
+                    }
+                    frame.sequence.add(postfix(frame.sequence.remove(frame.sequence.size() - 1), c));
+                    break;
+                case '\\':
+                    i = checkEscape(str, i + 1);
+                    frame.sequence.add(Node.literal(String.valueOf(str.charAt(i))));
+                    break;
+                default:
+                    frame.sequence.add(Node.literal(String.valueOf(c)));
+                    break;
+            }
+        }
+
+        if (frame.kind != TOP) {
+            throw new RegexError(String.format("Unclosed '%c' at index %d",
+                    frame.kind == GROUP ? '(' : '[', frame.position));
+        }
+
+        return finishGroup(frame);
+    }
+
+    private static void append(Frame frame, Node node) {
+        frame.sequence.add(node);
+        if (frame.kind == CLASS) frame.lastWasItem = true;
+    }
+
+    private static boolean isPostfix(char c) {
+        return c == '*' || c == '+' || c == '?';
+    }
+
+    private static Node postfix(Node node, char c) {
+        if (c == '*') return Node.star(node);
+        if (c == '+') return Node.plus(node);
+        return Node.optional(node);
+    }
+
+    private static int checkEscape(String str, int i) {
+        if (i >= str.length()) {
+            throw new RegexError(String.format("Trailing '\\' at index %d", i - 1));
+        }
+        return i;
+    }
+
+    private static char[] ordered(char first, char last) {
+        return first <= last ? new char[] {first, last} : new char[] {last, first};
+    }
+
+    /**
+     * Close a "(" clause, or the whole pattern.
+     */
+    private static Node finishGroup(Frame frame) {
+        frame.alternatives.add(sequence(frame.sequence));
+        if (frame.alternatives.size() == 1) return frame.alternatives.get(0);
+        return Node.alternation(frame.alternatives);
+    }
+
+    /**
+     * Turn a sequence of items into a single node. Consecutive
+     * literals are merged into one, so that "abc" becomes a single
+     * String transition instead of three.
+     */
+    private static Node sequence(List<Node> items) {
+        List<Node> nodes = new ArrayList<Node>();
+        StringBuilder run = new StringBuilder();
+
+        for (Node item : items) {
+            if (item.getType() == Node.Type.LITERAL) {
+                run.append(item.getLiteral());
+                continue;
+            }
+            if (run.length() > 0) {
+                nodes.add(Node.literal(run.toString()));
+                run.setLength(0);
+            }
+            nodes.add(item);
+        }
+        if (run.length() > 0) nodes.add(Node.literal(run.toString()));
+
+        if (nodes.isEmpty()) return Node.empty();
+        if (nodes.size() == 1) return nodes.get(0);
+        return Node.concat(nodes);
+    }
+
+    /**
+     * Close a "[" clause. Plain members form a single CLASS node;
+     * groups and repeated members inside the brackets become further
+     * alternatives next to it.
+     */
+    private static Node finishClass(Frame frame) {
+        char[] ranges = Parser.normalize(frame.members, frame.negated);
+        List<Node> alternatives = new ArrayList<Node>();
+
+        if (frame.negated && !frame.sequence.isEmpty()) {
+            throw new RegexError(String.format(
+                    "Negated class at index %d can only contain characters and ranges", frame.position));
+        }
+        if (ranges.length == 0 && frame.sequence.isEmpty()) {
+            throw new RegexError(String.format("Empty class at index %d", frame.position));
+        }
+
+        if (ranges.length > 0) alternatives.add(Node.charClass(ranges));
+        alternatives.addAll(frame.sequence);
+
+        if (alternatives.size() == 1) return alternatives.get(0);
+        return Node.alternation(alternatives);
+    }
+
+    /**
+     * Sort and merge range pairs into disjoint ranges, taking the
+     * complement over all characters if the class is negated.
+     *
+     * @param members Pairs of range begin and end characters
+     * @param negated Whether the class was negated with "^"
+     * @return Sorted, disjoint range pairs
+     */
+    static char[] normalize(CharSequence members, boolean negated) {
+        int count = members.length() / 2;
+        long[] ranges = new long[count];
+        int i, k = 0;
+        char first, last;
+
+        // Pack each range into a long so that sorting orders by range begin
+        for (i = 0; i < count; i++) {
+            first = members.charAt(2 * i);
+            last = members.charAt(2 * i + 1);
+            if (first > last) {
+                char temp = first;
+                first = last;
+                last = temp;
+            }
+            ranges[i] = ((long) first << 16) | last;
+        }
+        Arrays.sort(ranges);
+
+        // Merge overlapping and touching ranges
+        for (i = 0; i < count; i++) {
+            if (k > 0 && (ranges[i] >>> 16) <= (ranges[k - 1] & 0xFFFF) + 1) {
+                if ((ranges[i] & 0xFFFF) > (ranges[k - 1] & 0xFFFF)) {
+                    ranges[k - 1] = (ranges[k - 1] & ~0xFFFFL) | (ranges[i] & 0xFFFF);
+                }
+            } else {
+                ranges[k++] = ranges[i];
+            }
+        }
+
+        StringBuilder result = new StringBuilder();
+        if (!negated) {
+            for (i = 0; i < k; i++) {
+                result.append((char) (ranges[i] >>> 16)).append((char) (ranges[i] & 0xFFFF));
+            }
+            return result.toString().toCharArray();
+        }
+
+        int next = Character.MIN_VALUE;
+        for (i = 0; i < k; i++) {
+            if ((int) (ranges[i] >>> 16) > next) {
+                result.append((char) next).append((char) ((ranges[i] >>> 16) - 1));
+            }
+            next = (int) (ranges[i] & 0xFFFF) + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            result.append((char) next).append(Character.MAX_VALUE);
+        }
+        return result.toString().toCharArray();
+    }
+
+}
@@ -2,7 +2,9 @@ package io.github.ahmeterdem1.formality.regex;
 
 import io.github.ahmeterdem1.formality.regex.Match;
 import io.github.ahmeterdem1.formality.Alphabet;
+import io.github.ahmeterdem1.formality.exceptions.RegexError;
 import io.github.ahmeterdem1.formality.state.FiniteState;
+import io.github.ahmeterdem1.formality.automata.Budget;
 import io.github.ahmeterdem1.formality.automata.FiniteAutomaton;
 
 import java.util.ArrayList;
@@ -19,322 +21,308 @@ public class Regex {
      * Compile a regular expression, into a FiniteAutomata.
      * The returned automata is not always guaranteed to be
      * a DFA. The compiler uses lambda transitions to simulate
-     * + and * loops.
+     * "|", "?", + and * loops. The syntax tree of the regex is
+     * simplified with Regex.optimize before the graph is built.
      *
      * @param str Regex string to compile
      * @return FiniteAutomaton representing the regex
+     * @throws RegexError If the regex string is malformed
      */
     public static FiniteAutomaton compile(String str) {
+        return Regex.compile(Regex.optimize(Regex.parse(str)));
+    }
+
+    /**
+     * Compile a regex syntax tree, into a FiniteAutomata.
+     * The tree is compiled as it is, see Regex.optimize to
+     * simplify it first.
+     *
+     * @param root Root of the syntax tree
+     * @return FiniteAutomaton representing the regex
+     */
+    public static FiniteAutomaton compile(Node root) {
         FiniteAutomaton result = new FiniteAutomaton();
         Alphabet alphabet = new Alphabet();
-        FiniteState begin = new FiniteState();
 
-        FiniteState end = Regex.build(str, begin);
-        end.setFinal(true);
+        FiniteState[] fragment = Regex.construct(root, alphabet);
+        fragment[1].setFinal(true);
 
-        result.setBegin(begin);
-        alphabet.setCharacters(str);
+        result.setBegin(fragment[0]);
         result.setAlphabet(alphabet);
 
-
         return result;
     }
 
     /**
-     * Find regex matches in a text. Tries every possible
-     * substring of the given text. Built based on regex
-     * compiler which is in the same class, and validation
-     * method of the FiniteAutomata class, "validate". See
-     * related documentation for more insight on those.
+     * Parse a regular expression into its syntax tree. The parser
+     * reads the string once and keeps open clauses on an explicit
+     * stack, so parsing is linear in the length of the string and
+     * does not recurse, however deep the nesting is.
+     *
+     * @param str Regex string to parse
+     * @return Root of the syntax tree
+     * @throws RegexError If the regex string is malformed
+     */
+    public static Node parse(String str) {
+        return Parser.parse(str);
+    }
+
+    /**
+     * Simplify a regex syntax tree, keeping its language. Groups
+     * are flattened, adjacent literals are merged, repeats such as
+     * x*x* are collapsed and common prefixes are factored out of
+     * alternations, so that (abc|abd) becomes ab[cd]. Redundant,
+     * machine-generated patterns compile into much smaller graphs
+     * this way.
+     *
+     * @param root Root of the syntax tree
+     * @return Root of the simplified syntax tree
+     */
+    public static Node optimize(Node root) {
+        return Optimizer.optimize(root);
+    }
+
+    /**
+     * Find regex matches in a text: every non-empty substring
+     * that the regex accepts, overlapping ones included. The
+     * ends of the matches are found with a single forward scan,
+     * and the beginnings with a backward scan from each end,
+     * see Searcher.matchAll, instead of validating every
+     * possible substring. The matches hold the spans of the
+     * groups of the regex.
      *
      * @param str The text to perform pattern search on
      * @param regex The regex string to compile
-     * @return The ArrayList of all possible matches, as Match objects
+     * @return The ArrayList of all possible matches, as Match objects,
+     *      sorted by their beginning, then by their end
      */
     public static ArrayList<Match> match(String str, String regex) {
-        ArrayList<Match> result = new ArrayList<Match>();
-        FiniteAutomaton machine = Regex.compile(regex);
-        int length = str.length();
-        String substr;
-
-        // Below implementation is probably suboptimal, very poor indeed.
-        // TODO: Renew the algorithm such that it is "length agnostic".
-
-        // Sub O(length^2) at least
-        for (int i = 0; i < length; i++) {
-            for (int j = i + 1; j < length + 1; j++) {
-                substr = str.substring(i, j);
-                if (machine.validate(substr)) {
-                    result.add(new Match(substr, i));
-                }
-            }
-        }
-
-        return result;
+        return Searcher.compile(regex).matchAll(str);
     }
 
     /**
-     * Sequential FiniteAutomaton builder for regex strings.
-     * Parses the string character by charatcer, or clause by
-     * clause if encountered, then connects each piece with
-     * their respective transition rules sequentially.
+     * Find regex matches in a text, within a Budget. See
+     * Searcher.matchAll for the steps that are counted.
      *
-     * @param str The regex string to parse
-     * @param begin The beginning state
-     * @return The last(deepest) state that the built graph reaches
+     * @param str The text to perform pattern search on
+     * @param regex The regex string to compile
+     * @param budget Limits of the work of the search
+     * @return The ArrayList of all possible matches, as Match objects,
+     *      sorted by their beginning, then by their end
+     * @throws io.github.ahmeterdem1.formality.exceptions.BudgetExceededError
+     *      If the search runs out of its budget
      */
-    private static FiniteState build(String str, FiniteState begin) {
-        FiniteState nextState, lastState, previousState;
-        Stack<Character> charStack = new Stack<Character>();
-        char lastCharacter = 0;
-        char c;
-        int i, j, length = str.length();
-        lastState = begin;
-        previousState = begin;
-
-        for (i = 0; i < length; i++) {
-            c = str.charAt(i);
-
-            switch (c) {
-                case '(':
-                    charStack.push('(');
-                    j = i + 1;
-                    nextState = Regex.build(str.substring(j), lastState);
-                    // After the call to this, there is a connected subgraph
-                    // from lastState to nextState
-                    i = Regex.moveCursor(str, j, charStack);
-                    charStack.empty();
-                    // Above i points to the index after the last possible ) or ]
-                    if (i == -1) return null;
-                    if (i < length) {
-                        c = str.charAt(i);
-                        if (c == '+') {
-                            nextState.addTransition("", lastState);
-                        } else if (c == '*') {
-                            nextState.addTransition("", lastState);
-                            lastState.addTransition("", nextState);
-                        } else {  // This is basically the default case
-                            lastState = nextState;  // Refresh
-                            nextState = new FiniteState();
-                            lastState.addTransition(c, nextState);
-                        }
-                    }
-
-                    previousState = lastState;
-                    lastState = nextState;
-
-                    break;
-                case ')':  // Topmost .build call won't return from this case
-                    if (!charStack.isEmpty() && charStack.peek() == '(') charStack.pop();
-
-                    if (charStack.isEmpty()) return lastState;
-                    else return null;
-
-                case '[':
-                    charStack.push('[');
-                    j = i + 1;
-                    nextState = Regex.orBuild(str.substring(j), lastState);
-                    i = Regex.moveCursor(str, j, charStack);
-                    charStack.empty();
-                    // Above i points to the index after the last possible ) or ]
-                    if (i == -1) return null;
-                    if (i < length) {
-                        c = str.charAt(i);
-                        if (c == '+') {
-                            // This is not so optimized
-                            nextState.addTransition("", begin);
-                            lastState.addTransition("", nextState);
-                            //lastState = nextState;
-                        } else if (c == '*') {
-                            nextState.addTransition("", begin);
-                            begin.addTransition("", lastState);
-                        } else {
-                            lastState = nextState;  // Refresh
-                            nextState = new FiniteState();
-                            lastState.addTransition(c, nextState);
-                        }
-                    }
-                    previousState = lastState;
-                    lastState = nextState;
-                    break;
-                case ']': // Topmost .build call won't return from this case
+    public static ArrayList<Match> match(String str, String regex, Budget budget) {
+        return Searcher.compile(regex).matchAll(str, budget);
+    }
 
-                    if (!charStack.isEmpty() && charStack.peek() == '[') charStack.pop();
+    /**
+     * Find the first match in a text: the leftmost one, and
+     * the longest of those that begin there. The scan stops
+     * at the first end of a match, see Searcher.find. The
+     * match holds the spans of the groups of the regex.
+     *
+     * @param str The text to perform pattern search on
+     * @param regex The regex string to compile
+     * @return The first match, null if there is none
+     */
+    public static Match find(String str, String regex) {
+        return Searcher.compile(regex).find(str);
+    }
 
-                    if (charStack.isEmpty()) return lastState;
-                    else return null;
+    /**
+     * Find the leftmost-longest matches in a text, from left
+     * to right and without overlaps, see Searcher.findAll.
+     * The matches hold the spans of the groups of the regex.
+     *
+     * @param str The text to perform pattern search on
+     * @param regex The regex string to compile
+     * @return The ArrayList of the matches, in order
+     */
+    public static ArrayList<Match> findAll(String str, String regex) {
+        return Searcher.compile(regex).findAll(str);
+    }
 
-                case '+':
-                    lastState.addTransition(lastCharacter, lastState);
-                    break;
-                case '*':
-                    previousState.addTransition("", lastState);
-                    lastState.addTransition(lastCharacter, lastState);
-                    break;
-                case '\\':
-                    i++;
-                    if (i < length) {
-                        c = str.charAt(i);
-                        nextState = new FiniteState();
-                        lastState.addTransition(c, nextState);
-                        previousState = lastState;
-                        lastState = nextState;
-                    } else {
-                        return lastState;
-                    }
-                    break;
-                default:
-                    nextState = new FiniteState();
-                    lastState.addTransition(c, nextState);
-                    previousState = lastState;
-                    lastState = nextState;
-                    break;
-            }  // switch
-            lastCharacter = c;
-        }
+    /**
+     * Check if a text holds a match. The scan stops at the
+     * first end of a match, see Searcher.contains.
+     *
+     * @param str The text to perform pattern search on
+     * @param regex The regex string to compile
+     * @return true if Regex.match would find any match
+     */
+    public static boolean contains(String str, String regex) {
+        return Searcher.compile(regex).contains(str);
+    }
 
-        return lastState;
+    /**
+     * Count the matches in a text, as Regex.match finds them,
+     * without building the Match objects.
+     *
+     * @param str The text to perform pattern search on
+     * @param regex The regex string to compile
+     * @return Count of the matches
+     */
+    public static long count(String str, String regex) {
+        return Searcher.compile(regex).count(str);
     }
 
     /**
-     * Parallel FiniteAutomaton builder for regex strings.
-     * Parses the string character by charatcer, or clause by
-     * clause if encountered, then connects each piece with
-     * their respective transition rules in parallel. This
-     * process may be tweaked by lambda transitions for "+"
-     * and "*" loops, but the general idea remains the same.
+     * Replace the matches that Regex.findAll finds in a text.
+     * The replacement is taken literally. To rewrite a Reader
+     * into a Writer as it is read, see Searcher.replaceAll.
      *
-     * @param str The regex string to parse
-     * @param begin The beginning state
-     * @return The end state that all generated transitions are pointed to
+     * @param str The text to perform pattern search on
+     * @param regex The regex string to compile
+     * @param replacement Text to put in place of each match
+     * @return The text with the replacements
      */
-    private static FiniteState orBuild(String str, FiniteState begin) {
-        FiniteState nextState, end;
-        Stack<Character> charStack = new Stack<Character>();
-        char lastCharacter = 0;
-        char c;
-        int i, j, length = str.length();
-        end = new FiniteState();
+    public static String replaceAll(String str, String regex, String replacement) {
+        return Searcher.compile(regex).replaceAll(str, replacement);
+    }
 
-        for (i = 0; i < length; i++) {
-            c = str.charAt(i);
+    /**
+     * Replace the match that Regex.find finds in a text. The
+     * replacement is taken literally.
+     *
+     * @param str The text to perform pattern search on
+     * @param regex The regex string to compile
+     * @param replacement Text to put in place of the match
+     * @return The text with the replacement
+     */
+    public static String replaceFirst(String str, String regex, String replacement) {
+        return Searcher.compile(regex).replaceFirst(str, replacement);
+    }
 
-            switch (c) {
-                case '(':
-                    charStack.push('(');
-                    j = i + 1;
-                    nextState = Regex.build(str.substring(j), begin);
-                    // After the call to this, there is a connected subgraph
-                    // from lastState to nextState
-                    i = Regex.moveCursor(str, j, charStack);
-                    charStack.empty();
-                    // Above i points to the index after the last possible ) or ]
-                    if (i == -1) return null;
-                    if (i < length) {
-                        c = str.charAt(i);
-                        if (c == '+') {
-                            // This is not so optimized
-                            nextState.addTransition("", begin);
-                            end.addTransition("", nextState);
-                            end = nextState;
-                        } else if (c == '*') {
-                            nextState.addTransition("", begin);
-                            begin.addTransition("", end);
-                        } else {  // Apply the default case
-                            nextState.addTransition("", end);
-                            begin.addTransition(c, end);
-                        }
-                    }
+    /**
+     * Split a text around the matches that Regex.findAll finds.
+     * Empty parts are kept, so n matches give n + 1 parts, see
+     * Searcher.split.
+     *
+     * @param str The text to split
+     * @param regex The regex string to compile
+     * @return The ArrayList of the parts, in order
+     */
+    public static ArrayList<String> split(String str, String regex) {
+        return Searcher.compile(regex).split(str);
+    }
 
-                    break;
-                case ')':  // Topmost .build call won't return from this case
-                    if (!charStack.isEmpty() && charStack.peek() == '(') charStack.pop();
+    /**
+     * Thompson-style FiniteAutomaton builder for regex syntax trees.
+     * Each node becomes a "sub-finite-state-machine" with a single
+     * beginning and a single end state, and sub-machines are plugged
+     * together with lambda transitions. The tree is walked in post
+     * order with an explicit stack, so each node is visited a constant
+     * number of times and deep trees do not overflow the call stack.
+     * Characters that the tree can match are added to the alphabet.
+     *
+     * @param root Root of the syntax tree
+     * @param alphabet Alphabet to collect the characters of the regex into
+     * @return The beginning and the end state of the built graph
+     */
+    private static FiniteState[] construct(Node root, Alphabet alphabet) {
+        Stack<Node> nodeStack = new Stack<Node>();
+        Stack<Integer> indexStack = new Stack<Integer>();  // Next child to visit
+        ArrayList<FiniteState> begins = new ArrayList<FiniteState>();  // Built sub-machines
+        ArrayList<FiniteState> ends = new ArrayList<FiniteState>();
+        FiniteState begin, end, childBegin, childEnd;
+        Node node;
+        int i, count, first;
+
+        nodeStack.push(root);
+        indexStack.push(0);
+
+        while (!nodeStack.isEmpty()) {
+            node = nodeStack.peek();
+            i = indexStack.peek();
+            count = node.getChildren().size();
+
+            if (i < count) {
+                indexStack.set(indexStack.size() - 1, i + 1);
+                nodeStack.push(node.getChildren().get(i));
+                indexStack.push(0);
+                continue;
+            }
 
-                    if (charStack.isEmpty()) return end;
-                    else return null;
+            nodeStack.pop();
+            indexStack.pop();
+            first = begins.size() - count;  // Sub-machines of the children
 
-                case '[':
-                    charStack.push('[');
-                    j = i + 1;
-                    nextState = Regex.orBuild(str.substring(j), begin);
-                    i = Regex.moveCursor(str, j, charStack);
-                    charStack.empty();
-                    // Above i points to the index after the last possible ) or ]
-                    if (i == -1) return null;
-                    if (i < length) {
-                        c = str.charAt(i);
-                        if (c == '+') {
-                            // This is not so optimized
-                            nextState.addTransition("", begin);
-                            end.addTransition("", nextState);
-                            end = nextState;
-                        } else if (c == '*') {
-                            nextState.addTransition("", begin);
-                            begin.addTransition("", end);
-                        } else {  // Apply the default case
-                            nextState.addTransition("", end);
-                            begin.addTransition(c, end);
-                        }
-                    }
+            switch (node.getType()) {
+                case EMPTY:
+                    begin = new FiniteState();
+                    end = begin;
                     break;
-                case ']': // Topmost .build call won't return from this case
-
-                    if (!charStack.isEmpty() && charStack.peek() == '[') charStack.pop();
-
-                    if (charStack.isEmpty()) return end;
-                    else return null;
-
-                case '+':
-                    // Below commented code is a different interpretation of "or"
-                    // operation in regular languages. Apparently, the uncommented
-                    // line is the correct interpretation.
-
-                    //nextState = new FiniteState();
-                    //begin.addTransition(lastCharacter, nextState);
-                    //nextState.addTransition(lastCharacter, nextState);
-                    //nextState.addTransition("", end);
-                    end.addTransition(lastCharacter, end);
+                case LITERAL:
+                    begin = new FiniteState();
+                    end = new FiniteState();
+                    begin.addTransition(node.getLiteral(), end);
+                    alphabet.setCharacters(node.getLiteral());
                     break;
-                case '*':
-                    begin.addTransition("", end);
-                    begin.addTransition(lastCharacter, begin);
+                case CLASS:
+                    begin = new FiniteState();
+                    end = new FiniteState();
+                    for (i = 0; i < node.getRangeCount(); i++) {
+                        begin.addRangeTransition(node.getRangeBegin(i), node.getRangeEnd(i), end);
+                        alphabet.addRange(node.getRangeBegin(i), node.getRangeEnd(i));
+                    }
                     break;
-                case '\\':
+                case CONCAT:
+                    begin = begins.get(first);
+                    end = ends.get(first);
+                    for (i = first + 1; i < begins.size(); i++) {
+                        end.addLambda(begins.get(i));
+                        end = ends.get(i);
+                    }
                     break;
-                default:
-                    begin.addTransition(c, end);
+                case ALTERNATION:
+                    begin = new FiniteState();
+                    end = new FiniteState();
+                    for (i = first; i < begins.size(); i++) {
+                        begin.addLambda(begins.get(i));
+                        ends.get(i).addLambda(end);
+                    }
                     break;
-            }  // switch
-            lastCharacter = c;
-        }
-
-        return end;
-    }
-
-    private static int moveCursor(String str, int i, Stack<Character> charStack) {
-        char c;
-        while (!charStack.isEmpty()) {
-            c = str.charAt(i);
-            switch (c) {
-                case '(':
-                    charStack.push('(');
+                case STAR:
+                    begin = new FiniteState();
+                    end = new FiniteState();
+                    childBegin = begins.get(first);
+                    childEnd = ends.get(first);
+                    begin.addLambda(childBegin);
+                    begin.addLambda(end);
+                    childEnd.addLambda(childBegin);
+                    childEnd.addLambda(end);
                     break;
-                case ')':
-                    if (charStack.peek() == '(') charStack.pop();
-                    else return -1;  // Instead of null
+                case PLUS:
+                    begin = begins.get(first);
+                    end = new FiniteState();
+                    childEnd = ends.get(first);
+                    childEnd.addLambda(begin);
+                    childEnd.addLambda(end);
                     break;
-                case '[':
-                    charStack.push('[');
+                case OPTIONAL:
+                    begin = new FiniteState();
+                    end = new FiniteState();
+                    begin.addLambda(begins.get(first));
+                    begin.addLambda(end);
+                    ends.get(first).addLambda(end);
                     break;
-                case ']':
-                    if (charStack.peek() == '[') charStack.pop();
-                    else return -1;
+                default:  // GROUP
+                    begin = begins.get(first);
+                    end = ends.get(first);
                     break;
             }
-            i++;
+
+            // Replace the sub-machines of the children with the new one
+            for (i = begins.size() - 1; i >= first; i--) {
+                begins.remove(i);
+                ends.remove(i);
+            }
+            begins.add(begin);
+            ends.add(end);
         }
 
-        return i;  // The next character after the parentheses stack ends
+        return new FiniteState[] {begins.get(0), ends.get(0)};
     }
 
 }
@@ -0,0 +1,729 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import io.github.ahmeterdem1.formality.CharScan;
+import io.github.ahmeterdem1.formality.automata.Budget;
+import io.github.ahmeterdem1.formality.automata.FiniteAutomaton;
+import io.github.ahmeterdem1.formality.automata.LazyDfa;
+import io.github.ahmeterdem1.formality.automata.Nfa;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Finds the matches of a regex in a text, with a forward and a
+ * reverse scan instead of trying every substring.
+ *
+ * The automaton of the regex is determinized lazily four ways: as it
+ * is, reversed, and both of those with a loop in front that skips any
+ * number of characters. Reading a text through the unanchored forward
+ * automaton, a final state marks a position where some match ends.
+ * Reading backwards from such an end through the reversed automaton,
+ * a final state marks where a match that ends there begins, and the
+ * DEAD state tells that no match that ends there begins any earlier.
+ * The two other automata do the same the other way around, for find().
+ *
+ * When the regex is compiled from a string, the longest literal that
+ * every match must hold is taken out of its syntax tree, and a text
+ * that does not contain it is passed over with a single
+ * CharScan.indexOf(), with no scans at all. Each scan costs a table lookup per character once
+ * the states it visits are built. The DFAs are built as they are needed, so a
+ * Searcher is not safe to share between threads; compile one for each.
+ *
+ * <pre>
+ *     Searcher searcher = Searcher.compile("a(b)+");
+ *     searcher.matchAll("abbab");  // "ab", "abb" at 0 and "ab" at 3
+ *     searcher.findAll("abbab");   // "abb" at 0 and "ab" at 3
+ *     searcher.replaceAll("abbab", "-");  // "--"
+ * </pre>
+ *
+ * replaceAll(), replaceFirst() and split() also take a Reader, and then
+ * read the text once, in blocks, writing out the result as they go.
+ *
+ * When the regex is compiled from a string that has groups, the
+ * matches that find(), findAll() and matchAll() return hold the spans
+ * of their groups too. The scans settle where a match begins and ends,
+ * and then the TaggedNfa of the regex matches that part alone, which
+ * costs a step for each of its characters; see TaggedNfa for which
+ * groups are reported.
+ */
+public final class Searcher {
+
+    private final LazyDfa forward;     // The automaton itself
+    private final LazyDfa ends;        // Final where a match ends
+    private final LazyDfa reverse;     // Final, read backwards, where a match begins
+    private final LazyDfa beginnings;  // Final, read backwards, where a match begins, wherever it ends
+    private final String literal;      // Held by every match, null if unknown
+    private final boolean nullable;    // The empty String matches
+    private final TaggedNfa groups;    // Finds the groups of a match, null if there are none
+
+    /**
+     * Prepare the scans of an automaton.
+     *
+     * @param automaton The automaton whose matches are searched for
+     */
+    public Searcher(FiniteAutomaton automaton) {
+        this(automaton, null, null);
+    }
+
+    private Searcher(FiniteAutomaton automaton, String literal, TaggedNfa groups) {
+        this.literal = literal;
+        this.groups = groups;
+        Nfa nfa = Nfa.of(automaton);
+        Nfa reversed = nfa.reverse();
+        this.forward = new LazyDfa(nfa);
+        this.nullable = this.forward.isFinal(this.forward.getStart());
+        this.ends = new LazyDfa(nfa.unanchored());
+        this.reverse = new LazyDfa(reversed);
+        this.beginnings = new LazyDfa(reversed.unanchored());
+    }
+
+    /**
+     * Compile a regex for searching.
+     *
+     * @param regex Regex string to compile
+     * @return Searcher of the regex
+     * @throws io.github.ahmeterdem1.formality.exceptions.RegexError If the
+     *      regex string is malformed
+     */
+    public static Searcher compile(String regex) {
+        Node parsed = Regex.parse(regex);
+        Node root = Regex.optimize(parsed);
+        TaggedNfa groups = TaggedNfa.of(parsed);
+        return new Searcher(Regex.compile(root), Searcher.requiredLiteral(root),
+                groups.getGroupCount() > 0 ? groups : null);
+    }
+
+    /**
+     * Get the literal that every match holds.
+     *
+     * @return The longest literal that is part of every match, null if
+     *      none is known
+     */
+    public String getLiteral() {
+        return this.literal;
+    }
+
+    /**
+     * Find every non-empty substring of the text that matches,
+     * overlapping ones included. One forward scan finds the ends of
+     * the matches, then a backward scan from each end finds where the
+     * matches that end there begin, until the reverse automaton dies.
+     * The cost is linear in the length of the text, plus the length of
+     * those backward scans, which is about the length of the matches.
+     *
+     * @param text The text to search
+     * @return All matches, sorted by their beginning, then by their end
+     */
+    public ArrayList<Match> matchAll(CharSequence text) {
+        return this.matchAll(text, Budget.UNLIMITED);
+    }
+
+    /**
+     * Find every non-empty substring of the text that matches, within a
+     * Budget. Every character that a scan reads costs a step, so the
+     * budget also bounds the backward scans.
+     *
+     * @param text The text to search
+     * @param budget Limits of the work of the call
+     * @return All matches, sorted by their beginning, then by their end
+     * @throws io.github.ahmeterdem1.formality.exceptions.BudgetExceededError
+     *      If the call runs out of its budget
+     */
+    public ArrayList<Match> matchAll(CharSequence text, Budget budget) {
+        Budget.Meter meter = budget.start();
+        Spans spans = new Spans();
+        this.scan(text, meter, spans);
+
+        Arrays.sort(spans.values, 0, spans.count);
+        ArrayList<Match> result = new ArrayList<Match>(spans.count);
+        for (int k = 0; k < spans.count; k++) {
+            int i = (int) (spans.values[k] >>> 32);
+            int j = (int) spans.values[k];
+            result.add(this.match(text, i, j, meter));
+        }
+        return result;
+    }
+
+    /**
+     * Count the non-empty substrings of the text that match, the same
+     * ones that matchAll() finds, without building any Match.
+     *
+     * @param text The text to search
+     * @return Count of matches
+     */
+    public long count(CharSequence text) {
+        return this.count(text, Budget.UNLIMITED);
+    }
+
+    /**
+     * Count the non-empty substrings of the text that match, within a
+     * Budget. The steps are counted as in matchAll().
+     *
+     * @param text The text to search
+     * @param budget Limits of the work of the call
+     * @return Count of matches
+     * @throws io.github.ahmeterdem1.formality.exceptions.BudgetExceededError
+     *      If the call runs out of its budget
+     */
+    public long count(CharSequence text, Budget budget) {
+        return this.scan(text, budget.start(), null);
+    }
+
+    /**
+     * Check if some non-empty substring of the text matches. The
+     * forward scan stops at the first end of a match, so a text with
+     * a match near its beginning is not read any further.
+     *
+     * @param text The text to search
+     * @return true if the text holds a match
+     */
+    public boolean contains(CharSequence text) {
+        if (!this.mayMatch(text, 0)) return false;
+        int last = this.lastBeginning(text);
+        int start = this.ends.getStart();
+        int s = start;
+
+        for (int j = 1; j <= text.length(); j++) {
+            s = this.ends.step(s, text.charAt(j - 1));
+            if (this.ends.isFinal(s)) {
+                if (!this.nullable) return true;
+
+                // The match that ends here may be the empty one only
+                int r = this.reverse.getStart();
+                for (int i = j - 1; i >= 0; i--) {
+                    r = this.reverse.step(r, text.charAt(i));
+                    if (r == LazyDfa.DEAD) break;
+                    if (this.reverse.isFinal(r)) return true;
+                }
+            }
+            if (s == start && j > last) return false;  // No match is under way, and none can begin
+        }
+        return false;
+    }
+
+    /**
+     * Find the leftmost-longest match of the text, see find(CharSequence, int).
+     *
+     * @param text The text to search
+     * @return The match, null if there is none
+     */
+    public Match find(CharSequence text) {
+        return this.find(text, 0, Budget.UNLIMITED);
+    }
+
+    /**
+     * Find the leftmost match that begins at or after the given index,
+     * the longest of those that begin there. Empty matches are skipped.
+     * The forward scan stops at the first end of a match, and a
+     * backward scan from there finds where the matches that end there
+     * begin. Only a match that begins even earlier can come first;
+     * the indices in front are checked for one in a single forward
+     * pass, see leftmost(), and the longest match from the first
+     * beginning is read forwards. The search is linear in the length
+     * of the text.
+     *
+     * @param text The text to search
+     * @param from Index to search from
+     * @return The match, null if there is none
+     * @throws IndexOutOfBoundsException If "from" is not an index of the text
+     */
+    public Match find(CharSequence text, int from) {
+        return this.find(text, from, Budget.UNLIMITED);
+    }
+
+    /**
+     * Find the leftmost-longest match that begins at or after the given
+     * index, within a Budget. Every character that a scan reads costs
+     * a step.
+     *
+     * @param text The text to search
+     * @param from Index to search from
+     * @param budget Limits of the work of the call
+     * @return The match, null if there is none
+     * @throws IndexOutOfBoundsException If "from" is not an index of the text
+     * @throws io.github.ahmeterdem1.formality.exceptions.BudgetExceededError
+     *      If the call runs out of its budget
+     */
+    public Match find(CharSequence text, int from, Budget budget) {
+        Budget.Meter meter = budget.start();
+        if (from < 0 || from > text.length()) {
+            throw new IndexOutOfBoundsException("Index " + from + " is out of the text of length " + text.length());
+        }
+        if (!this.mayMatch(text, from)) return null;
+        int begin, end, i, j;
+
+        if (this.nullable) {
+            // A final state of the forward scan does not tell that a non-empty match ends there
+            begin = this.leftmost(text, from, text.length(), meter);
+            if (begin < 0) return null;
+            end = this.longest(text, begin, meter);
+            return this.match(text, begin, end, meter);
+        }
+
+        // The first end of a match
+        int last = this.lastBeginning(text);
+        int start = this.ends.getStart();
+        int s = start;
+        end = -1;
+        for (j = from + 1; j <= text.length() && end < 0; j++) {
+            meter.spend(1);
+            s = this.ends.step(s, text.charAt(j - 1));
+            if (this.ends.isFinal(s)) end = j;
+            else if (s == start && j > last) return null;
+        }
+        if (end < 0) return null;
+
+        // The first beginning of the matches that end there
+        begin = end;
+        int r = this.reverse.getStart();
+        for (i = end - 1; i >= from; i--) {
+            meter.spend(1);
+            r = this.reverse.step(r, text.charAt(i));
+            if (r == LazyDfa.DEAD) break;
+            if (this.reverse.isFinal(r)) begin = i;
+        }
+
+        // A match that begins even earlier ends later
+        i = this.leftmost(text, from, begin, meter);
+        if (i >= 0) begin = i;
+
+        end = this.longest(text, begin, meter);
+        return this.match(text, begin, end, meter);
+    }
+
+    /**
+     * Find the leftmost-longest matches of the text, from left to
+     * right, without overlaps. Empty matches are skipped. The
+     * beginnings of the matches are found with a single backward scan.
+     *
+     * @param text The text to search
+     * @return The matches, in order
+     */
+    public ArrayList<Match> findAll(CharSequence text) {
+        return this.findAll(text, Budget.UNLIMITED);
+    }
+
+    /**
+     * Find the leftmost-longest matches of the text, within a Budget.
+     * Every character that a scan reads costs a step.
+     *
+     * @param text The text to search
+     * @param budget Limits of the work of the call
+     * @return The matches, in order
+     * @throws io.github.ahmeterdem1.formality.exceptions.BudgetExceededError
+     *      If the call runs out of its budget
+     */
+    public ArrayList<Match> findAll(CharSequence text, Budget budget) {
+        Budget.Meter meter = budget.start();
+        ArrayList<Match> result = new ArrayList<Match>();
+        if (!this.mayMatch(text, 0)) return result;
+        boolean[] beginnings = this.beginnings(text, 0, meter);
+        int i = 0;
+
+        while (i < text.length()) {
+            if (!beginnings[i]) {
+                i++;
+                continue;
+            }
+            int j = this.longest(text, i, meter);
+            if (j > i) {
+                result.add(this.match(text, i, j, meter));
+                i = j;
+            } else {
+                i++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replace the matches that findAll() finds, writing the text with
+     * the replacements into "out" in a single pass. The replacement is
+     * taken literally.
+     *
+     * @param text The text to search
+     * @param replacement Text to write in place of each match
+     * @param out Where the result is written
+     * @throws IOException If "out" fails
+     */
+    public void replaceAll(CharSequence text, CharSequence replacement, Appendable out) throws IOException {
+        this.replace(text, replacement, out, true);
+    }
+
+    /**
+     * Replace the matches that findAll() finds.
+     *
+     * @param text The text to search
+     * @param replacement Text to put in place of each match
+     * @return The text with the replacements
+     */
+    public String replaceAll(CharSequence text, CharSequence replacement) {
+        StringBuilder result = new StringBuilder(text.length());
+        try {
+            this.replace(text, replacement, result, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // StringBuilder does not throw
+        }
+        return result.toString();
+    }
+
+    /**
+     * Replace the match that find() finds, writing the text with the
+     * replacement into "out". The replacement is taken literally.
+     *
+     * @param text The text to search
+     * @param replacement Text to write in place of the match
+     * @param out Where the result is written
+     * @throws IOException If "out" fails
+     */
+    public void replaceFirst(CharSequence text, CharSequence replacement, Appendable out) throws IOException {
+        this.replace(text, replacement, out, false);
+    }
+
+    /**
+     * Replace the match that find() finds.
+     *
+     * @param text The text to search
+     * @param replacement Text to put in place of the match
+     * @return The text with the replacement
+     */
+    public String replaceFirst(CharSequence text, CharSequence replacement) {
+        StringBuilder result = new StringBuilder(text.length());
+        try {
+            this.replace(text, replacement, result, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // StringBuilder does not throw
+        }
+        return result.toString();
+    }
+
+    /**
+     * Replace the leftmost-longest matches of the text of a Reader, from
+     * left to right and without overlaps, writing the result into "out"
+     * as the text is read. Only the part of the text where a match may
+     * still be under way is held in memory, so texts of any length can
+     * be rewritten; the matches are the same that findAll() finds.
+     *
+     * @param in Source of the text
+     * @param replacement Text to write in place of each match
+     * @param out Where the result is written
+     * @throws IOException If "in" or "out" fails
+     */
+    public void replaceAll(Reader in, CharSequence replacement, Appendable out) throws IOException {
+        StreamMatcher matcher = new StreamMatcher(this.forward, in);
+        while (matcher.next(out)) out.append(replacement);
+    }
+
+    /**
+     * Replace the first leftmost-longest match of the text of a Reader,
+     * writing the result into "out" as the text is read. The text after
+     * the match is copied as it is.
+     *
+     * @param in Source of the text
+     * @param replacement Text to write in place of the match
+     * @param out Where the result is written
+     * @throws IOException If "in" or "out" fails
+     */
+    public void replaceFirst(Reader in, CharSequence replacement, Appendable out) throws IOException {
+        StreamMatcher matcher = new StreamMatcher(this.forward, in);
+        if (!matcher.next(out)) return;
+        out.append(replacement);
+        matcher.copyRest(out);
+    }
+
+    /**
+     * Split the text around the matches that findAll() finds. A text with
+     * n matches is split into n + 1 parts; the parts in front of the first
+     * match, after the last one and between two adjacent matches may be
+     * empty, and all of them are kept.
+     *
+     * @param text The text to split
+     * @return The parts of the text, in order
+     */
+    public ArrayList<String> split(CharSequence text) {
+        ArrayList<String> result = new ArrayList<String>();
+        int last = 0;
+
+        for (Match match : this.findAll(text)) {
+            result.add(text.subSequence(last, match.getBegin()).toString());
+            last = match.getEnd();
+        }
+        result.add(text.subSequence(last, text.length()).toString());
+        return result;
+    }
+
+    /**
+     * Split the text of a Reader around its leftmost-longest matches, as
+     * split(CharSequence) does, reading as far as the next part only.
+     * Each part is held in memory as it is returned, the rest of the text
+     * is not. If the Reader fails, next() throws an UncheckedIOException.
+     *
+     * @param in Source of the text
+     * @return The parts of the text, in order
+     */
+    public Iterator<String> split(Reader in) {
+        final StreamMatcher matcher = new StreamMatcher(this.forward, in);
+
+        return new Iterator<String>() {
+            private final StringBuilder part = new StringBuilder();
+            private boolean more = true;  // The last part is not returned yet
+
+            @Override
+            public boolean hasNext() {
+                return this.more;
+            }
+
+            @Override
+            public String next() {
+                if (!this.more) throw new NoSuchElementException();
+                this.part.setLength(0);
+                try {
+                    this.more = matcher.next(this.part);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return this.part.toString();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Write the text with its first or all of its matches replaced. The
+     * first match is found with find(), which stops early; all of them
+     * as in findAll(), without building any Match.
+     */
+    private void replace(CharSequence text, CharSequence replacement, Appendable out, boolean all) throws IOException {
+        int last = 0;
+
+        if (!all) {
+            Match match = this.find(text);
+            if (match != null) {
+                out.append(text, 0, match.getBegin());
+                out.append(replacement);
+                last = match.getEnd();
+            }
+        } else if (this.mayMatch(text, 0)) {
+            Budget.Meter meter = Budget.UNLIMITED.start();
+            boolean[] beginnings = this.beginnings(text, 0, meter);
+            int i = 0;
+
+            while (i < text.length()) {
+                if (!beginnings[i]) {
+                    i++;
+                    continue;
+                }
+                int j = this.longest(text, i, meter);
+                if (j > i) {
+                    out.append(text, last, i);
+                    out.append(replacement);
+                    last = i = j;
+                } else {
+                    i++;
+                }
+            }
+        }
+        out.append(text, last, text.length());
+    }
+
+    /**
+     * Scan for every match: forwards for the ends, and backwards from
+     * each end for the beginnings. The forward scan stops once it is
+     * past the last index where a match can begin and the unanchored
+     * automaton is back in its beginning state: from there on, it is
+     * final only where a match ends that begins after that index.
+     *
+     * @param spans Where to add the matches, as beginning and end in a
+     *      long, null to only count them
+     * @return Count of matches
+     */
+    private long scan(CharSequence text, Budget.Meter meter, Spans spans) {
+        if (!this.mayMatch(text, 0)) return 0;
+        int last = this.lastBeginning(text);
+        int start = this.ends.getStart();
+        int s = start;
+        long count = 0;
+        int i, j;
+
+        for (j = 1; j <= text.length(); j++) {
+            meter.spend(1);
+            s = this.ends.step(s, text.charAt(j - 1));
+            if (this.ends.isFinal(s)) {
+                int r = this.reverse.getStart();
+                for (i = j - 1; i >= 0; i--) {
+                    meter.spend(1);
+                    r = this.reverse.step(r, text.charAt(i));
+                    if (r == LazyDfa.DEAD) break;
+                    if (this.reverse.isFinal(r)) {
+                        if (spans != null) spans.add(((long) i << 32) | j);
+                        count++;
+                    }
+                }
+            }
+            if (s == start && j > last) break;
+        }
+        return count;
+    }
+
+    /**
+     * The last index where a match can begin: the last occurrence of
+     * the literal, which every match holds, or the end of the text.
+     */
+    private int lastBeginning(CharSequence text) {
+        if (this.literal == null || this.literal.isEmpty() || !(text instanceof String)) return text.length();
+        return ((String) text).lastIndexOf(this.literal);
+    }
+
+    /**
+     * Find the longest literal among the parts of the syntax tree that
+     * every match goes through: the tree itself, or a part of the
+     * outermost concatenation.
+     */
+    private static String requiredLiteral(Node root) {
+        String result = null;
+
+        if (root.getType() == Node.Type.LITERAL) return root.getLiteral();
+        if (root.getType() != Node.Type.CONCAT) return null;
+        for (Node child : root.getChildren()) {
+            if (child.getType() == Node.Type.PLUS) child = child.getChild();  // At least once
+            if (child.getType() != Node.Type.LITERAL) continue;
+            if (result == null || child.getLiteral().length() > result.length()) result = child.getLiteral();
+        }
+        return result;
+    }
+
+    /**
+     * Check the literal of the regex with CharScan.indexOf, which scans
+     * Strings with String.indexOf and other texts on vectors where the
+     * JVM has them.
+     *
+     * @return false if no match can begin at or after "from"
+     */
+    private boolean mayMatch(CharSequence text, int from) {
+        if (this.literal == null || this.literal.isEmpty()) return true;
+        return CharScan.indexOf(text, this.literal, from) >= 0;
+    }
+
+    /**
+     * Mark the indices from "from" on where a match begins, reading the
+     * text backwards through the unanchored reverse automaton.
+     */
+    private boolean[] beginnings(CharSequence text, int from, Budget.Meter meter) {
+        boolean[] result = new boolean[text.length() - from + 1];
+        int r = this.beginnings.getStart();
+
+        result[text.length() - from] = this.beginnings.isFinal(r);
+        for (int i = text.length() - 1; i >= from; i--) {
+            meter.spend(1);
+            r = this.beginnings.step(r, text.charAt(i));
+            result[i - from] = this.beginnings.isFinal(r);
+        }
+        return result;
+    }
+
+    /**
+     * Find the first index in [from, to) where a non-empty match
+     * begins, in a single forward pass. A candidate is started at each
+     * index, and all of them are stepped together; as in StreamMatcher,
+     * two candidates in the same state read the same future, so the one
+     * that begins later is dropped, and there are never more candidates
+     * than states of the automaton. The first candidate to reach a final
+     * state drops the ones behind it, and the pass goes on only while a
+     * candidate in front of it is alive.
+     *
+     * @return The index, -1 if no non-empty match begins there
+     */
+    private int leftmost(CharSequence text, int from, int to, Budget.Meter meter) {
+        LazyDfa forward = this.forward;
+        int[] starts = new int[16];
+        int[] states = new int[16];
+        int[] seen = new int[64];  // Stamp of the step at which a state was taken
+        int count = 0, found = -1, stamp = 0;
+        int j, k, kept, s;
+
+        for (j = from; j < text.length(); j++) {
+            if (found < 0 && j < to) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, 2 * count);
+                    states = Arrays.copyOf(states, 2 * count);
+                }
+                starts[count] = j;
+                states[count] = forward.getStart();
+                count++;
+            }
+            if (count == 0) break;
+
+            meter.spend(count);
+            char c = text.charAt(j);
+            stamp++;
+            kept = 0;
+            for (k = 0; k < count; k++) {
+                s = forward.step(states[k], c);
+                if (s == LazyDfa.DEAD) continue;
+                if (s >= seen.length) seen = Arrays.copyOf(seen, Math.max(2 * seen.length, s + 1));
+                if (seen[s] == stamp) continue;
+                seen[s] = stamp;
+                if (forward.isFinal(s)) {
+                    found = starts[k];  // Candidates behind this one begin later
+                    break;
+                }
+                starts[kept] = starts[k];
+                states[kept] = s;
+                kept++;
+            }
+            count = kept;
+        }
+        return found;
+    }
+
+    /**
+     * Read forwards from a beginning until the automaton dies.
+     *
+     * @return End of the longest match that begins at "begin", begin if
+     *      there is only the empty one, or none
+     */
+    private int longest(CharSequence text, int begin, Budget.Meter meter) {
+        int s = this.forward.getStart();
+        int end = begin;
+
+        for (int j = begin; j < text.length(); j++) {
+            meter.spend(1);
+            s = this.forward.step(s, text.charAt(j));
+            if (s == LazyDfa.DEAD) break;
+            if (this.forward.isFinal(s)) end = j + 1;
+        }
+        return end;
+    }
+
+    /**
+     * The Match of a part of the text that the scans have settled, with
+     * the spans of its groups if the regex has any.
+     */
+    private Match match(CharSequence text, int begin, int end, Budget.Meter meter) {
+        if (this.groups == null) return new Match(text.subSequence(begin, end).toString(), begin);
+        meter.spend(end - begin);
+        return this.groups.match(text, begin, end);
+    }
+
+    /**
+     * Growable list of matches, packed in longs.
+     */
+    private static final class Spans {
+        long[] values = new long[16];
+        int count;
+
+        void add(long span) {
+            if (this.count == this.values.length) this.values = Arrays.copyOf(this.values, 2 * this.count);
+            this.values[this.count++] = span;
+        }
+    }
+}
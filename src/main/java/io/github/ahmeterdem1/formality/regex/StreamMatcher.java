@@ -0,0 +1,336 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import io.github.ahmeterdem1.formality.automata.LazyDfa;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Finds the leftmost-longest matches of a regex in the text of a
+ * Reader, from left to right and without overlaps, reading the text
+ * once. The text between the matches is written out as soon as no
+ * match can begin in it, so only the part of the text where a match
+ * may still be under way is kept in memory.
+ *
+ * A candidate match is started at every index, and all candidates are
+ * stepped through the forward automaton together. Two candidates in
+ * the same state read the same future, so the one that begins later
+ * can only win if the earlier one never matches; it is dropped, and
+ * the match it has found so far, if any, is kept aside. There are never
+ * more candidates than states of the automaton.
+ *
+ * The text is read from a Reader by next(), or handed over chunk by
+ * chunk with feed() and searched as far as it goes with find(), for
+ * callers that do not own the thread that reads it.
+ *
+ * A match is certain once every candidate that begins before it has
+ * died. The text after its end has been read already, and it is read
+ * again for the next match.
+ */
+final class StreamMatcher {
+
+    private static final int BLOCK = 8192;
+
+    private final LazyDfa forward;
+    private final Reader reader;
+
+    private char[] buffer = new char[BLOCK];
+    private CharBuffer view = CharBuffer.wrap(this.buffer);
+    private long offset;  // Index in the text of the first character of the buffer
+    private int limit;    // Characters in the buffer
+    private int pos;      // Beginning of the text that is not written out yet
+    private int next;     // Index of the next character to read
+    private boolean eof;
+
+    // Candidates, in the order of their beginning
+    private int[] starts = new int[16];
+    private int[] states = new int[16];
+    private int[] ends = new int[16];  // End of the longest match found, the beginning if none
+    private int count;
+
+    private int[] seen = new int[64];  // Stamp of the step at which a state was taken
+    private int stamp;
+
+    // The leftmost match among the candidates that are done, -1 if none
+    private int matchStart = -1;
+    private int matchEnd;
+
+    // The match that next() has moved to
+    private int begin;
+    private int end;
+
+    /**
+     * Search the text of a Reader, with next().
+     */
+    StreamMatcher(LazyDfa forward, Reader reader) {
+        this.forward = forward;
+        this.reader = reader;
+    }
+
+    /**
+     * Search a text that is handed over in chunks, with feed(), close()
+     * and find().
+     */
+    StreamMatcher(LazyDfa forward) {
+        this(forward, null);
+    }
+
+    /**
+     * Move to the next match, writing the text in front of it.
+     *
+     * @param unmatched Where the text from the end of the previous
+     *      match to the beginning of this one is written
+     * @return false if there are no matches left; the rest of the text
+     *      is written then
+     * @throws IOException If the Reader or "unmatched" fails
+     */
+    boolean next(Appendable unmatched) throws IOException {
+        while (true) {
+            if (this.find()) {
+                this.write(unmatched, this.pos, this.begin);
+                this.pos = this.end;
+                return true;
+            }
+            if (this.eof) {
+                this.write(unmatched, this.pos, this.limit);
+                this.pos = this.limit;
+                return false;
+            }
+            this.fill(unmatched);
+        }
+    }
+
+    /**
+     * Add a chunk of the text after the chunks before it.
+     *
+     * @param chunk The characters from its position to its limit, which
+     *      is where its position is moved
+     */
+    void feed(CharBuffer chunk) {
+        this.compact(this.keep());
+        int size = chunk.remaining();
+        if (this.limit + size > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(2 * this.buffer.length, this.limit + size));
+            this.view = CharBuffer.wrap(this.buffer);
+        }
+        chunk.get(this.buffer, this.limit, size);
+        this.limit += size;
+    }
+
+    /**
+     * Mark the end of the text, after the last chunk.
+     */
+    void close() {
+        this.eof = true;
+    }
+
+    /**
+     * Move to the next match in the characters that are read so far.
+     *
+     * @return true if a match is found; false if there are none left
+     *      before the end of the text, or if more of the text has to be
+     *      read to tell
+     */
+    boolean find() {
+        while (true) {
+            if (this.matchStart >= 0 && (this.count == 0 || this.starts[0] > this.matchStart)) {
+                this.begin = this.matchStart;
+                this.end = this.matchEnd;
+                this.next = this.matchEnd;
+                this.count = 0;
+                this.matchStart = -1;
+                return true;
+            }
+
+            if (this.count == 0 && this.matchStart < 0) this.skip();
+            if (this.next == this.limit) {
+                if (!this.eof) return false;
+
+                // Every candidate is done at the end of the text
+                for (int k = 0; k < this.count; k++) this.done(this.starts[k], this.ends[k]);
+                this.count = 0;
+                if (this.matchStart >= 0) continue;
+                return false;
+            }
+
+            this.step(this.buffer[this.next]);
+        }
+    }
+
+    /**
+     * Get the index in the text where the match that find() or next()
+     * has moved to begins.
+     *
+     * @return Count of characters in front of the match
+     */
+    long getBegin() {
+        return this.offset + this.begin;
+    }
+
+    /**
+     * Get the text of the match that find() or next() has moved to. It
+     * is only valid until the buffer is filled again.
+     *
+     * @return The matching characters
+     */
+    CharSequence getMatch() {
+        return this.view.subSequence(this.begin, this.end);
+    }
+
+    /**
+     * Write the rest of the text as it is, without searching it.
+     *
+     * @param out Where the text is written
+     * @throws IOException If the Reader or "out" fails
+     */
+    void copyRest(Appendable out) throws IOException {
+        this.write(out, this.pos, this.limit);
+        this.pos = this.limit;
+        if (this.eof) return;
+
+        int read;
+        while ((read = this.reader.read(this.buffer, 0, this.buffer.length)) > 0) this.write(out, 0, read);
+        this.eof = true;
+        this.pos = this.limit = this.next = 0;
+    }
+
+    /**
+     * Pass over the characters that no match begins with, while no
+     * candidate is under way.
+     */
+    private void skip() {
+        LazyDfa forward = this.forward;
+        char[] buffer = this.buffer;
+        int start = forward.getStart();
+        int j = this.next;
+
+        while (j < this.limit && forward.step(start, buffer[j]) == LazyDfa.DEAD) j++;
+        this.next = j;
+    }
+
+    /**
+     * Start a candidate at the next index and step every candidate over
+     * the character there.
+     */
+    private void step(char c) {
+        LazyDfa forward = this.forward;
+        int j = this.next;
+        int k, kept = 0, s, last;
+
+        if (this.matchStart < 0) this.add(j);  // Otherwise it begins after the match that is done
+
+        this.stamp++;
+        for (k = 0; k < this.count; k++) {
+            s = forward.step(this.states[k], c);
+            last = s != LazyDfa.DEAD && forward.isFinal(s) ? j + 1 : this.ends[k];
+            if (s >= this.seen.length) this.seen = Arrays.copyOf(this.seen, Math.max(2 * this.seen.length, s + 1));
+
+            if (s == LazyDfa.DEAD || this.seen[s] == this.stamp) {
+                this.done(this.starts[k], last);
+                continue;
+            }
+            this.seen[s] = this.stamp;
+            this.starts[kept] = this.starts[k];
+            this.states[kept] = s;
+            this.ends[kept] = last;
+            kept++;
+        }
+        this.count = kept;
+
+        // Candidates that begin after a match that is done cannot come first
+        while (this.matchStart >= 0 && this.count > 0 && this.starts[this.count - 1] > this.matchStart) this.count--;
+        this.next = j + 1;
+    }
+
+    /**
+     * Write a part of the buffer, with the bulk methods of the usual
+     * Appendables.
+     */
+    private void write(Appendable out, int from, int to) throws IOException {
+        if (from == to) return;
+        if (out instanceof Writer) {
+            ((Writer) out).write(this.buffer, from, to - from);
+        } else if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(this.buffer, from, to - from);
+        } else {
+            out.append(this.view, from, to);
+        }
+    }
+
+    private void add(int start) {
+        if (this.count == this.starts.length) {
+            this.starts = Arrays.copyOf(this.starts, 2 * this.count);
+            this.states = Arrays.copyOf(this.states, 2 * this.count);
+            this.ends = Arrays.copyOf(this.ends, 2 * this.count);
+        }
+        this.starts[this.count] = start;
+        this.states[this.count] = this.forward.getStart();
+        this.ends[this.count] = start;
+        this.count++;
+    }
+
+    /**
+     * Keep the match of a candidate that will not read any further, if
+     * it is non-empty and begins before the one that is kept.
+     */
+    private void done(int start, int end) {
+        if (end > start && (this.matchStart < 0 || start < this.matchStart)) {
+            this.matchStart = start;
+            this.matchEnd = end;
+        }
+    }
+
+    /**
+     * Write out the text in front of every candidate, move the rest to
+     * the front of the buffer and read the next block after it.
+     */
+    private void fill(Appendable unmatched) throws IOException {
+        int keep = this.keep();
+        this.write(unmatched, this.pos, keep);
+        this.compact(keep);
+
+        int read = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if (read <= 0) this.eof = true;
+        else this.limit += read;
+    }
+
+    /**
+     * The first index that a candidate or a match that is done may
+     * still take.
+     */
+    private int keep() {
+        int keep = this.next;
+        if (this.count > 0) keep = this.starts[0];
+        if (this.matchStart >= 0) keep = Math.min(keep, this.matchStart);
+        return keep;
+    }
+
+    /**
+     * Drop the characters in front of "keep", and make room for half a
+     * block at least behind the rest.
+     */
+    private void compact(int keep) {
+        int kept = this.limit - keep;
+        System.arraycopy(this.buffer, keep, this.buffer, 0, kept);
+        for (int k = 0; k < this.count; k++) {
+            this.starts[k] -= keep;
+            this.ends[k] -= keep;
+        }
+        if (this.matchStart >= 0) {
+            this.matchStart -= keep;
+            this.matchEnd -= keep;
+        }
+        this.offset += keep;
+        this.pos = 0;
+        this.next -= keep;
+        this.limit = kept;
+
+        if (kept > this.buffer.length - BLOCK / 2) {
+            this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+            this.view = CharBuffer.wrap(this.buffer);
+        }
+    }
+}
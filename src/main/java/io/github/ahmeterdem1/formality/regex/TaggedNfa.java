@@ -0,0 +1,486 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import java.util.Arrays;
+import java.util.Stack;
+
+/**
+ * A regex automaton that also finds the text of each group.
+ *
+ * Groups are numbered from 1 by their "(" from left to right; group 0
+ * is the whole match. The automaton is built from the syntax tree as
+ * it comes out of the parser, since Regex.optimize flattens groups.
+ * It is a Thompson automaton with tags, in the sense of Laurikari: the
+ * beginning and the end of every group is a state with a single lambda
+ * transition that carries a tag. Taking that transition writes the
+ * current position into the register of the tag.
+ *
+ * match() runs all paths at once, each with its own copy of the
+ * registers. The paths are kept in order of priority: the left side of
+ * "|" before the right, and one more round of "*", "+" or "?" before
+ * leaving it. When two paths reach the same state, only the one with
+ * the higher priority is kept, so there are never more paths than
+ * states, and a text is matched in time linear in its length, without
+ * backtracking. The groups of the path with the highest priority that
+ * reads the whole text are reported: those that a backtracking matcher
+ * reports if it restores the groups of the paths it backs out of, as
+ * the re module of Python does. java.util.regex reports other groups
+ * in a few corner cases, where it keeps a group of a path that it has
+ * backed out of, or skips a round of a repeat that matches the empty
+ * String. A group inside a repeat holds its last round.
+ *
+ * A backtracking matcher ends a repeat after a round that matches the
+ * empty String: the round counts, and the repeat is left. The body of a
+ * repeat that can match the empty String is built twice for this. A
+ * round begins in the copy, which stands for a round that has read
+ * nothing yet; the copy leaves the repeat at its end, and moves to the
+ * body itself as soon as it reads a character. The body goes round
+ * again at its end, or leaves. So the repeats of "(a|)*" on "a" go
+ * round twice, and group 1 is the empty String at 1. Each repeat with
+ * such a body doubles the states of the repeats around it, which only
+ * nested repeats of bodies that match the empty String make large.
+ *
+ * <pre>
+ *     TaggedNfa date = TaggedNfa.compile("([0-9]+)-([0-9]+)-([0-9]+)");
+ *     Match match = date.match("2024-05-17");
+ *     match.getGroup(2);       // "05"
+ *     match.getGroupBegin(3);  // 8
+ * </pre>
+ *
+ * The automaton itself is immutable; match() keeps its work arrays to
+ * itself, so a TaggedNfa can be shared between threads.
+ */
+public final class TaggedNfa {
+
+    private static final byte RANGES = 0;  // Reads a character out of ranges
+    private static final byte SPLIT = 1;   // Lambda transitions, in order of priority
+    private static final byte TAG = 2;     // A single lambda transition that sets a tag
+    private static final byte FINAL = 3;
+
+    private final int start;
+    private final int groupCount;
+    private final byte[] kinds;
+    private final int[] tags;
+    private final int[] firsts;  // Transitions of state s are firsts[s] up to firsts[s + 1]
+    private final char[] lows;
+    private final char[] highs;
+    private final int[] targets;
+
+    private TaggedNfa(int start, int groupCount, byte[] kinds, int[] tags, int[] firsts,
+                      char[] lows, char[] highs, int[] targets) {
+        this.start = start;
+        this.groupCount = groupCount;
+        this.kinds = kinds;
+        this.tags = tags;
+        this.firsts = firsts;
+        this.lows = lows;
+        this.highs = highs;
+        this.targets = targets;
+    }
+
+    /**
+     * Compile a regular expression with its groups.
+     *
+     * @param str Regex string to compile
+     * @return Tagged automaton of the regex
+     * @throws io.github.ahmeterdem1.formality.exceptions.RegexError If the
+     *      regex string is malformed
+     */
+    public static TaggedNfa compile(String str) {
+        return TaggedNfa.of(Parser.parse(str));
+    }
+
+    /**
+     * Build the tagged automaton of a syntax tree. Every GROUP node of
+     * the tree is a group, numbered in the order of a depth first walk.
+     * The tree is walked with explicit stacks, like in Regex.compile.
+     *
+     * @param root Root of the syntax tree
+     * @return Tagged automaton of the tree
+     */
+    public static TaggedNfa of(Node root) {
+        Builder builder = new Builder();
+        Stack<Node> nodeStack = new Stack<Node>();
+        Stack<Integer> indexStack = new Stack<Integer>();  // Next child to visit
+        Stack<Integer> groupStack = new Stack<Integer>();  // Number of each group on the stack
+        int[] begins = new int[16];  // Built sub-machines
+        int[] ends = new int[16];
+        int[] froms = new int[16];              // First state of each, its states up to the next are its own
+        boolean[] nullables = new boolean[16];  // It matches the empty String
+        int built = 0, groupCount = 0;
+        int begin, end, from, i, count, first, round;
+        boolean nullable;
+        Node node;
+
+        nodeStack.push(root);
+        indexStack.push(0);
+        groupStack.push(root.getType() == Node.Type.GROUP ? ++groupCount : -1);
+
+        while (!nodeStack.isEmpty()) {
+            node = nodeStack.peek();
+            i = indexStack.peek();
+            count = node.getChildren().size();
+
+            if (i < count) {
+                Node child = node.getChildren().get(i);
+                indexStack.set(indexStack.size() - 1, i + 1);
+                nodeStack.push(child);
+                indexStack.push(0);
+                groupStack.push(child.getType() == Node.Type.GROUP ? ++groupCount : -1);
+                continue;
+            }
+
+            nodeStack.pop();
+            indexStack.pop();
+            int group = groupStack.pop();
+            first = built - count;  // Sub-machines of the children
+            from = count == 0 ? builder.count : froms[first];
+            nullable = count > 0 && nullables[first];
+
+            switch (node.getType()) {
+                case EMPTY:
+                    begin = builder.addState(SPLIT, -1);
+                    end = begin;
+                    nullable = true;
+                    break;
+                case LITERAL:
+                    String literal = node.getLiteral();
+                    nullable = literal.isEmpty();
+                    begin = builder.addState(literal.isEmpty() ? SPLIT : RANGES, -1);
+                    end = begin;
+                    for (i = 0; i < literal.length(); i++) {
+                        int next = i + 1 < literal.length() ? builder.addState(RANGES, -1) : builder.addState(SPLIT, -1);
+                        builder.addTransition(end, literal.charAt(i), literal.charAt(i), next);
+                        end = next;
+                    }
+                    break;
+                case CLASS:
+                    begin = builder.addState(RANGES, -1);
+                    end = builder.addState(SPLIT, -1);
+                    for (i = 0; i < node.getRangeCount(); i++) {
+                        builder.addTransition(begin, node.getRangeBegin(i), node.getRangeEnd(i), end);
+                    }
+                    nullable = false;
+                    break;
+                case CONCAT:
+                    begin = begins[first];
+                    end = ends[first];
+                    for (i = first + 1; i < built; i++) {
+                        builder.addLambda(end, begins[i]);
+                        end = ends[i];
+                        nullable &= nullables[i];
+                    }
+                    break;
+                case ALTERNATION:
+                    begin = builder.addState(SPLIT, -1);
+                    end = builder.addState(SPLIT, -1);
+                    for (i = first; i < built; i++) {
+                        builder.addLambda(begin, begins[i]);
+                        builder.addLambda(ends[i], end);
+                        nullable |= nullables[i];
+                    }
+                    break;
+                case STAR:
+                case PLUS:
+                    // Rounds begin in a copy of a body that matches the empty String, see above
+                    round = nullable ? builder.copy(from, builder.count) - from : 0;
+                    begin = builder.addState(SPLIT, -1);
+                    end = builder.addState(SPLIT, -1);
+                    builder.addLambda(begin, begins[first] + round);
+                    if (node.getType() == Node.Type.STAR) builder.addLambda(begin, end);
+                    builder.addLambda(ends[first], begins[first] + round);
+                    builder.addLambda(ends[first], end);
+                    if (nullable) builder.addLambda(ends[first] + round, end);
+                    nullable |= node.getType() == Node.Type.STAR;
+                    break;
+                case OPTIONAL:
+                    begin = builder.addState(SPLIT, -1);
+                    end = builder.addState(SPLIT, -1);
+                    builder.addLambda(begin, begins[first]);
+                    builder.addLambda(begin, end);
+                    builder.addLambda(ends[first], end);
+                    nullable = true;
+                    break;
+                default:  // GROUP
+                    begin = builder.addState(TAG, 2 * group);
+                    int close = builder.addState(TAG, 2 * group + 1);
+                    end = builder.addState(SPLIT, -1);
+                    builder.addLambda(begin, begins[first]);
+                    builder.addLambda(ends[first], close);
+                    builder.addLambda(close, end);
+                    break;
+            }
+
+            // Replace the sub-machines of the children with the new one
+            built = first;
+            if (built == begins.length) {
+                begins = Arrays.copyOf(begins, 2 * built);
+                ends = Arrays.copyOf(ends, 2 * built);
+                froms = Arrays.copyOf(froms, 2 * built);
+                nullables = Arrays.copyOf(nullables, 2 * built);
+            }
+            begins[built] = begin;
+            froms[built] = from;
+            nullables[built] = nullable;
+            ends[built++] = end;
+        }
+
+        // Group 0 around the whole tree
+        int open = builder.addState(TAG, 0);
+        int close = builder.addState(TAG, 1);
+        int accept = builder.addState(FINAL, -1);
+        builder.addLambda(open, begins[0]);
+        builder.addLambda(ends[0], close);
+        builder.addLambda(close, accept);
+
+        return builder.build(open, groupCount);
+    }
+
+    /**
+     * Get the number of groups, not counting group 0.
+     *
+     * @return Count of "(" groups of the regex
+     */
+    public int getGroupCount() {
+        return this.groupCount;
+    }
+
+    /**
+     * Get the number of states.
+     *
+     * @return Count of states
+     */
+    public int getStateCount() {
+        return this.kinds.length;
+    }
+
+    /**
+     * Match the whole text, and find its groups.
+     *
+     * @param text The text to match
+     * @return The match with its groups, null if the text does not match
+     */
+    public Match match(CharSequence text) {
+        return this.match(text, 0, text.length());
+    }
+
+    /**
+     * Match a part of a text as a whole, and find its groups. Positions
+     * of the groups are indices of the text.
+     *
+     * @param text The text that holds the part
+     * @param begin Index of the first character of the part
+     * @param end Index after the last character of the part
+     * @return The match with its groups, null if the part does not match
+     */
+    public Match match(CharSequence text, int begin, int end) {
+        int count = this.kinds.length;
+        int slots = 2 * this.groupCount + 2;
+        Threads current = new Threads(count, slots);
+        Threads next = new Threads(count, slots);
+        Work work = new Work(count, this.targets.length, slots);
+        int[] registers = work.registers;
+        int k, i;
+
+        Arrays.fill(registers, -1);
+        work.generation++;
+        this.add(current, work, this.start, begin);
+
+        for (int position = begin; position < end && current.size > 0; position++) {
+            char c = text.charAt(position);
+            next.size = 0;
+            work.generation++;
+
+            for (k = 0; k < current.size; k++) {
+                int s = current.states[k];
+                if (this.kinds[s] != RANGES) continue;
+                for (i = this.firsts[s]; i < this.firsts[s + 1]; i++) {
+                    if (this.lows[i] <= c && c <= this.highs[i]) {
+                        System.arraycopy(current.registers, k * slots, registers, 0, slots);
+                        this.add(next, work, this.targets[i], position + 1);
+                        break;
+                    }
+                }
+            }
+
+            Threads swap = current;
+            current = next;
+            next = swap;
+        }
+
+        for (k = 0; k < current.size; k++) {
+            if (this.kinds[current.states[k]] == FINAL) {
+                int[] spans = Arrays.copyOfRange(current.registers, k * slots, (k + 1) * slots);
+                return new Match(text.subSequence(begin, end).toString(), begin, spans);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Follow the lambda transitions from a state, depth first and in
+     * order of priority, and add the states that read characters, or
+     * are final, to the list. Tags are written into the work registers
+     * on the way down and restored on the way back.
+     */
+    private void add(Threads threads, Work work, int s, int position) {
+        int[] registers = work.registers;
+        int[] stack = work.stack;
+        int top = 0, restores = 0, i;
+
+        stack[top++] = s;
+        while (top > 0) {
+            int entry = stack[--top];
+            if (entry < 0) {
+                int r = -entry - 1;
+                registers[work.restoreTags[r]] = work.restoreValues[r];
+                restores = r;
+                continue;
+            }
+
+            s = entry;
+            if (work.marks[s] == work.generation) continue;
+            work.marks[s] = work.generation;
+
+            switch (this.kinds[s]) {
+                case SPLIT:
+                    for (i = this.firsts[s + 1] - 1; i >= this.firsts[s]; i--) {
+                        stack[top++] = this.targets[i];
+                    }
+                    break;
+                case TAG:
+                    work.restoreTags[restores] = this.tags[s];
+                    work.restoreValues[restores] = registers[this.tags[s]];
+                    stack[top++] = -(restores++) - 1;
+                    registers[this.tags[s]] = position;
+                    stack[top++] = this.targets[this.firsts[s]];
+                    break;
+                default:  // RANGES, FINAL
+                    int slots = registers.length;
+                    threads.states[threads.size] = s;
+                    System.arraycopy(registers, 0, threads.registers, threads.size * slots, slots);
+                    threads.size++;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The paths of one position, in order of priority: the state of
+     * each, and its registers.
+     */
+    private static final class Threads {
+        final int[] states;
+        final int[] registers;
+        int size;
+
+        Threads(int count, int slots) {
+            this.states = new int[count];
+            this.registers = new int[count * slots];
+        }
+    }
+
+    /**
+     * Work arrays of the lambda closure. A state has been visited at the
+     * current position when its mark equals the generation.
+     */
+    private static final class Work {
+        final int[] registers;
+        final int[] stack;
+        final int[] restoreTags;
+        final int[] restoreValues;
+        final int[] marks;
+        int generation;
+
+        Work(int count, int transitions, int slots) {
+            this.registers = new int[slots];
+            this.stack = new int[transitions + count + 1];
+            this.restoreTags = new int[count];
+            this.restoreValues = new int[count];
+            this.marks = new int[count];
+        }
+    }
+
+    /**
+     * Growable storage for the states of a TaggedNfa under construction.
+     */
+    private static final class Builder {
+        int count;
+        byte[] kinds = new byte[16];
+        int[] tags = new int[16];
+        char[][] lows = new char[16][];
+        char[][] highs = new char[16][];
+        int[][] targets = new int[16][];
+        int[] transitionCounts = new int[16];
+
+        int addState(byte kind, int tag) {
+            if (this.count == this.kinds.length) {
+                int capacity = 2 * this.count;
+                this.kinds = Arrays.copyOf(this.kinds, capacity);
+                this.tags = Arrays.copyOf(this.tags, capacity);
+                this.lows = Arrays.copyOf(this.lows, capacity);
+                this.highs = Arrays.copyOf(this.highs, capacity);
+                this.targets = Arrays.copyOf(this.targets, capacity);
+                this.transitionCounts = Arrays.copyOf(this.transitionCounts, capacity);
+            }
+            this.kinds[this.count] = kind;
+            this.tags[this.count] = tag;
+            this.lows[this.count] = new char[2];
+            this.highs[this.count] = new char[2];
+            this.targets[this.count] = new int[2];
+            return this.count++;
+        }
+
+        void addTransition(int from, char low, char high, int to) {
+            int n = this.transitionCounts[from];
+            if (n == this.targets[from].length) {
+                this.lows[from] = Arrays.copyOf(this.lows[from], 2 * n);
+                this.highs[from] = Arrays.copyOf(this.highs[from], 2 * n);
+                this.targets[from] = Arrays.copyOf(this.targets[from], 2 * n);
+            }
+            this.lows[from][n] = low;
+            this.highs[from][n] = high;
+            this.targets[from][n] = to;
+            this.transitionCounts[from] = n + 1;
+        }
+
+        void addLambda(int from, int to) {
+            this.addTransition(from, Character.MIN_VALUE, Character.MIN_VALUE, to);
+        }
+
+        /**
+         * Copy the states from "from" up to "to", which only have
+         * transitions among themselves. Lambda transitions of the copy
+         * stay in the copy, and characters lead back to the states that
+         * are copied.
+         *
+         * @return The state that "from" is copied to; the rest follow it
+         *      in order
+         */
+        int copy(int from, int to) {
+            int base = this.count;
+            for (int s = from; s < to; s++) {
+                int copy = this.addState(this.kinds[s], this.tags[s]);
+                int shift = this.kinds[s] == RANGES ? 0 : base - from;
+                for (int i = 0; i < this.transitionCounts[s]; i++) {
+                    this.addTransition(copy, this.lows[s][i], this.highs[s][i], this.targets[s][i] + shift);
+                }
+            }
+            return base;
+        }
+
+        TaggedNfa build(int start, int groupCount) {
+            int[] firsts = new int[this.count + 1];
+            for (int s = 0; s < this.count; s++) firsts[s + 1] = firsts[s] + this.transitionCounts[s];
+            char[] lows = new char[firsts[this.count]];
+            char[] highs = new char[firsts[this.count]];
+            int[] targets = new int[firsts[this.count]];
+            for (int s = 0; s < this.count; s++) {
+                System.arraycopy(this.lows[s], 0, lows, firsts[s], this.transitionCounts[s]);
+                System.arraycopy(this.highs[s], 0, highs, firsts[s], this.transitionCounts[s]);
+                System.arraycopy(this.targets[s], 0, targets, firsts[s], this.transitionCounts[s]);
+            }
+            return new TaggedNfa(start, groupCount, Arrays.copyOf(this.kinds, this.count),
+                    Arrays.copyOf(this.tags, this.count), firsts, lows, highs, targets);
+        }
+    }
+}
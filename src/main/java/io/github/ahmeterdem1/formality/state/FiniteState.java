@@ -1,5 +1,9 @@
 package io.github.ahmeterdem1.formality.state;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 
@@ -9,12 +13,24 @@ import java.util.Map;
  */
 public class FiniteState extends State {
 
+    // Range transitions, kept sorted and disjoint
+    private char[] rangeBegins;
+    private char[] rangeEnds;
+    private FiniteState[] rangeTargets;
+    private int rangeCount;
+
+    private List<FiniteState> lambdas;
+
     public FiniteState() {
         super();
+        this.clearRanges();
+        this.lambdas = new ArrayList<FiniteState>();
     }
 
     public FiniteState(boolean flag) {
         super(flag);
+        this.clearRanges();
+        this.lambdas = new ArrayList<FiniteState>();
     }
 
     /**
@@ -63,6 +79,130 @@ public class FiniteState extends State {
         this.transitions.put(str, s);
     }
 
+    /**
+     * Add a transition rule to the state that matches any single
+     * character in the inclusive range from "first" to "last". Range
+     * transitions are stored as sorted, disjoint intervals; where the
+     * new range overlaps an existing one, the new rule replaces the
+     * old one for the overlapping characters, just as adding a String
+     * rule twice replaces the first one.
+     *
+     * @param first The first character of the range
+     * @param last The last character of the range
+     * @param s State that the transition points to
+     */
+    public void addRangeTransition(char first, char last, FiniteState s) {
+        this.putRange(first, last, s);
+    }
+
+    /**
+     * Remove the rule for all characters in the inclusive range
+     * from "first" to "last", splitting range transitions that
+     * partially overlap it.
+     *
+     * @param first The first character of the range
+     * @param last The last character of the range
+     */
+    public void removeRangeTransition(char first, char last) {
+        this.putRange(first, last, null);
+    }
+
+    /**
+     * Get the State that the range transitions point to for the
+     * given character. The lookup is a binary search over the sorted
+     * ranges.
+     *
+     * @param c Character to look up
+     * @return Returns the State if a range contains the character, null otherwise
+     */
+    public FiniteState getRangeState(char c) {
+        int low = 0;
+        int high = this.rangeCount - 1;
+        int mid;
+
+        while (low <= high) {
+            mid = (low + high) >>> 1;
+            if (c < this.rangeBegins[mid]) high = mid - 1;
+            else if (c > this.rangeEnds[mid]) low = mid + 1;
+            else return this.rangeTargets[mid];
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the number of range transitions of the state.
+     *
+     * @return Count of disjoint ranges
+     */
+    public final int getRangeCount() {
+        return this.rangeCount;
+    }
+
+    /**
+     * Get the first character of the range transition at the given
+     * index. Ranges are sorted in ascending order.
+     *
+     * @param i Index of the range
+     * @return First character of the range
+     */
+    public final char getRangeBegin(int i) {
+        return this.rangeBegins[i];
+    }
+
+    /**
+     * Get the last character of the range transition at the given
+     * index. Ranges are sorted in ascending order.
+     *
+     * @param i Index of the range
+     * @return Last character of the range
+     */
+    public final char getRangeEnd(int i) {
+        return this.rangeEnds[i];
+    }
+
+    /**
+     * Get the target State of the range transition at the given index.
+     *
+     * @param i Index of the range
+     * @return State that the range points to
+     */
+    public final FiniteState getRangeTarget(int i) {
+        return this.rangeTargets[i];
+    }
+
+    /**
+     * Add a lambda transition to the given state. A lambda rule added
+     * with addTransition("", s) is a single rule like any other String
+     * rule, and adding another one replaces it. Any number of lambda
+     * transitions can be added with this method instead, which is what
+     * the regex compiler uses to plug sub-machines together.
+     *
+     * @param s State that the lambda transition points to
+     */
+    public void addLambda(FiniteState s) {
+        this.lambdas.add(s);
+    }
+
+    /**
+     * Remove a lambda transition that was added with addLambda.
+     *
+     * @param s State that the lambda transition points to
+     */
+    public void removeLambda(FiniteState s) {
+        this.lambdas.remove(s);
+    }
+
+    /**
+     * Get the lambda transitions that were added with addLambda,
+     * in the order they were added.
+     *
+     * @return Unmodifiable list of target States
+     */
+    public List<FiniteState> getLambdas() {
+        return Collections.unmodifiableList(this.lambdas);
+    }
+
     /**
      * Remove a transition rule from the state, where the match rule is
      * a char primitive. The char will be interpreted as a String.
@@ -181,6 +321,9 @@ public class FiniteState extends State {
         for (String str : transitions.keySet()) {
             result.addTransition(str, result);
         }
+        for (int i = 0; i < s1.rangeCount; i++) {
+            result.addRangeTransition(s1.rangeBegins[i], s1.rangeEnds[i], result);
+        }
         return result;
     }
 
@@ -201,7 +344,91 @@ public class FiniteState extends State {
         for (String str : transitions.keySet()) {
             s2.addTransition(str, s2);
         }
+        for (int i = 0; i < s1.rangeCount; i++) {
+            s2.addRangeTransition(s1.rangeBegins[i], s1.rangeEnds[i], s2);
+        }
         return s2;
     }
 
+    private void clearRanges() {
+        this.rangeBegins = new char[0];
+        this.rangeEnds = new char[0];
+        this.rangeTargets = new FiniteState[0];
+        this.rangeCount = 0;
+    }
+
+    /**
+     * Overwrite the range from "first" to "last" with the given target.
+     * A null target removes the range. Neighbouring ranges that point
+     * to the same State are merged, so the interval list stays minimal.
+     */
+    private void putRange(char first, char last, FiniteState target) {
+        if (first > last) {
+            char temp = first;
+            first = last;
+            last = temp;
+        }
+
+        int capacity = this.rangeCount + 2;
+        char[] begins = new char[capacity];
+        char[] ends = new char[capacity];
+        FiniteState[] targets = new FiniteState[capacity];
+        int count = 0;
+        int i = 0;
+        boolean placed = target == null;
+
+        for (i = 0; i < this.rangeCount; i++) {
+            char b = this.rangeBegins[i];
+            char e = this.rangeEnds[i];
+
+            if (e < first) {  // Entirely before
+                count = appendRange(begins, ends, targets, count, b, e, this.rangeTargets[i]);
+                continue;
+            }
+
+            if (!placed && b > last) {
+                count = appendRange(begins, ends, targets, count, first, last, target);
+                placed = true;
+            }
+
+            if (b > last) {  // Entirely after
+                count = appendRange(begins, ends, targets, count, b, e, this.rangeTargets[i]);
+                continue;
+            }
+
+            // Overlapping; keep the parts that stick out of [first, last]
+            if (b < first) {
+                count = appendRange(begins, ends, targets, count, b, (char) (first - 1), this.rangeTargets[i]);
+            }
+            if (!placed) {
+                count = appendRange(begins, ends, targets, count, first, last, target);
+                placed = true;
+            }
+            if (e > last) {
+                count = appendRange(begins, ends, targets, count, (char) (last + 1), e, this.rangeTargets[i]);
+            }
+        }
+
+        if (!placed) {
+            count = appendRange(begins, ends, targets, count, first, last, target);
+        }
+
+        this.rangeBegins = Arrays.copyOf(begins, count);
+        this.rangeEnds = Arrays.copyOf(ends, count);
+        this.rangeTargets = Arrays.copyOf(targets, count);
+        this.rangeCount = count;
+    }
+
+    private static int appendRange(char[] begins, char[] ends, FiniteState[] targets,
+                                   int count, char b, char e, FiniteState target) {
+        if (count > 0 && targets[count - 1] == target && ends[count - 1] + 1 == b) {
+            ends[count - 1] = e;
+            return count;
+        }
+        begins[count] = b;
+        ends[count] = e;
+        targets[count] = target;
+        return count + 1;
+    }
+
 }
@@ -1,6 +1,8 @@
 package io.github.ahmeterdem1.formality.state;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -13,16 +15,23 @@ public class PushdownState extends State {
     private Map<String, String> readStack;
     private Map<String, String> writeStack;
 
+    // Lambda transitions added with addLambda, with their stack operations
+    private List<PushdownState> lambdaTargets;
+    private List<String> lambdaReads;
+    private List<String> lambdaWrites;
+
     public PushdownState() {
         super();
         this.readStack = new HashMap<String, String>();
         this.writeStack = new HashMap<String, String>();
+        this.clearLambdas();
     }
 
     public PushdownState(boolean flag) {
         super(flag);
         this.readStack = new HashMap<String, String>();
         this.writeStack = new HashMap<String, String>();
+        this.clearLambdas();
     }
 
     /**
@@ -127,6 +136,86 @@ public class PushdownState extends State {
         }
     }
 
+    /**
+     * Add a lambda transition to the given state, which pops "read" off
+     * the stack and then pushes "write", both written from the bottom
+     * of the stack to its top. Unlike the "" rule of addTransition, any
+     * number of lambda transitions can be added, so they make the
+     * automaton non-deterministic. They are followed by
+     * PushdownAutomaton.validateAll and by compiled tables, but not by
+     * the greedy PushdownAutomaton.validate.
+     *
+     * @param s State that the lambda transition points to
+     * @param read Symbols to pop; may be empty
+     * @param write Symbols to push; may be empty
+     */
+    public void addLambda(PushdownState s, String read, String write) {
+        this.lambdaTargets.add(s);
+        this.lambdaReads.add(read);
+        this.lambdaWrites.add(write);
+    }
+
+    /**
+     * Remove every lambda transition to the given state that was added
+     * with addLambda.
+     *
+     * @param s State that the lambda transitions point to
+     */
+    public void removeLambda(PushdownState s) {
+        for (int i = this.lambdaTargets.size() - 1; i >= 0; i--) {
+            if (this.lambdaTargets.get(i) == s) {
+                this.lambdaTargets.remove(i);
+                this.lambdaReads.remove(i);
+                this.lambdaWrites.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Get the number of lambda transitions added with addLambda.
+     *
+     * @return Count of lambda transitions
+     */
+    public int getLambdaCount() {
+        return this.lambdaTargets.size();
+    }
+
+    /**
+     * Get the target of the i'th lambda transition.
+     *
+     * @param i Index of the lambda transition
+     * @return State that the transition points to
+     */
+    public PushdownState getLambdaTarget(int i) {
+        return this.lambdaTargets.get(i);
+    }
+
+    /**
+     * Get the symbols that the i'th lambda transition pops.
+     *
+     * @param i Index of the lambda transition
+     * @return Symbols from the bottom of the stack to its top
+     */
+    public String getLambdaRead(int i) {
+        return this.lambdaReads.get(i);
+    }
+
+    /**
+     * Get the symbols that the i'th lambda transition pushes.
+     *
+     * @param i Index of the lambda transition
+     * @return Symbols from the bottom of the stack to its top
+     */
+    public String getLambdaWrite(int i) {
+        return this.lambdaWrites.get(i);
+    }
+
+    private void clearLambdas() {
+        this.lambdaTargets = new ArrayList<PushdownState>();
+        this.lambdaReads = new ArrayList<String>();
+        this.lambdaWrites = new ArrayList<String>();
+    }
+
     /**
      * Remove a transition rule from the state, where the match rule is
      * a char primitive. The char will be interpreted as a String.
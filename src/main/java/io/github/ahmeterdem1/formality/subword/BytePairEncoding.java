@@ -0,0 +1,237 @@
+package io.github.ahmeterdem1.formality.subword;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte pair encoding: each word starts out as one token per character,
+ * and the adjacent pair of tokens with the highest priority merge is
+ * merged, until no pair of the word has a merge. Merges are given in
+ * order of priority, each as the two tokens it joins, separated by a
+ * space, as in the usual merges file.
+ *
+ * The pairs of a word wait in a binary heap, ordered by the priority of
+ * their merge and then by their position, so the first pair of the best
+ * merge is always on top. When two tokens merge, only the pairs around
+ * the new token change; pairs that are gone are dropped when they come
+ * to the top. A word of n characters therefore takes O(n log n) steps,
+ * instead of the O(n^2) of searching all pairs after each merge.
+ *
+ * Merges are kept in an open addressing hash table of primitive arrays,
+ * keyed by the numbers of the two tokens.
+ *
+ * <pre>
+ *     Vocabulary vocabulary = new Vocabulary(Arrays.asList("[UNK]", "l", "o", "w", "lo", "low"));
+ *     BytePairEncoding tokenizer = new BytePairEncoding(vocabulary, Arrays.asList("l o", "lo w"), "[UNK]");
+ *     tokenizer.encode("low");  // low
+ * </pre>
+ *
+ * A BytePairEncoding is immutable and can be shared between threads.
+ */
+public final class BytePairEncoding {
+
+    private static final long EMPTY = -1L;
+
+    private final Vocabulary vocabulary;
+    private final int unknown;
+
+    // Hash table from pairs of tokens to the priority and the result of their merge
+    private final long[] keys;
+    private final int[] ranks;
+    private final int[] results;
+    private final int mask;
+
+    /**
+     * Prepare a tokenizer.
+     *
+     * @param vocabulary Tokens to split into
+     * @param merges Merges in order of priority, as "left right"
+     * @param unknown The token of characters that are not in the vocabulary
+     * @throws IllegalArgumentException If the unknown token is not in the
+     *      vocabulary, or a merge is malformed or joins tokens that are not
+     *      in the vocabulary
+     */
+    public BytePairEncoding(Vocabulary vocabulary, List<String> merges, String unknown) {
+        this.vocabulary = vocabulary;
+        this.unknown = vocabulary.getId(unknown);
+        if (this.unknown < 0) {
+            throw new IllegalArgumentException(String.format("The unknown token %s is not in the vocabulary.", unknown));
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(4, 2 * merges.size()) - 1) << 1;
+        this.keys = new long[capacity];
+        this.ranks = new int[capacity];
+        this.results = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(this.keys, EMPTY);
+
+        for (int rank = 0; rank < merges.size(); rank++) {
+            String merge = merges.get(rank);
+            int space = merge.indexOf(' ');
+            if (space <= 0 || space == merge.length() - 1 || merge.indexOf(' ', space + 1) >= 0) {
+                throw new IllegalArgumentException(String.format("Malformed merge \"%s\".", merge));
+            }
+            int left = vocabulary.getId(merge, 0, space);
+            int right = vocabulary.getId(merge, space + 1, merge.length());
+            String joined = merge.substring(0, space) + merge.substring(space + 1);
+            int result = vocabulary.getId(joined);
+            if (left < 0 || right < 0 || result < 0) {
+                throw new IllegalArgumentException(String.format(
+                        "The merge \"%s\" has tokens that are not in the vocabulary.", merge));
+            }
+
+            long key = BytePairEncoding.key(left, right);
+            int slot = this.slot(key);
+            if (this.keys[slot] == EMPTY) {  // the first of repeated merges wins
+                this.keys[slot] = key;
+                this.ranks[slot] = rank;
+                this.results[slot] = result;
+            }
+        }
+    }
+
+    /**
+     * Split a text into tokens. Words are separated by whitespace.
+     *
+     * @param text The text to split
+     * @return Numbers of the tokens, in order
+     */
+    public int[] encode(CharSequence text) {
+        int[] result = new int[16];
+        int count = 0;
+        int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) i++;
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) i++;
+            if (start == i) break;
+
+            if (count + i - start > result.length) {
+                result = Arrays.copyOf(result, Math.max(2 * result.length, count + i - start));
+            }
+            count += this.encodeWord(text, start, i, result, count);
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Split a single word into tokens. At most one token is written for
+     * each character of the word.
+     *
+     * @param text The String that holds the word
+     * @param start Index of the first character of the word
+     * @param end Index after the last character of the word
+     * @param out Array to write the numbers of the tokens into
+     * @param offset Index of out to write the first token at
+     * @return Count of tokens written
+     */
+    public int encodeWord(CharSequence text, int start, int end, int[] out, int offset) {
+        int n = end - start;
+        if (n == 0) return 0;
+        int[] tokens = new int[n];
+        int[] previous = new int[n];
+        int[] next = new int[n];
+        long[] heap = new long[3 * n];
+        int size = 0, i;
+
+        for (i = 0; i < n; i++) {
+            tokens[i] = this.vocabulary.getId(text, start + i, start + i + 1);
+            if (tokens[i] < 0) tokens[i] = this.unknown;
+            previous[i] = i - 1;
+            next[i] = i + 1 < n ? i + 1 : -1;
+        }
+        for (i = 0; i + 1 < n; i++) {
+            size = this.offer(heap, size, tokens, i, i + 1);
+        }
+
+        // Positions of merged away tokens are marked with -1
+        while (size > 0) {
+            long top = heap[0];
+            size = BytePairEncoding.poll(heap, size);
+            int rank = (int) (top >>> 32);
+            int left = (int) top;
+            int right = tokens[left] < 0 ? -1 : next[left];
+            if (right < 0) continue;
+
+            int slot = this.slot(BytePairEncoding.key(tokens[left], tokens[right]));
+            if (this.keys[slot] == EMPTY || this.ranks[slot] != rank) continue;
+
+            tokens[left] = this.results[slot];
+            tokens[right] = -1;
+            next[left] = next[right];
+            if (next[right] >= 0) previous[next[right]] = left;
+
+            if (previous[left] >= 0) size = this.offer(heap, size, tokens, previous[left], left);
+            if (next[left] >= 0) size = this.offer(heap, size, tokens, left, next[left]);
+        }
+
+        int count = offset;
+        for (i = 0; i >= 0; i = next[i]) out[count++] = tokens[i];
+        return count - offset;
+    }
+
+    /**
+     * Get the vocabulary of the tokens.
+     *
+     * @return The vocabulary
+     */
+    public Vocabulary getVocabulary() {
+        return this.vocabulary;
+    }
+
+    /**
+     * Push the pair at "left" and "right" on the heap, if it has a merge.
+     */
+    private int offer(long[] heap, int size, int[] tokens, int left, int right) {
+        int slot = this.slot(BytePairEncoding.key(tokens[left], tokens[right]));
+        if (this.keys[slot] == EMPTY) return size;
+
+        long entry = (long) this.ranks[slot] << 32 | left;
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= entry) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+        return size;
+    }
+
+    /**
+     * Remove the top of the heap.
+     */
+    private static int poll(long[] heap, int size) {
+        long entry = heap[--size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (entry <= heap[child]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = entry;
+        return size;
+    }
+
+    /**
+     * Find the slot of a key: where it is, or the empty slot where it
+     * would go.
+     */
+    private int slot(long key) {
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & this.mask;
+        while (this.keys[slot] != EMPTY && this.keys[slot] != key) {
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+
+    private static long key(int left, int right) {
+        return (long) left << 32 | right;
+    }
+}
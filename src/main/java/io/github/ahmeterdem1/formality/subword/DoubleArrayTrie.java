@@ -0,0 +1,398 @@
+package io.github.ahmeterdem1.formality.subword;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+import io.github.ahmeterdem1.formality.automata.FiniteAutomaton;
+import io.github.ahmeterdem1.formality.state.FiniteState;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A trie of Strings, stored as a double array.
+ *
+ * The trie is a deterministic finite automaton whose states are the
+ * prefixes of the keys, with the root as the beginning state and the
+ * keys as final states. Characters that appear in the keys are numbered
+ * from 1 in sorted order. The transition from state s on character c,
+ * numbered k, leads to state base[s] + k, if check[base[s] + k] is s;
+ * otherwise there is none. So a transition costs two array reads, and
+ * the whole trie is kept in three int arrays, no matter how many keys
+ * it holds.
+ *
+ * Each key carries an int value, which is -1 for states that are not
+ * the end of a key. toFiniteAutomaton() turns the trie back into a graph
+ * of FiniteState objects.
+ */
+public final class DoubleArrayTrie {
+
+    /**
+     * The state that step() returns when no transition matches.
+     */
+    public static final int NONE = -1;
+
+    private static final int ROOT = 0;
+    private static final int ASCII = 128;
+
+    private final int[] base;
+    private final int[] check;
+    private final int[] values;
+
+    // Numbers of the characters: ASCII directly, others by binary search
+    private final int[] asciiCodes;
+    private final char[] chars;
+    private final int keyCount;
+
+    private DoubleArrayTrie(int[] base, int[] check, int[] values, char[] chars, int keyCount) {
+        this.base = base;
+        this.check = check;
+        this.values = values;
+        this.chars = chars;
+        this.keyCount = keyCount;
+        this.asciiCodes = new int[ASCII];
+        for (int i = 0; i < chars.length && chars[i] < ASCII; i++) {
+            this.asciiCodes[chars[i]] = i + 1;
+        }
+    }
+
+    /**
+     * Build the trie of the given keys. The value of each key is its
+     * index in the list.
+     *
+     * @param keys Keys of the trie, each of them once
+     * @return The trie
+     * @throws IllegalArgumentException If a key appears more than once
+     */
+    public static DoubleArrayTrie of(List<? extends CharSequence> keys) {
+        int[] values = new int[keys.size()];
+        for (int i = 0; i < values.length; i++) values[i] = i;
+        return DoubleArrayTrie.of(keys, values);
+    }
+
+    /**
+     * Build the trie of the given keys and values. A negative value
+     * only adds the path of its key, without making it a key.
+     *
+     * @param keys Keys of the trie, each of them once
+     * @param values Value of each key
+     * @return The trie
+     * @throws IllegalArgumentException If a key appears more than once
+     */
+    public static DoubleArrayTrie of(List<? extends CharSequence> keys, int[] values) {
+        int i, j, k;
+
+        // Number the characters
+        StringBuilder seen = new StringBuilder();
+        boolean[] ascii = new boolean[ASCII];
+        Set<Character> others = new TreeSet<Character>();
+        for (CharSequence key : keys) {
+            for (i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                if (c < ASCII) ascii[c] = true;
+                else others.add(c);
+            }
+        }
+        for (i = 0; i < ASCII; i++) if (ascii[i]) seen.append((char) i);
+        for (char c : others) seen.append(c);
+        char[] chars = seen.toString().toCharArray();
+
+        // A plain trie first, with sorted lists of children
+        int capacity = 16;
+        int[] firstChild = new int[capacity];
+        int[] nextSibling = new int[capacity];
+        int[] labels = new int[capacity];
+        int[] nodeValues = new int[capacity];
+        int nodes = 1;
+        firstChild[ROOT] = -1;
+        nodeValues[ROOT] = -1;
+        int keyCount = 0;
+
+        for (k = 0; k < keys.size(); k++) {
+            CharSequence key = keys.get(k);
+            int node = ROOT;
+            for (i = 0; i < key.length(); i++) {
+                int code = DoubleArrayTrie.code(chars, key.charAt(i));
+                int previous = -1;
+                int child = firstChild[node];
+                while (child >= 0 && labels[child] < code) {
+                    previous = child;
+                    child = nextSibling[child];
+                }
+                if (child < 0 || labels[child] != code) {
+                    if (nodes == capacity) {
+                        capacity *= 2;
+                        firstChild = Arrays.copyOf(firstChild, capacity);
+                        nextSibling = Arrays.copyOf(nextSibling, capacity);
+                        labels = Arrays.copyOf(labels, capacity);
+                        nodeValues = Arrays.copyOf(nodeValues, capacity);
+                    }
+                    firstChild[nodes] = -1;
+                    nextSibling[nodes] = child;
+                    labels[nodes] = code;
+                    nodeValues[nodes] = -1;
+                    if (previous < 0) firstChild[node] = nodes;
+                    else nextSibling[previous] = nodes;
+                    child = nodes++;
+                }
+                node = child;
+            }
+            if (values[k] >= 0) {
+                if (nodeValues[node] >= 0) {
+                    throw new IllegalArgumentException(String.format("The key \"%s\" appears twice.", key));
+                }
+                nodeValues[node] = values[k];
+                keyCount++;
+            }
+        }
+
+        // Place the children of each node, in breadth first order, at the
+        // first base where all of their cells are free
+        Cells cells = new Cells(nodes + chars.length + 1);
+        int[] cellOf = new int[nodes];
+        int[] queue = new int[nodes];
+        int head = 0, tail = 0;
+        cells.take(ROOT, -1, nodeValues[ROOT]);
+        queue[tail++] = ROOT;
+
+        while (head < tail) {
+            int node = queue[head++];
+            int first = firstChild[node];
+            if (first < 0) continue;
+
+            int b;
+            int free = cells.firstFree;
+            while (true) {
+                b = free - labels[first];
+                if (b >= 1) {
+                    cells.reserve(b + chars.length + 1);
+                    boolean fits = true;
+                    for (j = nextSibling[first]; j >= 0; j = nextSibling[j]) {
+                        if (cells.check[b + labels[j]] >= 0) {
+                            fits = false;
+                            break;
+                        }
+                    }
+                    if (fits) break;
+                }
+                if (cells.next[free] < 0) cells.reserve(cells.size + 1);
+                free = cells.next[free];
+            }
+
+            cells.base[cellOf[node]] = b;
+            for (j = first; j >= 0; j = nextSibling[j]) {
+                cellOf[j] = b + labels[j];
+                cells.take(cellOf[j], cellOf[node], nodeValues[j]);
+                queue[tail++] = j;
+            }
+        }
+
+        int size = cells.last + 1;
+        return new DoubleArrayTrie(Arrays.copyOf(cells.base, size), Arrays.copyOf(cells.check, size),
+                Arrays.copyOf(cells.values, size), chars, keyCount);
+    }
+
+    /**
+     * Get the beginning state, the state of the empty prefix.
+     *
+     * @return Number of the root
+     */
+    public int getRoot() {
+        return ROOT;
+    }
+
+    /**
+     * Get the number of cells of the double array. States are numbered
+     * below it, but not every cell is a state.
+     *
+     * @return Length of the arrays
+     */
+    public int getSize() {
+        return this.check.length;
+    }
+
+    /**
+     * Estimate the memory that the trie takes, counting its arrays.
+     *
+     * @return Size in bytes
+     */
+    public long getMemorySize() {
+        return 12L * this.check.length + 2L * this.chars.length + 4L * ASCII;
+    }
+
+    /**
+     * Get the number of keys.
+     *
+     * @return Count of keys
+     */
+    public int getKeyCount() {
+        return this.keyCount;
+    }
+
+    /**
+     * Get the state that is reached from "s" by reading "c".
+     *
+     * @param s Number of the state
+     * @param c Character to read
+     * @return Number of the next state, NONE if there is none
+     */
+    public int step(int s, char c) {
+        int code = c < ASCII ? this.asciiCodes[c] : DoubleArrayTrie.code(this.chars, c);
+        if (code <= 0) return NONE;
+        int target = this.base[s] + code;
+        return target < this.check.length && this.check[target] == s ? target : NONE;
+    }
+
+    /**
+     * Get the state that is reached from "s" by reading a part of a
+     * String.
+     *
+     * @param s Number of the state
+     * @param str The String to read from
+     * @param start Index of the first character to read
+     * @param end Index after the last character to read
+     * @return Number of the state, NONE if the path leaves the trie
+     */
+    public int walk(int s, CharSequence str, int start, int end) {
+        for (int i = start; i < end && s != NONE; i++) {
+            s = this.step(s, str.charAt(i));
+        }
+        return s;
+    }
+
+    /**
+     * Get the value of a state.
+     *
+     * @param s Number of the state
+     * @return The value of the key that ends at s, -1 if no key ends there
+     */
+    public int getValue(int s) {
+        return this.values[s];
+    }
+
+    /**
+     * Get the value of a key.
+     *
+     * @param key The key to look up
+     * @return Its value, -1 if it is not a key of the trie
+     */
+    public int get(CharSequence key) {
+        int s = this.walk(ROOT, key, 0, key.length());
+        return s == NONE ? -1 : this.values[s];
+    }
+
+    /**
+     * Get the parent of a state.
+     *
+     * @param s Number of the state
+     * @return The state it is reached from, -1 for the root and for cells
+     *      that are not states
+     */
+    int getParent(int s) {
+        return s == ROOT ? -1 : this.check[s];
+    }
+
+    /**
+     * Get the character that leads from the parent of a state to it.
+     */
+    char getLabel(int s) {
+        return this.chars[s - this.base[this.check[s]] - 1];
+    }
+
+    /**
+     * Turn the trie into a graph of FiniteState objects: a deterministic
+     * automaton that accepts exactly the keys.
+     *
+     * @return The automaton of the keys
+     */
+    public FiniteAutomaton toFiniteAutomaton() {
+        FiniteState[] states = new FiniteState[this.check.length];
+        int s;
+
+        states[ROOT] = new FiniteState(this.values[ROOT] >= 0);
+        for (s = 1; s < this.check.length; s++) {
+            if (this.check[s] >= 0) states[s] = new FiniteState(this.values[s] >= 0);
+        }
+        for (s = 1; s < this.check.length; s++) {
+            if (this.check[s] >= 0) states[this.check[s]].addTransition(this.getLabel(s), states[s]);
+        }
+
+        FiniteAutomaton automaton = new FiniteAutomaton();
+        automaton.setAlphabet(new Alphabet(this.chars.clone()));
+        automaton.setBegin(states[ROOT]);
+        return automaton;
+    }
+
+    private static int code(char[] chars, char c) {
+        int i = Arrays.binarySearch(chars, c);
+        return i < 0 ? 0 : i + 1;
+    }
+
+    /**
+     * The arrays of a double array under construction. Free cells are
+     * kept in a doubly linked list, in increasing order, so that taking
+     * a cell and finding the next free one are constant time.
+     */
+    private static final class Cells {
+        int[] base;
+        int[] check;
+        int[] values;
+        int[] next;
+        int[] previous;
+        int size;
+        int firstFree;
+        int lastFree;
+        int last;
+
+        Cells(int size) {
+            this.base = new int[0];
+            this.check = new int[0];
+            this.values = new int[0];
+            this.next = new int[0];
+            this.previous = new int[0];
+            this.firstFree = -1;
+            this.lastFree = -1;
+            this.reserve(size);
+        }
+
+        /**
+         * Grow the arrays to at least "size" cells.
+         */
+        void reserve(int size) {
+            if (size <= this.size) return;
+            int grown = Math.max(size, 2 * this.size);
+            this.base = Arrays.copyOf(this.base, grown);
+            this.check = Arrays.copyOf(this.check, grown);
+            this.values = Arrays.copyOf(this.values, grown);
+            this.next = Arrays.copyOf(this.next, grown);
+            this.previous = Arrays.copyOf(this.previous, grown);
+            Arrays.fill(this.check, this.size, grown, -1);
+            Arrays.fill(this.values, this.size, grown, -1);
+
+            for (int i = this.size; i < grown; i++) {
+                this.previous[i] = this.lastFree;
+                this.next[i] = -1;
+                if (this.lastFree < 0) this.firstFree = i;
+                else this.next[this.lastFree] = i;
+                this.lastFree = i;
+            }
+            this.size = grown;
+        }
+
+        /**
+         * Make a free cell a state.
+         */
+        void take(int cell, int parent, int value) {
+            this.check[cell] = parent;
+            this.values[cell] = value;
+            this.last = Math.max(this.last, cell);
+
+            int before = this.previous[cell];
+            int after = this.next[cell];
+            if (before < 0) this.firstFree = after;
+            else this.next[before] = after;
+            if (after < 0) this.lastFree = before;
+            else this.previous[after] = before;
+        }
+    }
+}
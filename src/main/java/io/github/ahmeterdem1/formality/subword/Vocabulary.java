@@ -0,0 +1,118 @@
+package io.github.ahmeterdem1.formality.subword;
+
+import java.util.List;
+
+/**
+ * The tokens of a subword tokenizer, numbered from 0 in the order they
+ * are given.
+ *
+ * The characters of all tokens are stored in a single char array, and
+ * the tokens are looked up in a DoubleArrayTrie, so the vocabulary is
+ * kept in a handful of primitive arrays instead of a String and a map
+ * entry per token. A vocabulary of 100 000 tokens takes a few megabytes.
+ *
+ * A Vocabulary is immutable and can be shared between threads.
+ */
+public final class Vocabulary {
+
+    private final char[] chars;
+    private final int[] offsets;
+    private final DoubleArrayTrie trie;
+
+    /**
+     * Number the given tokens.
+     *
+     * @param tokens Tokens, each of them once
+     * @throws IllegalArgumentException If a token is empty or appears
+     *      more than once
+     */
+    public Vocabulary(List<? extends CharSequence> tokens) {
+        int total = 0, i;
+        for (CharSequence token : tokens) {
+            if (token.length() == 0) throw new IllegalArgumentException("Tokens cannot be empty.");
+            total += token.length();
+        }
+
+        this.chars = new char[total];
+        this.offsets = new int[tokens.size() + 1];
+        total = 0;
+        for (i = 0; i < tokens.size(); i++) {
+            CharSequence token = tokens.get(i);
+            for (int j = 0; j < token.length(); j++) this.chars[total++] = token.charAt(j);
+            this.offsets[i + 1] = total;
+        }
+
+        this.trie = DoubleArrayTrie.of(tokens);
+    }
+
+    /**
+     * Get the number of tokens.
+     *
+     * @return Count of tokens
+     */
+    public int size() {
+        return this.offsets.length - 1;
+    }
+
+    /**
+     * Get the number of a token.
+     *
+     * @param token The token to look up
+     * @return Its number, -1 if it is not in the vocabulary
+     */
+    public int getId(CharSequence token) {
+        return this.trie.get(token);
+    }
+
+    /**
+     * Get the number of a part of a String.
+     *
+     * @param str The String that holds the token
+     * @param start Index of its first character
+     * @param end Index after its last character
+     * @return Its number, -1 if it is not in the vocabulary
+     */
+    public int getId(CharSequence str, int start, int end) {
+        int s = this.trie.walk(this.trie.getRoot(), str, start, end);
+        return s == DoubleArrayTrie.NONE ? -1 : this.trie.getValue(s);
+    }
+
+    /**
+     * Get a token by its number.
+     *
+     * @param id Number of the token
+     * @return The token
+     */
+    public String getToken(int id) {
+        return new String(this.chars, this.offsets[id], this.offsets[id + 1] - this.offsets[id]);
+    }
+
+    /**
+     * Get the length of a token, without building it.
+     *
+     * @param id Number of the token
+     * @return Count of its characters
+     */
+    public int getLength(int id) {
+        return this.offsets[id + 1] - this.offsets[id];
+    }
+
+    /**
+     * Get the trie that tokens are looked up in. The value of each token
+     * in the trie is its number.
+     *
+     * @return The trie of the tokens
+     */
+    public DoubleArrayTrie getTrie() {
+        return this.trie;
+    }
+
+    /**
+     * Estimate the memory that the vocabulary takes, counting its arrays.
+     *
+     * @return Size in bytes
+     */
+    public long getMemorySize() {
+        return 2L * this.chars.length + 4L * this.offsets.length + this.trie.getMemorySize();
+    }
+}
@@ -0,0 +1,265 @@
+package io.github.ahmeterdem1.formality.subword;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * WordPiece tokenization: each word is split into the longest token
+ * that begins it, then the longest suffix token that begins the rest,
+ * and so on. Suffix tokens are the tokens that start with a prefix,
+ * "##" by default, which is not part of the word itself. A word that
+ * cannot be split this way becomes the unknown token.
+ *
+ * Tokens are found in linear time with the LinMaxMatch algorithm of Song
+ * et al., "Fast WordPiece Tokenization". The tokens are kept in a trie,
+ * with the suffix tokens under a root of their own. Like in Aho-Corasick
+ * matching, every state of the trie has a failure link: where matching
+ * goes on when the next character leaves the trie, together with the
+ * tokens that are done by then. The word is read once, without going
+ * back, and each character is read by a single transition.
+ *
+ * <pre>
+ *     Vocabulary vocabulary = new Vocabulary(Arrays.asList("[UNK]", "un", "##aff", "##able", "a", "##ff"));
+ *     WordPiece tokenizer = new WordPiece(vocabulary, "[UNK]");
+ *     tokenizer.encode("unaffable");  // un ##aff ##able
+ * </pre>
+ *
+ * A WordPiece tokenizer is immutable and can be shared between threads.
+ */
+public final class WordPiece {
+
+    private final Vocabulary vocabulary;
+    private final int unknown;
+
+    private final DoubleArrayTrie trie;
+    private final int root;
+    private final int suffixRoot;
+
+    // Failure link of each state, -1 for none, and the tokens popped on it
+    private final int[] failures;
+    private final int[] popStarts;
+    private final int[] popCounts;
+    private final int[] pops;
+
+    /**
+     * Prepare a tokenizer with "##" as the prefix of suffix tokens.
+     *
+     * @param vocabulary Tokens to split into
+     * @param unknown The token of words that cannot be split
+     * @throws IllegalArgumentException If the unknown token is not in the
+     *      vocabulary
+     */
+    public WordPiece(Vocabulary vocabulary, String unknown) {
+        this(vocabulary, unknown, "##");
+    }
+
+    /**
+     * Prepare a tokenizer.
+     *
+     * @param vocabulary Tokens to split into
+     * @param unknown The token of words that cannot be split
+     * @param prefix Prefix of suffix tokens
+     * @throws IllegalArgumentException If the unknown token is not in the
+     *      vocabulary
+     */
+    public WordPiece(Vocabulary vocabulary, String unknown, String prefix) {
+        int i;
+
+        this.vocabulary = vocabulary;
+        this.unknown = vocabulary.getId(unknown);
+        if (this.unknown < 0) {
+            throw new IllegalArgumentException(String.format("The unknown token %s is not in the vocabulary.", unknown));
+        }
+
+        // Suffix tokens go under a character that no token holds
+        List<String> keys = new ArrayList<String>();
+        int[] values = new int[vocabulary.size() + 1];
+        boolean[] used = new boolean[Character.MAX_VALUE + 1];
+        for (i = 0; i < vocabulary.size(); i++) {
+            String token = vocabulary.getToken(i);
+            for (int j = 0; j < token.length(); j++) used[token.charAt(j)] = true;
+        }
+        char separator = Character.MAX_VALUE;
+        while (used[separator]) separator--;
+
+        for (i = 0; i < vocabulary.size(); i++) {
+            String token = vocabulary.getToken(i);
+            if (token.length() > prefix.length() && token.startsWith(prefix)) {
+                token = separator + token.substring(prefix.length());
+            }
+            keys.add(token);
+            values[i] = i;
+        }
+        keys.add(String.valueOf(separator));
+        values[vocabulary.size()] = -1;
+
+        this.trie = DoubleArrayTrie.of(keys, values);
+        this.root = this.trie.getRoot();
+        this.suffixRoot = this.trie.step(this.root, separator);
+
+        int size = this.trie.getSize();
+        this.failures = new int[size];
+        this.popStarts = new int[size];
+        this.popCounts = new int[size];
+        Arrays.fill(this.failures, -1);
+        this.pops = this.link();
+    }
+
+    /**
+     * Split a text into tokens. Words are separated by whitespace.
+     *
+     * @param text The text to split
+     * @return Numbers of the tokens, in order
+     */
+    public int[] encode(CharSequence text) {
+        int[] result = new int[16];
+        int count = 0;
+        int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) i++;
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) i++;
+            if (start == i) break;
+
+            if (count + i - start > result.length) {
+                result = Arrays.copyOf(result, Math.max(2 * result.length, count + i - start));
+            }
+            count += this.encodeWord(text, start, i, result, count);
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Split a single word into tokens, without allocating anything. At
+     * most one token is written for each character of the word.
+     *
+     * @param text The String that holds the word
+     * @param start Index of the first character of the word
+     * @param end Index after the last character of the word
+     * @param out Array to write the numbers of the tokens into
+     * @param offset Index of out to write the first token at
+     * @return Count of tokens written
+     */
+    public int encodeWord(CharSequence text, int start, int end, int[] out, int offset) {
+        DoubleArrayTrie trie = this.trie;
+        int u = this.root;
+        int count = offset;
+        int v;
+
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            while ((v = trie.step(u, c)) == DoubleArrayTrie.NONE) {
+                if (this.failures[u] < 0) return this.unknown(out, offset);
+                count = this.pop(u, out, count);
+                u = this.failures[u];
+            }
+            u = v;
+        }
+
+        while (u != this.suffixRoot) {
+            if (this.failures[u] < 0) return start == end ? 0 : this.unknown(out, offset);
+            count = this.pop(u, out, count);
+            u = this.failures[u];
+        }
+        return count - offset;
+    }
+
+    /**
+     * Get the vocabulary of the tokens.
+     *
+     * @return The vocabulary
+     */
+    public Vocabulary getVocabulary() {
+        return this.vocabulary;
+    }
+
+    private int unknown(int[] out, int offset) {
+        out[offset] = this.unknown;
+        return 1;
+    }
+
+    private int pop(int s, int[] out, int count) {
+        System.arraycopy(this.pops, this.popStarts[s], out, count, this.popCounts[s]);
+        return count + this.popCounts[s];
+    }
+
+    /**
+     * Compute the failure links and the tokens popped on them, in
+     * breadth first order from both roots.
+     *
+     * @return The popped tokens of all states, one after the other
+     */
+    private int[] link() {
+        DoubleArrayTrie trie = this.trie;
+        int size = trie.getSize();
+        int s, z, i;
+
+        // Children of each state, grouped by parent
+        int[] firsts = new int[size + 1];
+        for (s = 1; s < size; s++) {
+            if (trie.getParent(s) >= 0) firsts[trie.getParent(s) + 1]++;
+        }
+        for (s = 0; s < size; s++) firsts[s + 1] += firsts[s];
+        int[] children = new int[firsts[size]];
+        int[] filled = Arrays.copyOf(firsts, size);
+        for (s = 1; s < size; s++) {
+            if (trie.getParent(s) >= 0) children[filled[trie.getParent(s)]++] = s;
+        }
+
+        int[] pops = new int[16];
+        int count = 0;
+        int[] queue = new int[children.length + 2];
+        int head = 0, tail = 0;
+        queue[tail++] = this.root;
+        queue[tail++] = this.suffixRoot;
+
+        while (head < tail) {
+            int u = queue[head++];
+            for (i = firsts[u]; i < firsts[u + 1]; i++) {
+                int v = children[i];
+                if (v == this.suffixRoot) continue;
+                queue[tail++] = v;
+
+                if (trie.getValue(v) >= 0) {
+                    if (count == pops.length) pops = Arrays.copyOf(pops, 2 * count);
+                    this.failures[v] = this.suffixRoot;
+                    this.popStarts[v] = count;
+                    this.popCounts[v] = 1;
+                    pops[count++] = trie.getValue(v);
+                    continue;
+                }
+
+                // Follow the failure links of the parent until one can read c
+                char c = trie.getLabel(v);
+                int start = count;
+                if (count + this.popCounts[u] > pops.length) {
+                    pops = Arrays.copyOf(pops, Math.max(2 * pops.length, count + this.popCounts[u]));
+                }
+                System.arraycopy(pops, this.popStarts[u], pops, count, this.popCounts[u]);
+                count += this.popCounts[u];
+
+                for (z = this.failures[u]; z >= 0 && trie.step(z, c) == DoubleArrayTrie.NONE; z = this.failures[z]) {
+                    if (count + this.popCounts[z] > pops.length) {
+                        pops = Arrays.copyOf(pops, Math.max(2 * pops.length, count + this.popCounts[z]));
+                    }
+                    System.arraycopy(pops, this.popStarts[z], pops, count, this.popCounts[z]);
+                    count += this.popCounts[z];
+                }
+
+                if (z >= 0) {
+                    this.failures[v] = trie.step(z, c);
+                    this.popStarts[v] = start;
+                    this.popCounts[v] = count - start;
+                } else {
+                    count = start;
+                }
+            }
+        }
+
+        return Arrays.copyOf(pops, count);
+    }
+}
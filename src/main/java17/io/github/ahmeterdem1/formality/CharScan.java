@@ -0,0 +1,112 @@
+package io.github.ahmeterdem1.formality;
+
+/**
+ * The loops that run over every character of a text before any
+ * automaton does: checking characters against the ASCII mask of an
+ * Alphabet, and looking for the literal that every match of a regex
+ * holds. They are kept here, apart from their callers, so that a JVM
+ * that can run them on vectors does so.
+ *
+ * This is the version of the class for Java 17 and later. If the JVM
+ * has jdk.incubator.vector, which "--add-modules jdk.incubator.vector"
+ * adds, and its vectors take 16 chars or more, the scans check a
+ * vector of characters at once, see VectorScan. Otherwise they run the
+ * scalar loops of the Java 8 version, which are copied here, with the
+ * same package-private names so that the tests reach them in either
+ * version. Both give the same results.
+ *
+ * The class itself is not initializable.
+ */
+public final class CharScan {
+
+    // VectorScan is only loaded if the module is there
+    private static final boolean VECTORIZED =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() && VectorScan.isUsable();
+
+    private CharScan() {
+    }
+
+    /**
+     * Tell if the scans run on vectors.
+     *
+     * @return true if jdk.incubator.vector is used, false for the
+     *      scalar loops
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Pass over the ASCII characters of a text whose bit is set in a
+     * mask of 128 bits, as Alphabet keeps them.
+     *
+     * @param text The text to scan
+     * @param from Index to scan from
+     * @param lowMask Bit c for the characters 0 to 63
+     * @param highMask Bit c - 64 for the characters 64 to 127
+     * @return Index of the first character at or after "from" that is
+     *      not ASCII, or whose bit is not set; the length of the text if
+     *      there is none
+     */
+    public static int skipMasked(CharSequence text, int from, long lowMask, long highMask) {
+        if (VECTORIZED) return VectorScan.skipMasked(text, from, lowMask, highMask);
+        return CharScan.scalarSkipMasked(text, from, text.length(), lowMask, highMask);
+    }
+
+    /**
+     * Find a literal in a text. Strings are searched with
+     * String.indexOf, which the JIT compiles to vector instructions
+     * already; other texts on vectors, or with a loop that compares the
+     * first and the last character of the literal before the rest.
+     *
+     * @param text The text to search
+     * @param literal The literal to find
+     * @param from Index to search from
+     * @return Index of the first occurrence at or after "from", -1 if
+     *      there is none
+     */
+    public static int indexOf(CharSequence text, String literal, int from) {
+        if (text instanceof String) return ((String) text).indexOf(literal, from);
+        if (literal.isEmpty()) return Math.max(0, Math.min(from, text.length()));
+        if (VECTORIZED) return VectorScan.indexOf(text, literal, Math.max(from, 0));
+        return CharScan.scalarIndexOf(text, literal, Math.max(from, 0), text.length());
+    }
+
+    /**
+     * The loop of skipMasked(), up to "to".
+     */
+    static int scalarSkipMasked(CharSequence text, int from, int to, long lowMask, long highMask) {
+        char c;
+
+        for (int i = from; i < to; i++) {
+            c = text.charAt(i);
+            // Shifts are taken mod 64, so bit c of the mask is in its lowest bit
+            if (c >= 128 || (((c & 64) == 0 ? lowMask : highMask) >>> c & 1) == 0) return i;
+        }
+        return to;
+    }
+
+    /**
+     * The loop of indexOf() for a non-empty literal, over the
+     * occurrences that begin before "to".
+     */
+    static int scalarIndexOf(CharSequence text, String literal, int from, int to) {
+        int m = literal.length();
+        char first = literal.charAt(0);
+        char last = literal.charAt(m - 1);
+
+        for (int i = from; i < to && i <= text.length() - m; i++) {
+            if (text.charAt(i) == first && text.charAt(i + m - 1) == last && CharScan.matchesAt(text, literal, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matchesAt(CharSequence text, String literal, int i) {
+        for (int k = 1; k < literal.length() - 1; k++) {
+            if (text.charAt(i + k) != literal.charAt(k)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.ahmeterdem1.formality;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.CharBuffer;
+
+/**
+ * The scans of CharScan on vectors of chars, with jdk.incubator.vector.
+ *
+ * The characters are copied out of the text in blocks, which String,
+ * StringBuilder and CharBuffer do with a bulk copy, and a vector of
+ * them is loaded at a time. Blocks start small and double up to BLOCK,
+ * so a scan that stops early copies little more than it reads; the
+ * buffer is taken once per scan, at the size of the largest block.
+ *
+ * An ASCII mask of 128 bits is looked up as in a table of 16 rows of 8
+ * bits: the low 4 bits of a character pick the row, with one lane
+ * shuffle, and the next 3 bits pick the bit of the row, with one lane
+ * shift. So the vectors must take 16 chars at least; isUsable() tells.
+ * A literal is looked for by comparing a vector of the text with its
+ * first character and the vector that follows it by the length of the
+ * literal less one with its last; only the positions where both agree
+ * are compared in full.
+ */
+final class VectorScan {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int BLOCK = 2048;
+
+    private VectorScan() {
+    }
+
+    /**
+     * Tell if the vectors of the platform take the table of a mask.
+     */
+    static boolean isUsable() {
+        return LANES >= 16 && LANES <= 64;
+    }
+
+    static int skipMasked(CharSequence text, int from, long lowMask, long highMask) {
+        int length = text.length();
+
+        // A few characters first, so that a scan that stops early does not pay for the table
+        int head = Math.min(length, from + LANES);
+        int i = CharScan.scalarSkipMasked(text, from, head, lowMask, highMask);
+        if (i < head) return i;
+        if (length - i < LANES) return CharScan.scalarSkipMasked(text, i, length, lowMask, highMask);
+
+        ShortVector table = VectorScan.table(lowMask, highMask);
+        char[] buffer = new char[Math.min(BLOCK, length - i)];
+        int block = 2 * LANES;
+        int n, k;
+
+        while (length - i >= LANES) {
+            n = Math.min(block, length - i) / LANES * LANES;
+            VectorScan.copy(text, i, i + n, buffer);
+            for (k = 0; k < n; k += LANES) {
+                ShortVector v = ShortVector.fromCharArray(SPECIES, buffer, k);
+                VectorMask<Short> ascii = v.and((short) 0xFF80).compare(VectorOperators.EQ, 0);
+                ShortVector rows = v.and((short) 15).selectFrom(table);
+                ShortVector bits = rows.lanewise(VectorOperators.LSHR, v.lanewise(VectorOperators.LSHR, 4).and((short) 7));
+                VectorMask<Short> in = ascii.and(bits.and((short) 1).compare(VectorOperators.NE, 0));
+                if (!in.allTrue()) return i + k + in.not().firstTrue();
+            }
+            i += n;
+            block = Math.min(2 * block, BLOCK);
+        }
+        return CharScan.scalarSkipMasked(text, i, length, lowMask, highMask);
+    }
+
+    static int indexOf(CharSequence text, String literal, int from) {
+        int length = text.length();
+        int m = literal.length();
+        char first = literal.charAt(0);
+        char last = literal.charAt(m - 1);
+        int i = from;
+        char[] buffer = new char[Math.min(BLOCK, Math.max(length - m + 1 - i, 0)) + m - 1];
+        int block = 2 * LANES;
+        int n, k, t;
+        long found;
+
+        // Positions i up to length - m begin an occurrence that fits
+        while (length - m + 1 - i >= LANES) {
+            n = Math.min(block, length - m + 1 - i) / LANES * LANES;
+            VectorScan.copy(text, i, i + n + m - 1, buffer);
+            for (k = 0; k < n; k += LANES) {
+                VectorMask<Short> firsts = ShortVector.fromCharArray(SPECIES, buffer, k)
+                        .compare(VectorOperators.EQ, (short) first);
+                VectorMask<Short> lasts = ShortVector.fromCharArray(SPECIES, buffer, k + m - 1)
+                        .compare(VectorOperators.EQ, (short) last);
+                for (found = firsts.and(lasts).toLong(); found != 0; found &= found - 1) {
+                    t = k + Long.numberOfTrailingZeros(found);
+                    if (VectorScan.matchesAt(buffer, t, literal)) return i + t;
+                }
+            }
+            i += n;
+            block = Math.min(2 * block, BLOCK);
+        }
+        return CharScan.scalarIndexOf(text, literal, i, length);
+    }
+
+    /**
+     * The mask as a vector of rows: lane c holds, for the characters
+     * whose low 4 bits are c mod 16, bit h if the character 16 h + c
+     * is in the mask.
+     */
+    private static ShortVector table(long lowMask, long highMask) {
+        short[] rows = new short[LANES];
+        for (int c = 0; c < 128; c++) {
+            long mask = c < 64 ? lowMask : highMask;
+            if ((mask >>> c & 1) == 0) continue;
+            for (int lane = c & 15; lane < LANES; lane += 16) rows[lane] |= (short) (1 << (c >>> 4));
+        }
+        return ShortVector.fromArray(SPECIES, rows, 0);
+    }
+
+    private static boolean matchesAt(char[] buffer, int t, String literal) {
+        for (int k = 1; k < literal.length() - 1; k++) {
+            if (buffer[t + k] != literal.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copy the characters from "from" up to "to" to the front of the
+     * buffer.
+     */
+    private static void copy(CharSequence text, int from, int to, char[] buffer) {
+        if (text instanceof String) {
+            ((String) text).getChars(from, to, buffer, 0);
+        } else if (text instanceof StringBuilder) {
+            ((StringBuilder) text).getChars(from, to, buffer, 0);
+        } else if (text instanceof StringBuffer) {
+            ((StringBuffer) text).getChars(from, to, buffer, 0);
+        } else if (text instanceof CharBuffer) {
+            CharBuffer chars = ((CharBuffer) text).duplicate();
+            chars.position(chars.position() + from);
+            chars.get(buffer, 0, to - from);
+        } else {
+            for (int i = from; i < to; i++) buffer[i - from] = text.charAt(i);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package io.github.ahmeterdem1.formality.flow;
+
+/**
+ * Converts between the interfaces of Flow and those of
+ * java.util.concurrent.Flow. Each adapter forwards every call to the
+ * object that it wraps, on the same thread, so the rules of the
+ * streams hold on both sides.
+ *
+ * <pre>
+ *     java.util.concurrent.Flow.Processor&lt;Buffer, Match&gt; processor =
+ *             FlowAdapters.toFlowProcessor(new MatchProcessor.Builder("[0-9]+").build());
+ *     chunks.subscribe(processor);  // A java.util.concurrent.Flow.Publisher
+ * </pre>
+ *
+ * The class is compiled for Java 9 into the versioned part of the jar,
+ * so it is only there on Java 9 and later. The class itself is not
+ * initializable.
+ */
+public final class FlowAdapters {
+
+    private FlowAdapters() {
+    }
+
+    /**
+     * Make a Publisher of the JDK out of a Publisher.
+     *
+     * @param publisher The Publisher to wrap
+     * @param <T> Type of the items
+     * @return The JDK Publisher
+     */
+    public static <T> java.util.concurrent.Flow.Publisher<T> toFlowPublisher(Flow.Publisher<T> publisher) {
+        if (publisher == null) throw new NullPointerException("Null publisher");
+        return new ToFlowPublisher<T>(publisher);
+    }
+
+    /**
+     * Make a Publisher out of a Publisher of the JDK.
+     *
+     * @param publisher The JDK Publisher to wrap
+     * @param <T> Type of the items
+     * @return The Publisher
+     */
+    public static <T> Flow.Publisher<T> toPublisher(java.util.concurrent.Flow.Publisher<T> publisher) {
+        if (publisher == null) throw new NullPointerException("Null publisher");
+        return new ToPublisher<T>(publisher);
+    }
+
+    /**
+     * Make a Subscriber of the JDK out of a Subscriber.
+     *
+     * @param subscriber The Subscriber to wrap
+     * @param <T> Type of the items
+     * @return The JDK Subscriber
+     */
+    public static <T> java.util.concurrent.Flow.Subscriber<T> toFlowSubscriber(Flow.Subscriber<T> subscriber) {
+        if (subscriber == null) throw new NullPointerException("Null subscriber");
+        return new ToFlowSubscriber<T>(subscriber);
+    }
+
+    /**
+     * Make a Subscriber out of a Subscriber of the JDK.
+     *
+     * @param subscriber The JDK Subscriber to wrap
+     * @param <T> Type of the items
+     * @return The Subscriber
+     */
+    public static <T> Flow.Subscriber<T> toSubscriber(java.util.concurrent.Flow.Subscriber<T> subscriber) {
+        if (subscriber == null) throw new NullPointerException("Null subscriber");
+        return new ToSubscriber<T>(subscriber);
+    }
+
+    /**
+     * Make a Processor of the JDK out of a Processor, such as a
+     * MatchProcessor.
+     *
+     * @param processor The Processor to wrap
+     * @param <T> Type of the items received
+     * @param <R> Type of the items published
+     * @return The JDK Processor
+     */
+    public static <T, R> java.util.concurrent.Flow.Processor<T, R> toFlowProcessor(Flow.Processor<T, R> processor) {
+        if (processor == null) throw new NullPointerException("Null processor");
+        return new ToFlowProcessor<T, R>(processor);
+    }
+
+    /**
+     * Make a Processor out of a Processor of the JDK.
+     *
+     * @param processor The JDK Processor to wrap
+     * @param <T> Type of the items received
+     * @param <R> Type of the items published
+     * @return The Processor
+     */
+    public static <T, R> Flow.Processor<T, R> toProcessor(java.util.concurrent.Flow.Processor<T, R> processor) {
+        if (processor == null) throw new NullPointerException("Null processor");
+        return new ToProcessor<T, R>(processor);
+    }
+
+    private static final class ToFlowPublisher<T> implements java.util.concurrent.Flow.Publisher<T> {
+        private final Flow.Publisher<T> publisher;
+
+        ToFlowPublisher(Flow.Publisher<T> publisher) {
+            this.publisher = publisher;
+        }
+
+        @Override
+        public void subscribe(java.util.concurrent.Flow.Subscriber<? super T> subscriber) {
+            this.publisher.subscribe(subscriber == null ? null : new ToSubscriber<T>(subscriber));
+        }
+    }
+
+    private static final class ToPublisher<T> implements Flow.Publisher<T> {
+        private final java.util.concurrent.Flow.Publisher<T> publisher;
+
+        ToPublisher(java.util.concurrent.Flow.Publisher<T> publisher) {
+            this.publisher = publisher;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super T> subscriber) {
+            this.publisher.subscribe(subscriber == null ? null : new ToFlowSubscriber<T>(subscriber));
+        }
+    }
+
+    private static final class ToFlowSubscriber<T> implements java.util.concurrent.Flow.Subscriber<T> {
+        private final Flow.Subscriber<? super T> subscriber;
+
+        ToFlowSubscriber(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(java.util.concurrent.Flow.Subscription subscription) {
+            this.subscriber.onSubscribe(subscription == null ? null : new ToSubscription(subscription));
+        }
+
+        @Override
+        public void onNext(T item) {
+            this.subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.subscriber.onComplete();
+        }
+    }
+
+    private static final class ToSubscriber<T> implements Flow.Subscriber<T> {
+        private final java.util.concurrent.Flow.Subscriber<? super T> subscriber;
+
+        ToSubscriber(java.util.concurrent.Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscriber.onSubscribe(subscription == null ? null : new ToFlowSubscription(subscription));
+        }
+
+        @Override
+        public void onNext(T item) {
+            this.subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.subscriber.onComplete();
+        }
+    }
+
+    private static final class ToFlowProcessor<T, R> implements java.util.concurrent.Flow.Processor<T, R> {
+        private final Flow.Processor<T, R> processor;
+
+        ToFlowProcessor(Flow.Processor<T, R> processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public void onSubscribe(java.util.concurrent.Flow.Subscription subscription) {
+            this.processor.onSubscribe(subscription == null ? null : new ToSubscription(subscription));
+        }
+
+        @Override
+        public void onNext(T item) {
+            this.processor.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.processor.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.processor.onComplete();
+        }
+
+        @Override
+        public void subscribe(java.util.concurrent.Flow.Subscriber<? super R> subscriber) {
+            this.processor.subscribe(subscriber == null ? null : new ToSubscriber<R>(subscriber));
+        }
+    }
+
+    private static final class ToProcessor<T, R> implements Flow.Processor<T, R> {
+        private final java.util.concurrent.Flow.Processor<T, R> processor;
+
+        ToProcessor(java.util.concurrent.Flow.Processor<T, R> processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.processor.onSubscribe(subscription == null ? null : new ToFlowSubscription(subscription));
+        }
+
+        @Override
+        public void onNext(T item) {
+            this.processor.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.processor.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.processor.onComplete();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super R> subscriber) {
+            this.processor.subscribe(subscriber == null ? null : new ToFlowSubscriber<R>(subscriber));
+        }
+    }
+
+    private static final class ToFlowSubscription implements java.util.concurrent.Flow.Subscription {
+        private final Flow.Subscription subscription;
+
+        ToFlowSubscription(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void request(long n) {
+            this.subscription.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            this.subscription.cancel();
+        }
+    }
+
+    private static final class ToSubscription implements Flow.Subscription {
+        private final java.util.concurrent.Flow.Subscription subscription;
+
+        ToSubscription(java.util.concurrent.Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void request(long n) {
+            this.subscription.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            this.subscription.cancel();
+        }
+    }
+}
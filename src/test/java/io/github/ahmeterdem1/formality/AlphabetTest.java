@@ -0,0 +1,68 @@
+package io.github.ahmeterdem1.formality;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Alphabets against sets of their characters.
+ */
+public class AlphabetTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    public void alphabetsAgreeWithSets() {
+        for (int t = 0; t < 2000; t++) {
+            Set<Character> set = new HashSet<Character>();
+            char[] characters = new char[this.random.nextInt(20)];
+            for (int i = 0; i < characters.length; i++) {
+                characters[i] = (char) this.random.nextInt(this.random.nextBoolean() ? 130 : 300);
+                set.add(characters[i]);
+            }
+
+            Alphabet alphabet;
+            switch (this.random.nextInt(3)) {
+                case 0:
+                    alphabet = new Alphabet(characters);
+                    break;
+                case 1:
+                    alphabet = new Alphabet(new HashSet<Character>(set));
+                    break;
+                default:
+                    alphabet = new Alphabet();
+                    alphabet.setCharacters(new String(characters));
+                    break;
+            }
+            for (int k = this.random.nextInt(3); k > 0; k--) {
+                char x = (char) this.random.nextInt(200);
+                char y = (char) this.random.nextInt(200);
+                alphabet.addRange(x, y);
+                for (char c = (char) Math.min(x, y); c <= Math.max(x, y); c++) set.add(c);
+            }
+
+            for (int u = 0; u < 50; u++) {
+                StringBuilder text = new StringBuilder();
+                boolean expected = true;
+                for (int i = this.random.nextInt(5); i > 0; i--) {
+                    char c = (char) this.random.nextInt(300);
+                    text.append(c);
+                    expected &= set.contains(c);
+                }
+                assertEquals(expected, alphabet.validate(text.toString()));
+                char c = (char) this.random.nextInt(300);
+                assertEquals(set.contains(c), alphabet.contains(c));
+                assertEquals(set.contains(c), alphabet.contains(Character.valueOf(c)));
+            }
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void charactersAreUnmodifiable() {
+        new Alphabet("ab".toCharArray()).getCharacters().add('z');
+    }
+}
@@ -0,0 +1,1401 @@
+package io.github.ahmeterdem1.formality;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+import io.github.ahmeterdem1.formality.automata.Budget;
+import io.github.ahmeterdem1.formality.automata.Dawg;
+import io.github.ahmeterdem1.formality.automata.Dfa;
+import io.github.ahmeterdem1.formality.automata.Equivalence;
+import io.github.ahmeterdem1.formality.automata.FiniteAutomaton;
+import io.github.ahmeterdem1.formality.automata.FrozenAutomaton;
+import io.github.ahmeterdem1.formality.automata.IncrementalValidator;
+import io.github.ahmeterdem1.formality.automata.LazyDfa;
+import io.github.ahmeterdem1.formality.automata.LevenshteinAutomaton;
+import io.github.ahmeterdem1.formality.automata.Nfa;
+import io.github.ahmeterdem1.formality.automata.NondeterministicPushdown;
+import io.github.ahmeterdem1.formality.automata.OffHeapDfa;
+import io.github.ahmeterdem1.formality.automata.PushdownAutomaton;
+import io.github.ahmeterdem1.formality.automata.PushdownTable;
+import io.github.ahmeterdem1.formality.automata.TableDfa;
+import io.github.ahmeterdem1.formality.exceptions.BudgetExceededError;
+import io.github.ahmeterdem1.formality.flow.Flow;
+import io.github.ahmeterdem1.formality.grammar.EarleyParser;
+import io.github.ahmeterdem1.formality.grammar.Grammar;
+import io.github.ahmeterdem1.formality.grammar.LLGenerator;
+import io.github.ahmeterdem1.formality.lexer.Lexer;
+import io.github.ahmeterdem1.formality.lexer.Tokenizer;
+import io.github.ahmeterdem1.formality.regex.Match;
+import io.github.ahmeterdem1.formality.regex.MatchProcessor;
+import io.github.ahmeterdem1.formality.regex.Regex;
+import io.github.ahmeterdem1.formality.regex.Searcher;
+import io.github.ahmeterdem1.formality.regex.TaggedNfa;
+import io.github.ahmeterdem1.formality.subword.BytePairEncoding;
+import io.github.ahmeterdem1.formality.subword.Vocabulary;
+import io.github.ahmeterdem1.formality.subword.WordPiece;
+import io.github.ahmeterdem1.formality.state.FiniteState;
+import io.github.ahmeterdem1.formality.state.PushdownState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+public class Benchmark {
+
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 20;
+
+    // Keeps results alive so that the JIT cannot drop the measured work
+    private static Object sink;
+
+    public static void main(String[] args) throws IOException {
+        regexCompile();
+        equivalence();
+        pushdown();
+        graphStack();
+        earley();
+        llTable();
+        incremental();
+        lexer();
+        subword();
+        offHeap();
+        dawg();
+        levenshtein();
+        frozen();
+        flatLayout();
+        captures();
+        search();
+        scanning();
+        vectorScans();
+        charClasses();
+        budget();
+        earlyExit();
+        streaming();
+        flow();
+    }
+
+    /**
+     * Compile time of generated patterns of growing length. For a
+     * linear compiler, the time per pattern character stays flat as
+     * the patterns grow.
+     */
+    private static void regexCompile() {
+        System.out.println("Regex.compile");
+        for (int size = 1000; size <= 16000; size *= 2) {
+            report("  alternations", size, alternations(size));
+            report("  nested groups", size, nested(size));
+            report("  classes", size, classes(size));
+        }
+    }
+
+    /**
+     * Equivalence checks between the automata of large word lists, once
+     * for the same words in another order and once with a word left out.
+     */
+    private static void equivalence() {
+        System.out.println("Equivalence");
+        for (int size = 2000; size <= 16000; size *= 2) {
+            List<String> words = words(size);
+            FiniteAutomaton a = Regex.compile(join(words));
+            Collections.reverse(words);
+            FiniteAutomaton b = Regex.compile(join(words));
+            FiniteAutomaton c = Regex.compile(join(words.subList(1, words.size())));
+
+            long start = System.nanoTime();
+            boolean same = a.isEquivalent(b);
+            double equal = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            sink = Equivalence.counterexample(a, c);
+            double differ = (System.nanoTime() - start) / 1e6;
+
+            System.out.println(String.format("  %6d words %8d chars %10.1f ms equal (%b) %10.1f ms differ",
+                    size, join(words).length(), equal, same, differ));
+        }
+    }
+
+    /**
+     * Bracket validation through the State graph and through the
+     * compiled table, on balanced Strings of growing length.
+     */
+    private static void pushdown() {
+        PushdownAutomaton brackets = new PushdownAutomaton();
+        brackets.setAlphabet(new char[]{'(', ')', '[', ']', 'x'});
+        PushdownState state = new PushdownState(true);
+        state.addTransition("(", "(", state, false);
+        state.addTransition(")", "(", state, true);
+        state.addTransition("[", "[", state, false);
+        state.addTransition("]", "[", state, true);
+        state.addTransition("x", "", state, false);
+        brackets.setBegin(state);
+        PushdownTable table = brackets.compile();
+
+        System.out.println("Pushdown validation");
+        for (int size = 1000; size <= 64000; size *= 4) {
+            String text = balanced(size);
+            long start, graph = 0, compiled = 0;
+            boolean result = true;
+
+            for (int i = 0; i < WARMUP + ROUNDS; i++) {
+                start = System.nanoTime();
+                result &= brackets.validate(text);
+                if (i >= WARMUP) graph += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                result &= table.validate(text);
+                if (i >= WARMUP) compiled += System.nanoTime() - start;
+            }
+
+            sink = result;
+            System.out.println(String.format("  %6d chars %10.1f us graph %10.1f us table %8.1f MB/s",
+                    size, graph / 1000.0 / ROUNDS, compiled / 1000.0 / ROUNDS,
+                    2.0 * size * ROUNDS / (compiled / 1000.0)));
+        }
+    }
+
+    /**
+     * Non-deterministic validation on ambiguous grammars, turned into
+     * pushdown automata. "a+a*a+..." has exponentially many derivations
+     * in the expression grammar, and so does "()()()..." in the bracket
+     * grammar; the time should still grow polynomially with the length.
+     */
+    private static void graphStack() {
+        NondeterministicPushdown expressions = NondeterministicPushdown.of(
+                grammar("a+*", "S->S+S", "S->S*S", "S->a"));
+        NondeterministicPushdown brackets = NondeterministicPushdown.of(
+                grammar("()", "S->SS", "S->(S)", "S->"));
+
+        System.out.println("Graph-structured stack");
+        for (int size = 25; size <= 400; size *= 2) {
+            StringBuilder expression = new StringBuilder("a");
+            StringBuilder bracket = new StringBuilder();
+            while (expression.length() < size) expression.append(expression.length() % 4 == 1 ? "+a" : "*a");
+            while (bracket.length() < size) bracket.append("()");
+
+            graphStackReport("  expressions", expressions, expression.toString());
+            graphStackReport("  brackets", brackets, bracket.toString());
+        }
+    }
+
+    private static void graphStackReport(String name, NondeterministicPushdown automaton, String text) {
+        long start, elapsed = 0;
+        boolean result = true;
+
+        for (int i = 0; i < WARMUP + ROUNDS; i++) {
+            start = System.nanoTime();
+            result &= automaton.validate(text);
+            if (i >= WARMUP) elapsed += System.nanoTime() - start;
+        }
+
+        sink = result;
+        System.out.println(String.format("%-16s %6d chars %10.1f us (%b)",
+                name, text.length(), elapsed / 1000.0 / ROUNDS, result));
+    }
+
+    // A small configuration language: nested objects, arrays, strings and numbers
+    private static final String CONFIG_TERMINALS = "{}[],:\"ab01";
+    private static final String[] CONFIG_RULES = {
+            "S->V", "V->O", "V->A", "V->T", "V->N",
+            "O->{}", "O->{M}", "M->P", "M->P,M", "P->T:V",
+            "A->[]", "A->[E]", "E->V", "E->V,E",
+            "T->\"C\"", "C->", "C->aC", "C->bC",
+            "N->D", "N->DN", "D->0", "D->1"
+    };
+
+    /**
+     * Earley recognition and parsing of configuration documents, next
+     * to the pushdown automaton of the same grammar; and recognition of
+     * a right recursive grammar, which stays linear thanks to Leo items.
+     */
+    private static void earley() {
+        EarleyParser parser = new EarleyParser(earleyGrammar(CONFIG_TERMINALS, CONFIG_RULES));
+        NondeterministicPushdown automaton = NondeterministicPushdown.of(grammar(CONFIG_TERMINALS, CONFIG_RULES));
+
+        System.out.println("Earley");
+        for (int size = 250; size <= 4000; size *= 4) {
+            String text = config(size);
+            long start, recognize = 0, parse = 0, pushdown = 0;
+            boolean result = true;
+
+            for (int i = 0; i < WARMUP + ROUNDS; i++) {
+                start = System.nanoTime();
+                result &= parser.recognize(text);
+                if (i >= WARMUP) recognize += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                result &= parser.parse(text) != null;
+                if (i >= WARMUP) parse += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                result &= automaton.validate(text);
+                if (i >= WARMUP) pushdown += System.nanoTime() - start;
+            }
+
+            sink = result;
+            System.out.println(String.format("  config %6d chars %10.1f us recognize %10.1f us parse %10.1f us pushdown (%b)",
+                    text.length(), recognize / 1000.0 / ROUNDS, parse / 1000.0 / ROUNDS,
+                    pushdown / 1000.0 / ROUNDS, result));
+        }
+
+        EarleyParser right = new EarleyParser(earleyGrammar("ab", "S->aS", "S->b"));
+        for (int size = 10000; size <= 160000; size *= 4) {
+            StringBuilder builder = new StringBuilder();
+            while (builder.length() < size - 1) builder.append('a');
+            String text = builder.append('b').toString();
+            long start, elapsed = 0;
+            boolean result = true;
+
+            for (int i = 0; i < WARMUP + ROUNDS; i++) {
+                start = System.nanoTime();
+                result &= right.recognize(text);
+                if (i >= WARMUP) elapsed += System.nanoTime() - start;
+            }
+
+            sink = result;
+            System.out.println(String.format("  a*b    %6d chars %10.1f us recognize %8.3f us/char (%b)",
+                    size, elapsed / 1000.0 / ROUNDS, elapsed / 1000.0 / ROUNDS / size, result));
+        }
+    }
+
+    // A document of nested objects and arrays of about the given length
+    private static String config(int size) {
+        Random random = new Random(size);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < size) {
+            if (builder.length() > 0) builder.setLength(builder.length() - 1);
+            else builder.append('[');
+            if (builder.length() > 1) builder.append(',');
+            configValue(builder, random, 4);
+            builder.append(']');
+        }
+        return builder.toString();
+    }
+
+    private static void configValue(StringBuilder builder, Random random, int depth) {
+        int choice = depth == 0 ? 2 + random.nextInt(2) : random.nextInt(4);
+        int count = random.nextInt(4);
+        switch (choice) {
+            case 0:
+                builder.append('{');
+                for (int i = 0; i < count; i++) {
+                    if (i > 0) builder.append(',');
+                    builder.append("\"ab\":");
+                    configValue(builder, random, depth - 1);
+                }
+                builder.append('}');
+                break;
+            case 1:
+                builder.append('[');
+                for (int i = 0; i < count; i++) {
+                    if (i > 0) builder.append(',');
+                    configValue(builder, random, depth - 1);
+                }
+                builder.append(']');
+                break;
+            case 2:
+                builder.append("\"abba\"");
+                break;
+            default:
+                builder.append("1010");
+        }
+    }
+
+    // The configuration language again, left factored so that it is LL(1)
+    private static final String[] CONFIG_LL_RULES = {
+            "S->V", "V->O", "V->A", "V->T", "V->N",
+            "O->{Q", "Q->}", "Q->PR}", "R->", "R->,PR", "P->T:V",
+            "A->[F", "F->]", "F->VK]", "K->", "K->,VK",
+            "T->\"C\"", "C->", "C->aC", "C->bC",
+            "N->DI", "I->", "I->DI", "D->0", "D->1"
+    };
+
+    /**
+     * Generation, saving and loading of the LL(1) table of the
+     * configuration language, and validation with it next to Earley
+     * recognition. The table does constant work per character.
+     */
+    private static void llTable() throws IOException {
+        Grammar grammar = earleyGrammar(CONFIG_TERMINALS, CONFIG_LL_RULES);
+        EarleyParser parser = new EarleyParser(grammar);
+        long start, generate = 0, load = 0;
+        PushdownTable table = null;
+        byte[] saved = null;
+
+        // Both are short, so they are measured over more rounds
+        for (int i = 0; i < 10 * (WARMUP + ROUNDS); i++) {
+            start = System.nanoTime();
+            table = new LLGenerator(grammar).toTable();
+            if (i >= 10 * WARMUP) generate += System.nanoTime() - start;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            table.write(out);
+            saved = out.toByteArray();
+
+            start = System.nanoTime();
+            table = PushdownTable.read(new ByteArrayInputStream(saved));
+            if (i >= 10 * WARMUP) load += System.nanoTime() - start;
+        }
+
+        System.out.println("LL(1) table");
+        System.out.println(String.format("  generate %10.1f us, load %10.1f us, %d bytes saved",
+                generate / 10000.0 / ROUNDS, load / 10000.0 / ROUNDS, saved.length));
+
+        for (int size = 250; size <= 64000; size *= 4) {
+            String text = config(size);
+            long validation = 0, earley = 0;
+            boolean result = true;
+
+            for (int i = 0; i < WARMUP + ROUNDS; i++) {
+                start = System.nanoTime();
+                result &= table.validate(text);
+                if (i >= WARMUP) validation += System.nanoTime() - start;
+
+                if (size <= 4000) {
+                    start = System.nanoTime();
+                    result &= parser.recognize(text);
+                    if (i >= WARMUP) earley += System.nanoTime() - start;
+                }
+            }
+
+            sink = result;
+            System.out.println(String.format("  config %6d chars %10.1f us table %8.4f us/char %10.1f us earley (%b)",
+                    text.length(), validation / 1000.0 / ROUNDS, validation / 1000.0 / ROUNDS / text.length(),
+                    earley / 1000.0 / ROUNDS, result));
+        }
+    }
+
+    /**
+     * Single character edits on long texts, validated again from the
+     * checkpoints, next to a full validation of the same text. The cost
+     * of an edit stays flat as the text grows.
+     */
+    private static void incremental() {
+        FiniteAutomaton automaton = Regex.compile("(\\[(a|b)*\\]|a|b)*");
+
+        System.out.println("Incremental validation");
+        for (int size = 10000; size <= 1000000; size *= 10) {
+            StringBuilder text = new StringBuilder();
+            Random random = new Random(size);
+            while (text.length() < size) text.append(random.nextBoolean() ? "[abba]" : "ab");
+            IncrementalValidator validator = new IncrementalValidator(automaton, 256);
+            long start, full = 0, edits = 0;
+            boolean result = true;
+
+            for (int i = 0; i < WARMUP + ROUNDS; i++) {
+                start = System.nanoTime();
+                result &= validator.validate(text);
+                if (i >= WARMUP) full += System.nanoTime() - start;
+
+                // Swap an a for a b and back, so the text stays valid
+                for (int j = 0; j < 50; j++) {
+                    int offset = text.indexOf("a", random.nextInt(text.length() - 8));
+                    start = System.nanoTime();
+                    text.setCharAt(offset, 'b');
+                    result &= validator.revalidate(text, offset, 1, 1);
+                    text.setCharAt(offset, 'a');
+                    result &= validator.revalidate(text, offset, 1, 1);
+                    if (i >= WARMUP) edits += System.nanoTime() - start;
+                }
+            }
+
+            sink = result;
+            System.out.println(String.format("  %8d chars %10.1f us full %8.1f us per edit (%b)",
+                    text.length(), full / 1000.0 / ROUNDS, edits / 100000.0 / ROUNDS, result));
+        }
+    }
+
+    /**
+     * Throughput of a lexer for a small programming language, on a
+     * String and through a Reader. Characters are ASCII, so a character
+     * counts as a byte.
+     */
+    private static void lexer() {
+        Lexer.Builder builder = new Lexer.Builder();
+        builder.add("KEYWORD", "if|else|while|return");
+        builder.add("NAME", "[a-zA-Z_][a-zA-Z_0-9]*");
+        builder.add("NUMBER", "[0-9]+");
+        builder.add("OPERATOR", "=|==|<|<=|\\+|-|\\*");
+        builder.add("PUNCTUATION", "\\(|\\)|{|}|;");
+        builder.add("SPACE", "[ \n]+");
+        Lexer lexer = builder.build();
+
+        String[] pieces = {"if", "(", "x_1", "<=", "42", ")", "{", "return", "y", "*", "7", ";", "}",
+                "while", "count", "==", "index", "else", "total", "=", "total", "+", "1"};
+        StringBuilder source = new StringBuilder();
+        Random random = new Random(1);
+        while (source.length() < 8000000) {
+            source.append(pieces[random.nextInt(pieces.length)]);
+            source.append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        String text = source.toString();
+        Tokenizer tokenizer = lexer.tokenize(text);
+        long start, string = 0, reader = 0, tokens = 0;
+
+        for (int i = 0; i < WARMUP + ROUNDS; i++) {
+            start = System.nanoTime();
+            tokenizer.reset(text);
+            while (tokenizer.next()) tokens += tokenizer.getType();
+            if (i >= WARMUP) string += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            tokenizer.reset(new StringReader(text));
+            while (tokenizer.next()) tokens += tokenizer.getType();
+            if (i >= WARMUP) reader += System.nanoTime() - start;
+        }
+
+        sink = tokens;
+        System.out.println("Lexer");
+        System.out.println(String.format("  %d chars, %d states %8.1f MB/s String %8.1f MB/s Reader",
+                text.length(), lexer.getStateCount(),
+                text.length() * 1000.0 * ROUNDS / string, text.length() * 1000.0 * ROUNDS / reader));
+    }
+
+    /**
+     * Subword tokenization with a vocabulary of 100 000 tokens: its size
+     * in memory, and the throughput of WordPiece and byte pair encoding
+     * on random words.
+     */
+    private static void subword() {
+        Random random = new Random(1);
+        String letters = "abcdefghijklmnopqrstuvwxyz";
+
+        // Grow tokens by merges, so that byte pair encoding can use them too
+        List<String> tokens = new ArrayList<String>();
+        List<String> merges = new ArrayList<String>();
+        LinkedHashSet<String> seen = new LinkedHashSet<String>();
+        tokens.add("[UNK]");
+        for (char c : letters.toCharArray()) {
+            tokens.add(String.valueOf(c));
+            tokens.add("##" + c);
+        }
+        seen.addAll(tokens);
+        while (tokens.size() < 100000) {
+            String left = tokens.get(1 + random.nextInt(tokens.size() - 1));
+            if (left.length() > 12) continue;
+            String right = String.valueOf(letters.charAt(random.nextInt(letters.length())));
+            if (seen.add(left + right)) {
+                tokens.add(left + right);
+                if (!left.startsWith("##")) merges.add(left + " " + right);
+            }
+        }
+
+        long start = System.nanoTime();
+        Vocabulary vocabulary = new Vocabulary(tokens);
+        long built = System.nanoTime() - start;
+        WordPiece wordPiece = new WordPiece(vocabulary, "[UNK]");
+        BytePairEncoding pairs = new BytePairEncoding(vocabulary, merges, "[UNK]");
+
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 4000000) {
+            int length = 2 + random.nextInt(10);
+            for (int i = 0; i < length; i++) builder.append(letters.charAt(random.nextInt(letters.length())));
+            builder.append(' ');
+        }
+        String text = builder.toString();
+        long wordPieceTime = 0, pairTime = 0, count = 0;
+
+        for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+            start = System.nanoTime();
+            count += wordPiece.encode(text).length;
+            if (i >= WARMUP) wordPieceTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            count += pairs.encode(text).length;
+            if (i >= WARMUP) pairTime += System.nanoTime() - start;
+        }
+
+        sink = count;
+        System.out.println("Subword tokenization");
+        System.out.println(String.format("  %d tokens, built in %.1f ms, %.2f MB vocabulary",
+                vocabulary.size(), built / 1e6, vocabulary.getMemorySize() / 1e6));
+        System.out.println(String.format("  %8.1f MB/s WordPiece %8.1f MB/s byte pair encoding",
+                text.length() * 1000.0 * (ROUNDS / 4) / wordPieceTime, text.length() * 1000.0 * (ROUNDS / 4) / pairTime));
+    }
+
+    /**
+     * An automaton of two million states off the heap, next to the same
+     * automaton as FiniteState objects: heap taken, and validation speed.
+     */
+    private static void offHeap() {
+        int states = 2000000;
+        long heap = usedHeap();
+        long start = System.nanoTime();
+        OffHeapDfa.Builder builder = new OffHeapDfa.Builder();
+        for (int s = 0; s < states; s++) {
+            builder.addState(s % 3 == 0);
+            builder.addTransition('a', 'a', (s + 1) % states);
+            builder.addTransition('b', 'b', (int) ((7L * s + 3) % states));
+        }
+        OffHeapDfa automaton = builder.build();
+        long built = System.nanoTime() - start;
+        long offHeapHeap = usedHeap() - heap;
+
+        heap = usedHeap();
+        FiniteState[] graph = new FiniteState[states];
+        for (int s = 0; s < states; s++) graph[s] = new FiniteState(s % 3 == 0);
+        for (int s = 0; s < states; s++) {
+            graph[s].addTransition('a', graph[(s + 1) % states]);
+            graph[s].addTransition('b', graph[(int) ((7L * s + 3) % states)]);
+        }
+        long graphHeap = usedHeap() - heap;
+        sink = graph.length;
+        graph = null;
+
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(1);
+        while (text.length() < 1000000) text.append(random.nextBoolean() ? 'a' : 'b');
+        long elapsed = 0;
+        boolean result = false;
+        for (int i = 0; i < WARMUP + ROUNDS; i++) {
+            start = System.nanoTime();
+            result ^= automaton.validate(text);
+            if (i >= WARMUP) elapsed += System.nanoTime() - start;
+        }
+
+        System.out.println("Off heap automaton");
+        System.out.println(String.format("  %d states, built in %.1f ms, %.1f MB off heap, %.1f MB heap; FiniteState graph %.1f MB heap",
+                states, built / 1e6, automaton.getMemorySize() / 1e6, offHeapHeap / 1e6, graphHeap / 1e6));
+        System.out.println(String.format("  %8.1f MB/s validation (%b)",
+                text.length() * 1000.0 * ROUNDS / elapsed, result));
+        automaton.close();
+    }
+
+    /**
+     * A minimal acyclic automaton of a few million sorted words, built
+     * one word at a time: build time, size next to the count of words,
+     * heap taken by the builder, and lookup speed.
+     */
+    private static void dawg() {
+        long heap = usedHeap();
+        long start = System.nanoTime();
+        Dawg.Builder builder = new Dawg.Builder();
+        List<String> queries = new ArrayList<String>();
+        dawgWords(builder, new StringBuilder(), queries);
+        long peak = usedHeap() - heap;
+        Dawg automaton = builder.build();
+        long built = System.nanoTime() - start;
+
+        long elapsed = 0;
+        int found = 0;
+        for (int i = 0; i < WARMUP + ROUNDS; i++) {
+            start = System.nanoTime();
+            for (String query : queries) if (automaton.contains(query)) found++;
+            if (i >= WARMUP) elapsed += System.nanoTime() - start;
+        }
+        sink = found;
+
+        System.out.println("Minimal acyclic automaton");
+        System.out.println(String.format("  %d words, built in %.1f ms, %.1f MB heap while building",
+                automaton.getWordCount(), built / 1e6, peak / 1e6));
+        System.out.println(String.format("  %d states, %d transitions, %.1f MB",
+                automaton.getStateCount(), automaton.getTransitionCount(), automaton.getMemorySize() / 1e6));
+        System.out.println(String.format("  %8.1f ns/lookup", (double) elapsed / ROUNDS / queries.size()));
+    }
+
+    /**
+     * Add the words of up to seven letters from a to j that pass a
+     * hash filter, in sorted order, and keep every hundredth of them and
+     * of the rejected ones as queries.
+     */
+    private static void dawgWords(Dawg.Builder builder, StringBuilder word, List<String> queries) {
+        if (word.length() > 0) {
+            int h = word.toString().hashCode() * 0x9E3779B9;
+            boolean taken = (h >>> 16) % 10 < 3;
+            if (taken) builder.add(word);
+            if ((h & 127) == 0) queries.add(word.toString());
+        }
+        if (word.length() == 7) return;
+        for (char c = 'a'; c <= 'j'; c++) {
+            word.append(c);
+            dawgWords(builder, word, queries);
+            word.setLength(word.length() - 1);
+        }
+    }
+
+    /**
+     * Fuzzy lookup of misspelled words in a dictionary of a million
+     * words, for edit distances 1 to 3: time per query, and the states
+     * of the Levenshtein automaton that a query builds.
+     */
+    private static void levenshtein() {
+        Random random = new Random(1);
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < 1000000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 4 + random.nextInt(7);
+            for (int j = 0; j < length; j++) word.append((char) ('a' + random.nextInt(26)));
+            words.add(word.toString());
+        }
+        Collections.sort(words);
+        Dawg dictionary = Dawg.of(words);
+
+        List<String> queries = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            char[] word = words.get(random.nextInt(words.size())).toCharArray();
+            word[random.nextInt(word.length)] = (char) ('a' + random.nextInt(26));
+            queries.add(new String(word));
+        }
+
+        System.out.println("Levenshtein automata");
+        System.out.println(String.format("  %d words, %d states in the dictionary",
+                dictionary.getWordCount(), dictionary.getStateCount()));
+        for (int distance = 1; distance <= 3; distance++) {
+            long elapsed = 0;
+            long found = 0, states = 0;
+            for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+                long start = System.nanoTime();
+                for (String query : queries) {
+                    LevenshteinAutomaton automaton = new LevenshteinAutomaton(query, distance);
+                    found += automaton.search(dictionary).size();
+                    states += automaton.getStateCount();
+                }
+                if (i >= WARMUP) elapsed += System.nanoTime() - start;
+            }
+            int count = (WARMUP + ROUNDS / 4) * queries.size();
+            System.out.println(String.format("  k=%d %10.1f us/query %8.1f matches %8.1f states",
+                    distance, elapsed / 1e3 / (ROUNDS / 4) / queries.size(),
+                    (double) found / count, (double) states / count));
+        }
+    }
+
+    /**
+     * One frozen pattern validated from several threads at once, next
+     * to validation on the State graph from a single thread.
+     */
+    private static void frozen() {
+        final FiniteAutomaton automaton = Regex.compile("([a-z]+[0-9]*@)*[a-z]+");
+        final FrozenAutomaton frozen = automaton.freeze();
+        Random random = new Random(1);
+        final List<String> texts = new ArrayList<String>();
+        long length = 0;
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < 100) text.append((char) ('a' + random.nextInt(26))).append(random.nextInt(8) == 0 ? "7@" : "");
+            texts.add(text.toString());
+            length += text.length();
+        }
+
+        long elapsed = 0;
+        for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+            long start = System.nanoTime();
+            for (String text : texts) sink = automaton.validate(text);
+            if (i >= WARMUP) elapsed += System.nanoTime() - start;
+        }
+        double graph = length * 1000.0 * (ROUNDS / 4) / elapsed;
+
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        Thread[] workers = new Thread[threads];
+        elapsed = 0;
+        for (int i = 0; i < WARMUP + ROUNDS; i++) {
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                workers[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (String text : texts) sink = frozen.validate(text);
+                    }
+                });
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (i >= WARMUP) elapsed += System.nanoTime() - start;
+        }
+
+        System.out.println("Frozen automata");
+        System.out.println(String.format("  %8.1f MB/s State graph, 1 thread %8.1f MB/s frozen, %d threads",
+                graph, threads * length * 1000.0 * ROUNDS / elapsed, threads));
+    }
+
+    /**
+     * Lookups of words in the numbered automata of a large word list:
+     * the Dfa, and the Nfa of a frozen snapshot, with the heap each of
+     * them takes.
+     */
+    private static void flatLayout() {
+        Random random = new Random(1);
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < 300000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 4 + random.nextInt(9);
+            for (int j = 0; j < length; j++) word.append((char) ('a' + random.nextInt(26)));
+            words.add(word.toString());
+        }
+        Collections.sort(words);
+        FiniteAutomaton automaton = Dawg.of(words).toFiniteAutomaton();
+        Collections.shuffle(words, random);
+
+        long heap = usedHeap();
+        FrozenAutomaton frozen = automaton.freeze();
+        long frozenHeap = usedHeap() - heap;
+        heap = usedHeap();
+        Dfa dfa = frozen.toDfa();
+        long dfaHeap = usedHeap() - heap;
+
+        long dfaTime = 0, frozenTime = 0;
+        int found = 0;
+        for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+            long start = System.nanoTime();
+            for (String word : words) if (dfa.validate(word)) found++;
+            long middle = System.nanoTime();
+            for (String word : words) if (frozen.validate(word)) found++;
+            if (i >= WARMUP) {
+                dfaTime += middle - start;
+                frozenTime += System.nanoTime() - middle;
+            }
+        }
+        sink = found;
+
+        int lookups = ROUNDS / 4 * words.size();
+        System.out.println("Numbered automata");
+        System.out.println(String.format("  %d states: Dfa %.1f MB, Nfa %.1f MB heap",
+                dfa.getStateCount(), dfaHeap / 1e6, frozenHeap / 1e6));
+        System.out.println(String.format("  %8.1f ns/word Dfa %8.1f ns/word Nfa simulation",
+                (double) dfaTime / lookups, (double) frozenTime / lookups));
+    }
+
+    private static void captures() {
+        TaggedNfa pairs = TaggedNfa.compile("(([a-z]+)=([0-9]+);)*([a-z]+)=([0-9]+)");
+        Random random = new Random(1);
+        System.out.println("Capture groups, " + pairs.getGroupCount() + " groups, "
+                + pairs.getStateCount() + " states");
+
+        for (int size = 1000; size <= 1000000; size *= 10) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < size) {
+                if (text.length() > 0) text.append(';');
+                for (int j = 3 + random.nextInt(6); j > 0; j--) text.append((char) ('a' + random.nextInt(26)));
+                text.append('=').append(random.nextInt(100000));
+            }
+            String str = text.toString();
+
+            long time = 0;
+            Match match = null;
+            for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+                long start = System.nanoTime();
+                match = pairs.match(str);
+                if (i >= WARMUP) time += System.nanoTime() - start;
+            }
+            sink = match.getGroupEnd(5);
+            System.out.println(String.format("  %8d chars %10.3f ms %6.1f ns/char, last pair %s=%s",
+                    str.length(), time / 1e6 / (ROUNDS / 4), (double) time / (ROUNDS / 4) / str.length(),
+                    match.getGroup(4), match.getGroup(5)));
+        }
+    }
+
+    private static void search() {
+        String regex = "[a-z]+@[a-z]+\\.(com|org)";
+        FiniteAutomaton automaton = Regex.compile(regex);
+        Searcher searcher = Searcher.compile(regex);
+        Random random = new Random(1);
+        System.out.println("Forward and reverse search, " + regex);
+
+        for (int size = 1000; size <= 1000000; size *= 10) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < size) {
+                for (int j = 2 + random.nextInt(8); j > 0; j--) text.append((char) ('a' + random.nextInt(26)));
+                text.append(random.nextInt(20) == 0 ? "@example.org " : " ");
+            }
+            String str = text.toString();
+
+            long matchTime = 0, findTime = 0;
+            int matches = 0, found = 0;
+            for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+                long start = System.nanoTime();
+                matches = searcher.matchAll(str).size();
+                long middle = System.nanoTime();
+                found = searcher.findAll(str).size();
+                if (i >= WARMUP) {
+                    matchTime += middle - start;
+                    findTime += System.nanoTime() - middle;
+                }
+            }
+            System.out.println(String.format("  %8d chars matchAll %10.3f ms (%d), findAll %10.3f ms (%d)",
+                    str.length(), matchTime / 1e6 / (ROUNDS / 4), matches, findTime / 1e6 / (ROUNDS / 4), found));
+
+            if (size == 1000) {
+                // Every substring, as Regex.match used to
+                long start = System.nanoTime();
+                int old = 0;
+                for (int i = 0; i < str.length(); i++) {
+                    for (int j = i + 1; j <= str.length(); j++) {
+                        if (automaton.validate(str.substring(i, j))) old++;
+                    }
+                }
+                System.out.println(String.format("  %8d chars every substring %10.3f ms (%d)",
+                        str.length(), (System.nanoTime() - start) / 1e6, old));
+            }
+        }
+    }
+
+    private static void scanning() {
+        Random random = new Random(1);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1000000) {
+            for (int j = 2 + random.nextInt(8); j > 0; j--) text.append((char) ('a' + random.nextInt(26)));
+            text.append(' ');
+        }
+        String str = text.toString();
+        Alphabet alphabet = new Alphabet(new char[]{' '});
+        alphabet.addRange('a', 'z');
+        Set<Character> characters = new HashSet<Character>(alphabet.getCharacters());
+
+        long maskTime = 0, setTime = 0;
+        int valid = 0;
+        for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+            long start = System.nanoTime();
+            if (alphabet.validate(str)) valid++;
+            long middle = System.nanoTime();
+            // The Set, then the ranges, as Alphabet.contains did
+            boolean all = true;
+            for (int k = 0; k < str.length() && all; k++) {
+                char c = str.charAt(k);
+                all = characters.contains(c);
+                for (int r = 0; r < alphabet.getRangeCount() && !all; r++) {
+                    all = alphabet.getRangeBegin(r) <= c && c <= alphabet.getRangeEnd(r);
+                }
+            }
+            if (all) valid++;
+            if (i >= WARMUP) {
+                maskTime += middle - start;
+                setTime += System.nanoTime() - middle;
+            }
+        }
+        sink = valid;
+        long chars = (long) str.length() * (ROUNDS / 4);
+        System.out.println("Alphabet scan, " + str.length() + " chars");
+        System.out.println(String.format("  %8.2f chars/ns mask %8.2f chars/ns Set and ranges",
+                (double) chars / maskTime, (double) chars / setTime));
+
+        String regex = "[a-z]+@example\\.(com|org)";
+        Searcher filtered = Searcher.compile(regex);
+        Searcher plain = new Searcher(Regex.compile(regex));
+        long filteredTime = 0, plainTime = 0;
+        int found = 0;
+        for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+            long start = System.nanoTime();
+            found += filtered.findAll(str).size();
+            long middle = System.nanoTime();
+            found += plain.findAll(str).size();
+            if (i >= WARMUP) {
+                filteredTime += middle - start;
+                plainTime += System.nanoTime() - middle;
+            }
+        }
+        sink = found;
+        System.out.println(String.format("  %8.2f chars/ns findAll with literal \"%s\" %8.2f chars/ns without",
+                (double) chars / filteredTime, filtered.getLiteral(), (double) chars / plainTime));
+    }
+
+    /**
+     * CharScan against the scalar loops it replaces, in bytes of text
+     * per cycle where /proc/cpuinfo tells the clock, as on x86 Linux, and
+     * in chars per ns everywhere. CharScan runs on vectors only if the
+     * JVM is started with "--add-modules jdk.incubator.vector".
+     */
+    private static void vectorScans() {
+        Random random = new Random(2);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1000000) text.append((char) ('a' + random.nextInt(26)));
+        String str = text.toString();
+        Alphabet alphabet = new Alphabet();
+        alphabet.addRange('a', 'z');
+        long low = 0, high = ((1L << 26) - 1) << 33;  // The mask of 'a' to 'z'
+        double mhz = cpuMegahertz();
+
+        long scanTime = 0, loopTime = 0, indexTime = 0, scalarIndexTime = 0;
+        int found = 0;
+        String literal = "zyxwv";
+        // Short calls first, so that the scans are compiled whole and not on stack replacement
+        String head = str.substring(0, 4096);
+        StringBuilder headText = new StringBuilder(head);
+        for (int i = 0; i < 20000; i++) {
+            if (alphabet.validate(head)) found++;
+            found += CharScan.indexOf(headText, literal, 0) + scalarIndexOf(headText, literal);
+        }
+        for (int i = 0; i < WARMUP + ROUNDS; i++) {
+            long start = System.nanoTime();
+            if (alphabet.validate(str)) found++;
+            long middle = System.nanoTime();
+            int k = 0;
+            char c;
+            while (k < str.length() && (c = str.charAt(k)) < 128 && (((c & 64) == 0 ? low : high) >>> c & 1) != 0) k++;
+            found += k;
+            long end = System.nanoTime();
+            found += CharScan.indexOf(text, literal, 0);
+            long last = System.nanoTime();
+            found += scalarIndexOf(text, literal);
+            if (i >= WARMUP) {
+                scanTime += middle - start;
+                loopTime += end - middle;
+                indexTime += last - end;
+                scalarIndexTime += System.nanoTime() - last;
+            }
+        }
+        sink = found;
+        long chars = (long) str.length() * ROUNDS;
+        System.out.println("Vector scans, " + str.length() + " chars, vectorized " + CharScan.isVectorized()
+                + (mhz > 0 ? String.format(", %.0f MHz", mhz) : ""));
+        vectorScansReport("Alphabet.validate", chars, scanTime, loopTime, mhz);
+        vectorScansReport("indexOf on a StringBuilder", chars, indexTime, scalarIndexTime, mhz);
+    }
+
+    private static void vectorScansReport(String name, long chars, long time, long scalarTime, double mhz) {
+        if (mhz > 0) {
+            double cycles = mhz / 1000;  // Per ns
+            System.out.println(String.format("  %8.2f bytes/cycle %8.2f bytes/cycle scalar  %s",
+                    2.0 * chars / time / cycles, 2.0 * chars / scalarTime / cycles, name));
+        }
+        System.out.println(String.format("  %8.2f chars/ns    %8.2f chars/ns scalar     %s",
+                (double) chars / time, (double) chars / scalarTime, name));
+    }
+
+    /**
+     * The loop of the scalar CharScan.indexOf.
+     */
+    private static int scalarIndexOf(CharSequence text, String literal) {
+        int m = literal.length();
+        for (int i = 0; i <= text.length() - m; i++) {
+            if (text.charAt(i) != literal.charAt(0) || text.charAt(i + m - 1) != literal.charAt(m - 1)) continue;
+            int k = 1;
+            while (k < m - 1 && text.charAt(i + k) == literal.charAt(k)) k++;
+            if (k >= m - 1) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * The clock of the CPU, from /proc/cpuinfo; 0 where there is none.
+     */
+    private static double cpuMegahertz() {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/proc/cpuinfo"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("cpu MHz")) return Double.parseDouble(line.substring(line.indexOf(':') + 1).trim());
+            }
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+        return 0;
+    }
+
+    private static void charClasses() {
+        String word = "([\u0400-\u04ff]+|[\u4e00-\u9fff]+|[a-zA-Z]+|[0-9]+|[\u0600-\u06ff]+)";
+        FiniteAutomaton automaton = Regex.compile(word + "( " + word + ")*");
+        Dfa dfa = Dfa.of(new LazyDfa(Nfa.of(automaton))).minimize();
+        long start = System.nanoTime();
+        TableDfa table = TableDfa.of(dfa);
+        long build = System.nanoTime() - start;
+
+        Random random = new Random(1);
+        char[][] scripts = {{'a', 'z'}, {'0', '9'}, {'\u0400', '\u04ff'}, {'\u4e00', '\u9fff'}, {'\u0600', '\u06ff'}};
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1000000) {
+            if (text.length() > 0) text.append(' ');
+            char[] script = scripts[random.nextInt(scripts.length)];
+            for (int j = 2 + random.nextInt(8); j > 0; j--) {
+                text.append((char) (script[0] + random.nextInt(script[1] - script[0] + 1)));
+            }
+        }
+        String str = text.toString();
+
+        long tableTime = 0, dfaTime = 0;
+        int valid = 0;
+        for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+            start = System.nanoTime();
+            if (table.validate(str)) valid++;
+            long middle = System.nanoTime();
+            if (dfa.validate(str)) valid++;
+            if (i >= WARMUP) {
+                tableTime += middle - start;
+                dfaTime += System.nanoTime() - middle;
+            }
+        }
+        sink = valid;
+
+        long chars = (long) str.length() * (ROUNDS / 4);
+        System.out.println("Character classes, " + table.getStateCount() + " states, "
+                + table.getClasses().getClassCount() + " classes, built in " + build / 1000000 + " ms");
+        System.out.println(String.format("  %8d bytes table and classes, %d bytes with a column per char",
+                table.getMemorySize(), 4L * 65536 * table.getStateCount()));
+        System.out.println(String.format("  %8.2f ns/char TableDfa %8.2f ns/char Dfa ranges",
+                (double) tableTime / chars, (double) dfaTime / chars));
+    }
+
+    private static void budget() {
+        Searcher searcher = Searcher.compile("[a-z]+@[a-z]+\\.(com|org)");
+        Budget budget = new Budget.Builder().maxSteps(100000000).timeout(1, TimeUnit.SECONDS).build();
+        Random random = new Random(1);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1000000) {
+            for (int j = 2 + random.nextInt(8); j > 0; j--) text.append((char) ('a' + random.nextInt(26)));
+            text.append(random.nextInt(20) == 0 ? "@example.org " : " ");
+        }
+        String str = text.toString();
+
+        long plainTime = 0, guardedTime = 0;
+        int found = 0;
+        for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+            long start = System.nanoTime();
+            found += searcher.matchAll(str).size();
+            long middle = System.nanoTime();
+            found += searcher.matchAll(str, budget).size();
+            if (i >= WARMUP) {
+                plainTime += middle - start;
+                guardedTime += System.nanoTime() - middle;
+            }
+        }
+        sink = found;
+        System.out.println("Budgets");
+        System.out.println(String.format("  %8.3f ms matchAll %8.3f ms with a budget",
+                plainTime / 1e6 / (ROUNDS / 4), guardedTime / 1e6 / (ROUNDS / 4)));
+
+        // Leftmost-longest search of "a*c|a" over "aaa..." is quadratic
+        StringBuilder hostile = new StringBuilder();
+        for (int i = 0; i < 1000000; i++) hostile.append('a');
+        Budget deadline = new Budget.Builder().timeout(10, TimeUnit.MILLISECONDS).build();
+        long start = System.nanoTime();
+        try {
+            Searcher.compile("a*c|a").findAll(hostile, deadline);
+        } catch (BudgetExceededError e) {
+            System.out.println(String.format("  %8.3f ms to give up on a hostile input with a 10 ms timeout, %d steps",
+                    (System.nanoTime() - start) / 1e6, e.getSteps()));
+        }
+    }
+
+    private static void earlyExit() {
+        Searcher searcher = Searcher.compile("[a-z]+@[a-z]+\\.(com|org)");
+        Random random = new Random(1);
+        StringBuilder text = new StringBuilder("user@example.org ");
+        while (text.length() < 1000000) {
+            for (int j = 2 + random.nextInt(8); j > 0; j--) text.append((char) ('a' + random.nextInt(26)));
+            text.append(random.nextInt(20) == 0 ? "@example.org " : " ");
+        }
+        String str = text.toString();
+
+        long[] times = new long[4];
+        long found = 0;
+        for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+            long start = System.nanoTime();
+            found += searcher.matchAll(str).size();
+            long matchAll = System.nanoTime();
+            found += searcher.count(str);
+            long count = System.nanoTime();
+            found += searcher.contains(str) ? 1 : 0;
+            long contains = System.nanoTime();
+            found += searcher.find(str).getEnd();
+            if (i >= WARMUP) {
+                times[0] += matchAll - start;
+                times[1] += count - matchAll;
+                times[2] += contains - count;
+                times[3] += System.nanoTime() - contains;
+            }
+        }
+        sink = (int) found;
+        System.out.println("Early exit, " + str.length() + " chars, first match at 0");
+        System.out.println(String.format("  %10.3f ms matchAll %10.3f ms count %10.4f ms contains %10.4f ms find",
+                times[0] / 1e6 / (ROUNDS / 4), times[1] / 1e6 / (ROUNDS / 4),
+                times[2] / 1e6 / (ROUNDS / 4), times[3] / 1e6 / (ROUNDS / 4)));
+    }
+
+    /**
+     * Redaction of phone numbers in a text: replaceAll() on the String,
+     * on a Reader into a Writer, which keeps only the part of the text
+     * that a match may still take in memory, and java.util.regex.
+     */
+    private static void streaming() throws IOException {
+        String regex = "[0-9][0-9][0-9]-[0-9][0-9][0-9][0-9]";
+        Searcher searcher = Searcher.compile(regex);
+        Pattern pattern = Pattern.compile(regex);
+        Random random = new Random(1);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1000000) {
+            for (int j = 2 + random.nextInt(8); j > 0; j--) text.append((char) ('a' + random.nextInt(26)));
+            if (random.nextInt(20) == 0) text.append(" 555-").append(1000 + random.nextInt(9000));
+            text.append(random.nextInt(10) == 0 ? "\n" : " ");
+        }
+        String str = text.toString();
+
+        long[] times = new long[3];
+        long written = 0;
+        for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+            long start = System.nanoTime();
+            written += searcher.replaceAll(str, "###-####").length();
+            long string = System.nanoTime();
+            StringWriter out = new StringWriter(str.length());
+            searcher.replaceAll(new StringReader(str), "###-####", out);
+            written += out.getBuffer().length();
+            long reader = System.nanoTime();
+            written += pattern.matcher(str).replaceAll("###-####").length();
+            if (i >= WARMUP) {
+                times[0] += string - start;
+                times[1] += reader - string;
+                times[2] += System.nanoTime() - reader;
+            }
+        }
+        sink = (int) written;
+        System.out.println("Redaction, " + str.length() + " chars");
+        System.out.println(String.format("  %10.3f ms String %10.3f ms Reader %10.3f ms java.util.regex",
+                times[0] / 1e6 / (ROUNDS / 4), times[1] / 1e6 / (ROUNDS / 4), times[2] / 1e6 / (ROUNDS / 4)));
+    }
+
+    /**
+     * Matches of independent streams published by MatchProcessors, in
+     * chunks of 8192 chars, against findAll() on each text in turn.
+     */
+    private static void flow() {
+        MatchProcessor.Builder builder = new MatchProcessor.Builder("[0-9][0-9][0-9]-[0-9][0-9][0-9][0-9]");
+        Searcher searcher = Searcher.compile("[0-9][0-9][0-9]-[0-9][0-9][0-9][0-9]");
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        builder.executor(executor);
+        Random random = new Random(1);
+        String[] texts = new String[8];
+        for (int k = 0; k < texts.length; k++) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < 1000000) {
+                for (int j = 2 + random.nextInt(8); j > 0; j--) text.append((char) ('a' + random.nextInt(26)));
+                if (random.nextInt(20) == 0) text.append(" 555-").append(1000 + random.nextInt(9000));
+                text.append(' ');
+            }
+            texts[k] = text.toString();
+        }
+
+        long[] times = new long[2];
+        final AtomicLong found = new AtomicLong();
+        for (int i = 0; i < WARMUP + ROUNDS / 4; i++) {
+            long start = System.nanoTime();
+            for (String text : texts) found.addAndGet(searcher.findAll(text).size());
+            long sequential = System.nanoTime();
+
+            final CountDownLatch done = new CountDownLatch(texts.length);
+            for (String text : texts) {
+                MatchProcessor processor = builder.build();
+                Benchmark.publish(text, 8192).subscribe(processor);
+                processor.subscribe(new Flow.Subscriber<Match>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        subscription.request(Long.MAX_VALUE);
+                    }
+
+                    @Override
+                    public void onNext(Match match) {
+                        found.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        done.countDown();
+                    }
+                });
+            }
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (i >= WARMUP) {
+                times[0] += sequential - start;
+                times[1] += System.nanoTime() - sequential;
+            }
+        }
+        executor.shutdown();
+        sink = found.get();
+        System.out.println("Flow, " + texts.length + " streams of " + texts[0].length() + " chars, " + threads + " threads");
+        System.out.println(String.format("  %10.3f ms findAll %10.3f ms MatchProcessor",
+                times[0] / 1e6 / (ROUNDS / 4), times[1] / 1e6 / (ROUNDS / 4)));
+    }
+
+    /**
+     * A Publisher of the text in CharBuffer chunks of the given size,
+     * handed over on the thread that requests them.
+     */
+    private static Flow.Publisher<Buffer> publish(final String text, final int size) {
+        return new Flow.Publisher<Buffer>() {
+            @Override
+            public void subscribe(final Flow.Subscriber<? super Buffer> subscriber) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    private int next;
+
+                    @Override
+                    public void request(long n) {
+                        for (; n > 0 && this.next < text.length(); n--) {
+                            int end = Math.min(text.length(), this.next + size);
+                            subscriber.onNext(CharBuffer.wrap(text, this.next, end));
+                            this.next = end;
+                        }
+                        if (this.next == text.length()) {
+                            this.next++;
+                            subscriber.onComplete();
+                        }
+                    }
+
+                    @Override
+                    public void cancel() {
+                        this.next = text.length() + 1;
+                    }
+                });
+            }
+        };
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A Grammar from rules written as in grammar(): upper case letters
+     * are nonterminals, everything else is a terminal.
+     */
+    private static Grammar earleyGrammar(String terminals, String... productions) {
+        Grammar result = new Grammar(new Alphabet(terminals.toCharArray()), "S");
+        for (String production : productions) {
+            String[] sides = production.split("->", -1);
+            String[] right = new String[sides[1].length()];
+            for (int i = 0; i < right.length; i++) right[i] = String.valueOf(sides[1].charAt(i));
+            result.addRule(sides[0], right);
+        }
+        return result;
+    }
+
+    /**
+     * The usual pushdown automaton of a grammar: productions "A->xyz"
+     * replace A on the stack with xyz, and terminals on the stack are
+     * matched against the input. The start symbol is S.
+     */
+    private static PushdownAutomaton grammar(String terminals, String... productions) {
+        PushdownAutomaton automaton = new PushdownAutomaton();
+        automaton.setAlphabet(terminals.toCharArray());
+        PushdownState begin = new PushdownState();
+        PushdownState state = new PushdownState(true);
+
+        begin.addLambda(state, "", "S");
+        for (String production : productions) {
+            String[] sides = production.split("->", -1);
+            state.addLambda(state, sides[0], new StringBuilder(sides[1]).reverse().toString());
+        }
+        for (char c : terminals.toCharArray()) {
+            state.addTransition(String.valueOf(c), String.valueOf(c), state, true);
+        }
+
+        automaton.setBegin(begin);
+        return automaton;
+    }
+
+    // Nested and sequenced brackets with some filler
+    private static String balanced(int size) {
+        Random random = new Random(size);
+        StringBuilder builder = new StringBuilder();
+        StringBuilder closing = new StringBuilder();
+        while (builder.length() + closing.length() < size) {
+            int choice = random.nextInt(5);
+            if (choice == 0) {
+                builder.append('(');
+                closing.append(')');
+            } else if (choice == 1) {
+                builder.append('[');
+                closing.append(']');
+            } else if (choice == 2 && closing.length() > 0) {
+                builder.append(closing.charAt(closing.length() - 1));
+                closing.setLength(closing.length() - 1);
+            } else {
+                builder.append('x');
+            }
+        }
+        return builder.append(closing.reverse()).toString();
+    }
+
+    private static List<String> words(int count) {
+        Random random = new Random(count);
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = 4 + random.nextInt(8);
+            for (int j = 0; j < length; j++) builder.append((char) ('a' + random.nextInt(26)));
+            words.add(builder.toString());
+        }
+        return words;
+    }
+
+    private static String join(List<String> words) {
+        StringBuilder builder = new StringBuilder("(");
+        for (String word : words) {
+            if (builder.length() > 1) builder.append('|');
+            builder.append(word);
+        }
+        return builder.append(')').toString();
+    }
+
+    private static void report(String name, int size, String pattern) {
+        long start, elapsed = 0;
+
+        for (int i = 0; i < WARMUP + ROUNDS; i++) {
+            start = System.nanoTime();
+            sink = Regex.compile(pattern);
+            if (i >= WARMUP) elapsed += System.nanoTime() - start;
+        }
+
+        double micros = elapsed / 1000.0 / ROUNDS;
+        System.out.println(String.format("%-16s %6d chars %10.1f us %8.3f us/char",
+                name, pattern.length(), micros, micros / pattern.length()));
+    }
+
+    // (ab|c*d)+(ab|c*d)+... up to the given length
+    private static String alternations(int size) {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < size) {
+            builder.append("(ab|c*d)+");
+        }
+        return builder.toString();
+    }
+
+    // ((((a)b)c)...)
+    private static String nested(int size) {
+        StringBuilder builder = new StringBuilder();
+        int depth = size / 3;
+        for (int i = 0; i < depth; i++) builder.append('(');
+        builder.append('a');
+        for (int i = 0; i < depth; i++) builder.append(")b");
+        return builder.toString();
+    }
+
+    // [a-z0-9][^x]?... up to the given length
+    private static String classes(int size) {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < size) {
+            builder.append("[a-z0-9_][^x]?");
+        }
+        return builder.toString();
+    }
+}
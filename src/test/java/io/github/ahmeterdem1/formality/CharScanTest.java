@@ -0,0 +1,127 @@
+package io.github.ahmeterdem1.formality;
+
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Scans against plain loops, on texts long enough to take several
+ * blocks of vectors, and on every kind of text that is copied its own
+ * way. Which version of CharScan runs depends on the JVM; see
+ * isVectorized(). The scalar loops are also checked on their own, as
+ * they run without the vector module.
+ */
+public class CharScanTest {
+
+    private final Random random = new Random(45);
+
+    @Test
+    public void skipMaskedAgreesWithALoop() {
+        for (int t = 0; t < 200; t++) {
+            long low = this.random.nextLong() | 1L << ' ';
+            long high = this.random.nextLong() | -1L << 33;  // The letters, so that runs are long
+            String text = this.text(this.random.nextInt(5000));
+
+            for (CharSequence sequence : CharScanTest.views(text)) {
+                int from = this.random.nextInt(text.length() + 1);
+                for (int i = from; i <= text.length(); i = CharScan.skipMasked(sequence, i, low, high) + 1) {
+                    int expected = CharScanTest.skip(text, i, low, high);
+                    assertEquals(text.length() + " from " + i, expected, CharScan.skipMasked(sequence, i, low, high));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void indexOfAgreesWithString() {
+        for (int t = 0; t < 400; t++) {
+            String text = this.text(this.random.nextInt(5000));
+            int begin = this.random.nextInt(text.length() + 1);
+            int length = Math.min(text.length() - begin, 1 + this.random.nextInt(40));
+            String literal = this.random.nextInt(4) == 0 ? "zz" + text.substring(begin, begin + length) : text.substring(begin, begin + length);
+
+            for (CharSequence sequence : CharScanTest.views(text)) {
+                int from = this.random.nextInt(text.length() + 2) - 1;
+                assertEquals(literal, text.indexOf(literal, from), CharScan.indexOf(sequence, literal, from));
+                assertEquals(literal, text.indexOf(literal), CharScan.indexOf(sequence, literal, 0));
+            }
+        }
+        assertEquals(3, CharScan.indexOf(new StringBuilder("abc"), "", 7));
+        assertEquals(0, CharScan.indexOf(new StringBuilder("abc"), "", -2));
+    }
+
+    @Test
+    public void scalarLoopsAgreeWithALoop() {
+        for (int t = 0; t < 400; t++) {
+            long low = this.random.nextLong() | 1L << ' ';
+            long high = this.random.nextLong() | -1L << 33;
+            String text = this.text(this.random.nextInt(500));
+            int from = this.random.nextInt(text.length() + 1);
+            int to = from + this.random.nextInt(text.length() - from + 1);
+            int begin = this.random.nextInt(text.length() + 1);
+            int length = Math.min(text.length() - begin, 1 + this.random.nextInt(10));
+            String literal = text.substring(begin, begin + length);
+            if (literal.isEmpty()) literal = "z";
+
+            for (CharSequence sequence : CharScanTest.views(text)) {
+                assertEquals(Math.min(to, CharScanTest.skip(text, from, low, high)),
+                        CharScan.scalarSkipMasked(sequence, from, to, low, high));
+                int found = text.indexOf(literal, from);
+                assertEquals(literal, found >= to ? -1 : found, CharScan.scalarIndexOf(sequence, literal, from, to));
+            }
+        }
+    }
+
+    @Test
+    public void alphabetValidatesLongTexts() {
+        Alphabet alphabet = new Alphabet(new char[] {' ', '\u00e9'});
+        alphabet.addRange('a', 'z');
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++) text.append(i % 7 == 0 ? ' ' : (char) ('a' + i % 26));
+        assertEquals(true, alphabet.validate(text.toString()));
+        text.setCharAt(4321, '\u00e9');
+        assertEquals(true, alphabet.validate(text.toString()));
+        text.setCharAt(9876, 'A');
+        assertEquals(false, alphabet.validate(text.toString()));
+        text.setCharAt(9876, '\u00e8');
+        assertEquals(false, alphabet.validate(text.toString()));
+    }
+
+    /**
+     * A text of mostly lower case letters, with a few other ASCII
+     * characters and a few that are not ASCII.
+     */
+    private String text(int length) {
+        StringBuilder result = new StringBuilder();
+        while (result.length() < length) {
+            int r = this.random.nextInt(1000);
+            char c;
+            if (r == 0) c = (char) (128 + this.random.nextInt(65408));
+            else if (r < 4) c = (char) this.random.nextInt(128);
+            else c = (char) ('a' + this.random.nextInt(26));
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    private static CharSequence[] views(String text) {
+        CharBuffer wrapped = CharBuffer.allocate(text.length() + 3);
+        wrapped.put("xyz").put(text).flip();
+        wrapped.position(3);
+        return new CharSequence[] {text, new StringBuilder(text), new StringBuffer(text), wrapped.slice(), wrapped,
+                CharBuffer.wrap(text)};
+    }
+
+    private static int skip(String text, int from, long low, long high) {
+        int i = from;
+        while (i < text.length() && CharScanTest.inMask(text.charAt(i), low, high)) i++;
+        return i;
+    }
+
+    private static boolean inMask(char c, long low, long high) {
+        return c < 128 && ((c < 64 ? low : high) & 1L << c) != 0;
+    }
+}
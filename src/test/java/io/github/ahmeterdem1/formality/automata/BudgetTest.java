@@ -0,0 +1,67 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.exceptions.BudgetExceededError;
+import io.github.ahmeterdem1.formality.regex.Regex;
+import io.github.ahmeterdem1.formality.regex.Searcher;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Searches that run out of their Budget, and ones that do not.
+ */
+public class BudgetTest {
+
+    private static final String TEXT = BudgetTest.repeat('a', 200000);
+
+    @Test
+    public void stepsAreLimited() {
+        FiniteAutomaton automaton = Regex.compile("(a|aa|aaa)*b");
+        assertFalse(automaton.validate(TEXT));
+        try {
+            automaton.validate(TEXT, new Budget.Builder().maxSteps(1000).build());
+            fail();
+        } catch (BudgetExceededError e) {
+            assertTrue(e.getSteps() > 1000);
+        }
+    }
+
+    @Test(expected = BudgetExceededError.class, timeout = 5000)
+    public void timeIsLimited() {
+        Regex.compile("(a|aa|aaa)*b").validate(TEXT, new Budget.Builder().timeout(2, TimeUnit.MILLISECONDS).build());
+    }
+
+    @Test
+    public void searchesAreLimited() {
+        try {
+            Regex.match(TEXT, "a+", new Budget.Builder().maxSteps(100000).build());
+            fail();
+        } catch (BudgetExceededError e) {
+            // The matches are quadratic in number
+        }
+        try {
+            Searcher.compile("a*c|a").findAll(TEXT, new Budget.Builder().maxSteps(1000000).build());
+            fail();
+        } catch (BudgetExceededError e) {
+            // Each candidate reads to the end
+        }
+    }
+
+    @Test
+    public void enoughBudgetChangesNothing() {
+        Budget budget = new Budget.Builder().maxSteps(1000).timeout(1, TimeUnit.SECONDS).build();
+        assertTrue(Regex.compile("(a|aa|aaa)*b").validate("aab", budget));
+        assertEquals(3, Regex.match("abbab", "a(b)+", Budget.UNLIMITED).size());
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder result = new StringBuilder(count);
+        for (int i = 0; i < count; i++) result.append(c);
+        return result.toString();
+    }
+}
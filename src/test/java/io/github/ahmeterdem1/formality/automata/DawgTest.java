@@ -0,0 +1,62 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.exceptions.AutomatonError;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Dictionaries against sets of their words.
+ */
+public class DawgTest {
+
+    private final Random random = new Random(5);
+
+    @Test
+    public void dictionariesAgreeWithSets() {
+        for (int round = 0; round < 150; round++) {
+            int letters = 2 + this.random.nextInt(4);
+            TreeSet<String> set = new TreeSet<String>();
+            if (this.random.nextInt(5) == 0) set.add("");
+            for (int i = this.random.nextInt(300); i > 0; i--) set.add(this.word(letters, 8));
+            List<String> words = new ArrayList<String>(set);
+            if (this.random.nextBoolean() && !words.isEmpty()) words.add(words.get(words.size() - 1));  // Duplicates are skipped
+
+            Dawg dawg = Dawg.of(words);
+            assertEquals(set.size(), dawg.getWordCount());
+            FiniteAutomaton automaton = dawg.toFiniteAutomaton();
+            OffHeapDfa table = dawg.toOffHeapDfa();
+
+            for (String word : set) assertEquals(word, true, dawg.contains(word));
+            for (int k = 0; k < 2000; k++) {
+                String s = this.word(letters + 1, 9);
+                boolean expected = set.contains(s);
+                assertEquals(s, expected, dawg.contains(s));
+                assertEquals(s, expected, table.validate(s));
+                assertEquals(s, expected, automaton.validate(s));
+            }
+            if (!set.isEmpty()) {
+                assertEquals(Dfa.of(new LazyDfa(Nfa.of(automaton))).minimize().getStateCount(), dawg.getStateCount());
+            }
+            table.close();
+        }
+        assertEquals(5, Dawg.of(Arrays.asList("tap", "taps", "top", "tops")).getStateCount());
+    }
+
+    @Test(expected = AutomatonError.class)
+    public void unsortedWordsAreRefused() {
+        Dawg.of(Arrays.asList("b", "a"));
+    }
+
+    private String word(int letters, int maxLength) {
+        StringBuilder result = new StringBuilder();
+        for (int i = this.random.nextInt(maxLength); i > 0; i--) result.append((char) ('a' + this.random.nextInt(letters)));
+        return result.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.regex.Regex;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counterexamples against a search of every string up to a length.
+ */
+public class EquivalenceTest {
+
+    private final Random random = new Random(11);
+
+    @Test
+    public void counterexamplesAreShortest() {
+        List<String> strings = EquivalenceTest.strings("abc", 6);
+
+        for (int t = 0; t < 600; t++) {
+            String p = this.pattern(3);
+            String q = this.pattern(3);
+            FiniteAutomaton a = Regex.compile(p);
+            FiniteAutomaton b = Regex.compile(q);
+
+            String different = null;
+            String included = null;
+            for (String s : strings) {
+                boolean x = a.validate(s);
+                boolean y = b.validate(s);
+                if (different == null && x != y) different = s;
+                if (included == null && x && !y) included = s;
+            }
+
+            String counterexample = Equivalence.counterexample(a, b);
+            String message = p + " and " + q;
+            if (different == null) {
+                assertNull(message, counterexample);
+            } else {
+                assertNotNull(message, counterexample);
+                assertEquals(message, different.length(), counterexample.length());
+                assertTrue(message, a.validate(counterexample) != b.validate(counterexample));
+            }
+
+            counterexample = Equivalence.inclusionCounterexample(a, b);
+            if (included == null) {
+                assertNull(message, counterexample);
+            } else {
+                assertNotNull(message, counterexample);
+                assertEquals(message, included.length(), counterexample.length());
+                assertTrue(message, a.validate(counterexample) && !b.validate(counterexample));
+            }
+        }
+    }
+
+    @Test
+    public void examples() {
+        assertTrue(Regex.compile("(a|b)*").isEquivalent(Regex.compile("(a*b*)*")));
+        assertTrue(Regex.compile("ab").isSubsetOf(Regex.compile("a*b*")));
+        assertFalse(Regex.compile("a*b*").isSubsetOf(Regex.compile("ab")));
+        assertEquals("", Equivalence.counterexample(Regex.compile("a*"), Regex.compile("a+")));
+    }
+
+    private String pattern(int depth) {
+        if (depth == 0 || this.random.nextInt(3) == 0) {
+            String[] atoms = {"a", "b", "ab", "[a-b]", "[^a]"};
+            return atoms[this.random.nextInt(atoms.length)];
+        }
+        switch (this.random.nextInt(4)) {
+            case 0:
+                return this.pattern(depth - 1) + this.pattern(depth - 1);
+            case 1:
+                return "(" + this.pattern(depth - 1) + "|" + this.pattern(depth - 1) + ")";
+            case 2:
+                return "(" + this.pattern(depth - 1) + ")*";
+            default:
+                return "(" + this.pattern(depth - 1) + ")?";
+        }
+    }
+
+    /**
+     * Every string over some characters, by length, up to a length.
+     */
+    static List<String> strings(String characters, int maxLength) {
+        List<String> result = new ArrayList<String>();
+        result.add("");
+        for (int from = 0, length = 1; length <= maxLength; length++) {
+            int to = result.size();
+            for (int i = from; i < to; i++) {
+                for (int k = 0; k < characters.length(); k++) result.add(result.get(i) + characters.charAt(k));
+            }
+            from = to;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.regex.Regex;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Frozen automata shared by several threads against the graph.
+ */
+public class FrozenAutomatonTest {
+
+    @Test
+    public void sharedAutomataAgreeWithGraph() throws InterruptedException, ExecutionException {
+        String[] regexes = {"(ab)*", "(a|b)*abb(a|b)*", "[a-c]*[^b]x", "a*b*c*", "(a|b|c)*c(a|b|c)(a|b|c)", "(abc|ab|c)*", "[a-z0-9]+", "x?y?z?"};
+        final AtomicInteger wrong = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        try {
+            for (String regex : regexes) {
+                FiniteAutomaton automaton = Regex.compile(regex);
+                final FrozenAutomaton frozen = automaton.freeze();
+                final Dfa dfa = frozen.toDfa();
+                FiniteAutomaton back = frozen.toFiniteAutomaton();
+                final List<String> inputs = new ArrayList<String>();
+                final List<Boolean> expected = new ArrayList<Boolean>();
+                Random random = new Random(regex.hashCode());
+                for (int k = 0; k < 5000; k++) {
+                    StringBuilder text = new StringBuilder();
+                    for (int i = random.nextInt(10); i > 0; i--) text.append("abcxyz9".charAt(random.nextInt(7)));
+                    inputs.add(text.toString());
+                    expected.add(automaton.validate(text.toString()));
+                }
+
+                List<Future<?>> futures = new ArrayList<Future<?>>();
+                for (int t = 0; t < 8; t++) {
+                    futures.add(pool.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int k = 0; k < inputs.size(); k++) {
+                                boolean e = expected.get(k);
+                                if (frozen.validate(inputs.get(k)) != e || dfa.validate(inputs.get(k)) != e) wrong.incrementAndGet();
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) future.get();
+                for (int k = 0; k < inputs.size(); k++) assertEquals(regex, expected.get(k), back.validate(inputs.get(k)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(0, wrong.get());
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.regex.Regex;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Revalidation after random edits against validating the whole text.
+ */
+public class IncrementalValidatorTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    public void revalidateAgreesWithValidate() {
+        String[] regexes = {"(ab)*", "(a|b)*abb(a|b)*", "((a|b)(a|b))*", "a*b*c*", "(a|b|c)*c(a|b|c)(a|b|c)", "(abc|ab|c)*"};
+
+        for (String regex : regexes) {
+            FiniteAutomaton automaton = Regex.compile(regex);
+            LazyDfa reference = new LazyDfa(Nfa.of(automaton));
+
+            for (int t = 0; t < 300; t++) {
+                IncrementalValidator validator = new IncrementalValidator(automaton, 1 + this.random.nextInt(8));
+                String characters = this.random.nextInt(5) == 0 ? "abcd" : "abc";
+                StringBuilder text = new StringBuilder(this.text(characters, this.random.nextInt(60)));
+                assertEquals(regex, reference.validate(text), validator.validate(text));
+
+                for (int e = 0; e < 50; e++) {
+                    int offset = this.random.nextInt(text.length() + 1);
+                    int removed = this.random.nextInt(Math.min(4, text.length() - offset) + 1);
+                    String inserted = this.text(characters, this.random.nextInt(4));
+                    text.replace(offset, offset + removed, inserted);
+                    assertEquals(regex + " on " + text, reference.validate(text),
+                            validator.revalidate(text, offset, removed, inserted.length()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keepsItsCheckpointsOnLongTexts() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; i++) text.append(i % 3 == 0 ? 'a' : 'b');
+        IncrementalValidator validator = new IncrementalValidator(Regex.compile("((a|b)(a|b))*"), 256);
+        assertEquals(true, validator.validate(text));
+        int checkpoints = validator.getCheckpointCount();
+
+        for (int k = 0; k < 1000; k++) {
+            int offset = (k * 7919) % text.length();
+            text.setCharAt(offset, text.charAt(offset) == 'a' ? 'b' : 'a');
+            assertEquals(true, validator.revalidate(text, offset, 1, 1));
+        }
+        text.append('a');
+        assertEquals(false, validator.revalidate(text, text.length() - 1, 0, 1));
+        assertEquals(checkpoints, validator.getCheckpointCount());
+    }
+
+    private String text(String characters, int length) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i++) result.append(characters.charAt(this.random.nextInt(characters.length())));
+        return result.toString();
+    }
+}
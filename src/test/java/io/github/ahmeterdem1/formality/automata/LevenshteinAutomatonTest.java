@@ -0,0 +1,77 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.regex.Regex;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Fuzzy lookups against the edit distance to every word.
+ */
+public class LevenshteinAutomatonTest {
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void searchesAgreeWithEditDistance() {
+        for (int round = 0; round < 60; round++) {
+            int letters = 2 + this.random.nextInt(5);
+            TreeSet<String> set = new TreeSet<String>();
+            for (int i = 1 + this.random.nextInt(400); i > 0; i--) set.add(this.word(letters, 9));
+            Dawg dawg = Dawg.of(set);
+            FiniteAutomaton automaton = dawg.toFiniteAutomaton();
+            Dfa dfa = Dfa.of(new LazyDfa(Nfa.of(automaton))).minimize();
+            LazyDfa lazy = new LazyDfa(Nfa.of(automaton));
+
+            for (int q = 0; q < 10; q++) {
+                String query = this.word(letters + 1, 8);
+                int k = this.random.nextInt(4);
+                LevenshteinAutomaton levenshtein = new LevenshteinAutomaton(query, k);
+                List<String> expected = new ArrayList<String>();
+                for (String word : set) if (LevenshteinAutomatonTest.distance(query, word) <= k) expected.add(word);
+
+                assertEquals(expected, levenshtein.search(dawg));
+                assertEquals(expected, levenshtein.search(dfa));
+                assertEquals(expected, levenshtein.search(lazy));
+                assertEquals(expected, levenshtein.search(automaton));
+                for (int t = 0; t < 50; t++) {
+                    String s = this.word(letters + 1, 10);
+                    assertEquals(query + " " + k + " " + s,
+                            LevenshteinAutomatonTest.distance(query, s) <= k, levenshtein.validate(s));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void searchesCyclicLanguages() {
+        assertEquals(Arrays.asList("abababc", "ababc", "abc"),
+                new LevenshteinAutomaton("ababc", 2).search(Regex.compile("(ab)*c")));
+        assertEquals(Arrays.asList("ax", "ay", "az"), new LevenshteinAutomaton("ab", 1).search(Regex.compile("a[x-z]")));
+    }
+
+    private String word(int letters, int maxLength) {
+        StringBuilder result = new StringBuilder();
+        for (int i = this.random.nextInt(maxLength); i > 0; i--) result.append((char) ('a' + this.random.nextInt(letters)));
+        return result.toString();
+    }
+
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), substitution);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
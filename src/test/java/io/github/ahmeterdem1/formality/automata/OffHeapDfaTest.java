@@ -0,0 +1,134 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.regex.Regex;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Built, minimized, written and mapped tables against the graph.
+ */
+public class OffHeapDfaTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    public void tablesAgreeWithGraph() throws IOException {
+        String[] regexes = {"(ab)*", "(a|b)*abb(a|b)*", "[a-c]*[^b]x", "a*b*c*", "(a|b|c)*c(a|b|c)(a|b|c)", "(abc|ab|c)*", "[a-z0-9]+"};
+        File file = File.createTempFile("dfa", ".bin");
+        file.deleteOnExit();
+
+        for (String regex : regexes) {
+            FiniteAutomaton automaton = Regex.compile(regex);
+            OffHeapDfa built = OffHeapDfa.of(automaton);
+            OffHeapDfa minimized = OffHeapDfa.of(Dfa.of(new LazyDfa(Nfa.of(automaton))).minimize());
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            minimized.write(channel);
+            channel.close();
+            channel = FileChannel.open(file.toPath());
+            OffHeapDfa mapped = OffHeapDfa.map(channel);
+            channel.close();
+            FiniteAutomaton back = built.toFiniteAutomaton();
+
+            for (int k = 0; k < 20000; k++) {
+                StringBuilder text = new StringBuilder();
+                for (int i = this.random.nextInt(10); i > 0; i--) text.append("abcxz9".charAt(this.random.nextInt(6)));
+                boolean expected = automaton.validate(text.toString());
+                assertEquals(regex + " on " + text, expected, built.validate(text));
+                assertEquals(regex + " on " + text, expected, minimized.validate(text));
+                assertEquals(regex + " on " + text, expected, mapped.validate(text));
+                assertEquals(regex + " on " + text, expected, back.validate(text.toString()));
+            }
+
+            built.close();
+            built.close();
+            minimized.close();
+            mapped.close();
+            try {
+                built.validate("a");
+                fail();
+            } catch (IllegalStateException e) {
+                // Closed
+            }
+        }
+    }
+
+    @Test
+    public void closingDuringAReadWaitsForIt() {
+        final OffHeapDfa dfa = OffHeapDfa.of(Regex.compile("(ab)*"));
+        // A text that closes the automaton while it is being read
+        CharSequence text = new CharSequence() {
+            @Override
+            public int length() {
+                return 6;
+            }
+
+            @Override
+            public char charAt(int index) {
+                if (index == 3) dfa.close();
+                return "ababab".charAt(index);
+            }
+
+            @Override
+            public CharSequence subSequence(int begin, int end) {
+                return "ababab".subSequence(begin, end);
+            }
+        };
+
+        assertTrue(dfa.validate(text));
+        assertTrue(dfa.isClosed());
+        try {
+            dfa.validate("ab");
+            fail();
+        } catch (IllegalStateException e) {
+            // Closed
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void closingWhileThreadsRead() throws InterruptedException {
+        final OffHeapDfa dfa = OffHeapDfa.of(Regex.compile("(a|b)*abb(a|b)*"));
+        final FiniteAutomaton automaton = Regex.compile("(a|b)*abb(a|b)*");
+        final AtomicInteger reads = new AtomicInteger();
+        final AtomicInteger wrong = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < 4; t++) {
+            final Random random = new Random(t);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            StringBuilder text = new StringBuilder();
+                            for (int i = random.nextInt(200); i > 0; i--) text.append(random.nextBoolean() ? 'a' : 'b');
+                            if (dfa.validate(text) != automaton.validate(text.toString())) wrong.incrementAndGet();
+                            reads.incrementAndGet();
+                        }
+                    } catch (IllegalStateException e) {
+                        // Closed
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        while (reads.get() < 2000) Thread.sleep(1);
+        dfa.close();
+        for (Thread thread : threads) thread.join();
+        assertEquals(0, wrong.get());
+        assertTrue(dfa.isClosed());
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.regex.Regex;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Products, determinization and minimization against the operands.
+ */
+public class ProductAutomatonTest {
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void operationsAgreeWithOperands() {
+        for (int t = 0; t < 1500; t++) {
+            String p = this.pattern(4);
+            String q = this.pattern(4);
+            FiniteAutomaton a = Regex.compile(p);
+            FiniteAutomaton b = Regex.compile(q);
+            ProductAutomaton intersection = a.intersection(b);
+            ProductAutomaton union = a.union(b);
+            ProductAutomaton difference = a.difference(b);
+            ProductAutomaton complement = a.complement();
+            ProductAutomaton nested = a.intersection(b).union(a.complement()).difference(b.complement());
+            FiniteAutomaton intersectionMinimized = intersection.minimize();
+            FiniteAutomaton minimized = a.minimize();
+            FiniteAutomaton determinized = a.determinize();
+            FiniteAutomaton complementMinimized = complement.minimize();
+            FiniteAutomaton nestedMinimized = nested.minimize();
+
+            for (int k = 0; k < 40; k++) {
+                String s = this.text();
+                String message = p + " and " + q + " on \"" + s + "\"";
+                boolean x = a.validate(s);
+                boolean y = b.validate(s);
+                boolean notX = a.getAlphabet().validate(s) && !x;  // The complement is within the alphabet
+                boolean notY = b.getAlphabet().validate(s) && !y;
+                boolean n = (x && y || notX) && !notY;
+
+                assertEquals(message, x && y, intersection.validate(s));
+                assertEquals(message, x || y, union.validate(s));
+                assertEquals(message, x && !y, difference.validate(s));
+                assertEquals(message, notX, complement.validate(s));
+                assertEquals(message, n, nested.validate(s));
+                assertEquals(message, x && y, intersectionMinimized.validate(s));
+                assertEquals(message, x, minimized.validate(s));
+                assertEquals(message, x, determinized.validate(s));
+                assertEquals(message, notX, complementMinimized.validate(s));
+                assertEquals(message, n, nestedMinimized.validate(s));
+            }
+        }
+    }
+
+    @Test
+    public void minimizeIsMinimal() {
+        FiniteAutomaton minimized = Regex.compile("(a|b)*abb").minimize();
+        assertEquals(4, Dfa.of(new LazyDfa(Nfa.of(minimized))).getStateCount());
+    }
+
+    private String text() {
+        StringBuilder result = new StringBuilder();
+        for (int i = this.random.nextInt(7); i > 0; i--) result.append("abcd".charAt(this.random.nextInt(4)));
+        return result.toString();
+    }
+
+    private String pattern(int depth) {
+        if (depth == 0 || this.random.nextInt(3) == 0) {
+            String[] atoms = {"a", "b", "c", "ab", "[a-b]", "[^a]"};
+            return atoms[this.random.nextInt(atoms.length)];
+        }
+        switch (this.random.nextInt(4)) {
+            case 0:
+                return this.pattern(depth - 1) + this.pattern(depth - 1);
+            case 1:
+                return "(" + this.pattern(depth - 1) + "|" + this.pattern(depth - 1) + ")";
+            case 2:
+                return "(" + this.pattern(depth - 1) + ")*";
+            default:
+                return "(" + this.pattern(depth - 1) + ")?";
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.exceptions.BudgetExceededError;
+import io.github.ahmeterdem1.formality.state.PushdownState;
+import io.github.ahmeterdem1.formality.state.State;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * validateAll against a search of every configuration, and the compiled
+ * table against the graph.
+ */
+public class PushdownAutomatonTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    public void validateAllAgreesWithSearch() {
+        for (int t = 0; t < 400; t++) {
+            PushdownAutomaton automaton = this.automaton();
+            NondeterministicPushdown numbered = NondeterministicPushdown.of(automaton);
+
+            for (int u = 0; u < 60; u++) {
+                String s = this.text("abc", 8);
+                boolean expected = PushdownAutomatonTest.search(automaton, s);
+                assertEquals(automaton + " on \"" + s + "\"", expected, numbered.validate(s));
+                if (u % 10 == 0) assertEquals(expected, automaton.validateAll(s));
+            }
+        }
+    }
+
+    @Test
+    public void validateAllAcceptsContextFreeLanguages() {
+        PushdownAutomaton balanced = PushdownAutomatonTest.grammar("()", "S->SS", "S->(S)", "S->");
+        PushdownAutomaton expressions = PushdownAutomatonTest.grammar("a+*", "S->S+S", "S->S*S", "S->a");
+        PushdownAutomaton palindromes = PushdownAutomatonTest.grammar("ab", "S->aSa", "S->bSb", "S->a", "S->b", "S->");
+        PushdownAutomaton ratios = PushdownAutomatonTest.grammar("ab", "S->aSb", "S->aSbb", "S->");
+
+        for (int u = 0; u < 3000; u++) {
+            String s = this.text("()", 12);
+            assertEquals(s, PushdownAutomatonTest.isBalanced(s), balanced.validateAll(s));
+            s = this.text("a+*", 9);
+            assertEquals(s, s.matches("a([+*]a)*"), expressions.validateAll(s));
+            s = this.text("ab", 10);
+            assertEquals(s, new StringBuilder(s).reverse().toString().equals(s), palindromes.validateAll(s));
+            s = this.text("ab", 9);
+            assertEquals(s, PushdownAutomatonTest.isRatio(s), ratios.validateAll(s));
+        }
+    }
+
+    @Test
+    public void tableAgreesWithGraph() {
+        PushdownAutomaton brackets = new PushdownAutomaton();
+        brackets.setAlphabet(new char[] {'(', ')', '[', ']', 'x'});
+        PushdownState p = new PushdownState(true);
+        p.addTransition("(", "(", p, false);
+        p.addTransition(")", "(", p, true);
+        p.addTransition("[", "[", p, false);
+        p.addTransition("]", "[", p, true);
+        p.addTransition("x", "", p, false);
+        brackets.setBegin(p);
+        PushdownTable bracketTable = brackets.compile();
+
+        PushdownAutomaton counts = new PushdownAutomaton();  // a^n cb b^(n - 1), with a rule of two characters
+        counts.setAlphabet(new char[] {'a', 'b', 'c'});
+        PushdownState q0 = new PushdownState();
+        PushdownState q1 = new PushdownState(true);
+        q0.addTransition("a", "A", q0, false);
+        q0.addTransition("cb", "A", q1, true);
+        q1.addTransition("b", "A", q1, true);
+        counts.setBegin(q0);
+        PushdownTable countTable = counts.compile();
+
+        for (int u = 0; u < 100000; u++) {
+            String s = this.text("()[]x", 9) + "x";  // The graph rejects the empty string
+            assertEquals(s, brackets.validate(s), bracketTable.validate(s));
+            s = this.text("abc", 9) + "b";
+            assertEquals(s, counts.validate(s), countTable.validate(s));
+        }
+        assertTrue(countTable.validate("aacbb"));
+        assertTrue(bracketTable.validate("([x])"));
+        assertFalse(bracketTable.validate("(]"));
+
+        PushdownAutomaton popping = new PushdownAutomaton();  // A rule reads 'a', but not with Y on the stack
+        popping.setAlphabet(new char[] {'a', 'b'});
+        PushdownState r0 = new PushdownState();
+        PushdownState r1 = new PushdownState();
+        PushdownState r2 = new PushdownState(true);
+        r0.addTransition("b", "Y", r1, false);
+        r1.addTransition("a", "X", r2, true);
+        r1.addTransition("", "Y", r2, true);
+        r2.addTransition("a", "", r2, false);
+        popping.setBegin(r0);
+        PushdownTable poppingTable = popping.compile();
+        for (String s : new String[] {"", "b", "ba", "baa", "bb"}) {
+            assertEquals(s, popping.validate(s), poppingTable.validate(s));
+        }
+        assertFalse(poppingTable.validate("ba"));
+        assertFalse(poppingTable.validate("baa"));
+
+        PushdownAutomaton loop = new PushdownAutomaton();  // The graph takes a step even on ""
+        loop.setAlphabet(new char[] {'a'});
+        PushdownState l = new PushdownState(true);
+        l.addTransition("a", "", l, false);
+        loop.setBegin(l);
+        assertFalse(loop.validate(""));
+        assertFalse(loop.compile().validate(""));
+        assertTrue(loop.compile().validate("aa"));
+
+        PushdownAutomaton skip = new PushdownAutomaton();
+        skip.setAlphabet(new char[] {'a'});
+        PushdownState k0 = new PushdownState(true);
+        PushdownState k1 = new PushdownState(true);
+        k0.addTransition("a", "", k0, false);
+        k0.addTransition("", "", k1, false);
+        skip.setBegin(k0);
+        assertTrue(skip.validate(""));
+        assertTrue(skip.compile().validate(""));
+        assertTrue(skip.compile().validate("aa"));
+
+        for (int t = 0; t < 3000; t++) {
+            PushdownAutomaton automaton = this.lambdaAutomaton();
+            PushdownTable table = automaton.compile();
+            for (int u = 0; u < 50; u++) {
+                String s = this.text("abc", 6);
+                assertEquals(automaton + " on \"" + s + "\"", automaton.validate(s), table.validate(s));
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void endlessLambdaRunsAreRejected() {
+        PushdownAutomaton pushing = new PushdownAutomaton();
+        pushing.setAlphabet(new char[] {'a', 'b'});
+        PushdownState q0 = new PushdownState(true);
+        PushdownState q1 = new PushdownState(true);
+        q0.addTransition("a", "X", q1, false);
+        q1.addTransition("a", "X", q1, true);
+        q1.addLambda(q1, "", "Y");  // Pushes forever when "b" comes
+        pushing.setBegin(q0);
+        PushdownTable table = pushing.compile();
+        assertTrue(table.validate("aa"));
+        assertFalse(table.validate("ab"));
+        assertFalse(table.validate("aab"));
+
+        PushdownAutomaton cycling = new PushdownAutomaton();
+        cycling.setAlphabet(new char[] {'a', 'b'});
+        PushdownState p0 = new PushdownState(true);
+        PushdownState p1 = new PushdownState();
+        p0.addTransition("a", "", p0, false);
+        p0.addLambda(p1, "", "");
+        p1.addLambda(p0, "", "");  // Goes round without touching the stack
+        cycling.setBegin(p0);
+        table = cycling.compile();
+        assertTrue(table.validate("aaa"));
+        assertFalse(table.validate("aab"));
+    }
+
+    @Test(timeout = 10000)
+    public void longLambdaRunsThatEndAreFollowed() {
+        PushdownTable.Builder builder = new PushdownTable.Builder();
+        int pushing = builder.addState(false);
+        int popping = builder.addState(true);
+        builder.addTransition(pushing, 'a', pushing, "", "A");
+        builder.addTransition(pushing, 'b', popping, "", "");
+        builder.addLambda(popping, popping, "A", "");  // Pops every "A" before the next character
+        builder.addEnd(popping, popping, "A", "");
+        builder.addTransition(popping, 'b', popping, "", "");
+        PushdownTable table = builder.build();
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; i++) text.append('a');
+        assertTrue(table.validate(text + "b"));
+        assertTrue(table.validate(text + "bb"));
+        assertFalse(table.validate(text.toString()));
+    }
+
+    @Test
+    public void tableStaysInTheAlphabet() {
+        PushdownAutomaton automaton = new PushdownAutomaton();
+        automaton.setAlphabet(new char[0]);
+        PushdownState q = new PushdownState(true);
+        q.addTransition("b", "", q, false);
+        q.addTransition("\u00e9", "", q, false);
+        automaton.setBegin(q);
+        PushdownTable table = automaton.compile();
+        assertFalse(automaton.validate("bbbb"));
+        assertFalse(table.validate("bbbb"));
+        assertFalse(table.validate("\u00e9"));
+
+        automaton.setAlphabet(new char[] {'b', 'c'});
+        table = automaton.compile();
+        assertTrue(table.validate("bbbb"));
+        assertFalse(table.validate("bcb"));
+    }
+
+    @Test
+    public void tableValidationIsLimited() {
+        PushdownTable.Builder builder = new PushdownTable.Builder();
+        int q = builder.addState(true);
+        builder.addTransition(q, 'a', q, "", "");
+        PushdownTable table = builder.build();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++) text.append('a');
+        assertTrue(table.validate(text, new Budget.Builder().maxSteps(10000).build()));
+        try {
+            table.validate(text, new Budget.Builder().maxSteps(9999).build());
+            fail();
+        } catch (BudgetExceededError e) {
+            // One step for each transition
+        }
+    }
+
+    private String text(String characters, int maxLength) {
+        StringBuilder result = new StringBuilder();
+        for (int i = this.random.nextInt(maxLength + 1); i > 0; i--) {
+            result.append(characters.charAt(this.random.nextInt(characters.length())));
+        }
+        return result.toString();
+    }
+
+    /**
+     * A random automaton over "ab" with "c" outside of its alphabet. Its
+     * lambda transitions never push, so the stack is at most twice as
+     * long as the text read, and the search is exhaustive.
+     */
+    private PushdownAutomaton automaton() {
+        PushdownState[] states = new PushdownState[1 + this.random.nextInt(3)];
+        for (int i = 0; i < states.length; i++) states[i] = new PushdownState(this.random.nextBoolean());
+
+        for (PushdownState state : states) {
+            for (int k = this.random.nextInt(4); k > 0; k--) {
+                String rule = this.text("ab", 2);
+                if (rule.isEmpty()) rule = "a";
+                boolean pop = this.random.nextBoolean();
+                String symbols = this.text("XY", 2);
+                if (pop && symbols.isEmpty()) symbols = "X";
+                state.addTransition(rule, symbols, states[this.random.nextInt(states.length)], pop);
+            }
+            for (int k = this.random.nextInt(2); k > 0; k--) {
+                state.addLambda(states[this.random.nextInt(states.length)], this.text("XY", 1), "");
+            }
+        }
+
+        PushdownAutomaton automaton = new PushdownAutomaton();
+        automaton.setAlphabet(new char[] {'a', 'b'});
+        automaton.setBegin(states[0]);
+        return automaton;
+    }
+
+    /**
+     * A random deterministic automaton over "ab" with "c" outside of its
+     * alphabet, whose states have "" rules. The "" rules only lead to
+     * later states, so validate() of the graph never takes them forever,
+     * and no rule pops more than one symbol.
+     */
+    private PushdownAutomaton lambdaAutomaton() {
+        PushdownState[] states = new PushdownState[1 + this.random.nextInt(4)];
+        for (int i = 0; i < states.length; i++) states[i] = new PushdownState(this.random.nextBoolean());
+
+        for (int i = 0; i < states.length; i++) {
+            for (String rule : new String[] {"a", "b", ""}) {
+                int to = rule.isEmpty() ? i + 1 + this.random.nextInt(states.length) : this.random.nextInt(states.length);
+                if (to >= states.length || this.random.nextInt(3) == 0) continue;
+                boolean pop = this.random.nextBoolean();
+                states[i].addTransition(rule, pop ? String.valueOf("XY".charAt(this.random.nextInt(2)))
+                        : this.text("XY", 2), states[to], pop);
+            }
+        }
+
+        PushdownAutomaton automaton = new PushdownAutomaton();
+        automaton.setAlphabet(new char[] {'a', 'b'});
+        automaton.setBegin(states[0]);
+        return automaton;
+    }
+
+    /**
+     * Accept if some sequence of rules and lambda transitions reads the
+     * whole string and ends in a final state with an empty stack. The
+     * top of the stack is the end of the String.
+     */
+    private static boolean search(PushdownAutomaton automaton, String s) {
+        if (!automaton.getAlphabet().validate(s)) return false;
+        int cap = 2 * s.length() + 2;
+        Map<State, Integer> ids = new IdentityHashMap<State, Integer>();
+        Set<String> seen = new HashSet<String>();
+        ArrayDeque<Object[]> queue = new ArrayDeque<Object[]>();
+        queue.add(new Object[] {automaton.getBegin(), 0, ""});
+
+        while (!queue.isEmpty()) {
+            Object[] configuration = queue.poll();
+            PushdownState state = (PushdownState) configuration[0];
+            int pos = (Integer) configuration[1];
+            String stack = (String) configuration[2];
+            if (!ids.containsKey(state)) ids.put(state, ids.size());
+            if (stack.length() > cap || !seen.add(ids.get(state) + " " + pos + " " + stack)) continue;
+            if (pos == s.length() && state.isFinal() && stack.isEmpty()) return true;
+
+            for (Map.Entry<String, State> entry : state.getTransitions().entrySet()) {
+                String rule = entry.getKey();
+                if (!s.startsWith(rule, pos)) continue;
+                String pop = state.getReadMatch(rule);
+                if (!pop.isEmpty()) {
+                    if (!stack.endsWith(pop)) continue;
+                    queue.add(new Object[] {entry.getValue(), pos + rule.length(),
+                            stack.substring(0, stack.length() - pop.length())});
+                } else {
+                    queue.add(new Object[] {entry.getValue(), pos + rule.length(), stack + state.getWriteMatch(rule)});
+                }
+            }
+            for (int i = 0; i < state.getLambdaCount(); i++) {
+                String pop = state.getLambdaRead(i);
+                if (!stack.endsWith(pop)) continue;
+                queue.add(new Object[] {state.getLambdaTarget(i), pos,
+                        stack.substring(0, stack.length() - pop.length()) + state.getLambdaWrite(i)});
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The automaton that derives a grammar on its stack: a lambda
+     * transition replaces a variable with the body of one of its
+     * productions, and a rule pops each terminal that it reads.
+     */
+    private static PushdownAutomaton grammar(String terminals, String... productions) {
+        PushdownAutomaton automaton = new PushdownAutomaton();
+        automaton.setAlphabet(terminals.toCharArray());
+        PushdownState begin = new PushdownState();
+        PushdownState q = new PushdownState(true);
+        begin.addLambda(q, "", "S");
+        for (String production : productions) {
+            String[] sides = production.split("->", -1);
+            q.addLambda(q, sides[0], new StringBuilder(sides[1]).reverse().toString());
+        }
+        for (char c : terminals.toCharArray()) q.addTransition(String.valueOf(c), String.valueOf(c), q, true);
+        automaton.setBegin(begin);
+        return automaton;
+    }
+
+    private static boolean isBalanced(String s) {
+        int depth = 0;
+        for (int i = 0; i < s.length(); i++) {
+            depth += s.charAt(i) == '(' ? 1 : -1;
+            if (depth < 0) return false;
+        }
+        return depth == 0;
+    }
+
+    /**
+     * Is the string a^n b^m with n <= m <= 2n?
+     */
+    private static boolean isRatio(String s) {
+        int n = 0;
+        while (n < s.length() && s.charAt(n) == 'a') n++;
+        String rest = s.substring(n);
+        return rest.matches("b*") && rest.length() >= n && rest.length() <= 2 * n;
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.ahmeterdem1.formality.automata;
+
+import io.github.ahmeterdem1.formality.regex.Regex;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Character classes and compressed tables against the DFA.
+ */
+public class TableDfaTest {
+
+    private final Random random = new Random(9);
+
+    @Test
+    public void tablesAgreeWithDfa() {
+        String[] atoms = {"a", "b", "[a-f]", "[^a-c]", "[0-9]", "\u00e9", "[\u0400-\u04ff]", "[\u4e00-\u9fff]", "x"};
+        String characters = "abcdefx09\u00e9\u0410\u4e01!";
+
+        for (int t = 0; t < 500; t++) {
+            StringBuilder regex = new StringBuilder();
+            for (int k = 1 + this.random.nextInt(5); k > 0; k--) {
+                String atom = atoms[this.random.nextInt(atoms.length)];
+                if (this.random.nextInt(3) == 0) atom = "(" + atom + "|" + atoms[this.random.nextInt(atoms.length)] + ")";
+                regex.append(atom);
+                if (this.random.nextInt(3) == 0) regex.append('*');
+            }
+            FiniteAutomaton automaton = Regex.compile(regex.toString());
+            Dfa dfa = Dfa.of(new LazyDfa(Nfa.of(automaton))).minimize();
+            TableDfa table = automaton.toTableDfa();
+            CharClasses classes = table.getClasses();
+
+            for (int u = 0; u < 200; u++) {
+                char c = (char) this.random.nextInt(65536);
+                char d = this.random.nextBoolean()
+                        ? classes.getRepresentative(classes.getClass(c)) : (char) this.random.nextInt(65536);
+                if (classes.getClass(c) == classes.getClass(d)) {
+                    for (int s = 0; s < dfa.getStateCount(); s++) assertEquals(regex.toString(), dfa.step(s, c), dfa.step(s, d));
+                }
+
+                StringBuilder text = new StringBuilder();
+                for (int i = this.random.nextInt(8); i > 0; i--) text.append(characters.charAt(this.random.nextInt(characters.length())));
+                assertEquals(regex + " on " + text, dfa.validate(text), table.validate(text));
+                assertEquals(regex + " on " + text, automaton.validate(text.toString()), table.validate(text));
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.ahmeterdem1.formality.flow;
+
+import io.github.ahmeterdem1.formality.regex.Match;
+import io.github.ahmeterdem1.formality.regex.MatchProcessor;
+import org.junit.Test;
+
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A MatchProcessor between a SubmissionPublisher and a Subscriber of
+ * java.util.concurrent.Flow, through the adapters.
+ */
+public class FlowAdaptersTest {
+
+    private static final List<String> EXPECTED = Arrays.asList("3:12", "9:345", "16:6789");
+
+    @Test(timeout = 10000)
+    public void processorBetweenJdkStreams() throws InterruptedException {
+        SubmissionPublisher<Buffer> chunks = new SubmissionPublisher<Buffer>();
+        java.util.concurrent.Flow.Processor<Buffer, Match> processor =
+                FlowAdapters.toFlowProcessor(new MatchProcessor.Builder("[0-9]+").build());
+        Sink sink = new Sink();
+        chunks.subscribe(processor);
+        processor.subscribe(sink);
+        FlowAdaptersTest.submit(chunks);
+
+        assertTrue(sink.end.await(5, TimeUnit.SECONDS));
+        assertNull(sink.error);
+        assertEquals(EXPECTED, sink.received);
+    }
+
+    @Test(timeout = 10000)
+    public void publisherAndSubscriberOfTheJdk() throws InterruptedException {
+        SubmissionPublisher<Buffer> chunks = new SubmissionPublisher<Buffer>();
+        MatchProcessor processor = new MatchProcessor.Builder("[0-9]+").build();
+        Sink sink = new Sink();
+        FlowAdapters.toPublisher(chunks).subscribe(processor);
+        processor.subscribe(FlowAdapters.toSubscriber(sink));
+        FlowAdaptersTest.submit(chunks);
+
+        assertTrue(sink.end.await(5, TimeUnit.SECONDS));
+        assertNull(sink.error);
+        assertEquals(EXPECTED, sink.received);
+    }
+
+    private static void submit(SubmissionPublisher<Buffer> chunks) {
+        chunks.submit(CharBuffer.wrap("ab 12 cd 3"));
+        chunks.submit(CharBuffer.wrap("45 ef 67"));
+        chunks.submit(CharBuffer.wrap("89"));
+        chunks.close();
+    }
+
+    /**
+     * A Subscriber of the JDK that asks for one match at a time.
+     */
+    private static final class Sink implements java.util.concurrent.Flow.Subscriber<Match> {
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch end = new CountDownLatch(1);
+        volatile Throwable error;
+        private java.util.concurrent.Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(java.util.concurrent.Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(Match match) {
+            this.received.add(match.getBegin() + ":" + match.getMatch());
+            this.subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+            this.end.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            this.end.countDown();
+        }
+    }
+}
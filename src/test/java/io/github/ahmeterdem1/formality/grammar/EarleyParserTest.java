@@ -0,0 +1,195 @@
+package io.github.ahmeterdem1.formality.grammar;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recognition and parse forests against CYK on random grammars in
+ * Chomsky normal form, and against known languages.
+ */
+public class EarleyParserTest {
+
+    private static final String[] VARIABLES = {"S", "A", "B", "C"};
+
+    private final Random random = new Random(1);
+
+    @Test
+    public void agreesWithCyk() {
+        for (int t = 0; t < 300; t++) {
+            Grammar grammar = new Grammar(new Alphabet("ab".toCharArray()), "S");
+            List<String[]> rules = new ArrayList<String[]>();
+            Set<String> added = new HashSet<String>();
+            for (String variable : VARIABLES) {
+                for (int k = 1 + this.random.nextInt(3); k > 0; k--) {
+                    String[] right = this.random.nextInt(3) == 0
+                            ? new String[] {String.valueOf("ab".charAt(this.random.nextInt(2)))}
+                            : new String[] {VARIABLES[this.random.nextInt(4)], VARIABLES[this.random.nextInt(4)]};
+                    if (!added.add(variable + Arrays.toString(right))) continue;
+                    grammar.addRule(variable, right);
+                    rules.add(new String[] {variable, right[0], right.length == 2 ? right[1] : null});
+                }
+            }
+            EarleyParser parser = new EarleyParser(grammar);
+
+            for (int u = 0; u < 40; u++) {
+                String s = this.text("ab", 8);
+                long trees = s.isEmpty() ? 0 : EarleyParserTest.cyk(rules, s);
+                String message = grammar + " on \"" + s + "\"";
+                assertEquals(message, trees > 0, parser.recognize(s));
+                ParseForest forest = parser.parse(s);
+                if (trees == 0) {
+                    assertNull(message, forest);
+                } else {
+                    assertNotNull(message, forest);
+                    assertEquals(message, trees, EarleyParserTest.count(forest, forest.getRoot(), new HashMap<Integer, Long>()));
+                    assertEquals(message, trees > 1, forest.isAmbiguous());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void recognizesKnownLanguages() {
+        EarleyParser balanced = new EarleyParser(EarleyParserTest.grammar("()", "S->SS", "S->(S)", "S->"));
+        EarleyParser expressions = new EarleyParser(EarleyParserTest.grammar("a+*", "S->S+S", "S->S*S", "S->a"));
+        EarleyParser palindromes = new EarleyParser(EarleyParserTest.grammar("ab", "S->aSa", "S->bSb", "S->a", "S->b", "S->"));
+        EarleyParser nullable = new EarleyParser(EarleyParserTest.grammar("ab", "S->AB", "A->", "A->aA", "B->", "B->Bb", "S->SS"));
+        EarleyParser hidden = new EarleyParser(EarleyParserTest.grammar("ab", "S->aT", "T->S", "T->b", "S->ABS", "A->", "B->"));
+
+        for (int u = 0; u < 3000; u++) {
+            String s = this.text("()", 12);
+            assertEquals(s, EarleyParserTest.isBalanced(s), balanced.recognize(s));
+            assertEquals(s, EarleyParserTest.isBalanced(s), balanced.parse(s) != null);
+            s = this.text("a+*", 9);
+            assertEquals(s, s.matches("a([+*]a)*"), expressions.recognize(s));
+            s = this.text("ab", 10);
+            assertEquals(s, new StringBuilder(s).reverse().toString().equals(s), palindromes.recognize(s));
+            s = this.text("ab", 8);
+            assertEquals(s, s.matches("(a*b*)*"), nullable.recognize(s));
+            assertEquals(s, s.matches("a+b"), hidden.recognize(s));
+            assertEquals(s, s.matches("a+b"), hidden.parse(s) != null);
+        }
+    }
+
+    @Test
+    public void forestsCountDerivations() {
+        EarleyParser parser = new EarleyParser(EarleyParserTest.grammar("a+", "S->S+S", "S->a"));
+        long[] catalan = {1, 1, 2, 5, 14, 42};
+        String s = "a";
+        for (long expected : catalan) {
+            ParseForest forest = parser.parse(s);
+            assertEquals(s, expected, EarleyParserTest.count(forest, forest.getRoot(), new HashMap<Integer, Long>()));
+            s += "+a";
+        }
+
+        ParseForest forest = parser.parse("a+a+a");
+        int root = forest.getRoot();
+        assertEquals("S", forest.getSymbol(root));
+        assertEquals(0, forest.getStart(root));
+        assertEquals(5, forest.getEnd(root));
+        assertTrue(forest.isAmbiguous());
+        assertEquals(2, forest.getFamilyCount(root));
+        assertEquals(3, forest.getChildren(root, 0).length);
+        assertFalse(new EarleyParser(EarleyParserTest.grammar("a", "S->a")).parse("a").isAmbiguous());
+    }
+
+    private String text(String characters, int maxLength) {
+        StringBuilder result = new StringBuilder();
+        for (int i = this.random.nextInt(maxLength + 1); i > 0; i--) {
+            result.append(characters.charAt(this.random.nextInt(characters.length())));
+        }
+        return result.toString();
+    }
+
+    /**
+     * A grammar of one-character symbols, from rules such as "S->aSb".
+     */
+    static Grammar grammar(String terminals, String... rules) {
+        Grammar grammar = new Grammar(new Alphabet(terminals.toCharArray()), "S");
+        for (String rule : rules) {
+            String[] sides = rule.split("->", -1);
+            String[] right = new String[sides[1].length()];
+            for (int i = 0; i < right.length; i++) right[i] = String.valueOf(sides[1].charAt(i));
+            grammar.addRule(sides[0], right);
+        }
+        return grammar;
+    }
+
+    /**
+     * Count the parse trees of a non-empty string under rules in Chomsky
+     * normal form: {A, a, null} or {A, B, C}.
+     */
+    private static long cyk(List<String[]> rules, String s) {
+        int n = s.length();
+        List<Map<String, Long>> table = new ArrayList<Map<String, Long>>();  // Index (i, length) as i * (n + 1) + length
+        for (int i = 0; i < n * (n + 1); i++) table.add(new HashMap<String, Long>());
+
+        for (int length = 1; length <= n; length++) {
+            for (int i = 0; i + length <= n; i++) {
+                Map<String, Long> cell = table.get(i * (n + 1) + length);
+                for (String[] rule : rules) {
+                    long trees = 0;
+                    if (rule[2] == null) {
+                        if (length == 1 && rule[1].charAt(0) == s.charAt(i)) trees = 1;
+                    } else {
+                        for (int split = 1; split < length; split++) {
+                            Long left = table.get(i * (n + 1) + split).get(rule[1]);
+                            Long right = table.get((i + split) * (n + 1) + length - split).get(rule[2]);
+                            if (left != null && right != null) trees += left * right;
+                        }
+                    }
+                    if (trees > 0) {
+                        Long before = cell.get(rule[0]);
+                        cell.put(rule[0], (before == null ? 0 : before) + trees);
+                    }
+                }
+            }
+        }
+        Long trees = table.get(n).get("S");
+        return trees == null ? 0 : trees;
+    }
+
+    /**
+     * Count the derivations that a forest packs.
+     */
+    private static long count(ParseForest forest, int node, Map<Integer, Long> memo) {
+        if (forest.isTerminal(node)) return 1;
+        Long known = memo.get(node);
+        if (known != null) return known;
+        long total = 0;
+        for (int k = 0; k < forest.getFamilyCount(node); k++) {
+            long product = 1;
+            int left = forest.getLeft(node, k);
+            int right = forest.getRight(node, k);
+            if (left >= 0) product *= EarleyParserTest.count(forest, left, memo);
+            if (right >= 0) product *= EarleyParserTest.count(forest, right, memo);
+            total += product;
+        }
+        memo.put(node, total);
+        return total;
+    }
+
+    private static boolean isBalanced(String s) {
+        int depth = 0;
+        for (int i = 0; i < s.length(); i++) {
+            depth += s.charAt(i) == '(' ? 1 : -1;
+            if (depth < 0) return false;
+        }
+        return depth == 0;
+    }
+}
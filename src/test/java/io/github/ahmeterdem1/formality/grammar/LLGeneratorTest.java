@@ -0,0 +1,92 @@
+package io.github.ahmeterdem1.formality.grammar;
+
+import io.github.ahmeterdem1.formality.Alphabet;
+import io.github.ahmeterdem1.formality.automata.PushdownTable;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LL(1) tables, and tables read back from their bytes, against the
+ * Earley recognizer.
+ */
+public class LLGeneratorTest {
+
+    private final Random random = new Random(1);
+
+    @Test
+    public void tablesAgreeWithEarley() throws IOException {
+        Grammar[] grammars = {
+            LLGeneratorTest.grammar("a+", "E", "E a R", "R + a R", "R"),
+            LLGeneratorTest.grammar("()", "S", "S ( S ) S", "S"),
+            LLGeneratorTest.grammar("a+*()", "E", "E T X", "X + T X", "X", "T F Y", "Y * F Y", "Y", "F ( E )", "F a"),
+            LLGeneratorTest.grammar("{}[],:\"ab01", "V", "V { M }", "V [ L ]", "V \" W \"", "V 0", "V 1", "M", "M P N",
+                    "N , P N", "N", "P \" W \" : V", "L", "L V K", "K , V K", "K", "W", "W a W", "W b W"),
+            LLGeneratorTest.grammar("abc", "S", "S A B c", "A a A", "A", "B b", "B"),
+        };
+
+        for (Grammar grammar : grammars) {
+            LLGenerator generator = new LLGenerator(grammar);
+            assertTrue(generator.getConflicts().toString(), generator.isLL1());
+            PushdownTable table = generator.toTable();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            table.write(bytes);
+            PushdownTable read = PushdownTable.read(new ByteArrayInputStream(bytes.toByteArray()));
+            EarleyParser parser = new EarleyParser(grammar);
+            List<Character> terminals = new ArrayList<Character>(grammar.getTerminals().getCharacters());
+
+            int accepted = 0;
+            for (int k = 0; k < 50000; k++) {
+                StringBuilder text = new StringBuilder();
+                for (int i = this.random.nextInt(12); i > 0; i--) text.append(terminals.get(this.random.nextInt(terminals.size())));
+                if (this.random.nextInt(10) == 0) text.append('z');
+                boolean expected = parser.recognize(text);
+                if (expected) accepted++;
+                assertEquals(grammar.getStart() + " on " + text, expected, table.validate(text));
+                assertEquals(grammar.getStart() + " on " + text, expected, read.validate(text));
+            }
+            assertTrue(accepted > 0);
+        }
+    }
+
+    @Test
+    public void conflictsAreReported() {
+        assertFalse(new LLGenerator(LLGeneratorTest.grammar("a+", "E", "E E + a", "E a")).isLL1());
+        assertFalse(new LLGenerator(LLGeneratorTest.grammar("a", "S", "S A a", "A a", "A")).getConflicts().isEmpty());
+    }
+
+    @Test
+    public void firstAndFollow() {
+        LLGenerator generator = new LLGenerator(LLGeneratorTest.grammar("a+*()", "E",
+                "E T X", "X + T X", "X", "T F Y", "Y * F Y", "Y", "F ( E )", "F a"));
+        assertEquals(new HashSet<Character>(Arrays.asList('(', 'a')), generator.getFirst("E"));
+        assertEquals(new HashSet<Character>(Arrays.asList('+', ')')), generator.getFollow("T"));
+        assertTrue(generator.isFollowedByEnd("T"));
+        assertTrue(generator.isNullable("X"));
+        assertFalse(generator.isNullable("T"));
+    }
+
+    /**
+     * A grammar from rules such as "S ( S ) S": the left side, then the
+     * symbols of the right side.
+     */
+    private static Grammar grammar(String terminals, String start, String... rules) {
+        Grammar grammar = new Grammar(new Alphabet(terminals.toCharArray()), start);
+        for (String rule : rules) {
+            String[] symbols = rule.split(" ");
+            grammar.addRule(symbols[0], Arrays.copyOfRange(symbols, 1, symbols.length));
+        }
+        return grammar;
+    }
+}
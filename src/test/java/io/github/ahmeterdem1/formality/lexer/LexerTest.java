@@ -0,0 +1,136 @@
+package io.github.ahmeterdem1.formality.lexer;
+
+import io.github.ahmeterdem1.formality.automata.LazyDfa;
+import io.github.ahmeterdem1.formality.automata.Nfa;
+import io.github.ahmeterdem1.formality.regex.Regex;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tokens against the longest match of the rules at each position, with
+ * the first rule winning ties.
+ */
+public class LexerTest {
+
+    private final Random random = new Random(5);
+
+    @Test
+    public void tokensAgreeWithLongestMatch() throws IOException {
+        String[][] rules = {
+            {"if|else", "[a-z]+", " +", "[0-9]+", "=|==|<=|<", "\\(|\\)"},
+            {"a", "ab", "abc", "b*"},
+            {"(ab)*c", "a+", "b"},
+            {"x[a-c]*", "\u00e9+", "[0-9]+(.[0-9]+)?"},
+        };
+        String characters = "abcxe\u00e9 iflse0123.=<()_";
+
+        for (String[] set : rules) {
+            Lexer.Builder builder = new Lexer.Builder();
+            List<LazyDfa> references = new ArrayList<LazyDfa>();
+            for (int i = 0; i < set.length; i++) {
+                assertEquals(i, builder.add("T" + i, set[i]));
+                references.add(new LazyDfa(Nfa.of(Regex.compile(set[i]))));
+            }
+            Lexer lexer = builder.build();
+
+            for (int t = 0; t < 500; t++) {
+                StringBuilder text = new StringBuilder();
+                for (int i = t < 5 ? 2000 : this.random.nextInt(40); i > 0; i--) {
+                    text.append(characters.charAt(this.random.nextInt(characters.length())));
+                }
+                List<int[]> expected = LexerTest.tokens(references, text);
+
+                LexerTest.check(expected, text, lexer.tokenize(text));
+                LexerTest.check(expected, text, lexer.tokenize(new StringReader(text.toString())));
+                LexerTest.check(expected, text, lexer.tokenize(new Trickle(new StringReader(text.toString()), this.random)));
+            }
+        }
+    }
+
+    @Test
+    public void unmatchedCharactersAreSingleTokens() throws IOException {
+        Lexer.Builder builder = new Lexer.Builder();
+        builder.add("number", "[0-9]+");
+        Lexer lexer = builder.build();
+        Tokenizer tokenizer = lexer.tokenize("12?3");
+        assertTrue(tokenizer.next());
+        assertEquals("12", tokenizer.getText());
+        assertEquals("number", lexer.getTypeName(tokenizer.getType()));
+        assertTrue(tokenizer.next());
+        assertEquals(Lexer.ERROR, tokenizer.getType());
+        assertEquals(2, tokenizer.getStart());
+        assertTrue(tokenizer.next());
+        assertEquals(3, tokenizer.getStart());
+        assertFalse(tokenizer.next());
+    }
+
+    private static void check(List<int[]> expected, CharSequence text, Tokenizer tokenizer) throws IOException {
+        int j = 0;
+        while (tokenizer.next()) {
+            assertTrue(text.toString(), j < expected.size());
+            int[] token = expected.get(j++);
+            assertEquals(text.toString(), token[0], tokenizer.getType());
+            assertEquals(text.toString(), token[1], tokenizer.getStart());
+            assertEquals(text.toString(), token[2], tokenizer.getEnd());
+            assertEquals(text.subSequence(token[1], token[2]).toString(), tokenizer.getText());
+        }
+        assertEquals(text.toString(), expected.size(), j);
+    }
+
+    /**
+     * Type, start and end of each token: the longest match of any rule,
+     * or a single character of type Lexer.ERROR if none matches.
+     */
+    private static List<int[]> tokens(List<LazyDfa> references, CharSequence text) {
+        List<int[]> tokens = new ArrayList<int[]>();
+        int p = 0;
+        while (p < text.length()) {
+            int type = Lexer.ERROR;
+            int end = p + 1;
+            for (int e = p + 1; e <= text.length() && e <= p + 40; e++) {
+                for (int k = 0; k < references.size(); k++) {
+                    if (references.get(k).validate(text.subSequence(p, e))) {
+                        type = k;
+                        end = e;
+                        break;
+                    }
+                }
+            }
+            tokens.add(new int[] {type, p, end});
+            p = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * A Reader that hands over a few characters at a time.
+     */
+    private static final class Trickle extends Reader {
+        private final Reader reader;
+        private final Random random;
+
+        Trickle(Reader reader, Random random) {
+            this.reader = reader;
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return this.reader.read(buffer, offset, Math.min(length, 1 + this.random.nextInt(5)));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
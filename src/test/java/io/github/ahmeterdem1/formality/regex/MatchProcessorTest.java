@@ -0,0 +1,299 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import io.github.ahmeterdem1.formality.flow.Flow;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Matches of chunked streams against Searcher.findAll on the whole text.
+ */
+public class MatchProcessorTest {
+
+    private final Random random = new Random(3);
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        this.pool.shutdownNow();
+    }
+
+    @Test(timeout = 60000)
+    public void matchesAgreeWithFindAll() throws InterruptedException {
+        String[] regexes = {"[0-9]+", "a(b)+", "(ab|a)*c", "\u00e9+x", "([a-z]+)@[a-z]+\\.(com|org)", "(a|b)*",
+                "((a)|(b))+(c)?"};
+
+        for (int t = 0; t < 600; t++) {
+            String regex = regexes[t % regexes.length];
+            StringBuilder text = new StringBuilder();
+            for (int i = this.random.nextInt(300); i > 0; i--) text.append("abc\u00e90 1x@.om".charAt(this.random.nextInt(12)));
+            String s = text.toString();
+
+            List<String> expected = new ArrayList<String>();
+            for (Match match : Searcher.compile(regex).findAll(s)) expected.add(MatchProcessorTest.spans(match));
+
+            Source source = new Source(this.chunks(s, this.random.nextBoolean()));
+            MatchProcessor processor = new MatchProcessor.Builder(regex).executor(this.pool).build();
+            Sink sink = new Sink(1 + this.random.nextInt(3));
+            source.subscribe(processor);
+            processor.subscribe(sink);
+
+            assertTrue(regex + " on " + s, sink.end.await(5, TimeUnit.SECONDS));
+            assertNull(sink.error);
+            assertEquals(regex + " on " + s, expected, sink.received);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void takesOnlyTheChunksItNeeds() throws InterruptedException {
+        List<Buffer> chunks = new ArrayList<Buffer>();
+        for (int i = 0; i < 1000; i++) chunks.add(CharBuffer.wrap("xx 12 yy "));
+        Source source = new Source(chunks);
+        MatchProcessor processor = new MatchProcessor.Builder("[0-9]+").executor(this.pool).build();
+        Sink sink = new Sink(0);
+        source.subscribe(processor);
+        processor.subscribe(sink);
+
+        sink.subscription.await(5, TimeUnit.SECONDS);
+        sink.request(3);
+        Thread.sleep(200);
+        assertEquals(3, sink.received.size());
+        assertTrue(source.requested.get() <= 5);
+    }
+
+    @Test(timeout = 10000)
+    public void refusesASecondSubscriber() throws InterruptedException {
+        MatchProcessor processor = new MatchProcessor.Builder("[0-9]+").executor(this.pool).build();
+        processor.subscribe(new Sink(1));
+        Sink second = new Sink(1);
+        processor.subscribe(second);
+        assertTrue(second.end.await(5, TimeUnit.SECONDS));
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test(timeout = 10000)
+    public void failsOnANonPositiveRequest() throws InterruptedException {
+        List<Buffer> chunks = new ArrayList<Buffer>();
+        chunks.add(CharBuffer.wrap("12"));
+        MatchProcessor processor = new MatchProcessor.Builder("[0-9]+").executor(this.pool).build();
+        new Source(chunks).subscribe(processor);
+        Sink sink = new Sink(0);
+        processor.subscribe(sink);
+        sink.subscription.await(5, TimeUnit.SECONDS);
+        sink.request(0);
+        assertTrue(sink.end.await(5, TimeUnit.SECONDS));
+        assertTrue(sink.error instanceof IllegalArgumentException);
+    }
+
+    /**
+     * A Subscriber that throws from onNext() is treated as cancelled:
+     * upstream is cancelled, nothing more reaches it, and the exception
+     * goes to the UncaughtExceptionHandler of the thread.
+     */
+    @Test(timeout = 10000)
+    public void aThrowingSubscriberIsCancelled() throws InterruptedException {
+        final AtomicReference<Throwable> uncaught = new AtomicReference<Throwable>();
+        final CountDownLatch caught = new CountDownLatch(1);
+        Executor threads = new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                Thread thread = new Thread(task);
+                thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                    @Override
+                    public void uncaughtException(Thread t, Throwable e) {
+                        uncaught.set(e);
+                        caught.countDown();
+                    }
+                });
+                thread.start();
+            }
+        };
+        List<Buffer> chunks = new ArrayList<Buffer>();
+        for (int i = 0; i < 100; i++) chunks.add(CharBuffer.wrap("xx 12 yy "));
+        Source source = new Source(chunks);
+        MatchProcessor processor = new MatchProcessor.Builder("[0-9]+").executor(threads).build();
+        final RuntimeException failure = new IllegalStateException("Subscriber failure");
+        final AtomicInteger received = new AtomicInteger();
+        final AtomicReference<Flow.Subscription> link = new AtomicReference<Flow.Subscription>();
+        source.subscribe(processor);
+        processor.subscribe(new Flow.Subscriber<Match>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                link.set(subscription);
+                subscription.request(2);
+            }
+
+            @Override
+            public void onNext(Match match) {
+                received.incrementAndGet();
+                throw failure;
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                received.addAndGet(100);
+            }
+
+            @Override
+            public void onComplete() {
+                received.addAndGet(100);
+            }
+        });
+
+        assertTrue(caught.await(5, TimeUnit.SECONDS));
+        assertEquals(failure, uncaught.get());
+        link.get().request(10);
+        Thread.sleep(200);
+        assertEquals(1, received.get());
+        assertTrue(source.cancelled.get());
+    }
+
+    /**
+     * The text in chunks of 1 to 7 characters or bytes, so characters
+     * of several bytes are split between chunks.
+     */
+    private List<Buffer> chunks(String s, boolean bytes) {
+        List<Buffer> chunks = new ArrayList<Buffer>();
+        if (bytes) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0, n; i < b.length; i += n) {
+                n = Math.min(b.length - i, 1 + this.random.nextInt(7));
+                chunks.add(ByteBuffer.wrap(b, i, n));
+            }
+        } else {
+            for (int i = 0, n; i < s.length(); i += n) {
+                n = Math.min(s.length() - i, 1 + this.random.nextInt(7));
+                chunks.add(CharBuffer.wrap(s, i, i + n));
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * The match, with the text and the span of each of its groups.
+     */
+    private static String spans(Match match) {
+        StringBuilder result = new StringBuilder(match.getBegin() + ":" + match.getMatch());
+        for (int group = 1; group <= match.getGroupCount(); group++) {
+            result.append(' ').append(match.getGroupBegin(group)).append('-').append(match.getGroupEnd(group))
+                    .append('=').append(match.getGroup(group));
+        }
+        return result.toString();
+    }
+
+    /**
+     * A Publisher of a list of chunks that honours the requests.
+     */
+    private static final class Source implements Flow.Publisher<Buffer> {
+        private final List<Buffer> chunks;
+        final AtomicLong requested = new AtomicLong();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+
+        Source(List<Buffer> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public void subscribe(final Flow.Subscriber<? super Buffer> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private int next;
+                private long demand;
+                private boolean busy;
+                private boolean done;
+
+                @Override
+                public synchronized void request(long n) {
+                    Source.this.requested.addAndGet(n);
+                    this.demand += n;
+                    if (this.busy) return;  // Called back from onNext()
+                    this.busy = true;
+                    while (this.demand > 0 && this.next < Source.this.chunks.size() && !this.done) {
+                        this.demand--;
+                        subscriber.onNext(Source.this.chunks.get(this.next++));
+                    }
+                    if (!this.done && this.next == Source.this.chunks.size()) {
+                        this.done = true;
+                        subscriber.onComplete();
+                    }
+                    this.busy = false;
+                }
+
+                @Override
+                public void cancel() {
+                    Source.this.cancelled.set(true);
+                    this.done = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * A Subscriber that asks for its matches in batches.
+     */
+    private static final class Sink implements Flow.Subscriber<Match> {
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch subscription = new CountDownLatch(1);
+        final CountDownLatch end = new CountDownLatch(1);
+        volatile Throwable error;
+        private volatile Flow.Subscription link;
+        private final int batch;
+        private int left;
+
+        Sink(int batch) {
+            this.batch = batch;
+        }
+
+        void request(long n) {
+            this.link.request(n);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.link = subscription;
+            this.subscription.countDown();
+            this.left = this.batch;
+            if (this.batch > 0) subscription.request(this.batch);
+        }
+
+        @Override
+        public void onNext(Match match) {
+            this.received.add(MatchProcessorTest.spans(match));
+            if (this.batch > 0 && --this.left == 0) {
+                this.left = this.batch;
+                this.link.request(this.batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+            this.end.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            this.end.countDown();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import io.github.ahmeterdem1.formality.automata.FiniteAutomaton;
+import io.github.ahmeterdem1.formality.exceptions.RegexError;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Compiled regexes against java.util.regex, on random patterns in the
+ * syntax that both share.
+ */
+public class RegexTest {
+
+    private static final String[] ATOMS = {"a", "b", "c", "ab", "[ab]", "[a-c]", "[^a]", "[^ab]", "\\*", "[*c]"};
+
+    private final Random random = new Random(27);
+
+    @Test
+    public void compileAgreesWithJavaRegex() {
+        for (int t = 0; t < 1500; t++) {
+            String regex = this.pattern(4);
+            FiniteAutomaton optimized = Regex.compile(regex);
+            FiniteAutomaton plain = Regex.compile(Regex.parse(regex));
+            Pattern pattern = Pattern.compile(regex);
+
+            for (int u = 0; u < 30; u++) {
+                String text = this.text("abcd*", 8);
+                boolean expected = pattern.matcher(text).matches();
+                assertEquals(regex + " on \"" + text + "\"", expected, optimized.validate(text));
+                assertEquals(regex + " unoptimized on \"" + text + "\"", expected, plain.validate(text));
+            }
+        }
+    }
+
+    @Test
+    public void escapesAndClasses() {
+        assertTrue(Regex.compile("a\\(b\\)").validate("a(b)"));
+        assertTrue(Regex.compile("[\\]x]+").validate("]x]"));
+        assertTrue(Regex.compile("[a-cx-z]*").validate("azbyc"));
+        assertFalse(Regex.compile("[a-cx-z]*").validate("ad"));
+        assertTrue(Regex.compile("[^a-c]").validate("d"));
+        assertFalse(Regex.compile("[^a-c]").validate("b"));
+        assertTrue(Regex.compile("()").validate(""));
+    }
+
+    @Test
+    public void classesHoldTheirRanges() {
+        String[] classes = {"[a-cx-z]", "[^a-c]", "[zyxa-cb]", "[\u00e9a\u8000-\uffff]", "[^\u8000-\u9000\uff00]",
+                "[\u7fff-\u8001\u0000]", "[^\uffff]"};
+        for (String regex : classes) {
+            FiniteAutomaton automaton = Regex.compile(regex);
+            Pattern pattern = Pattern.compile(regex);
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                String text = String.valueOf((char) c);
+                assertEquals(regex + " on " + c, pattern.matcher(text).matches(), automaton.validate(text));
+            }
+        }
+    }
+
+    @Test
+    public void deepNestingDoesNotOverflow() {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < 20000; i++) regex.append('(');
+        regex.append('a');
+        for (int i = 0; i < 20000; i++) regex.append(")*");
+
+        assertTrue(Regex.compile(regex.toString()).validate("aaa"));
+    }
+
+    @Test
+    public void malformedPatternsAreRejected() {
+        String[] malformed = {"(", "a)", "[a", "a]", "*a", "a|*", "a\\", "[]", "[^(a)]"};
+        for (String regex : malformed) {
+            try {
+                Regex.compile(regex);
+                fail("Accepted " + regex);
+            } catch (RegexError expected) {
+                // Rejected as it should be
+            }
+        }
+    }
+
+    @Test
+    public void optimizerKeepsTheLanguage() {
+        for (int t = 0; t < 300; t++) {
+            String regex = this.pattern(4);
+            FiniteAutomaton optimized = Regex.compile(Regex.optimize(Regex.parse(regex)));
+            FiniteAutomaton plain = Regex.compile(Regex.parse(regex));
+            // Every text of up to 4 characters
+            for (int n = 0; n < 1 + 5 + 25 + 125 + 625; n++) {
+                String text = RegexTest.nthText(n, "abcd*");
+                assertEquals(regex + " on \"" + text + "\"", plain.validate(text), optimized.validate(text));
+            }
+        }
+    }
+
+    private String pattern(int depth) {
+        if (depth == 0 || this.random.nextInt(4) == 0) return ATOMS[this.random.nextInt(ATOMS.length)];
+        switch (this.random.nextInt(5)) {
+            case 0:
+                return this.pattern(depth - 1) + this.pattern(depth - 1);
+            case 1:
+                return "(" + this.pattern(depth - 1) + "|" + this.pattern(depth - 1) + ")";
+            case 2:
+                return "(" + this.pattern(depth - 1) + ")*";
+            case 3:
+                return "(" + this.pattern(depth - 1) + ")+";
+            default:
+                return "(" + this.pattern(depth - 1) + ")?";
+        }
+    }
+
+    private String text(String alphabet, int maxLength) {
+        StringBuilder result = new StringBuilder();
+        for (int i = this.random.nextInt(maxLength + 1); i > 0; i--) {
+            result.append(alphabet.charAt(this.random.nextInt(alphabet.length())));
+        }
+        return result.toString();
+    }
+
+    /**
+     * The n-th text over the alphabet, in order of length.
+     */
+    private static String nthText(int n, String alphabet) {
+        StringBuilder result = new StringBuilder();
+        int count = 1;
+        while (n >= count) {
+            n -= count;
+            count *= alphabet.length();
+            result.append(alphabet.charAt(0));
+        }
+        for (int i = result.length() - 1; i >= 0; i--) {
+            result.setCharAt(i, alphabet.charAt(n % alphabet.length()));
+            n /= alphabet.length();
+        }
+        return result.toString();
+    }
+}
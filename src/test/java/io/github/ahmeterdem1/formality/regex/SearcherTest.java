@@ -0,0 +1,287 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import io.github.ahmeterdem1.formality.automata.Budget;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Searches against a brute force search over every substring, with
+ * java.util.regex deciding whether a substring matches. The groups of
+ * a match are those that a TaggedNfa finds in it, see TaggedNfaTest.
+ */
+public class SearcherTest {
+
+    private static final String[] LITERAL_PATTERNS = {
+            "a*bc", "[ab]*cab+", "(a|b)*ca", "c(ab)*c", "abc", "a+ba*", "(ab|ba)+cc?", "x?abc*", "[a-c]*ab"};
+
+    private final Random random = new Random(44);
+
+    @Test
+    public void searchesAgreeWithBruteForce() {
+        for (int t = 0; t < 800; t++) {
+            String regex = this.pattern(4);
+            this.check(regex, Searcher.compile(regex), Pattern.compile(regex), 14);
+        }
+    }
+
+    @Test
+    public void searchesWithLiteralsAgreeWithBruteForce() {
+        for (String regex : LITERAL_PATTERNS) {
+            Searcher searcher = Searcher.compile(regex);
+            for (int t = 0; t < 100; t++) this.check(regex, searcher, Pattern.compile(regex), 20);
+        }
+        assertEquals("ca", Searcher.compile("(a|b)*ca").getLiteral());
+    }
+
+    @Test
+    public void rewritesAgreeWithBruteForce() throws IOException {
+        for (int t = 0; t < 500; t++) {
+            String regex = this.pattern(4);
+            Searcher searcher = Searcher.compile(regex);
+            Pattern pattern = Pattern.compile(regex);
+
+            for (int u = 0; u < 10; u++) {
+                String text = this.text(14);
+                List<int[]> matches = SearcherTest.leftmostLongest(pattern, text, 0, true);
+                StringBuilder all = new StringBuilder();
+                List<String> parts = new ArrayList<String>();
+                int last = 0;
+                for (int[] match : matches) {
+                    all.append(text, last, match[0]).append("<>");
+                    parts.add(text.substring(last, match[0]));
+                    last = match[1];
+                }
+                all.append(text.substring(last));
+                parts.add(text.substring(last));
+                String first = matches.isEmpty() ? text
+                        : text.substring(0, matches.get(0)[0]) + "<>" + text.substring(matches.get(0)[1]);
+
+                String message = regex + " on \"" + text + "\"";
+                assertEquals(message, all.toString(), searcher.replaceAll(text, "<>"));
+                assertEquals(message, first, searcher.replaceFirst(text, "<>"));
+                assertEquals(message, parts, searcher.split(text));
+
+                StringWriter out = new StringWriter();
+                searcher.replaceAll(this.trickle(text), "<>", out);
+                assertEquals(message, all.toString(), out.toString());
+                out = new StringWriter();
+                searcher.replaceFirst(this.trickle(text), "<>", out);
+                assertEquals(message, first, out.toString());
+                List<String> streamed = new ArrayList<String>();
+                for (Iterator<String> it = searcher.split(this.trickle(text)); it.hasNext(); ) streamed.add(it.next());
+                assertEquals(message, parts, streamed);
+            }
+        }
+    }
+
+    @Test
+    public void streamingCrossesBlocks() throws IOException {
+        Searcher searcher = Searcher.compile("a(b|c)*d|[0-9]+");
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 100000) {
+            text.append(this.text(30)).append(this.random.nextInt(1000));
+            if (this.random.nextInt(50) == 0) for (int i = 0; i < 20000; i++) text.append('b');
+        }
+        String str = text.toString();
+
+        StringWriter out = new StringWriter();
+        searcher.replaceAll(new StringReader(str), "#", out);
+        assertEquals(searcher.replaceAll(str, "#"), out.toString());
+    }
+
+    @Test
+    public void conveniences() {
+        assertEquals(3, Regex.match("abbab", "a(b)+").size());
+        assertEquals("--", Regex.replaceAll("abbab", "a(b)+", "-"));
+        assertEquals("-ab", Regex.replaceFirst("abbab", "a(b)+", "-"));
+        assertEquals(Arrays.asList("x", "y", "z", ""), Regex.split("x1y22z3", "[0-9]+"));
+        assertEquals(2, Regex.findAll("abbab", "a(b)+").size());
+        assertEquals("abb", Regex.find("cabbab", "a(b)+").getMatch());
+        assertNull(Regex.find("ccc", "a(b)+"));
+        assertTrue(Regex.contains("cab", "a(b)+"));
+        assertFalse(Regex.contains("cba", "a(b)+"));
+        assertEquals(3, Regex.count("abbab", "a(b)+"));
+        assertEquals("b", Regex.find("cabbab", "a(b)+").getGroup(1));
+        assertEquals(4, Regex.findAll("abbab", "a(b)+").get(1).getGroupBegin(1));
+        assertEquals(0, Regex.find("cabbab", "ab+").getGroupCount());
+    }
+
+    /**
+     * Every index in front of the first end begins a candidate that
+     * runs up to it. A budget of a few steps per character fails if the
+     * candidates are checked one by one.
+     */
+    @Test(timeout = 10000)
+    public void findIsLinear() {
+        int n = 200000;
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < n; i++) text.append('a');
+        Budget budget = new Budget.Builder().maxSteps(8L * n).build();
+
+        Match match = Searcher.compile("a+b|c").find(text + "c", 0, budget);
+        assertEquals(n, match.getBegin());
+        assertEquals("c", match.getMatch());
+        match = Searcher.compile("a+b|a").find(text, 0, budget);
+        assertEquals(0, match.getBegin());
+        assertEquals("a", match.getMatch());
+        assertNull(Searcher.compile("(a*b)?").find(text, 0, budget));
+        match = Searcher.compile("(a*b)?").find(text + "b", 0, budget);
+        assertEquals(n + 1, match.getEnd());
+        match = Searcher.compile("(a|b)*ab|c").find(text + "c", 0, budget);
+        assertEquals(n, match.getBegin());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void findBeyondTheText() {
+        Searcher.compile("a").find("abc", 4);
+    }
+
+    private void check(String regex, Searcher searcher, Pattern pattern, int maxLength) {
+        for (int u = 0; u < 10; u++) {
+            String text = this.text(maxLength);
+            String message = regex + " on \"" + text + "\"";
+
+            List<String> expected = new ArrayList<String>();
+            for (int i = 0; i < text.length(); i++) {
+                for (int j = i + 1; j <= text.length(); j++) {
+                    if (pattern.matcher(text.substring(i, j)).matches()) expected.add(i + ":" + text.substring(i, j));
+                }
+            }
+            List<Match> all = searcher.matchAll(text);
+            assertEquals(message, expected, SearcherTest.spans(all));
+            SearcherTest.checkGroups(message, regex, text, all);
+            assertEquals(message, expected.size(), searcher.count(text));
+            assertEquals(message, !expected.isEmpty(), searcher.contains(text));
+
+            List<String> longest = new ArrayList<String>();
+            for (int[] match : SearcherTest.leftmostLongest(pattern, text, 0, true)) {
+                longest.add(match[0] + ":" + text.substring(match[0], match[1]));
+            }
+            List<Match> found = searcher.findAll(text);
+            assertEquals(message, longest, SearcherTest.spans(found));
+            SearcherTest.checkGroups(message, regex, text, found);
+            Match first = searcher.find(text);
+            assertEquals(message, longest.isEmpty() ? null : longest.get(0), first == null ? null : SearcherTest.span(first));
+            if (first != null) SearcherTest.checkGroups(message, regex, text, Arrays.asList(first));
+
+            int from = this.random.nextInt(text.length() + 1);
+            List<int[]> after = SearcherTest.leftmostLongest(pattern, text, from, false);
+            Match next = searcher.find(text, from);
+            assertEquals(message + " from " + from,
+                    after.isEmpty() ? null : after.get(0)[0] + ":" + text.substring(after.get(0)[0], after.get(0)[1]),
+                    next == null ? null : SearcherTest.span(next));
+        }
+    }
+
+    /**
+     * Check the groups of each match against a TaggedNfa matching the
+     * part of the text that the match takes.
+     */
+    private static void checkGroups(String message, String regex, String text, List<Match> matches) {
+        TaggedNfa nfa = TaggedNfa.compile(regex);
+        for (Match match : matches) {
+            Match expected = nfa.match(text, match.getBegin(), match.getEnd());
+            assertEquals(message, nfa.getGroupCount(), match.getGroupCount());
+            for (int g = 0; g <= nfa.getGroupCount(); g++) {
+                assertEquals(message + " group " + g, expected.getGroupBegin(g), match.getGroupBegin(g));
+                assertEquals(message + " group " + g, expected.getGroupEnd(g), match.getGroupEnd(g));
+            }
+        }
+    }
+
+    /**
+     * The leftmost-longest non-empty matches from "from" on, all of them
+     * without overlaps, or only the first.
+     */
+    static List<int[]> leftmostLongest(Pattern pattern, String text, int from, boolean all) {
+        List<int[]> result = new ArrayList<int[]>();
+        int i = from;
+        while (i < text.length()) {
+            int best = -1;
+            for (int j = i + 1; j <= text.length(); j++) {
+                if (pattern.matcher(text.substring(i, j)).matches()) best = j;
+            }
+            if (best < 0) {
+                i++;
+                continue;
+            }
+            result.add(new int[] {i, best});
+            if (!all) break;
+            i = best;
+        }
+        return result;
+    }
+
+    private static List<String> spans(List<Match> matches) {
+        List<String> result = new ArrayList<String>();
+        for (Match match : matches) result.add(SearcherTest.span(match));
+        return result;
+    }
+
+    private static String span(Match match) {
+        assertEquals(match.getMatch().length(), match.getEnd() - match.getBegin());
+        return match.getBegin() + ":" + match.getMatch();
+    }
+
+    private String pattern(int depth) {
+        switch (depth <= 0 ? this.random.nextInt(3) : this.random.nextInt(7)) {
+            case 0:
+                return String.valueOf("abc".charAt(this.random.nextInt(3)));
+            case 1:
+                return "[ab]";
+            case 2:
+                return "" + "abc".charAt(this.random.nextInt(3)) + "abc".charAt(this.random.nextInt(3));
+            case 3:
+                return this.pattern(depth - 1) + this.pattern(depth - 1);
+            case 4:
+                return "(" + this.pattern(depth - 1) + "|" + this.pattern(depth - 1) + ")";
+            case 5:
+                return "(" + this.pattern(depth - 1) + ")" + "*+?".charAt(this.random.nextInt(3));
+            default:
+                return "(" + this.pattern(depth - 1) + ")";
+        }
+    }
+
+    private String text(int maxLength) {
+        StringBuilder result = new StringBuilder();
+        for (int i = this.random.nextInt(maxLength + 1); i > 0; i--) result.append("abcd".charAt(this.random.nextInt(4)));
+        return result.toString();
+    }
+
+    /**
+     * A Reader that hands out one to three characters at a time.
+     */
+    private Reader trickle(final String text) {
+        return new Reader() {
+            private int next;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (this.next == text.length()) return -1;
+                int count = Math.min(Math.min(length, 1 + SearcherTest.this.random.nextInt(3)), text.length() - this.next);
+                text.getChars(this.next, this.next + count, buffer, offset);
+                this.next += count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
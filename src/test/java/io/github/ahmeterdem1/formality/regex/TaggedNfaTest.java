@@ -0,0 +1,209 @@
+package io.github.ahmeterdem1.formality.regex;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Group spans against a backtracking matcher that restores the groups
+ * of the paths it backs out of, and leaves a repeat after a round that
+ * reads nothing, as java.util.regex does.
+ */
+public class TaggedNfaTest {
+
+    private final Random random = new Random(43);
+    private int groups;
+
+    @Test
+    public void groupsAgreeWithBacktracking() {
+        for (int t = 0; t < 3000; t++) {
+            this.groups = 0;
+            Reference reference = this.reference(5);
+            TaggedNfa nfa = TaggedNfa.compile(reference.regex);
+            assertEquals(reference.regex, this.groups, nfa.getGroupCount());
+
+            for (int u = 0; u < 20; u++) {
+                final String text = this.text(8);
+                int[] expected = reference.match(text, this.groups);
+                Match match = nfa.match(text);
+                String message = reference.regex + " on \"" + text + "\"";
+
+                if (expected == null) {
+                    assertNull(message, match);
+                    continue;
+                }
+                int[] spans = new int[2 * this.groups + 2];
+                for (int g = 0; g <= this.groups; g++) {
+                    spans[2 * g] = match.getGroupBegin(g);
+                    spans[2 * g + 1] = match.getGroupEnd(g);
+                }
+                assertEquals(message, Arrays.toString(expected), Arrays.toString(spans));
+            }
+        }
+    }
+
+    @Test
+    public void example() {
+        Match match = TaggedNfa.compile("([0-9]+)-([0-9]+)-([0-9]+)").match("2024-05-17");
+        assertEquals("05", match.getGroup(2));
+        assertEquals(8, match.getGroupBegin(3));
+        assertEquals("2024-05-17", match.getGroup(0));
+        assertNull(TaggedNfa.compile("(a)|b").match("b").getGroup(1));
+        assertEquals("c", TaggedNfa.compile("(a|b|c)*").match("abc").getGroup(1));
+        assertEquals(1, TaggedNfa.compile("(a|)*").match("a").getGroupBegin(1));
+        assertEquals("", TaggedNfa.compile("(a?)+").match("a").getGroup(1));
+        assertEquals("b", TaggedNfa.compile("((a?)*b)*").match("aabb").getGroup(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void missingGroup() {
+        TaggedNfa.compile("(a)").match("a").getGroup(2);
+    }
+
+    private String text(int maxLength) {
+        StringBuilder result = new StringBuilder();
+        for (int i = this.random.nextInt(maxLength + 1); i > 0; i--) result.append("ab".charAt(this.random.nextInt(2)));
+        return result.toString();
+    }
+
+    /**
+     * A random pattern over "a" and "b", with its backtracking matcher.
+     * Every "(" of the pattern is a group.
+     */
+    private Reference reference(int depth) {
+        switch (depth <= 0 ? this.random.nextInt(2) : this.random.nextInt(6)) {
+            case 0: {
+                final char c = "ab".charAt(this.random.nextInt(2));
+                return new Reference(String.valueOf(c), false) {
+                    @Override
+                    boolean match(String s, int i, int[] spans, Next next) {
+                        return i < s.length() && s.charAt(i) == c && next.at(i + 1);
+                    }
+                };
+            }
+            case 1:
+                return new Reference("[ab]", false) {
+                    @Override
+                    boolean match(String s, int i, int[] spans, Next next) {
+                        return i < s.length() && next.at(i + 1);
+                    }
+                };
+            case 2: {
+                final Reference left = this.reference(depth - 1);
+                final Reference right = this.reference(depth - 1);
+                return new Reference(left.regex + right.regex, left.nullable && right.nullable) {
+                    @Override
+                    boolean match(final String s, int i, final int[] spans, final Next next) {
+                        return left.match(s, i, spans, new Next() {
+                            @Override
+                            public boolean at(int j) {
+                                return right.match(s, j, spans, next);
+                            }
+                        });
+                    }
+                };
+            }
+            case 3: {
+                final int group = ++this.groups;
+                final Reference left = this.reference(depth - 1);
+                final Reference right = this.reference(depth - 1);
+                Reference alternation = new Reference(left.regex + "|" + right.regex, left.nullable || right.nullable) {
+                    @Override
+                    boolean match(String s, int i, int[] spans, Next next) {
+                        return left.match(s, i, spans, next) || right.match(s, i, spans, next);
+                    }
+                };
+                return TaggedNfaTest.group(group, alternation);
+            }
+            case 4: {
+                final int group = ++this.groups;
+                final Reference inner = TaggedNfaTest.group(group, this.reference(depth - 1));
+                final char operator = "*+?".charAt(this.random.nextInt(3));
+                return new Reference(inner.regex + operator, operator != '+' || inner.nullable) {
+                    @Override
+                    boolean match(String s, int i, int[] spans, Next next) {
+                        if (operator == '?') return inner.match(s, i, spans, next) || next.at(i);
+                        if (operator == '+') return inner.match(s, i, spans, this.loop(s, spans, next, i));
+                        return inner.match(s, i, spans, this.loop(s, spans, next, i)) || next.at(i);
+                    }
+
+                    /**
+                     * What follows a round that began at "begin"; a round
+                     * that read nothing leaves the repeat.
+                     */
+                    private Next loop(final String s, final int[] spans, final Next next, final int begin) {
+                        return new Next() {
+                            @Override
+                            public boolean at(int j) {
+                                if (j == begin) return next.at(j);
+                                return inner.match(s, j, spans, loop(s, spans, next, j)) || next.at(j);
+                            }
+                        };
+                    }
+                };
+            }
+            default:
+                return TaggedNfaTest.group(++this.groups, this.reference(depth - 1));
+        }
+    }
+
+    private static Reference group(final int group, final Reference body) {
+        return new Reference("(" + body.regex + ")", body.nullable) {
+            @Override
+            boolean match(String s, final int i, final int[] spans, final Next next) {
+                return body.match(s, i, spans, new Next() {
+                    @Override
+                    public boolean at(int j) {
+                        int begin = spans[2 * group];
+                        int end = spans[2 * group + 1];
+                        spans[2 * group] = i;
+                        spans[2 * group + 1] = j;
+                        if (next.at(j)) return true;
+                        spans[2 * group] = begin;
+                        spans[2 * group + 1] = end;
+                        return false;
+                    }
+                });
+            }
+        };
+    }
+
+    private interface Next {
+        boolean at(int i);
+    }
+
+    private abstract static class Reference {
+        final String regex;
+        final boolean nullable;
+
+        Reference(String regex, boolean nullable) {
+            this.regex = regex;
+            this.nullable = nullable;
+        }
+
+        abstract boolean match(String s, int i, int[] spans, Next next);
+
+        /**
+         * @return Spans of the whole match and of every group, -1 for
+         *      groups that take no part; null if the text does not match
+         */
+        int[] match(final String s, int groups) {
+            int[] spans = new int[2 * groups + 2];
+            Arrays.fill(spans, -1);
+            boolean matched = this.match(s, 0, spans, new Next() {
+                @Override
+                public boolean at(int j) {
+                    return j == s.length();
+                }
+            });
+            if (!matched) return null;
+            spans[0] = 0;
+            spans[1] = s.length();
+            return spans;
+        }
+    }
+}
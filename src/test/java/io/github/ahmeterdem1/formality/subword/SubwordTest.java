@@ -0,0 +1,148 @@
+package io.github.ahmeterdem1.formality.subword;
+
+import io.github.ahmeterdem1.formality.automata.FiniteAutomaton;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * WordPiece and byte pair encoding against their definitions, on
+ * random vocabularies.
+ */
+public class SubwordTest {
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void wordPieceIsGreedyLongestMatch() {
+        for (int trial = 0; trial < 300; trial++) {
+            String characters = trial % 3 == 0 ? "ab#" : trial % 3 == 1 ? "abcd\u00e9" : "abc";
+            LinkedHashSet<String> set = new LinkedHashSet<String>();
+            set.add("[UNK]");
+            for (int size = 1 + this.random.nextInt(40); set.size() < size; ) {
+                set.add((this.random.nextBoolean() ? "##" : "") + this.word(characters, 1 + this.random.nextInt(4)));
+            }
+            List<String> tokens = new ArrayList<String>(set);
+            Map<String, Integer> ids = new HashMap<String, Integer>();
+            for (int i = 0; i < tokens.size(); i++) ids.put(tokens.get(i), i);
+
+            Vocabulary vocabulary = new Vocabulary(tokens);
+            for (int i = 0; i < tokens.size(); i++) {
+                assertEquals(i, vocabulary.getId(tokens.get(i)));
+                assertEquals(tokens.get(i), vocabulary.getToken(i));
+            }
+            assertEquals(-1, vocabulary.getId("zz"));
+            FiniteAutomaton trie = vocabulary.getTrie().toFiniteAutomaton();
+            WordPiece wordPiece = new WordPiece(vocabulary, "[UNK]");
+
+            for (int k = 0; k < 200; k++) {
+                String word = this.word(characters, this.random.nextInt(9));
+                assertEquals(word, ids.containsKey(word), trie.validate(word));
+                List<Integer> expected = word.isEmpty()
+                        ? Collections.<Integer>emptyList() : SubwordTest.wordPiece(ids, word, ids.get("[UNK]"));
+                assertEquals(tokens + " " + word, expected, SubwordTest.list(wordPiece.encode(word)));
+            }
+        }
+        Vocabulary vocabulary = new Vocabulary(Arrays.asList("[UNK]", "un", "##aff", "##able", "a", "##ff"));
+        assertEquals("[1, 2, 3, 4, 0]", Arrays.toString(new WordPiece(vocabulary, "[UNK]").encode("unaffable  a x")));
+    }
+
+    @Test
+    public void bytePairEncodingAppliesMergesByRank() {
+        for (int trial = 0; trial < 300; trial++) {
+            List<String> tokens = new ArrayList<String>(Arrays.asList("[UNK]", "a", "b", "c", "d"));
+            List<String> merges = new ArrayList<String>();
+            Map<String, Integer> ranks = new HashMap<String, Integer>();
+            for (int k = 0; k < 20; k++) {
+                String x = tokens.get(1 + this.random.nextInt(tokens.size() - 1));
+                String y = tokens.get(1 + this.random.nextInt(tokens.size() - 1));
+                if (ranks.containsKey(x + " " + y)) continue;
+                ranks.put(x + " " + y, merges.size());
+                merges.add(x + " " + y);
+                if (!tokens.contains(x + y)) tokens.add(x + y);
+            }
+            Map<String, Integer> ids = new HashMap<String, Integer>();
+            for (int i = 0; i < tokens.size(); i++) ids.put(tokens.get(i), i);
+            BytePairEncoding encoding = new BytePairEncoding(new Vocabulary(tokens), merges, "[UNK]");
+
+            for (int k = 0; k < 200; k++) {
+                String word = this.word("abcde", this.random.nextInt(14));
+                List<Integer> expected = word.isEmpty()
+                        ? Collections.<Integer>emptyList() : SubwordTest.bytePairs(ids, ranks, word, 0);
+                assertEquals(merges + " " + word, expected, SubwordTest.list(encoding.encode(word)));
+            }
+        }
+    }
+
+    private String word(String characters, int length) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i++) result.append(characters.charAt(this.random.nextInt(characters.length())));
+        return result.toString();
+    }
+
+    private static List<Integer> list(int[] ids) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int id : ids) result.add(id);
+        return result;
+    }
+
+    /**
+     * Take the longest token at each position, "##" in front after the
+     * first; the whole word is unknown if some position has none.
+     */
+    private static List<Integer> wordPiece(Map<String, Integer> ids, String word, int unknown) {
+        List<Integer> result = new ArrayList<Integer>();
+        int start = 0;
+        while (start < word.length()) {
+            int end = word.length();
+            Integer id = null;
+            for (; start < end; end--) {
+                String piece = word.substring(start, end);
+                if (start > 0) piece = "##" + piece;
+                else if (piece.startsWith("##") && piece.length() > 2) continue;  // Would read as a continuation
+                id = ids.get(piece);
+                if (id != null) break;
+            }
+            if (id == null) return Collections.singletonList(unknown);
+            result.add(id);
+            start = end;
+        }
+        return result;
+    }
+
+    /**
+     * Merge the pair of lowest rank, as long as there is one.
+     */
+    private static List<Integer> bytePairs(Map<String, Integer> ids, Map<String, Integer> ranks, String word, int unknown) {
+        List<String> pieces = new ArrayList<String>();
+        for (int i = 0; i < word.length(); i++) pieces.add(String.valueOf(word.charAt(i)));
+        while (true) {
+            int best = -1;
+            int bestRank = Integer.MAX_VALUE;
+            for (int i = 0; i + 1 < pieces.size(); i++) {
+                Integer rank = ranks.get(pieces.get(i) + " " + pieces.get(i + 1));
+                if (rank != null && rank < bestRank) {
+                    bestRank = rank;
+                    best = i;
+                }
+            }
+            if (best < 0) break;
+            pieces.set(best, pieces.get(best) + pieces.remove(best + 1));
+        }
+        List<Integer> result = new ArrayList<Integer>();
+        for (String piece : pieces) {
+            Integer id = ids.get(piece);
+            result.add(id == null ? unknown : id);
+        }
+        return result;
+    }
+}